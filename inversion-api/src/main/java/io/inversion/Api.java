@@ -157,8 +157,10 @@ public class Api extends Rule<Api> {
         if (coll.isExclude())
             return this;
 
-        if (!collections.contains(coll))
+        if (!collections.contains(coll)) {
             collections.add(coll);
+            matchesChanged();
+        }
 
         return this;
     }
@@ -248,6 +250,8 @@ public class Api extends Rule<Api> {
 
                 if (!inserted)
                     this.endpoints.add(endpoint);
+
+                matchesChanged();
             }
         }
         return this;
@@ -303,14 +307,15 @@ public class Api extends Rule<Api> {
      */
     public synchronized Api withActions(Action... actions) {
         for (Action action : actions)
-            if (!this.actions.contains(action))
-                this.actions.add(action);
+            withAction(action);
         return this;
     }
 
     public Api withAction(Action action) {
-        if (!this.actions.contains(action))
+        if (!this.actions.contains(action)) {
             this.actions.add(action);
+            matchesChanged();
+        }
         return this;
     }
 
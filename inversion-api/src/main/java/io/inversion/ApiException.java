@@ -279,6 +279,22 @@ public class ApiException extends RuntimeException implements Status {
         return new ApiException(SC_404_NOT_FOUND, cause, messageFormat, messages);
     }
 
+    public static ApiException new413PayloadTooLarge() throws ApiException {
+        return new ApiException(SC_413_PAYLOAD_TOO_LARGE, null, null);
+    }
+
+    public static ApiException new413PayloadTooLarge(Throwable cause) throws ApiException {
+        return new ApiException(SC_413_PAYLOAD_TOO_LARGE, cause, null);
+    }
+
+    public static ApiException new413PayloadTooLarge(String messageFormat, Object... messages) throws ApiException {
+        return new ApiException(SC_413_PAYLOAD_TOO_LARGE, null, messageFormat, messages);
+    }
+
+    public static ApiException new413PayloadTooLarge(Throwable cause, String messageFormat, Object... messages) throws ApiException {
+        return new ApiException(SC_413_PAYLOAD_TOO_LARGE, cause, messageFormat, messages);
+    }
+
     public static ApiException new429TooManyRequests() throws ApiException {
         return new ApiException(SC_429_TOO_MANY_REQUESTS, null, null);
     }
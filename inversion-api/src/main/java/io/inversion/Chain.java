@@ -20,9 +20,15 @@ import io.inversion.utils.*;
 import org.apache.commons.collections4.map.CaseInsensitiveMap;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
 
 public class Chain {
     static          ThreadLocal<Stack<Chain>>          chainLocal = new ThreadLocal<>();
+    /**
+     * The number of Chains at the bottom of this thread's stack that were copied from another thread by {@link #wrap(Callable)}
+     */
+    static          ThreadLocal<Integer>               inheritedLocal = new ThreadLocal<>();
     protected final Engine                             engine;
     protected final List<ActionMatch>                  actions    = new ArrayList<>();
     protected final Request                            request;
@@ -43,6 +49,7 @@ public class Chain {
 
     public static void resetAll() {
         chainLocal = new ThreadLocal<>();
+        inheritedLocal = new ThreadLocal<>();
     }
 
     protected static Stack<Chain> get() {
@@ -58,6 +65,17 @@ public class Chain {
         return get().size();
     }
 
+    /**
+     * Resources that are held per thread, such as database transactions, should only be committed and released by
+     * the outermost request on the thread.  Requests dispatched by Actions run nested on the same thread and share them.
+     *
+     * @return true if the current Chain is the first one serviced on this thread, Chains copied onto the thread by {@link #wrap(Callable)} are not counted
+     */
+    public static boolean isOutermost() {
+        Integer inherited = inheritedLocal.get();
+        return getDepth() - (inherited == null ? 0 : inherited) <= 1;
+    }
+
     public static Chain first() {
         Stack<Chain> stack = get();
         if (!stack.empty()) {
@@ -93,10 +111,61 @@ public class Chain {
         return child;
     }
 
+    /**
+     * Makes an existing Chain current again, for example while a streamed Response is written
+     * after the Engine has finished with and popped the Chain.  Must be paired with {@link #pop()}.
+     *
+     * @param chain the chain to make current
+     */
+    static void push(Chain chain) {
+        get().push(chain);
+    }
+
     public static Chain pop() {
         return get().pop();
     }
 
+    /**
+     * Wraps <code>task</code> so that it runs with a copy of the calling thread's Chain stack, letting work that is
+     * handed off to another thread still call {@link #peek()}, {@link #buildLink(Collection)} or {@link Engine#dispatch(Request)}.
+     * <p>
+     * The thread's own stack is restored when the task completes.  A task that ends up running on the thread that
+     * wrapped it, for example when a saturated executor makes the caller run it, just runs with that thread's own
+     * stack so nested requests are not mistaken for the outermost one.
+     *
+     * @param task the task to run
+     * @param <T>  the result type of the task
+     * @return a Callable that runs <code>task</code> with the current Chain stack
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        Thread      creator = Thread.currentThread();
+        List<Chain> chains  = new ArrayList<>(get());
+        return () -> {
+            if (Thread.currentThread() == creator)
+                return task.call();
+
+            Stack<Chain> previous          = chainLocal.get();
+            Integer      previousInherited = inheritedLocal.get();
+            Stack<Chain> stack             = new Stack<>();
+            stack.addAll(chains);
+            chainLocal.set(stack);
+            inheritedLocal.set(chains.size());
+            try {
+                return task.call();
+            } finally {
+                if (previous == null)
+                    chainLocal.remove();
+                else
+                    chainLocal.set(previous);
+
+                if (previousInherited == null)
+                    inheritedLocal.remove();
+                else
+                    inheritedLocal.set(previousInherited);
+            }
+        };
+    }
+
     public static User getUser() {
         Chain chain = peek();
         if (chain != null) {
@@ -113,9 +182,30 @@ public class Chain {
         return get().size();
     }
 
+    /**
+     * Checks if debug messages sent to {@link #debug(Object...)} will be recorded by the root Response of the current thread.
+     *
+     * @return true if there is a running Chain whose root Response is recording debug output
+     * @see Response#isDebug()
+     */
+    public static boolean isDebugging() {
+        Stack<Chain> stack = get();
+        return stack.size() > 0 && stack.get(0).response.isDebug();
+    }
+
+    /**
+     * Lazily records a debug message, <code>message</code> is only called when {@link #isDebugging()} is true.
+     *
+     * @param message supplies the message to record
+     */
+    public static void debug(Supplier<Object> message) {
+        if (isDebugging())
+            debug(message.get());
+    }
+
     public static void debug(Object... msgs) {
         Stack<Chain> stack = get();
-        if (stack.size() < 1) {
+        if (stack.size() < 1 || !stack.get(0).response.isDebug()) {
             return;
         }
 
@@ -450,7 +540,7 @@ public class Chain {
             next += 1;
 
             Map<String, String> pathParams = new HashMap<>();
-            actionMatch.rule.extract(pathParams, new Path(actionMatch.path));
+            actionMatch.rule.compile().extract(pathParams, actionMatch.path, 0, false);
 
             applyPathParams(pathParams, request.getUrl(), request.getJson());
 
@@ -213,16 +213,59 @@ public abstract class Db<T extends Db> {
      * @throws ApiException TODO: update/correct this javadoc
      */
     public final Results select(Collection collection, Map<String, String> params) throws ApiException {
+        return select(collection, params, false);
+    }
 
-        List<Term> terms = new ArrayList<>();
+    /**
+     * Finds all records that match the supplied RQL query terms, optionally as a forward only {@link Results.Cursor}.
+     * <p>
+     * When <code>cursor</code> is true and the Db supports it, the returned Results hold an open cursor instead of rows
+     * and each row is converted to a JSNode only as it is read from the cursor.  The caller must close the cursor.
+     * Dbs that do not support cursors return fully materialized Results.
+     *
+     * @param collection the collection being queried
+     * @param params     RQL terms that have been translated to use Property jsonNames
+     * @param cursor     true to request a forward only cursor instead of materialized rows
+     * @return Results holding maps, or a cursor of maps, with keys as Property jsonNames
+     * @throws ApiException if the query fails
+     * @see #doSelect(Collection, List, boolean)
+     */
+    public final Results select(Collection collection, Map<String, String> params, boolean cursor) throws ApiException {
+        return select(collection, params, null, cursor);
+    }
+
+    /**
+     * Finds all records that match the supplied RQL query string params and already parsed terms.
+     * <p>
+     * The <code>parsed</code> terms, such as those an Action passed to {@link Engine#dispatch(String, Collection, Object, List, JSNode)},
+     * are treated exactly like the terms parsed from <code>params</code>.  Neither is modified, they are copied before being mapped to column names.
+     *
+     * @param collection the collection being queried
+     * @param params     RQL terms that have been translated to use Property jsonNames
+     * @param parsed     already parsed RQL terms using Property jsonNames, may be null
+     * @param cursor     true to request a forward only cursor instead of materialized rows
+     * @return Results holding maps, or a cursor of maps, with keys as Property jsonNames
+     * @throws ApiException if the query fails
+     * @see #select(Collection, Map, boolean)
+     */
+    public final Results select(Collection collection, Map<String, String> params, List<Term> parsed, boolean cursor) throws ApiException {
+
+        List<Term> inputs = new ArrayList<>();
 
-        for (String key : params.keySet()) {
+        //-- the parsed terms are shared, they are copied before they are modified
+        for (String key : params.keySet())
+            inputs.add(RqlParser.parseCached(key, params.get(key)));
 
-            Term term = RqlParser.parse(key, params.get(key));
+        if (parsed != null)
+            inputs.addAll(parsed);
+
+        List<Term> terms = new ArrayList<>();
+
+        for (Term term : inputs) {
 
             List<Term> illegalTerms = term.stream().filter(t -> t.isLeaf() && reservedParams.contains(t.getToken())).collect(Collectors.toList());
             if (illegalTerms.size() > 0) {
-                Chain.debug("Ignoring RQL terms with reserved tokens: " + illegalTerms);
+                Chain.debug(() -> "Ignoring RQL terms with reserved tokens: " + illegalTerms);
                 continue;
             }
 
@@ -243,6 +286,9 @@ public abstract class Db<T extends Db> {
                     continue;
 
                 //-- if the users requets eq(includes, href...) you have to replace "href" with the primary index column names
+                if (term.hasChildLeafToken("href"))
+                    term = term.copy();
+
                 for (Term child : term.getTerms()) {
                     if (child.hasToken("href") && collection != null) {
                         Index pk = collection.getPrimaryIndex();
@@ -273,108 +319,196 @@ public abstract class Db<T extends Db> {
         //-- query text dependable so you can write better tests.
         Collections.sort(terms);
 
-        List<Term> mappedTerms = new ArrayList<>();
-        terms.forEach(term -> mappedTerms.addAll(mapToColumnNames(collection, term.copy())));
-
-        Results results = doSelect(collection, mappedTerms);
+        List<Term>         mappedTerms = new ArrayList<>();
+        List<Relationship> joins       = new ArrayList<>();
+        for (Term term : terms) {
+            if (term.hasToken("_join")) {
+                //-- only the relationships this Db can join are passed on, the caller fetches the others itself
+                for (Term child : term.getTerms()) {
+                    Relationship rel = collection == null ? null : collection.getRelationship(child.getToken());
+                    if (rel != null && !joins.contains(rel) && isJoinable(rel))
+                        joins.add(rel);
+                }
+                if (joins.size() > 0)
+                    mappedTerms.add(Term.term(null, "_join", joins.stream().map(Relationship::getName).collect(Collectors.toList())));
+            } else {
+                mappedTerms.addAll(mapToColumnNames(collection, term.copy()));
+            }
+        }
 
-        if (results.size() > 0) {
+        Results results = doSelect(collection, mappedTerms, cursor);
 
+        if (results.isCursor()) {
+            //-- rows are converted one at a time as the cursor is read
+            results.withCursor(results.getCursor().map(row -> mapRow(collection, joins, (Map<String, Object>) row)));
+        } else {
             for (int i = 0; i < results.size(); i++) {
                 //convert the map into a JSNode
-                Map<String, Object> row = results.getRow(i);
+                results.setRow(i, mapRow(collection, joins, results.getRow(i)));
+            }
+        }
 
-                if (collection == null) {
-                    JSNode node = new JSNode(row);
-                    results.setRow(i, node);
-                } else {
-                    JSNode node = new JSNode();
-                    results.setRow(i, node);
-
-                    //String resourceKey = req.getCollection().encodeResourceKey(row);
-                    String resourceKey = collection.encodeResourceKey(row);
-
-                    if (!Utils.empty(resourceKey)) {
-                        //------------------------------------------------
-                        //next turn all relationships into links that will
-                        //retrieve the related entities
-                        for (Relationship rel : collection.getRelationships()) {
-                            String link = null;
-                            if (rel.isManyToOne()) {
-                                String fkval = null;
-                                if (rel.getRelated().getPrimaryIndex().size() != rel.getFkIndex1().size() && rel.getFkIndex1().size() == 1) {
-                                    //this value is already an encoded resourceKey
-                                    Object obj = row.get(rel.getFk1Col1().getColumnName());
-                                    if (obj != null)
-                                        fkval = obj.toString();
-                                } else {
-                                    fkval = Collection.encodeResourceKey(row, rel.getFkIndex1());
-                                }
+        //------------------------------------------------
+        //the "next" params come from the db encoded with db col names
+        //have to convert them to their attribute equivalents
+        for (Term term : ((List<Term>) results.getNext())) {
+            mapToJsonNames(collection, term);
+        }
 
-                                if (fkval != null) {
-                                    link = Chain.buildLink(rel.getRelated(), fkval, null);
-                                }
-                            } else {
-                                //link = Chain.buildLink(req.getCollection(), resourceKey, rel.getName());
-                                link = Chain.buildLink(collection, resourceKey, rel.getName());
-                            }
-                            node.put(rel.getName(), link);
-                        }
+        return results;
+    }
 
-                        //------------------------------------------------
-                        // finally make sure the resource key is encoded as the href
-                        String href = node.getString("href");
-                        if (Utils.empty(href)) {
-                            href = Chain.buildLink(collection, resourceKey, null);
-                            node.putFirst("href", href);
-                        }
-                    }
+    /**
+     * Returns true if {@link #doSelect(Collection, List, boolean)} can join the related record of the MANY_TO_ONE
+     * <code>rel</code> into the select when the query contains a <code>_join(relationshipName,...)</code> term.
+     * <p>
+     * A Db that returns true selects each joined column as <code>getJoinAlias(rel) + "~~" + columnName</code> so the
+     * related record can be split back out of the row and nested under the relationship name.  This saves
+     * {@link io.inversion.action.db.DbGetAction} a query per expanded relationship.
+     *
+     * @param rel the relationship to join
+     * @return false unless overridden
+     * @see #getJoinAlias(Relationship)
+     */
+    public boolean isJoinable(Relationship rel) {
+        return false;
+    }
 
-                    //------------------------------------------------
-                    //copy over defined attributes first, if the select returned
-                    //extra columns they will be copied over last
-                    for (Property attr : collection.getProperties()) {
-                        String attrName = attr.getJsonName();
-                        String colName  = attr.getColumnName();
+    /**
+     * @param rel the relationship being joined
+     * @return the alias of the related table and the prefix of its column aliases when joined into a select
+     * @see #isJoinable(Relationship)
+     */
+    public static String getJoinAlias(Relationship rel) {
+        return "~~join_" + rel.getName();
+    }
 
-                        boolean rowHas = row.containsKey(colName);
-                        if (rowHas)
-                        //if (resourceKey != null || rowHas)
-                        {
-                            //-- if the resourceKey was null don't create
-                            //-- empty props for fields that were not
-                            //-- returned from the db
-                            Object val = row.remove(colName);
-                            if (!node.containsKey(attrName)) {
-                                val = castDbOutput(attr, val);
-                                node.put(attrName, val);
-                            }
-                        }
-                    }
+    /**
+     * Splits the columns of any related records joined into <code>row</code> out into nested JSNodes before
+     * converting the row with {@link #mapRow(Collection, Map)}.
+     * <p>
+     * When the join did not find a related record the relationship is left as a link.
+     *
+     * @param collection the collection being queried, may be null
+     * @param joins      the relationships that were joined into the select
+     * @param row        the row with column name keys
+     * @return the JSNode representation of the row
+     */
+    protected JSNode mapRow(Collection collection, List<Relationship> joins, Map<String, Object> row) {
+        if (joins.isEmpty())
+            return mapRow(collection, row);
+
+        Map<Relationship, Map<String, Object>> related = new LinkedHashMap<>();
+        for (Relationship rel : joins) {
+            String              prefix   = getJoinAlias(rel) + "~~";
+            Map<String, Object> childRow = null;
+            for (Property prop : rel.getRelated().getProperties()) {
+                String key = prefix + prop.getColumnName();
+                if (row.containsKey(key)) {
+                    if (childRow == null)
+                        childRow = new LinkedHashMap<>();
+                    childRow.put(prop.getColumnName(), row.remove(key));
+                }
+            }
+            if (childRow != null)
+                related.put(rel, childRow);
+        }
 
-                    //------------------------------------------------
-                    // next, if the db returned extra columns that
-                    // are not mapped to attributes, just straight copy them
-                    for (String key : row.keySet()) {
-                        if (!key.equalsIgnoreCase("href") && !node.containsKey(key)) {
-                            Object value = row.get(key);
-                            node.put(key, value);
-                        }
+        JSNode node = mapRow(collection, row);
+        for (Relationship rel : related.keySet()) {
+            Map<String, Object> childRow = related.get(rel);
+            if (!Utils.empty(rel.getRelated().encodeResourceKey(childRow)))
+                node.put(rel.getName(), mapRow(rel.getRelated(), childRow));
+        }
+        return node;
+    }
+
+    /**
+     * Converts a row returned from {@link #doSelect(Collection, List)} with column name keys into a JSNode with
+     * Property jsonName keys, an "href" and links for each Relationship.
+     *
+     * @param collection the collection being queried, may be null
+     * @param row        the row with column name keys
+     * @return the JSNode representation of the row
+     */
+    protected JSNode mapRow(Collection collection, Map<String, Object> row) {
+        if (collection == null)
+            return new JSNode(row);
+
+        JSNode node = new JSNode();
+
+        //String resourceKey = req.getCollection().encodeResourceKey(row);
+        String resourceKey = collection.encodeResourceKey(row);
+
+        if (!Utils.empty(resourceKey)) {
+            //------------------------------------------------
+            //next turn all relationships into links that will
+            //retrieve the related entities
+            for (Relationship rel : collection.getRelationships()) {
+                String link = null;
+                if (rel.isManyToOne()) {
+                    String fkval = null;
+                    if (rel.getRelated().getPrimaryIndex().size() != rel.getFkIndex1().size() && rel.getFkIndex1().size() == 1) {
+                        //this value is already an encoded resourceKey
+                        Object obj = row.get(rel.getFk1Col1().getColumnName());
+                        if (obj != null)
+                            fkval = obj.toString();
+                    } else {
+                        fkval = Collection.encodeResourceKey(row, rel.getFkIndex1());
                     }
 
+                    if (fkval != null) {
+                        link = Chain.buildLink(rel.getRelated(), fkval, null);
+                    }
+                } else {
+                    //link = Chain.buildLink(req.getCollection(), resourceKey, rel.getName());
+                    link = Chain.buildLink(collection, resourceKey, rel.getName());
                 }
+                node.put(rel.getName(), link);
             }
 
-        } // end if results.size() > 0
+            //------------------------------------------------
+            // finally make sure the resource key is encoded as the href
+            String href = node.getString("href");
+            if (Utils.empty(href)) {
+                href = Chain.buildLink(collection, resourceKey, null);
+                node.putFirst("href", href);
+            }
+        }
 
         //------------------------------------------------
-        //the "next" params come from the db encoded with db col names
-        //have to convert them to their attribute equivalents
-        for (Term term : ((List<Term>) results.getNext())) {
-            mapToJsonNames(collection, term);
+        //copy over defined attributes first, if the select returned
+        //extra columns they will be copied over last
+        for (Property attr : collection.getProperties()) {
+            String attrName = attr.getJsonName();
+            String colName  = attr.getColumnName();
+
+            boolean rowHas = row.containsKey(colName);
+            if (rowHas)
+            //if (resourceKey != null || rowHas)
+            {
+                //-- if the resourceKey was null don't create
+                //-- empty props for fields that were not
+                //-- returned from the db
+                Object val = row.remove(colName);
+                if (!node.containsKey(attrName)) {
+                    val = castDbOutput(attr, val);
+                    node.put(attrName, val);
+                }
+            }
         }
 
-        return results;
+        //------------------------------------------------
+        // next, if the db returned extra columns that
+        // are not mapped to attributes, just straight copy them
+        for (String key : row.keySet()) {
+            if (!key.equalsIgnoreCase("href") && !node.containsKey(key)) {
+                Object value = row.get(key);
+                node.put(key, value);
+            }
+        }
+
+        return node;
     }
 
     /**
@@ -386,7 +520,40 @@ public abstract class Db<T extends Db> {
      */
     public abstract Results doSelect(Collection collection, List<Term> queryTerms) throws ApiException;
 
+    /**
+     * Finds all records that match the supplied RQL query terms, optionally as a forward only {@link Results.Cursor}.
+     * <p>
+     * Dbs that can read rows incrementally from an open result should override this and return Results holding a
+     * {@link Results.Cursor} of column name keyed maps when <code>cursor</code> is true.  The default implementation
+     * ignores <code>cursor</code> and calls {@link #doSelect(Collection, List)}.
+     *
+     * @param collection the collection to query
+     * @param queryTerms RQL terms that have been translated to use Property columnNames not jsonNames
+     * @param cursor     true if the caller can consume a forward only cursor
+     * @return A list, or a cursor, of maps with keys as Property columnNames not jsonNames
+     */
+    public Results doSelect(Collection collection, List<Term> queryTerms, boolean cursor) throws ApiException {
+        return doSelect(collection, queryTerms);
+    }
+
     public final List<String> upsert(Collection collection, List<Map<String, Object>> rows) throws ApiException {
+        return upsert(collection, rows, null);
+    }
+
+    /**
+     * Upserts <code>rows</code> and, when <code>written</code> is not null, adds the written records to it
+     * as the JSNodes {@link #select(Collection, Map)} would return for their resource keys.
+     * <p>
+     * Dbs that can return rows from the write statement itself override {@link #doUpsert(Collection, List, List)}
+     * so callers do not have to select the records again.
+     *
+     * @param collection the collection being modified
+     * @param rows       the records being modified with Property jsonName keys
+     * @param written    receives the written records, one per distinct resource key in the order of <code>rows</code>, may be null
+     * @return the encoded resource key for every supplied row
+     * @throws ApiException if the upsert fails
+     */
+    public final List<String> upsert(Collection collection, List<Map<String, Object>> rows, Results written) throws ApiException {
         List<Map<String, Object>> upsertMaps = new ArrayList<>();
         for (Map<String, Object> node : rows) {
             Map<String, Object> mapped = new HashMap<>();
@@ -426,6 +593,8 @@ public abstract class Db<T extends Db> {
                         String colName  = rel.getFkIndex1().getColumnName(0);
 
                         Object value = node.get(jsonName);
+                        if (value == null)
+                            value = getHref(node.get(rel.getName()));
 
                         if (value != null) {
                             value = Utils.substringAfter(value.toString(), "/");
@@ -470,7 +639,56 @@ public abstract class Db<T extends Db> {
             }
         }
 
-        return doUpsert(collection, upsertMaps);
+        if (written == null)
+            return doUpsert(collection, upsertMaps);
+
+        List<Map<String, Object>> returned     = new ArrayList<>();
+        List<String>              resourceKeys = doUpsert(collection, upsertMaps, returned);
+        mapWritten(collection, resourceKeys, returned, written);
+        return resourceKeys;
+    }
+
+    /**
+     * Converts the column name keyed rows returned from a write into JSNodes, in the order of <code>resourceKeys</code>.
+     *
+     * @param collection   the collection that was written
+     * @param resourceKeys the keys of the written records, in order, may contain duplicates
+     * @param returned     the written rows with column name keys
+     * @param written      receives the JSNode representation of each row
+     */
+    protected void mapWritten(Collection collection, List<String> resourceKeys, List<Map<String, Object>> returned, Results written) {
+        Map<String, Map<String, Object>> byKey = new HashMap<>();
+        for (Map<String, Object> row : returned)
+            byKey.put(collection.encodeResourceKey(row), row);
+
+        for (String resourceKey : new LinkedHashSet<>(resourceKeys)) {
+            Map<String, Object> row = byKey.get(resourceKey);
+            if (row != null) {
+                //-- mapRow removes the values it copies
+                Row copy = new Row();
+                copy.putAll(row);
+                written.withRow(mapRow(collection, copy));
+            }
+        }
+    }
+
+    /**
+     * Selects the records identified by <code>resourceKeys</code> with a single <code>_key</code> query.
+     *
+     * @param collection   the collection to query
+     * @param resourceKeys encoded primary index keys
+     * @return the rows with column name keys
+     * @throws ApiException if the select fails
+     */
+    protected List<Map<String, Object>> selectResourceKeys(Collection collection, List<String> resourceKeys) throws ApiException {
+        Set<String> distinct = new LinkedHashSet<>(resourceKeys);
+        if (distinct.isEmpty())
+            return new ArrayList<>();
+
+        List<Term> terms = new ArrayList<>();
+        terms.add(Term.term(null, "_key", collection.getPrimaryIndex().getName(), distinct.toArray()));
+        terms.add(Term.term(null, "limit", distinct.size()));
+        return doSelect(collection, terms).getRows();
     }
 
     public String getHref(Object hrefOrNode) {
@@ -548,6 +766,24 @@ public abstract class Db<T extends Db> {
      */
     public abstract List<String> doUpsert(Collection collection, List<Map<String, Object>> records) throws ApiException;
 
+    /**
+     * Upserts the records and adds the written rows, with column name keys, to <code>returned</code>.
+     * <p>
+     * The default implementation calls {@link #doUpsert(Collection, List)} and then selects the written
+     * records with {@link #selectResourceKeys(Collection, List)}.
+     *
+     * @param collection the collection being modified
+     * @param records    the records being modified
+     * @param returned   receives the written rows
+     * @return the encoded resource key for every supplied row
+     * @throws ApiException if the upsert fails
+     */
+    public List<String> doUpsert(Collection collection, List<Map<String, Object>> records, List<Map<String, Object>> returned) throws ApiException {
+        List<String> resourceKeys = doUpsert(collection, records);
+        returned.addAll(selectResourceKeys(collection, resourceKeys));
+        return resourceKeys;
+    }
+
     /**
      * Should be called by Actions instead of upsert() only when all records are strictly known to exist.
      * <p>
@@ -559,6 +795,21 @@ public abstract class Db<T extends Db> {
      */
     //TODO: all rows need to be have a resourceKey
     public List<String> patch(Collection collection, List<Map<String, Object>> records) throws ApiException {
+        return patch(collection, records, null);
+    }
+
+    /**
+     * Patches the records and, when <code>written</code> is not null, adds the patched records to it
+     * as the JSNodes {@link #select(Collection, Map)} would return for their resource keys.
+     *
+     * @param collection the collection to patch
+     * @param records    the key/value pairs to update on existing records
+     * @param written    receives the patched records that exist, may be null
+     * @return the keys of all resources modified
+     * @throws ApiException if the patch fails
+     * @see #upsert(Collection, List, Results)
+     */
+    public List<String> patch(Collection collection, List<Map<String, Object>> records, Results written) throws ApiException {
         List<Map<String, Object>> rows = new ArrayList<>();
 
         List<String> resourceKeys = new ArrayList<>();
@@ -612,7 +863,13 @@ public abstract class Db<T extends Db> {
             }
         }
 
-        doPatch(collection, rows);
+        if (written == null) {
+            doPatch(collection, rows);
+        } else {
+            List<Map<String, Object>> returned = new ArrayList<>();
+            doPatch(collection, rows, returned);
+            mapWritten(collection, resourceKeys, returned, written);
+        }
 
         return resourceKeys;
     }
@@ -621,6 +878,26 @@ public abstract class Db<T extends Db> {
         doUpsert(collection, rows);
     }
 
+    /**
+     * Patches the rows and adds the patched rows, with column name keys, to <code>returned</code>.
+     * <p>
+     * The default implementation calls {@link #doPatch(Collection, List)} and then selects the patched
+     * records with {@link #selectResourceKeys(Collection, List)}.
+     *
+     * @param collection the collection to patch
+     * @param rows       the key/value pairs to update with column name keys
+     * @param returned   receives the patched rows
+     * @throws ApiException if the patch fails
+     */
+    public void doPatch(Collection collection, List<Map<String, Object>> rows, List<Map<String, Object>> returned) throws ApiException {
+        doPatch(collection, rows);
+
+        List<String> resourceKeys = new ArrayList<>();
+        for (Map<String, Object> row : rows)
+            resourceKeys.add(collection.encodeResourceKey(row));
+        returned.addAll(selectResourceKeys(collection, resourceKeys));
+    }
+
     /**
      * Deletes rows identified by the unique index values from the underlying data source.
      * <p>
@@ -635,6 +912,68 @@ public abstract class Db<T extends Db> {
      */
     public abstract void delete(Collection collection, List<Map<String, Object>> indexValues) throws ApiException;
 
+    /**
+     * Removes the relationships between each parent and all related records that are not in its list of records to keep.
+     * <p>
+     * For ONE_TO_MANY relationships the foreign keys of the related records are set to null and for
+     * MANY_TO_MANY relationships the link table rows are deleted.
+     * <p>
+     * The default implementation selects the rows to unlink 100 at a time for each parent and then patches
+     * or deletes them.  Dbs that can should override this to unlink every parent with a single statement.
+     *
+     * @param rel   a ONE_TO_MANY or MANY_TO_MANY relationship
+     * @param keeps the {@link Relationship#getFkIndex1()} column values of each parent mapped to the related keys to keep, the
+     *              related primary index columns for ONE_TO_MANY or the {@link Relationship#getFkIndex2()} columns for MANY_TO_MANY
+     * @throws ApiException if the update or delete fails
+     */
+    public void unlink(Relationship rel, Map<Map<String, Object>, List<Map<String, Object>>> keeps) throws ApiException {
+        Collection coll = rel.isOneToMany() ? rel.getRelated() : rel.getFk1Col1().getCollection();
+
+        for (Map.Entry<Map<String, Object>, List<Map<String, Object>>> entry : keeps.entrySet()) {
+            List<Term> terms = new ArrayList<>();
+            for (Map.Entry<String, Object> parentKey : entry.getKey().entrySet())
+                terms.add(Term.term(null, "eq", parentKey.getKey(), parentKey.getValue()));
+
+            if (entry.getValue().size() > 0) {
+                Term or = Term.term(null, "or");
+                for (Map<String, Object> keep : entry.getValue()) {
+                    Term and = Term.term(or, "and");
+                    for (Map.Entry<String, Object> keepKey : keep.entrySet())
+                        and.withTerm(Term.term(and, "eq", keepKey.getKey(), keepKey.getValue()));
+                }
+                terms.add(Term.term(null, "not", or));
+            }
+            terms.add(Term.term(null, "limit", 100));
+
+            while (true) {
+                List<Map<String, Object>> toUnlink = doSelect(coll, terms).getRows();
+                if (toUnlink.size() == 0)
+                    break;
+
+                List<Map<String, Object>> keys = new ArrayList<>();
+                for (Map<String, Object> row : toUnlink) {
+                    Map<String, Object> key = new HashMap<>();
+                    for (String col : coll.getPrimaryIndex().getColumnNames())
+                        key.put(col, row.get(col));
+
+                    if (rel.isOneToMany()) {
+                        for (String col : rel.getFkIndex1().getColumnNames())
+                            key.put(col, null);
+                    }
+                    keys.add(key);
+                }
+
+                if (rel.isOneToMany())
+                    doPatch(coll, keys);
+                else
+                    delete(coll, keys);
+
+                if (toUnlink.size() < 100)
+                    break;
+            }
+        }
+    }
+
     /**
      * Adds all non excluded Collections to the Api via Api.withCollection
      *
@@ -87,6 +87,7 @@ public class Endpoint extends Rule<Endpoint> {
         if (!inserted)
             actions.add(action);
 
+        matchesChanged();
         return this;
     }
 
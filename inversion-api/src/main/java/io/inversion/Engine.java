@@ -60,6 +60,22 @@ public class Engine extends Rule<Engine> {
      * Unless you are really doing something specific with browser security you probably won't need to customize this list.
      */
     protected                    String               corsAllowHeaders = "accept,accept-encoding,accept-language,access-control-request-headers,access-control-request-method,authorization,connection,content-type,host,user-agent,x-auth-token";
+    /**
+     * The maximum number of bytes, after any gzip decoding, that will be read from a streamed request body.
+     * <p>
+     * Larger bodies are rejected with a 413.  Values less than 1 disable the limit.
+     *
+     * @see Request#withBody(java.io.InputStream)
+     */
+    protected                    long                 maxRequestBodySize  = -1;
+    /**
+     * The maximum object/array nesting depth allowed when parsing a streamed json request body.
+     * <p>
+     * Deeper documents are rejected with a 400.  Values less than 1 disable the limit.
+     *
+     * @see Request#withBody(java.io.InputStream)
+     */
+    protected                    int                  maxRequestJsonDepth = 1000;
     /**
      * Optional override for the configPath sys/env prop used by Config to locate configuration property files
      *
@@ -74,6 +90,10 @@ public class Engine extends Rule<Engine> {
     protected                    String               configProfile    = null;
     transient volatile           boolean              started          = false;
     transient volatile           boolean              starting         = false;
+    /**
+     * The precompiled routing table for {@code apis}, rebuilt when Apis are added or removed or Rule match configuration changes.
+     */
+    transient volatile           Router               router           = null;
 
     public Engine() {
 
@@ -131,6 +151,8 @@ public class Engine extends Rule<Engine> {
             if (!hasApi)
                 throw ApiException.new500InternalServerError("CONFIGURATION ERROR: You don't have any Apis configured.");
 
+            router = new Router(this, apis);
+
             //-- debug output
             for (Api api : apis) {
                 System.out.println("\r\n--------------------------------------------");
@@ -388,6 +410,71 @@ public class Engine extends Rule<Engine> {
         return res;
     }
 
+    /**
+     * Dispatches a request for a Collection, optionally for specific resources, on behalf of an Action performing a composite operation.
+     * <p>
+     * This is the structured form of {@link #dispatch(String, String, Map, JSNode)}.  The request is routed to <code>collection</code>
+     * on the path built by {@link Chain#buildLink(Collection, Object, String)} so Endpoint and Action rules, including internal
+     * Endpoints and security Actions, apply as usual.  The already parsed <code>terms</code> are attached to the Request
+     * with {@link Request#withTerms(List)} and handed to the Db as is instead of being written into the query string and parsed again.
+     *
+     * @param method      the http method of the requested operation
+     * @param collection  the Collection to operate on
+     * @param resourceKey the resource key, or comma separated keys, to operate on, may be null
+     * @param terms       RQL query terms, may be null
+     * @param body        the request body, may be null
+     * @return the Response generated by handling the Request
+     * @see #dispatch(Request)
+     */
+    public Response dispatch(String method, Collection collection, Object resourceKey, List<Term> terms, JSNode body) {
+        Request req = new Request(method, Chain.buildLink(collection, resourceKey, null));
+        req.withEngine(this);
+        req.withJson(body);
+        req.withCollection(collection);
+        req.withTerms(terms);
+        return dispatch(req);
+    }
+
+    /**
+     * Dispatches a request on behalf of an Action performing a composite operation.
+     *
+     * @param method the http method of the requested operation
+     * @param url    the url that will be serviced by this Engine
+     * @param params additional key/value pairs to add to the url query string, may be null
+     * @param body   the request body, passed to the Actions as is without being stringified, may be null
+     * @return the Response generated by handling the Request
+     * @see #dispatch(Request)
+     */
+    public Response dispatch(String method, String url, Map<String, String> params, JSNode body) {
+        Request req = new Request(method, url);
+        req.withEngine(this);
+        req.withJson(body);
+
+        if (params != null) {
+            for (String key : params.keySet()) {
+                req.getUrl().withParam(key, params.get(key));
+            }
+        }
+        return dispatch(req);
+    }
+
+    /**
+     * Services <code>req</code> as an internal request and returns the Response with its json object graph intact.
+     * <p>
+     * Actions such as {@link io.inversion.action.db.DbGetAction} and {@link io.inversion.action.db.DbPostAction} make recursive calls to the
+     * Engine to expand and upsert related resources.  Those callers read {@link Response#getJson()} directly, so unlike
+     * {@link #service(Request, Response)}, internal requests skip the CORS headers and are not rendered into {@link Response#getOutput()}.
+     * The request is still routed and run through the full Action chain so internal Endpoints and any security Actions apply.
+     *
+     * @param req the request to service
+     * @return the Response generated by handling the Request
+     */
+    public Response dispatch(Request req) {
+        Response res = new Response();
+        service(req.withInternal(true), res);
+        return res;
+    }
+
     /**
      * The main entry point for processing a Request and generating Response content.
      * <p>
@@ -426,16 +513,18 @@ public class Engine extends Rule<Engine> {
             //--
             //-- CORS header setup
             //--
-            String allowedHeaders    = this.corsAllowHeaders;
-            String corsRequestHeader = req.getHeader("Access-Control-Request-Header");
-            if (corsRequestHeader != null) for (String h : corsRequestHeader.split(",")) {
-                h = h.trim();
-                allowedHeaders = allowedHeaders.concat(h).concat(",");
+            if (!req.isInternal()) {
+                String allowedHeaders    = this.corsAllowHeaders;
+                String corsRequestHeader = req.getHeader("Access-Control-Request-Header");
+                if (corsRequestHeader != null) for (String h : corsRequestHeader.split(",")) {
+                    h = h.trim();
+                    allowedHeaders = allowedHeaders.concat(h).concat(",");
+                }
+                res.withHeader("Access-Control-Allow-Origin", "*");
+                res.withHeader("Access-Control-Allow-Credentials", "true");
+                res.withHeader("Access-Control-Allow-Methods", "GET, POST, PUT, PATCH, DELETE, OPTIONS");
+                res.withHeader("Access-Control-Allow-Headers", allowedHeaders);
             }
-            res.withHeader("Access-Control-Allow-Origin", "*");
-            res.withHeader("Access-Control-Allow-Credentials", "true");
-            res.withHeader("Access-Control-Allow-Methods", "GET, POST, PUT, PATCH, DELETE, OPTIONS");
-            res.withHeader("Access-Control-Allow-Headers", allowedHeaders);
 
             //--
             //-- End CORS Header Setup
@@ -470,7 +559,7 @@ public class Engine extends Rule<Engine> {
                 for (String key : urlParams.keySet()) {
 
                     if (key.indexOf("_") > 0) {
-                        List<Term> illegals = RqlParser.parse(key, urlParams.get(key)).stream().filter(t -> !t.isLeaf() && t.getToken().startsWith("_")).collect(Collectors.toList());
+                        List<Term> illegals = RqlParser.parseCached(key, urlParams.get(key)).stream().filter(t -> !t.isLeaf() && t.getToken().startsWith("_")).collect(Collectors.toList());
                         if (illegals.size() > 0) {
                             req.getUrl().clearParams(key);
                         }
@@ -480,74 +569,17 @@ public class Engine extends Rule<Engine> {
 
             String method = req.getMethod();
 
-            Path                parts      = new Path(url.getPath());
             Map<String, String> pathParams = new HashMap<>();
 
-            Path containerPath = match(method, parts);
-
-            if (containerPath == null)
-                throw ApiException.new400BadRequest("Somehow a request was routed to your Engine with an unsupported containerPath. This is a configuration error.");
-
-            if (containerPath != null)
-                containerPath.extract(pathParams, parts);
-
-            Path afterApiPath      = null;
-            Path afterEndpointPath = null;
-
-            for (Api api : apis) {
-                Path apiPath = api.match(method, parts);
-
-                if (apiPath != null) {
-                    Path apiMatchPath = new Path(apiPath);
-                    apiPath = apiPath.extract(pathParams, parts);
-                    req.withApi(api, apiPath, apiMatchPath);
-
-                    afterApiPath = new Path(parts);
-
-                    for (Endpoint endpoint : api.getEndpoints()) {
-                        //-- endpoints marked as internal can not be directly called by external
-                        //-- clients, they can only be called by a recursive call to Engine.service
-                        if (Chain.getDepth() < 2 && endpoint.isInternal())
-                            continue;
-
-                        Path endpointPath = endpoint.match(req.getMethod(), parts);
-
-                        if (endpointPath != null) {
-                            Path endpointMatchPath = new Path(endpointPath);
-                            endpointPath = endpointPath.extract(pathParams, parts);
-                            req.withEndpoint(endpoint, endpointPath, endpointMatchPath);
-
-                            afterEndpointPath = new Path(parts);
-
-                            for (Collection collection : api.getCollections()) {
-                                Db db = collection.getDb();
-                                if (db != null && db.getEndpointPath() != null && !db.getEndpointPath().matches(endpointPath))
-                                    continue;
-
-                                Path collectionPath = collection.match(method, parts);
-                                if (collectionPath != null) {
-                                    Path collectionMatchPath = new Path(collectionPath);
-                                    collectionPath = collectionPath.extract(pathParams, parts, true);
-                                    req.withCollection(collection, collectionPath, collectionMatchPath);
-
-                                    if (db != null && db.getEndpointPath() != null)
-                                        db.getEndpointPath().extract(pathParams, afterApiPath, true);
-
-                                    break;
-                                }
-                            }
-                            break;
-                        }
-                    }
-                    break;
-                }
-            }
+            //-- selects the Api, Endpoint, Collection and Actions in a single pass
+            //-- over the precompiled routing table
+            List<ActionMatch> actions = getRouter().route(req, method, url.getPath(), pathParams);
 
             chain.withPathParams(pathParams);
 
             //---------------------------------
 
-            if (req.getEndpoint() == null || req.isDebug()) {
+            if ((req.getEndpoint() == null || req.isDebug()) && res.isDebug()) {
                 res.debug("");
                 res.debug("");
                 res.debug(">> request --------------");
@@ -574,31 +606,9 @@ public class Engine extends Rule<Engine> {
                 throw ApiException.new404NotFound("No Endpoint found matching '{}:{}' Valid endpoints are: {}", req.getMethod(), url, buff.toString());
             }
 
-            //this will get all actions specifically configured on the endpoint
-            List<ActionMatch> actions = new ArrayList<>();
-
-            for (Action action : req.getEndpoint().getActions()) {
-                Path actionPath = action.match(method, afterEndpointPath);
-                if (actionPath != null) {
-                    actions.add(new ActionMatch(actionPath, new Path(afterEndpointPath), action));
-                }
-            }
-
-            //this matches for actions that can run across multiple endpoints.
-            //this might be something like an authorization or logging action
-            //that acts like a filter
-            for (Action action : req.getApi().getActions()) {
-                Path actionPath = action.match(method, afterApiPath);
-                if (actionPath != null) {
-                    actions.add(new ActionMatch(actionPath, new Path(afterApiPath), action));
-                }
-            }
-
             if (actions.size() == 0)
                 throw ApiException.new404NotFound("No Actions are configured to handle your request.  Check your server configuration.");
 
-            Collections.sort(actions);
-
             //-- appends info to chain.debug that can be used for debugging an d
             //-- for test cases to validate what actually ran
             if (req.isDebug()) {
@@ -651,6 +661,8 @@ public class Engine extends Rule<Engine> {
 
             res.withError(ex);
             res.withJson(response);
+            if (res.getContentType() != null && res.getContentType().toLowerCase().startsWith(Response.NDJSON))
+                res.withContentType(null);//-- errors are always returned as plain json
 
             for (ApiListener listener : getApiListeners(req)) {
                 try {
@@ -670,10 +682,13 @@ public class Engine extends Rule<Engine> {
                 }
             }
 
-            try {
-                writeResponse(req, res);
-            } catch (Throwable ex) {
-                log.error("Error writing response.", ex);
+            //-- internal callers use the json object graph so it is not rendered
+            if (req == null || !req.isInternal()) {
+                try {
+                    writeResponse(req, res);
+                } catch (Throwable ex) {
+                    log.error("Error writing response.", ex);
+                }
             }
 
             if (chain != null)
@@ -712,7 +727,31 @@ public class Engine extends Rule<Engine> {
             if (!Utils.empty(res.getRedirect())) {
                 res.withHeader("Location", res.getRedirect());
                 res.withStatus(Status.SC_308_PERMANENT_REDIRECT);
+            } else if (res.isStreaming()) {
+                //-- the container will serialize the body directly to the client
+                //-- via Response.writeOutput so it is only rendered here if needed for debugging
+                if (res.json == null && res.text == null && res.bodyWriter == null)
+                    res.getContent();//lazy loads a file into text/json
+
+                String contentType = res.getContentType();
+                if (contentType == null && (res.json != null || res.text != null)) {
+                    if (res.json != null)
+                        contentType = "application/json";
+                    else if (res.text.contains("<html"))
+                        contentType = "text/html";
+                    else
+                        contentType = "text/text";
+
+                    res.withContentType(contentType);
+                }
+
+                //-- rendering a body writer here would consume its record cursor before the body is written
+                if ((debug || explain) && (res.bodyWriter == null || res.recordCursor == null))
+                    res.debug(res.getContent());
             } else {
+                //-- a non streaming container needs the whole body in memory
+                res.materializeRecordCursor();
+
                 String output      = res.getContent();
                 String contentType = res.getContentType();
                 if (output != null && contentType == null) {
@@ -807,6 +846,7 @@ public class Engine extends Rule<Engine> {
             api.startup();
 
         apis = newList;
+        router = isStarted() ? new Router(this, newList) : null;
 
         if (existingApi != null && existingApi != api) {
             existingApi.shutdown();
@@ -842,9 +882,30 @@ public class Engine extends Rule<Engine> {
         List<Api> newList = new ArrayList<>(apis);
         newList.remove(api);
         apis = newList;
+        router = isStarted() ? new Router(this, newList) : null;
         shutdownApi(api);
     }
 
+    /**
+     * Gets the routing table for the current Apis, rebuilding it first if the match
+     * configuration of any of this Engine's Rules has changed since it was built.
+     *
+     * @return the current routing table
+     */
+    Router getRouter() {
+        Router router = this.router;
+        if (router == null || !router.isCurrent()) {
+            synchronized (this) {
+                router = this.router;
+                if (router == null || !router.isCurrent()) {
+                    router = new Router(this, apis);
+                    this.router = router;
+                }
+            }
+        }
+        return router;
+    }
+
     protected void shutdownApi(Api api) {
         if (api.isStarted()) {
             try {
@@ -869,6 +930,24 @@ public class Engine extends Rule<Engine> {
         return this;
     }
 
+    public long getMaxRequestBodySize() {
+        return maxRequestBodySize;
+    }
+
+    public Engine withMaxRequestBodySize(long maxRequestBodySize) {
+        this.maxRequestBodySize = maxRequestBodySize;
+        return this;
+    }
+
+    public int getMaxRequestJsonDepth() {
+        return maxRequestJsonDepth;
+    }
+
+    public Engine withMaxRequestJsonDepth(int maxRequestJsonDepth) {
+        this.maxRequestJsonDepth = maxRequestJsonDepth;
+        return this;
+    }
+
     /**
      * @return the last response serviced by this Engine.
      */
@@ -66,6 +66,28 @@ public class EngineServlet extends HttpServlet {
         return stringBuilder.toString();
     }
 
+    /**
+     * Opens the request body stream, decoding gzip if necessary, so that it can be consumed lazily
+     * by {@link Request#getJson()} or {@link Request#getBody()} instead of being buffered up front.
+     *
+     * @param request the servlet request
+     * @return the possibly gzip decoding request body stream or null
+     * @throws ApiException 400 if the stream can not be opened
+     */
+    public static InputStream openBody(HttpServletRequest request) throws ApiException {
+        if (request == null)
+            return null;
+
+        try {
+            InputStream inputStream = request.getInputStream();
+            if (inputStream != null && "gzip".equalsIgnoreCase(request.getHeader("Content-Encoding")))
+                inputStream = new GZIPInputStream(inputStream, 8192);
+            return inputStream;
+        } catch (Exception ex) {
+            throw ApiException.new400BadRequest(ex, "Unable to read request body");
+        }
+    }
+
     public void destroy() {
         engine.shutdown();
     }
@@ -117,9 +139,8 @@ public class EngineServlet extends HttpServlet {
                 params.put(key, val);
             }
 
-            String body = readBody(httpReq);
-
-            req = new Request(method, urlstr, headers, params, body);
+            req = new Request(method, urlstr, headers, params, null);
+            req.withBody(openBody(httpReq));
             req.withRemoteAddr(httpReq.getRemoteAddr());
 
             req.withUploader(() -> {
@@ -156,7 +177,7 @@ public class EngineServlet extends HttpServlet {
                 return null;
             });
 
-            res = new Response();
+            res = new Response().withStreaming(true);
 
             engine.service(req, res);
             writeResponse(req, res, httpResp);
@@ -182,21 +203,29 @@ public class EngineServlet extends HttpServlet {
                         buff.append(",");
                 }
                 http.setHeader(key, buff.toString());
-                res.debug(key + " " + buff);
+                if (res.isDebug())
+                    res.debug(key + " " + buff);
             }
             if ("OPTIONS".equals(method)) {
                 //
             } else {
                 String contentType = res.getContentType();
-                byte[] bytes       = res.getOutput().getBytes();
-
                 http.setContentType(contentType);
-                http.setContentLength(bytes.length);
-                res.debug("Content-Length " + bytes.length + "");
 
-                out.write(bytes);
+                if (res.isStreaming()) {
+                    //-- no content length so the container will use chunked transfer encoding
+                    res.writeOutput(out);
+                } else {
+                    byte[] bytes = res.getOutput().getBytes();
+                    http.setContentLength(bytes.length);
+                    res.debug("Content-Length " + bytes.length + "");
+
+                    out.write(bytes);
+                }
             }
         } finally {
+            //-- releases any db cursor that was not written
+            res.closeRecordCursor();
             out.flush();
             out.close();
         }
@@ -16,11 +16,12 @@
  */
 package io.inversion;
 
+import io.inversion.rql.Term;
 import io.inversion.utils.*;
 import org.apache.commons.collections4.multimap.ArrayListValuedHashMap;
 
-import java.io.File;
-import java.io.InputStream;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -58,17 +59,37 @@ public class Request {
     protected Path       collectionPath = null;
     protected Path       collectionMatchPath = null;
 
-    protected String body = null;
-    protected JSNode json = null;
+    protected String      body       = null;
+    protected JSNode      json       = null;
+    protected InputStream bodyStream = null;
 
     protected Uploader uploader = null;
 
+    /**
+     * RQL terms an Action has already parsed that are passed to the Db along with the url query string params.
+     *
+     * @see Engine#dispatch(String, Collection, Object, List, JSNode)
+     */
+    protected List<Term> terms = null;
+
     protected int retryMax = 0;
     int  retryCount = 0;
     File retryFile;
 
     boolean explain = false;
 
+    /**
+     * True for requests an Action dispatches back through the Engine.
+     *
+     * @see Engine#dispatch(Request)
+     */
+    boolean internal = false;
+
+    /**
+     * True when {@code json} was parsed directly from {@code bodyStream} so getBody() has to render it.
+     */
+    boolean streamedJson = false;
+
     public Request() {
 
     }
@@ -226,12 +247,16 @@ public class Request {
         return this;
     }
 
+    /**
+     * Requests to "localhost" or "127.0.0.1" on the default port are always in debug mode, otherwise the Api decides.
+     * <p>
+     * This is checked on every {@link Chain#debug(Object...)} call so it inspects the Url parts directly instead of formatting the Url.
+     *
+     * @return true if debug information should be recorded for this request
+     */
     public boolean isDebug() {
-        String url = getUrl().toString();
-        if (url.indexOf("://localhost/") > 0)
-            return true;
-
-        if (url.indexOf("://127.0.0.1/") > 0)
+        Url url = getUrl();
+        if (url != null && isLocalhost(url))
             return true;
 
         if (getApi() != null)
@@ -240,28 +265,133 @@ public class Request {
         return false;
     }
 
+    static boolean isLocalhost(Url url) {
+        String host = url.getHost();
+        if (!("localhost".equals(host) || "127.0.0.1".equals(host)))
+            return false;
+
+        int    port     = url.getPort();
+        String protocol = url.getProtocol();
+        if (port > 0 && !((port == 80 && "http".equalsIgnoreCase(protocol)) || (port == 443 && "https".equalsIgnoreCase(protocol))))
+            return false;
+
+        Path path = url.getPath();
+        return path != null && path.size() > 0;
+    }
+
     public boolean isExplain() {
         return explain;
     }
 
+    public List<Term> getTerms() {
+        return terms;
+    }
+
+    public Request withTerms(List<Term> terms) {
+        this.terms = terms;
+        return this;
+    }
+
+    public boolean isInternal() {
+        return internal;
+    }
+
+    public Request withInternal(boolean internal) {
+        this.internal = internal;
+        return this;
+    }
+
     public Request withExplain(boolean explain) {
         this.explain = explain;
         return this;
     }
 
+    /**
+     * Gets the request body as a String.
+     * <p>
+     * If the body was supplied as a stream via {@link #withBody(InputStream)} and has not yet been parsed by {@link #getJson()}
+     * it is read into a String now.  If it was already parsed, the json is rendered back out.
+     *
+     * @return the request body
+     */
     public String getBody() {
+        if (body == null) {
+            if (bodyStream != null) {
+                InputStream in = bodyStream;
+                bodyStream = null;
+                body = readBody(in);
+            } else if (json != null && streamedJson) {
+                body = json.toString(false);
+            }
+        }
         return body;
     }
 
     public Request withBody(String body) {
         this.body = body;
+        this.bodyStream = null;
+        return this;
+    }
+
+    /**
+     * Supplies the request body as a stream that will be consumed lazily.
+     * <p>
+     * When {@link #getJson()} is called before {@link #getBody()}, the stream is parsed token by token straight into a JSNode
+     * without being buffered as a String first.  The Engine's maxRequestBodySize and maxRequestJsonDepth limits are enforced
+     * while reading.  The stream is not closed, that is left to the container that supplied it.
+     *
+     * @param body the request body stream
+     * @return this
+     * @see Engine#getMaxRequestBodySize()
+     * @see Engine#getMaxRequestJsonDepth()
+     */
+    public Request withBody(InputStream body) {
+        this.bodyStream = body;
+        this.body = null;
         return this;
     }
 
+    String readBody(InputStream in) throws ApiException {
+        in = Utils.limit(in, engine != null ? engine.getMaxRequestBodySize() : -1);
+
+        try {
+            StringBuilder buff   = new StringBuilder();
+            Reader        reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+            char[]        chars  = new char[8192];
+            int           read;
+            while ((read = reader.read(chars)) > -1)
+                buff.append(chars, 0, read);
+
+            return buff.toString();
+        } catch (IOException ex) {
+            throw ApiException.new400BadRequest(ex, "Unable to read request body");
+        }
+    }
+
     public JSNode getJson() throws ApiException {
         if (json != null)
             return json;
 
+        if (bodyStream != null && body == null) {
+            InputStream in = bodyStream;
+            bodyStream = null;
+
+            long maxBytes = engine != null ? engine.getMaxRequestBodySize() : -1;
+            int  maxDepth = engine != null ? engine.getMaxRequestJsonDepth() : -1;
+
+            Object parsed = JSNode.parseJson(in, maxBytes, maxDepth);
+            if (parsed == null) {
+                body = "";
+                return null;
+            }
+            if (!(parsed instanceof JSNode))
+                throw ApiException.new400BadRequest("Unparsable JSON body");
+
+            json = (JSNode) parsed;
+            streamedJson = true;
+            return json;
+        }
+
         String body = getBody();
         if (Utils.empty(body))
             return null;
@@ -16,6 +16,7 @@
  */
 package io.inversion;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import io.inversion.Request.Validation;
 import io.inversion.utils.JSArray;
 import io.inversion.utils.JSNode;
@@ -24,13 +25,23 @@ import org.apache.commons.collections4.multimap.ArrayListValuedHashMap;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Supplier;
 
 public class Response {
 
+    /**
+     * Newline delimited json, one record per line.
+     *
+     * @see #isNdjson()
+     */
+    public static final String NDJSON = "application/x-ndjson";
+
     protected long startAt = System.currentTimeMillis();
     protected long endAt = -1;
 
@@ -45,7 +56,11 @@ public class Response {
     protected String redirect    = null;
     protected String        contentType = null;
     protected StringBuilder out         = new StringBuilder();
+    protected boolean       streaming     = false;
+    protected boolean       captureOutput = false;
     protected JSNode        json        = new JSNode("meta", new JSNode("createdOn", Utils.formatIso8601(new Date())), "data", new JSArray());
+    protected Results.Cursor<JSNode> recordCursor = null;
+    protected BodyWriter    bodyWriter  = null;
     protected String        text        = null;
     protected String fileName = null;
     protected File   file     = null;
@@ -55,6 +70,15 @@ public class Response {
     protected long   contentRangeEnd   = -1;
     protected long   contentRangeSize  = -1;
 
+    /**
+     * Renders a response body, such as a CSV file, directly to the client.
+     *
+     * @see #withBodyWriter(BodyWriter)
+     */
+    public interface BodyWriter {
+        void write(Writer out) throws IOException;
+    }
+
     public Response() {
 
     }
@@ -169,13 +193,51 @@ public class Response {
         return this;
     }
 
+    /**
+     * Debug output is only recorded when the Request being serviced is in debug or explain mode so that
+     * production requests never pay to format messages or copy the response body into the debug buffer.
+     * <p>
+     * Responses that are not being serviced by an Engine, such as those returned by a RestClient, always record debug output.
+     *
+     * @return true if debug messages should be recorded
+     * @see Request#isDebug()
+     * @see Request#isExplain()
+     */
+    public boolean isDebug() {
+        Request req = chain != null ? chain.getRequest() : null;
+        return req == null || req.isDebug() || req.isExplain();
+    }
+
     public Response debug(String format, Object... args) {
-        write(debug, Utils.format(format, args));
+        if (isDebug()) {
+            String message = Utils.format(format, args);
+            //-- the root Response is shared by Chains running on worker threads
+            synchronized (debug) {
+                write(debug, message);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Lazily records a debug message, <code>message</code> is only called when {@link #isDebug()} is true.
+     *
+     * @param message supplies the message to record
+     * @return this
+     */
+    public Response debug(Supplier<String> message) {
+        if (isDebug()) {
+            String string = message.get();
+            synchronized (debug) {
+                write(debug, string);
+            }
+        }
         return this;
     }
 
     public Response out(Object... msgs) {
-        debug(Utils.format(null, msgs));
+        if (isDebug())
+            debug(Utils.format(null, msgs));
         write(out, msgs);
         return this;
     }
@@ -189,6 +251,264 @@ public class Response {
         return out.toString();
     }
 
+    /**
+     * When streaming, the Engine does not render the response body into {@link #getOutput()}.
+     * Instead the container adapter calls {@link #writeOutput(OutputStream)} to serialize the json, text, or file
+     * content straight to the client so the body never has to be held in memory as a String.
+     *
+     * @param streaming true to have the container stream the body
+     * @return this
+     */
+    public Response withStreaming(boolean streaming) {
+        this.streaming = streaming;
+        return this;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Opt in to keeping a copy of streamed output so that {@link #getOutput()} still works for tests and debugging.
+     *
+     * @param captureOutput true to capture the output
+     * @return this
+     * @see #withStreaming(boolean)
+     */
+    public Response withCaptureOutput(boolean captureOutput) {
+        this.captureOutput = captureOutput;
+        return this;
+    }
+
+    public boolean isCaptureOutput() {
+        return captureOutput;
+    }
+
+    /**
+     * Writes the response body to <code>stream</code> as UTF-8.
+     * <p>
+     * If output has been set via {@link #withOutput(String)} or {@link #out(Object...)} that is written.
+     * Otherwise the text, json, or file content is serialized directly to the stream without building an intermediate String.
+     * <code>stream</code> is flushed but not closed.
+     *
+     * @param stream the stream to write to
+     * @throws IOException if writing to <code>stream</code> fails
+     */
+    public void writeOutput(OutputStream stream) throws IOException {
+        capture();
+
+        if (out.length() > 0) {
+            Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+            writer.append(out);
+            writer.flush();
+        } else if (text != null) {
+            stream.write(text.getBytes(StandardCharsets.UTF_8));
+        } else if (bodyWriter != null) {
+            Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+            writeBody(writer);
+            writer.flush();
+        } else if (isNdjson()) {
+            writeNdjson(JSNode.createGenerator(stream), true);
+        } else if (json != null && recordCursor != null) {
+            writeJson(JSNode.createGenerator(stream));
+        } else if (json != null) {
+            json.write(stream, true, false);
+        } else if (file != null) {
+            try (InputStream in = getInputStream()) {
+                byte[] buff = new byte[8192];
+                int    read;
+                while ((read = in.read(buff)) > -1)
+                    stream.write(buff, 0, read);
+            }
+        }
+        stream.flush();
+    }
+
+    /**
+     * Writes the response body to <code>writer</code>.
+     *
+     * @param writer the writer to write to
+     * @throws IOException if writing to <code>writer</code> fails
+     * @see #writeOutput(OutputStream)
+     */
+    public void writeOutput(Writer writer) throws IOException {
+        capture();
+
+        if (out.length() > 0) {
+            writer.append(out);
+        } else if (text != null) {
+            writer.write(text);
+        } else if (bodyWriter != null) {
+            writeBody(writer);
+        } else if (isNdjson()) {
+            writeNdjson(JSNode.createGenerator(writer), true);
+        } else if (json != null && recordCursor != null) {
+            writeJson(JSNode.createGenerator(writer));
+        } else if (json != null) {
+            json.write(writer, true, false);
+        } else if (file != null) {
+            try (Reader in = new InputStreamReader(getInputStream(), StandardCharsets.UTF_8)) {
+                char[] buff = new char[8192];
+                int    read;
+                while ((read = in.read(buff)) > -1)
+                    writer.write(buff, 0, read);
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes the json document with the records from {@link #getRecordCursor()} streamed in as the "data" array.
+     * <p>
+     * Each record is serialized and then released before the next one is read.  The cursor is always closed.
+     * Cursor records are often mapped lazily and may need the running Chain, for example to build links,
+     * so this Response's Chain is made current while the records are written if it has already been popped.
+     *
+     * @param generator the generator to write to
+     * @throws IOException if writing fails
+     */
+    protected void writeJson(JsonGenerator generator) throws IOException {
+        boolean push = pushChain();
+        try {
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartObject();
+            boolean data = false;
+            for (String key : json.keySet()) {
+                Object value = json.get(key);
+                generator.writeFieldName(key);
+                if ("data".equalsIgnoreCase(key)) {
+                    data = true;
+                    writeRecords(generator, value instanceof JSArray ? ((JSArray) value).asList() : Collections.emptyList());
+                } else {
+                    writeValue(generator, value);
+                }
+            }
+            if (!data) {
+                generator.writeFieldName("data");
+                writeRecords(generator, Collections.emptyList());
+            }
+            generator.writeEndObject();
+            generator.flush();
+        } finally {
+            closeRecordCursor();
+            popChain(push);
+        }
+    }
+
+    /**
+     * Writes the body with the {@link BodyWriter} set via {@link #withBodyWriter(BodyWriter)}.
+     * <p>
+     * The writer is run with this Response's Chain current, like {@link #writeJson(JsonGenerator)},
+     * and any record cursor is closed afterwards whether or not the writer read it.
+     *
+     * @param writer the writer to write to
+     * @throws IOException if writing fails
+     */
+    protected void writeBody(Writer writer) throws IOException {
+        boolean push = pushChain();
+        try {
+            bodyWriter.write(writer);
+        } finally {
+            closeRecordCursor();
+            popChain(push);
+        }
+    }
+
+    /**
+     * Writes each record from {@link #getData()}, and optionally {@link #getRecordCursor()}, as compact json on its own line.
+     *
+     * @param generator the generator to write to
+     * @param cursor    true to also write, and then close, the record cursor
+     * @throws IOException if writing fails
+     * @see #NDJSON
+     */
+    protected void writeNdjson(JsonGenerator generator, boolean cursor) throws IOException {
+        generator.setRootValueSeparator(null);
+        for (Object record : getData().asList()) {
+            writeValue(generator, record);
+            generator.writeRaw('\n');
+        }
+
+        if (cursor && recordCursor != null) {
+            boolean push = pushChain();
+            try {
+                while (recordCursor.hasNext()) {
+                    writeValue(generator, recordCursor.next());
+                    generator.writeRaw('\n');
+                }
+            } finally {
+                closeRecordCursor();
+                popChain(push);
+            }
+        }
+        generator.flush();
+    }
+
+    void writeRecords(JsonGenerator generator, List records) throws IOException {
+        generator.writeStartArray();
+        for (Object record : records)
+            writeValue(generator, record);
+        while (recordCursor.hasNext())
+            writeValue(generator, recordCursor.next());
+        generator.writeEndArray();
+    }
+
+    void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value instanceof JSNode)
+            ((JSNode) value).write(generator, false);
+        else
+            generator.writeObject(value);
+    }
+
+    /**
+     * Reads any remaining records from {@link #getRecordCursor()} into {@link #getData()} and closes the cursor.
+     * <p>
+     * This is used when the body has to be built in memory anyway, for example for non streaming containers or captured output.
+     */
+    protected void materializeRecordCursor() {
+        Results.Cursor<JSNode> cursor = recordCursor;
+        if (cursor == null)
+            return;
+
+        recordCursor = null;
+        boolean push = pushChain();
+        try {
+            while (cursor.hasNext())
+                getData().add(cursor.next());
+        } finally {
+            cursor.close();
+            popChain(push);
+        }
+    }
+
+    /**
+     * Makes this Response's Chain current again if the Engine has already popped it.
+     *
+     * @return true if the Chain was pushed and must be popped with {@link #popChain(boolean)}
+     */
+    boolean pushChain() {
+        boolean push = chain != null && Chain.peek() != chain;
+        if (push)
+            Chain.push(chain);
+        return push;
+    }
+
+    void popChain(boolean push) {
+        if (push)
+            Chain.pop();
+    }
+
+    protected void capture() {
+        if (captureOutput)
+            materializeRecordCursor();
+
+        if (captureOutput && out.length() == 0) {
+            String content = getContent();
+            if (content != null)
+                out.append(content);
+        }
+    }
+
     public Response dump() {
         System.out.println(getDebug());
         return this;
@@ -230,6 +550,8 @@ public class Response {
      * @return this
      */
     public Response withJson(JSNode json) {
+        closeRecordCursor();
+        this.bodyWriter = null;
         this.json = json;
         return this;
     }
@@ -294,6 +616,60 @@ public class Response {
         return this;
     }
 
+    /**
+     * Sets a forward only cursor whose records will be streamed into the "data" array, after any records already
+     * in {@link #getData()}, when the body is written via {@link #writeOutput(OutputStream)}.
+     * <p>
+     * The records are not visible through {@link #getData()} or {@link #getContent()} so this is only useful for
+     * streaming responses.  The cursor is closed after it is written, or when it is replaced, or when the json
+     * or text content of this Response is replaced, for example by the Engine when an error occurs.
+     *
+     * @param recordCursor the records to stream
+     * @return this
+     * @see #withStreaming(boolean)
+     */
+    public Response withRecordCursor(Results.Cursor<JSNode> recordCursor) {
+        if (this.recordCursor != recordCursor)
+            closeRecordCursor();
+        this.recordCursor = recordCursor;
+        return this;
+    }
+
+    public Results.Cursor<JSNode> getRecordCursor() {
+        return recordCursor;
+    }
+
+    /**
+     * Closes and clears any cursor set via {@link #withRecordCursor(Results.Cursor)}.
+     * Container adapters should call this when a Response will not be written.
+     */
+    public void closeRecordCursor() {
+        Results.Cursor<JSNode> cursor = recordCursor;
+        recordCursor = null;
+        if (cursor != null)
+            cursor.close();
+    }
+
+    /**
+     * Sets a writer that renders the body when it is written via {@link #writeOutput(OutputStream)}, taking precedence
+     * over the json and file content but not over text set via {@link #withText(String)}.
+     * <p>
+     * This lets an Action stream a body in a format other than json, reading {@link #getData()} and
+     * {@link #getRecordCursor()} as the body is written instead of rendering it to a String up front.
+     * Replacing the json or text content of this Response, for example when an error occurs, clears the body writer.
+     *
+     * @param bodyWriter the writer that renders the body
+     * @return this
+     */
+    public Response withBodyWriter(BodyWriter bodyWriter) {
+        this.bodyWriter = bodyWriter;
+        return this;
+    }
+
+    public BodyWriter getBodyWriter() {
+        return bodyWriter;
+    }
+
     public JSNode getMeta() {
         return getJson().getNode("meta");
     }
@@ -313,6 +689,22 @@ public class Response {
         return findInt("meta.foundRows");
     }
 
+    /**
+     * @param foundRowsExact false if foundRows is an estimate
+     * @return this
+     */
+    public Response withFoundRowsExact(boolean foundRowsExact) {
+        withMeta("foundRowsExact", foundRowsExact);
+        return this;
+    }
+
+    /**
+     * @return false if the "meta.foundRowsExact" flag says foundRows is an estimate
+     */
+    public boolean isFoundRowsExact() {
+        return !Boolean.FALSE.equals(getMeta().get("foundRowsExact"));
+    }
+
     public Response withPageSize(int pageSize) {
         withMeta("pageSize", pageSize);
         return this;
@@ -378,6 +770,8 @@ public class Response {
     }
 
     public Response withText(String text) {
+        closeRecordCursor();
+        this.bodyWriter = null;
         this.json = null;
         this.text = text;
         return this;
@@ -410,7 +804,8 @@ public class Response {
 
     public Response withContentType(String contentType) {
         headers.remove("Content-Type");
-        headers.put("Content-Type", contentType);
+        if (contentType != null)
+            headers.put("Content-Type", contentType);
         this.contentType = contentType;
         return this;
     }
@@ -494,8 +889,8 @@ public class Response {
     }
 
     public String getText() {
-        if (text == null) {
-            //lazy loads text/json
+        if (text == null && json == null) {
+            //lazy loads text/json, rendering json here would only be thrown away
             getContent();
         }
 
@@ -518,6 +913,16 @@ public class Response {
 
             if (text != null) {
                 return text;
+            } else if (bodyWriter != null) {
+                //-- the body is being built in memory anyway so the cursor can not be streamed
+                materializeRecordCursor();
+                StringWriter out = new StringWriter();
+                writeBody(out);
+                return out.toString();
+            } else if (isNdjson()) {
+                StringWriter out = new StringWriter();
+                writeNdjson(JSNode.createGenerator(out), false);
+                return out.toString();
             } else if (json != null) {
                 return json.toString();
             }
@@ -527,6 +932,17 @@ public class Response {
         return null;
     }
 
+    /**
+     * @return true if the content type is {@link #NDJSON} and there are records to render that way
+     */
+    public boolean isNdjson() {
+        return contentType != null //
+                && contentType.toLowerCase().startsWith(NDJSON) //
+                && json != null //
+                && !json.isArray() //
+                && json.get("data") instanceof JSArray;
+    }
+
     public String getErrorContent() {
         if (!isSuccess() && error != null)
             return Utils.getShortCause(error);
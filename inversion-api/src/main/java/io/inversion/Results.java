@@ -19,10 +19,12 @@ package io.inversion;
 import io.inversion.rql.Query;
 import io.inversion.rql.Term;
 
+import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * Results are returned by a Db and transformed by Actions into Response content.
@@ -60,6 +62,16 @@ public class Results<M extends Map<String, Object>> implements Iterable<M> {
      * For paginated listings, foundRows generally be greater than rows.size()
      */
     protected int    foundRows  = -1;
+    /**
+     * False when foundRows is an estimate, such as a count from catalog statistics or a cached count.
+     */
+    protected boolean foundRowsExact = true;
+    /**
+     * When not null, the rows have not been read yet and are instead available one at a time from this forward only cursor.
+     *
+     * @see #isCursor()
+     */
+    protected Cursor<M> cursor     = null;
     protected String debugQuery = null;
     protected String testQuery  = null;
 
@@ -84,7 +96,7 @@ public class Results<M extends Map<String, Object>> implements Iterable<M> {
 
     @Override
     public Iterator<M> iterator() {
-        return rows.iterator();
+        return cursor != null ? cursor : rows.iterator();
     }
 
     public int size() {
@@ -114,6 +126,31 @@ public class Results<M extends Map<String, Object>> implements Iterable<M> {
         return this;
     }
 
+    /**
+     * @return true if the rows are available only through {@link #getCursor()}
+     */
+    public boolean isCursor() {
+        return cursor != null;
+    }
+
+    public Cursor<M> getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Sets a forward only cursor that will supply the rows instead of {@link #getRows()}.
+     * <p>
+     * When a cursor is set, {@link #size()} only reflects rows that have been materialized, which is generally zero,
+     * and {@link #getFoundRows()} is generally unknown.
+     *
+     * @param cursor the cursor over the not yet read rows
+     * @return this
+     */
+    public Results withCursor(Cursor<M> cursor) {
+        this.cursor = cursor;
+        return this;
+    }
+
     public List<Term> getNext() {
         return new ArrayList(next);
     }
@@ -138,6 +175,15 @@ public class Results<M extends Map<String, Object>> implements Iterable<M> {
         return this;
     }
 
+    public boolean isFoundRowsExact() {
+        return foundRowsExact;
+    }
+
+    public Results withFoundRowsExact(boolean foundRowsExact) {
+        this.foundRowsExact = foundRowsExact;
+        return this;
+    }
+
     public boolean isDryRun() {
         return query.isDryRun();
     }
@@ -162,4 +208,47 @@ public class Results<M extends Map<String, Object>> implements Iterable<M> {
         return this;
     }
 
+    /**
+     * A forward only iterator over rows that are still being read from their source, such as an open JDBC ResultSet.
+     * <p>
+     * Whoever consumes the cursor must close it, even when it is not iterated to the end, so the underlying
+     * resources such as a database connection are released.
+     *
+     * @param <M> the row type
+     */
+    public interface Cursor<M> extends Iterator<M>, Closeable {
+
+        /**
+         * Releases the underlying resources without throwing.
+         */
+        @Override
+        void close();
+
+        /**
+         * Creates a cursor that lazily applies <code>mapper</code> to each row as it is read.
+         *
+         * @param mapper the row transformation
+         * @param <T>    the mapped row type
+         * @return a new cursor that closes this cursor when it is closed
+         */
+        default <T> Cursor<T> map(Function<? super M, ? extends T> mapper) {
+            Cursor<M> source = this;
+            return new Cursor<T>() {
+                @Override
+                public boolean hasNext() {
+                    return source.hasNext();
+                }
+
+                @Override
+                public T next() {
+                    return mapper.apply(source.next());
+                }
+
+                @Override
+                public void close() {
+                    source.close();
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,466 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion;
+
+import io.inversion.Chain.ActionMatch;
+import io.inversion.Rule.RuleMatcher;
+import io.inversion.utils.CompiledPath;
+import io.inversion.utils.CompiledPath.Segment;
+import io.inversion.utils.Path;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * A precompiled routing table that selects the Api, Endpoint, Collection and Actions for a Request in a single pass.
+ * <p>
+ * The include Paths of every Rule at each level (Apis, Endpoints, Collections and Actions) are loaded into a segment trie
+ * keyed on the lower cased static path parts with separate branches for variable, regex, optional and wildcard parts.
+ * Walking the trie with the concrete Request path yields every include Path that matches.  The candidate with the
+ * lowest ordinal, meaning the first Rule in configuration order and then the first include Path of that Rule,
+ * wins which is exactly the result a linear scan over {@link Rule#match(String, Path)} would produce.
+ * <p>
+ * Extraction of path params works on offsets into the Request path so the Request Url path is never copied or consumed.
+ * <p>
+ * A Router is immutable once built.  The Engine rebuilds it on startup, on withApi/removeApi and whenever
+ * {@link #isCurrent()} finds that the match configuration of one of the Rules it was built from has changed.
+ * Changes to Rules of other Engines do not cause a rebuild.
+ *
+ * @see Engine#service(Request, Response)
+ */
+class Router {
+
+    /**
+     * The sum of the {@link Rule#getMatchVersion()} of every Rule this Router was built from.
+     */
+    final long version;
+
+    /**
+     * The {@link Rule#getMatchClock()} as of the last time this Router was found to be current.
+     */
+    volatile long checked;
+
+    final Engine    engine;
+    final List<Api> apis;
+
+    final RuleIndex<Engine>   engineIndex;
+    final RuleIndex<Api>      apiIndex;
+    final Map<Api, ApiRoutes> apiRoutes = new IdentityHashMap<>();
+
+    Router(Engine engine, List<Api> apis) {
+        this.engine = engine;
+        this.apis = apis;
+
+        engine.checkLazyConfig();
+        for (Api api : apis) {
+            api.checkLazyConfig();
+            for (Endpoint endpoint : api.getEndpoints()) {
+                endpoint.checkLazyConfig();
+                for (Action action : endpoint.getActions())
+                    action.checkLazyConfig();
+            }
+            for (Collection collection : api.getCollections())
+                collection.checkLazyConfig();
+            for (Action action : api.getActions())
+                action.checkLazyConfig();
+        }
+
+        //-- read after all lazy config is complete as that itself changes the version
+        checked = Rule.getMatchClock();
+        version = getMatchVersion();
+
+        engineIndex = new RuleIndex<>(Collections.singletonList(engine));
+        apiIndex = new RuleIndex<>(apis);
+        for (Api api : apis)
+            apiRoutes.put(api, new ApiRoutes(api));
+    }
+
+    /**
+     * @return false if the match configuration of any Rule this Router was built from has changed since it was built
+     */
+    boolean isCurrent() {
+        //-- the clock is read first so a change made while the versions are summed is caught by the next call
+        long clock = Rule.getMatchClock();
+        if (clock == checked)
+            return true;
+
+        if (getMatchVersion() != version)
+            return false;
+
+        checked = clock;
+        return true;
+    }
+
+    long getMatchVersion() {
+        long version = engine.getMatchVersion();
+        for (Api api : apis) {
+            version += api.getMatchVersion();
+            for (Endpoint endpoint : api.getEndpoints()) {
+                version += endpoint.getMatchVersion();
+                for (Action action : endpoint.getActions())
+                    version += action.getMatchVersion();
+            }
+            for (Collection collection : api.getCollections())
+                version += collection.getMatchVersion();
+            for (Action action : api.getActions())
+                version += action.getMatchVersion();
+        }
+        return version;
+    }
+
+    /**
+     * Selects the Api, Endpoint and Collection to service <code>req</code>, extracting any path params along the way,
+     * and returns the sorted list of Actions that should be run.
+     *
+     * @param req        the Request to route, withApi/withEndpoint/withCollection will be called as matches are found
+     * @param method     the HTTP method of the request
+     * @param path       the full concrete Request url path, it is not modified
+     * @param pathParams the map to add extracted path params to
+     * @return the sorted ActionMatch list, empty if an Api or Endpoint could not be matched
+     * @throws ApiException 400 if the Engine itself does not match the path
+     */
+    List<ActionMatch> route(Request req, String method, Path path, Map<String, String> pathParams) throws ApiException {
+        List<ActionMatch> actions = new ArrayList<>();
+        Segments          parts   = new Segments(path);
+
+        Candidate<Engine> engineMatch = engineIndex.first(method, parts, 0, null);
+        if (engineMatch == null)
+            throw ApiException.new400BadRequest("Somehow a request was routed to your Engine with an unsupported containerPath. This is a configuration error.");
+
+        int pos = engineMatch.compiled.extract(pathParams, path, 0, false);
+
+        Candidate<Api> apiMatch = apiIndex.first(method, parts, pos, null);
+        if (apiMatch == null)
+            return actions;
+
+        Api api      = apiMatch.rule;
+        int apiStart = pos;
+        pos = apiMatch.compiled.extract(pathParams, path, pos, false);
+        req.withApi(api, path.subpath(apiStart, pos), apiMatch.path);
+
+        int       afterApi = pos;
+        ApiRoutes routes   = apiRoutes.get(api);
+
+        //-- endpoints marked as internal can not be directly called by external
+        //-- clients, they can only be called by a recursive call to Engine.service
+        //-- or by an in process call to Engine.dispatch
+        boolean             external      = Chain.getDepth() < 2 && !req.isInternal();
+        Candidate<Endpoint> endpointMatch = routes.endpoints.first(method, parts, pos, endpoint -> !(external && endpoint.isInternal()));
+        if (endpointMatch == null)
+            return actions;
+
+        Endpoint endpoint      = endpointMatch.rule;
+        int      endpointStart = pos;
+        pos = endpointMatch.compiled.extract(pathParams, path, pos, false);
+        Path endpointPath = path.subpath(endpointStart, pos);
+        req.withEndpoint(endpoint, endpointPath, endpointMatch.path);
+
+        int afterEndpoint = pos;
+
+        //-- a dispatched request already knows its collection so only that collection is considered
+        Collection            known           = req.getCollection();
+        Candidate<Collection> collectionMatch = routes.collections.first(method, parts, pos, collection -> {
+            if (known != null && collection != known)
+                return false;
+
+            Db db = collection.getDb();
+            return db == null || db.getEndpointPath() == null || db.getEndpointPath().matches(endpointPath);
+        });
+
+        if (collectionMatch != null) {
+            Collection collection      = collectionMatch.rule;
+            int        collectionStart = pos;
+            pos = collectionMatch.compiled.extract(pathParams, path, pos, true);
+            req.withCollection(collection, path.subpath(collectionStart, pos), collectionMatch.path);
+
+            Db db = collection.getDb();
+            if (db != null && db.getEndpointPath() != null)
+                afterApi = db.getEndpointPath().compile().extract(pathParams, path, afterApi, true);
+        } else if (known != null) {
+            req.withCollection(null, null, null);
+        }
+
+        //this will get all actions specifically configured on the endpoint
+        List<Candidate<Action>> endpointActions = routes.endpointActions.get(endpoint).all(method, parts, afterEndpoint);
+        if (endpointActions.size() > 0) {
+            Path afterEndpointPath = path.subpath(afterEndpoint, path.size());
+            for (Candidate<Action> match : endpointActions)
+                actions.add(new ActionMatch(match.path, afterEndpointPath, match.rule));
+        }
+
+        //this matches for actions that can run across multiple endpoints.
+        //this might be something like an authorization or logging action
+        //that acts like a filter
+        List<Candidate<Action>> apiActions = routes.actions.all(method, parts, afterApi);
+        if (apiActions.size() > 0) {
+            Path afterApiPath = path.subpath(afterApi, path.size());
+            for (Candidate<Action> match : apiActions)
+                actions.add(new ActionMatch(match.path, afterApiPath, match.rule));
+        }
+
+        Collections.sort(actions);
+        return actions;
+    }
+
+    /**
+     * The per Api Endpoint, Collection and Action indexes.
+     */
+    static class ApiRoutes {
+        final RuleIndex<Endpoint>              endpoints;
+        final RuleIndex<Collection>            collections;
+        final RuleIndex<Action>                actions;
+        final Map<Endpoint, RuleIndex<Action>> endpointActions = new IdentityHashMap<>();
+
+        ApiRoutes(Api api) {
+            List<Endpoint> eps = api.getEndpoints();
+            endpoints = new RuleIndex<>(eps);
+            collections = new RuleIndex<>(api.getCollections());
+            actions = new RuleIndex<>(api.getActions());
+            for (Endpoint endpoint : eps)
+                endpointActions.put(endpoint, new RuleIndex<>(endpoint.getActions()));
+        }
+    }
+
+    /**
+     * The concrete Request path parts along with their lower case form for static part lookups.
+     */
+    static class Segments {
+        final Path     path;
+        final String[] lc;
+
+        Segments(Path path) {
+            this.path = path;
+            this.lc = new String[path.size()];
+            for (int i = 0; i < lc.length; i++)
+                lc[i] = path.get(i).toLowerCase();
+        }
+
+        int size() {
+            return lc.length;
+        }
+
+        String get(int index) {
+            return path.get(index);
+        }
+    }
+
+    /**
+     * A trie of all of the include Paths of an ordered list of Rules.
+     *
+     * @param <R> the type of Rule being indexed
+     */
+    static class RuleIndex<R extends Rule> {
+        final Node<R> root = new Node<>();
+
+        RuleIndex(List<? extends R> rules) {
+            for (int i = 0; i < rules.size(); i++) {
+                R       rule           = rules.get(i);
+                int     includePathIdx = 0;
+                Rule<?> r              = rule;
+                for (RuleMatcher includer : r.includeMatchers) {
+                    for (Path includePath : includer.paths) {
+                        long ordinal = ((long) i << 32) | includePathIdx++;
+                        insert(new Candidate<>(rule, includer.methods, includePath, ordinal));
+                    }
+                }
+
+                //-- path was not excluded but config did not supply any include paths
+                //-- so this is an implicit * include.
+                if (includePathIdx == 0)
+                    insert(new Candidate<>(rule, Collections.emptySet(), new Path("*"), (long) i << 32));
+            }
+        }
+
+        void insert(Candidate<R> candidate) {
+            Node<R>      node     = root;
+            CompiledPath compiled = candidate.compiled;
+            for (int i = 0; i < compiled.size(); i++) {
+                Segment segment = compiled.getSegment(i);
+                if (segment.isWildcard()) {
+                    node.wildcards.add(candidate);
+                    return;
+                }
+                if (segment.isOptional())
+                    node.optionals.add(candidate);
+
+                node = node.child(segment);
+            }
+            node.ends.add(candidate);
+        }
+
+        /**
+         * Finds the first include Path in Rule order that matches <code>method</code> and the concrete path
+         * starting at <code>offset</code>, accepted by <code>filter</code> and not excluded.
+         */
+        Candidate<R> first(String method, Segments parts, int offset, Predicate<R> filter) {
+            List<Candidate<R>> candidates = collect(parts, offset);
+            if (candidates.size() == 0)
+                return null;
+
+            Set<R> rejected = null;
+            for (Candidate<R> candidate : candidates) {
+                if (rejected != null && rejected.contains(candidate.rule))
+                    continue;
+
+                if (!candidate.allows(method))
+                    continue;
+
+                R rule = candidate.rule;
+                if (filter != null && !filter.test(rule)) {
+                    rejected = reject(rejected, rule);
+                    continue;
+                }
+
+                if (rule.isExcluded(method, parts.path, offset)) {
+                    rejected = reject(rejected, rule);
+                    continue;
+                }
+                return candidate;
+            }
+            return null;
+        }
+
+        /**
+         * Finds the first matching include Path for every Rule that matches <code>method</code> and the concrete
+         * path starting at <code>offset</code> and is not excluded, in Rule order.
+         */
+        List<Candidate<R>> all(String method, Segments parts, int offset) {
+            List<Candidate<R>> candidates = collect(parts, offset);
+            if (candidates.size() == 0)
+                return candidates;
+
+            List<Candidate<R>> matches = new ArrayList<>(candidates.size());
+            Set<R>             decided = null;
+            for (Candidate<R> candidate : candidates) {
+                R rule = candidate.rule;
+                if (decided != null && decided.contains(rule))
+                    continue;
+
+                if (!candidate.allows(method))
+                    continue;
+
+                decided = reject(decided, rule);
+
+                if (rule.isExcluded(method, parts.path, offset))
+                    continue;
+
+                matches.add(candidate);
+            }
+            return matches;
+        }
+
+        Set<R> reject(Set<R> rejected, R rule) {
+            if (rejected == null)
+                rejected = Collections.newSetFromMap(new IdentityHashMap<>());
+            rejected.add(rule);
+            return rejected;
+        }
+
+        List<Candidate<R>> collect(Segments parts, int offset) {
+            List<Candidate<R>> candidates = new ArrayList<>();
+            root.collect(parts, offset, candidates);
+            if (candidates.size() > 1)
+                candidates.sort(Comparator.comparingLong(c -> c.ordinal));
+            return candidates;
+        }
+    }
+
+    static class Node<R extends Rule> {
+        /**
+         * Paths that end exactly at this depth.
+         */
+        final List<Candidate<R>>   ends      = new ArrayList<>(0);
+        /**
+         * Paths with a trailing '*' at this depth, they match any remaining parts including none.
+         */
+        final List<Candidate<R>>   wildcards = new ArrayList<>(0);
+        /**
+         * Paths with an optional '[]' part at this depth, they match if the concrete path ends here.
+         */
+        final List<Candidate<R>>   optionals = new ArrayList<>(0);
+        final Map<String, Node<R>> statics   = new HashMap<>(4);
+        final List<Node<R>>        dynamics  = new ArrayList<>(0);
+        Segment segment = null;
+
+        Node<R> child(Segment segment) {
+            Node<R> child;
+            if (!segment.isDynamic()) {
+                child = statics.get(segment.getLowerCase());
+                if (child == null) {
+                    child = new Node<>();
+                    statics.put(segment.getLowerCase(), child);
+                }
+            } else {
+                child = null;
+                for (Node<R> dynamic : dynamics) {
+                    if (dynamic.segment.getPart().equals(segment.getPart())) {
+                        child = dynamic;
+                        break;
+                    }
+                }
+                if (child == null) {
+                    child = new Node<>();
+                    child.segment = segment;
+                    dynamics.add(child);
+                }
+            }
+            return child;
+        }
+
+        void collect(Segments parts, int i, List<Candidate<R>> candidates) {
+            candidates.addAll(wildcards);
+
+            if (i == parts.size()) {
+                candidates.addAll(ends);
+                candidates.addAll(optionals);
+                return;
+            }
+
+            Node<R> child = statics.get(parts.lc[i]);
+            if (child != null)
+                child.collect(parts, i + 1, candidates);
+
+            for (Node<R> dynamic : dynamics) {
+                if (dynamic.segment.matches(parts.get(i)))
+                    dynamic.collect(parts, i + 1, candidates);
+            }
+        }
+    }
+
+    /**
+     * A Rule include Path selected by walking a RuleIndex.
+     */
+    static class Candidate<R extends Rule> {
+        final R            rule;
+        final Set<String>  methods;
+        final Path         path;
+        final CompiledPath compiled;
+        final long         ordinal;
+
+        Candidate(R rule, Set<String> methods, Path path, long ordinal) {
+            this.rule = rule;
+            this.methods = methods;
+            this.path = path;
+            this.compiled = path.compile();
+            this.ordinal = ordinal;
+        }
+
+        boolean allows(String method) {
+            return methods.size() == 0 || methods.contains(method);
+        }
+    }
+}
@@ -23,6 +23,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Matches against an HTTP method and URL path to determine if the object
@@ -32,6 +33,12 @@ import java.util.*;
  */
 public abstract class Rule<R extends Rule> implements Comparable<R> {
 
+    /**
+     * Incremented any time the match configuration of any Rule changes so that precompiled
+     * routing structures can cheaply tell that nothing they were built from could have changed.
+     */
+    static final AtomicLong matchClock = new AtomicLong();
+
     protected final transient Logger log = LoggerFactory.getLogger(getClass().getName());
     /**
      * Method/path combinations that would cause this Rule to be included in the relevant processing.
@@ -61,6 +68,36 @@ public abstract class Rule<R extends Rule> implements Comparable<R> {
 
     transient boolean lazyConfiged = false;
 
+    /**
+     * Incremented any time the match configuration of this Rule changes.
+     */
+    transient volatile long matchVersion = 0;
+
+    /**
+     * @return a number that changes any time the match configuration of any Rule changes
+     */
+    static long getMatchClock() {
+        return matchClock.get();
+    }
+
+    /**
+     * @return a number that changes any time the include/exclude matchers of this Rule or the Endpoints, Collections or Actions of this Api or Endpoint change
+     */
+    long getMatchVersion() {
+        long version = matchVersion;
+        for (RuleMatcher matcher : includeMatchers)
+            version += matcher.version;
+        for (RuleMatcher matcher : excludeMatchers)
+            version += matcher.version;
+        return version;
+    }
+
+    void matchesChanged() {
+        //-- the version is changed before the clock so a reader that sees the new clock also sees the new version
+        matchVersion++;
+        matchClock.incrementAndGet();
+    }
+
     static List<Path> asPathsList(String... paths) {
         List<Path> pathsList = new ArrayList<>();
         for (String path : Utils.explode(",", paths)) {
@@ -144,16 +181,8 @@ public abstract class Rule<R extends Rule> implements Comparable<R> {
     protected Path match(String method, Path path) {
         checkLazyConfig();
 
-        for (RuleMatcher excluder : excludeMatchers) {
-            if (excluder.methods.size() > 0 && !excluder.methods.contains(method))
-                continue;
-
-            for (Path excludePath : excluder.paths) {
-                if (excludePath.matches(path)) {
-                    return null;
-                }
-            }
-        }
+        if (isExcluded(method, path))
+            return null;
 
         int includePathCount = 0;
 
@@ -179,6 +208,39 @@ public abstract class Rule<R extends Rule> implements Comparable<R> {
         return null;
     }
 
+    /**
+     * Check if the http method and path match any of the exclude matchers.
+     *
+     * @param method the HTTP method to match
+     * @param path   the concrete path to match
+     * @return true if any exclude matcher matches the method and path
+     */
+    protected boolean isExcluded(String method, Path path) {
+        return isExcluded(method, path, 0);
+    }
+
+    /**
+     * Check if the http method and the parts of path starting at <code>offset</code> match any of the exclude matchers.
+     *
+     * @param method the HTTP method to match
+     * @param path   the concrete path to match
+     * @param offset the index of the first part of <code>path</code> to consider
+     * @return true if any exclude matcher matches the method and path
+     */
+    protected boolean isExcluded(String method, Path path, int offset) {
+        for (RuleMatcher excluder : excludeMatchers) {
+            if (excluder.methods.size() > 0 && !excluder.methods.contains(method))
+                continue;
+
+            for (Path excludePath : excluder.paths) {
+                if (excludePath.compile().matches(path, offset)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     public List<Path> getAllIncludePaths() {
         Set paths = new LinkedHashSet();
         for (RuleMatcher includer : includeMatchers) {
@@ -201,6 +263,7 @@ public abstract class Rule<R extends Rule> implements Comparable<R> {
 
     public R withIncludeOn(RuleMatcher matcher) {
         includeMatchers.add(matcher);
+        matchesChanged();
         return (R) this;
     }
 
@@ -241,6 +304,7 @@ public abstract class Rule<R extends Rule> implements Comparable<R> {
      */
     public R withExcludeOn(RuleMatcher matcher) {
         excludeMatchers.add(matcher);
+        matchesChanged();
         return (R) this;
     }
 
@@ -309,11 +373,13 @@ public abstract class Rule<R extends Rule> implements Comparable<R> {
 
     R clearIncludeRuleMatchers() {
         includeMatchers.clear();
+        matchesChanged();
         return (R) this;
     }
 
     R clearExcludeRuleMatchers() {
         excludeMatchers.clear();
+        matchesChanged();
         return (R) this;
     }
 
@@ -375,6 +441,8 @@ public abstract class Rule<R extends Rule> implements Comparable<R> {
         protected final Set<String> methods = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
         protected final List<Path>  paths   = new ArrayList<>();
 
+        transient volatile long version = 0;
+
         public RuleMatcher(String methods, String... paths) {
             this(methods, asPathsList(paths));
         }
@@ -415,14 +483,29 @@ public abstract class Rule<R extends Rule> implements Comparable<R> {
 
                 this.methods.add(method.toUpperCase());
             }
+            matchesChanged();
+        }
+
+        void matchesChanged() {
+            version++;
+            matchClock.incrementAndGet();
         }
 
         public void withPaths(Path... paths) {
-            this.paths.addAll(Arrays.asList(paths));
+            withPaths(Arrays.asList(paths));
         }
 
+        /**
+         * Adds <code>paths</code> and precompiles them so request matching never has to reparse them.
+         *
+         * @param paths the paths to match
+         * @see Path#compile()
+         */
         public void withPaths(List<Path> paths) {
+            for (Path path : paths)
+                path.compile();
             this.paths.addAll(paths);
+            matchesChanged();
         }
 
         public String toString() {
@@ -37,6 +37,7 @@ public interface Status {
     String SC_401_UNAUTHORIZED          = "401 Unauthorized";
     String SC_403_FORBIDDEN             = "403 Forbidden";
     String SC_404_NOT_FOUND             = "404 Not Found";
+    String SC_413_PAYLOAD_TOO_LARGE     = "413 Payload Too Large";
     String SC_429_TOO_MANY_REQUESTS     = "429 Too Many Requests";
     String SC_500_INTERNAL_SERVER_ERROR = "500 Internal Server Error";
     String SC_501_NOT_IMPLEMENTED       = "501 Not Implemented";
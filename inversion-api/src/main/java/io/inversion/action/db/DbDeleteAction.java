@@ -56,7 +56,7 @@ public class DbDeleteAction extends Action<DbDeleteAction> {
         for (int i = 0; i < 1000; i++) {
             //-- regardless of the query string passed in, this should resolve the keys 
             //-- that need to be deleted and make sure the uses has read access to the key
-            Response res = engine.get(url).assertStatus(200, 404);
+            Response res = engine.dispatch("GET", url, null, null).assertStatus(200, 404);
 
             if (res.getData().size() == 0)
                 break;
@@ -26,18 +26,69 @@ import io.inversion.utils.Rows.Row;
 import io.inversion.utils.Url;
 import io.inversion.utils.Utils;
 import org.apache.commons.collections4.KeyValue;
-import org.apache.commons.collections4.ListValuedMap;
 import org.apache.commons.collections4.keyvalue.DefaultKeyValue;
 import org.apache.commons.collections4.map.MultiKeyMap;
-import org.apache.commons.collections4.multimap.ArrayListValuedHashMap;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DbGetAction extends Action<DbGetAction> {
 
     protected int maxRows = 100;
 
-    protected static boolean exclude(String path, Set<String> includes, Set<String> excludes) {
+    /**
+     * When true, and the Response is being streamed by the container, listings that do not expand any
+     * relationships are read from the Db through a forward only cursor and written to the client one record
+     * at a time so large pages are served in constant memory.
+     * <p>
+     * Streamed listings do not know how many rows they will return so the "foundRows" meta and the "next" link are omitted.
+     *
+     * @see Response#withStreaming(boolean)
+     * @see Db#select(Collection, Map, boolean)
+     */
+    protected boolean streaming = false;
+
+    /**
+     * When true, collection requests that accept {@link Response#NDJSON} are exported as newline delimited json.
+     * <p>
+     * An export reads every row matching the RQL query, unless a page or limit is supplied, from a single Db cursor
+     * and writes one record per line with no "meta" or "data" envelope.  Includes and excludes are applied, expands are not supported.
+     * For Dbs that support cursors, and containers that stream, memory use does not grow with the size of the export.
+     *
+     * @see #isExport(Request)
+     */
+    protected boolean export = false;
+
+    /**
+     * When greater than one, the relationships being expanded at each level of a document are fetched concurrently,
+     * up to this many at a time, instead of one after another.
+     * <p>
+     * This can be overridden per Endpoint or Action with an "expandThreads" config value.
+     *
+     * @see #getExpandThreads(int)
+     */
+    protected int expandThreads = 0;
+
+    /**
+     * When true, the Db is asked to join the records of MANY_TO_ONE relationships being expanded into the parent select
+     * instead of each relationship being fetched with its own query.
+     * <p>
+     * Joined records are read straight from the Db and are not run through the Actions of the related collection's
+     * Endpoint, so only enable this when those Actions do not restrict or alter what is returned.  This can be
+     * overridden per Endpoint or Action with a "joinExpands" config value.
+     *
+     * @see Db#isJoinable(Relationship)
+     */
+    protected boolean joinExpands = false;
+
+    /**
+     * The maximum number of worker threads shared by all DbGetActions for fetching expansions.
+     */
+    static final int             MAX_EXPAND_THREADS = 64;
+    static       ExecutorService expandExecutor     = null;
+
+    public static boolean exclude(String path, Set<String> includes, Set<String> excludes) {
         boolean exclude = false;
 
         if (includes.size() > 0 || excludes.size() > 0) {
@@ -121,7 +172,7 @@ public class DbGetAction extends Action<DbGetAction> {
             return path + "." + next;
     }
 
-    protected static boolean shouldExpand(Set<String> expands, String path, Relationship rel) {
+    public static boolean shouldExpand(Set<String> expands, String path, Relationship rel) {
         boolean expand = false;
         path = path.length() == 0 ? rel.getName() : path + "." + rel.getName();
         path = path.toLowerCase();
@@ -247,7 +298,7 @@ public class DbGetAction extends Action<DbGetAction> {
                 newHref.append(query);
             }
 
-            Response included = req.getEngine().get(newHref.toString());
+            Response included = req.getEngine().dispatch("GET", newHref.toString(), null, null);
             res.withStatus(included.getStatus());
             res.withJson(included.getJson());
             return;
@@ -257,9 +308,20 @@ public class DbGetAction extends Action<DbGetAction> {
             req.getUrl().withParams(term.toString(), null);
         }
 
-        Results results = select(req, req.getCollection(), req.getApi());
+        if (req.getResourceKey() == null && isExport(req)) {
+            export(req, res);
+            return;
+        }
+
+        Results results = select(req, req.getCollection(), req.getApi(), isStreamable(req, res));
 
-        if (results.size() == 0 && req.getResourceKey() != null && req.getCollectionKey() != null) {
+        if (results.isCursor()) {
+            res.withRecordCursor(results.getCursor());
+
+            Page page = results.getQuery().getPage();
+            res.withPageSize(page.getPageSize());
+            res.withPageNum(page.getPageNum());
+        } else if (results.size() == 0 && req.getResourceKey() != null && req.getCollectionKey() != null) {
             res.withStatus(Status.SC_404_NOT_FOUND);
         } else {
             //-- copy data into the response
@@ -283,6 +345,7 @@ public class DbGetAction extends Action<DbGetAction> {
 
             if (foundRows >= 0) {
                 res.withFoundRows(foundRows);
+                res.withFoundRowsExact(results.isFoundRowsExact());
             }
 
             if (results.size() > 0) {
@@ -294,6 +357,10 @@ public class DbGetAction extends Action<DbGetAction> {
                             String toStrip = nextTerm.getToken();
                             next = stripTerms(next, toStrip);
 
+                            //-- a seek key replaces offset paging
+                            if (nextTerm.hasToken("after"))
+                                next = stripTerms(next, "offset", "page", "pageNum");
+
                             if (!next.contains("?"))
                                 next += "?";
                             if (!next.endsWith("?"))
@@ -302,7 +369,7 @@ public class DbGetAction extends Action<DbGetAction> {
                             next += nextTerm;
                         }
                         res.withNext(next);
-                    } else if (results.size() == limit && (foundRows < 0 || (offest + limit) < foundRows)) {
+                    } else if (page.getAfter() == null && results.size() == limit && (foundRows < 0 || (offest + limit) < foundRows)) {
                         String next = req.getUrl().getOriginal();
 
                         next = stripTerms(next, "offset", "page", "pageNum");
@@ -322,7 +389,62 @@ public class DbGetAction extends Action<DbGetAction> {
 
     }
 
+    /**
+     * @param req the request being serviced
+     * @param res the response being built
+     * @return true if the results of this request can be streamed from a Db cursor
+     * @see #streaming
+     */
+    protected boolean isStreamable(Request req, Response res) {
+        return streaming //
+                && res.isStreaming() //
+                && req.getResourceKey() == null //
+                && !req.isExplain() //
+                && Chain.peek().mergeEndpointActionParamsConfig("expands").isEmpty();
+    }
+
+    /**
+     * @param req the request being serviced
+     * @return true if exports are enabled and the request accepts {@link Response#NDJSON}
+     * @see #export
+     */
+    protected boolean isExport(Request req) {
+        if (!export)
+            return false;
+
+        String accept = req.getHeader("Accept");
+        return accept != null && accept.toLowerCase().contains(Response.NDJSON);
+    }
+
+    /**
+     * Selects from a Db cursor and hands it to the Response to be written as {@link Response#NDJSON}.
+     *
+     * @param req the request being serviced
+     * @param res the response being built
+     * @throws ApiException if expands are requested or the select fails
+     */
+    protected void export(Request req, Response res) throws ApiException {
+        if (!Chain.peek().mergeEndpointActionParamsConfig("expands").isEmpty())
+            throw ApiException.new400BadRequest("Expands are not supported when requesting '{}'", Response.NDJSON);
+
+        //-- without explicit paging, the export includes every matching row
+        if (req.getUrl().findKey("limit", "offset", "page", "pageNum", "pageSize") == null)
+            req.getUrl().withParam("limit", Integer.toString(Integer.MAX_VALUE));
+
+        Results results = select(req, req.getCollection(), req.getApi(), true);
+
+        res.withContentType(Response.NDJSON);
+        if (results.isCursor())
+            res.withRecordCursor(results.getCursor());
+        else
+            res.withRecords(results.getRows());
+    }
+
     protected Results select(Request req, Collection collection, Api api) throws ApiException {
+        return select(req, collection, api, false);
+    }
+
+    protected Results select(Request req, Collection collection, Api api, boolean cursor) throws ApiException {
         Results results;
 
         if (collection == null) {
@@ -345,12 +467,32 @@ public class DbGetAction extends Action<DbGetAction> {
             if (db == null)
                 throw ApiException.new400BadRequest("Unable to find collection for url '{}'", req.getUrl());
 
-            results = db.select(null, req.getUrl().getParams());
+            results = db.select(null, req.getUrl().getParams(), req.getTerms(), cursor);
         } else {
-            results = collection.getDb().select(collection, req.getUrl().getParams());
+            Map<String, String> params = req.getUrl().getParams();
+            if (!req.isInternal()) {
+                //-- "_join" terms are only accepted from recursiveGet()
+                params = new LinkedHashMap<>(params);
+                params.keySet().removeIf(key -> key.toLowerCase().startsWith("_join"));
+
+                List<String> joins = cursor ? Collections.emptyList() : getJoinExpands(collection, Chain.peek().mergeEndpointActionParamsConfig("expands"), "");
+                if (joins.size() > 0)
+                    params.put(Term.term(null, "_join", joins).toString(), null);
+            }
+            results = collection.getDb().select(collection, params, req.getTerms(), cursor);
         }
 
-        if (results.size() > 0) {
+        if (results.isCursor()) {
+            Set<String> includes = Chain.peek().mergeEndpointActionParamsConfig("includes");
+            Set<String> excludes = Chain.peek().mergeEndpointActionParamsConfig("excludes");
+
+            if (includes.size() > 0 || excludes.size() > 0) {
+                results.withCursor(results.getCursor().map(node -> {
+                    exclude((JSNode) node, includes, excludes, null);
+                    return node;
+                }));
+            }
+        } else if (results.size() > 0) {
             if (collection != null)
                 expand(req, collection, (List<JSNode>) results.getRows(), null, null, null);
 
@@ -423,6 +565,8 @@ public class DbGetAction extends Action<DbGetAction> {
         if (expandsPath == null)
             expandsPath = "";
 
+        List<Expansion> expansions = new ArrayList<>();
+
         for (Relationship rel : collection.getRelationships()) {
             boolean shouldExpand = shouldExpand(expands, expandsPath, rel);
 
@@ -444,112 +588,296 @@ public class DbGetAction extends Action<DbGetAction> {
                     }
                 }
 
-                //ONE_TO_MANY - Location.id <- Player.locationId
-                //MANY_TO_ONE - Player.locationId -> Location.id (one playe
-                //MANY_TO_MANY, ex going from Category(id)->CategoryBooks(categoryId, bookId)->Book(id)
+                expansions.add(prepareExpansion(collection, rel, parentObjs, expandPath(expandsPath, rel.getName()), pkCache));
+            }
+        }
 
-                final Collection relatedCollection = rel.getRelated();
-                //            Column toMatchCol = null;
-                //            Column toRetrieveCol = null;
+        if (expansions.isEmpty())
+            return;
 
-                Index          idxToMatch    = null;
-                Index          idxToRetrieve = null;
-                List<KeyValue> relatedEks    = null;
+        int threads = getExpandThreads(expansions.size());
+        if (threads > 1)
+            fetchExpansions(expansions, pkCache, threads);
 
-                if (rel.isManyToOne()) {
-                    idxToMatch = collection.getPrimaryIndex();
-                    idxToRetrieve = rel.getFkIndex1();
+        for (Expansion expansion : expansions) {
+            if (threads < 2)
+                fetchExpansion(expansion, pkCache);
 
-                    //NOTE: expands() is only getting the paired up related keys.  For a MANY_TO_ONE
-                    //relationship that data is already in the parent object you are trying to expand
-                    //so we don't need to query the db to find those relationships as we do for the
-                    //MANY_TO relationships.
-                    //
-                    //However if you were to comment out the following block, the output of the algorithm
-                    //would be exactly the same you would just end up running an extra db query
-
-                    relatedEks = new ArrayList<>();
-                    for (JSNode parentObj : parentObjs) {
-                        String parentEk = getResourceKey(parentObj);
-                        String childEk  = parentObj.getString(rel.getName());
-                        if (childEk != null) {
-                            childEk = getResourceKey(childEk);
-                            relatedEks.add(new DefaultKeyValue(parentEk, childEk));
-                        }
-                    }
-                } else if (rel.isOneToMany()) {
-                    //               idxToMatch = rel.getFkIndex1();
-                    //               idxToRetrieve = rel.getRelated().getTable().getPrimaryIndex();//Resource().getKey().getColumn();
+            Relationship rel               = expansion.rel;
+            Collection   relatedCollection = rel.getRelated();
 
-                    idxToMatch = rel.getFkIndex1();
-                    idxToRetrieve = rel.getRelated().getPrimaryIndex();
+            for (KeyValue<String, String> row : expansion.relatedEks) {
+                String parentEk  = row.getKey();
+                String relatedEk = row.getValue();
 
-                } else if (rel.isManyToMany()) {
-                    idxToMatch = rel.getFkIndex1();
-                    idxToRetrieve = rel.getFkIndex2();
-                }
+                JSNode parentObj = (JSNode) pkCache.get(collection, parentEk);
+                JSNode childObj  = (JSNode) pkCache.get(relatedCollection, relatedEk);
 
-                if (relatedEks == null) {
-                    List toMatchEks = new ArrayList<>();
-                    for (JSNode parentObj : parentObjs) {
-                        String parentEk = getResourceKey(parentObj);
-                        if (!toMatchEks.contains(parentEk)) {
-                            if (parentObj.get(rel.getName()) instanceof JSArray)
-                                throw ApiException.new500InternalServerError("Algorithm implementation error...this relationship seems to have already been expanded.");
-
-                            toMatchEks.add(parentEk);
-
-                            if (rel.isManyToOne()) {
-                                parentObj.remove(rel.getName());
-                            } else {
-                                parentObj.put(rel.getName(), new JSArray());
-                            }
-                        }
+                if (rel.isManyToOne()) {
+                    parentObj.put(rel.getName(), childObj);
+                } else {
+                    if (childObj != null) {
+                        parentObj.getArray(rel.getName()).add(childObj);
                     }
-                    relatedEks = getRelatedKeys(rel, idxToMatch, idxToRetrieve, toMatchEks);
                 }
+            }
 
-                List                          unfetchedChildEks = new ArrayList<>();
-                ListValuedMap<String, String> fkCache           = new ArrayListValuedHashMap<>();
-
-                for (KeyValue<String, String> row : relatedEks) {
-                    //the values in the many_to_many link table may have different names than the target columns so you have to
-                    //use the index not the name to build the child resource key.
-
-                    String parentEk  = row.getKey();
-                    String relatedEk = row.getValue();
+            if (expansion.newChildObjs != null && expansion.newChildObjs.size() > 0) {
+                expand(request, relatedCollection, expansion.newChildObjs, expands, expansion.expandsPath, pkCache);
+            }
+        }
+    }
 
-                    fkCache.put(relatedEk, parentEk);
+    /**
+     * The state of expanding one Relationship for a set of parent records.
+     */
+    protected static class Expansion {
+        Relationship                   rel;
+        String                         expandsPath;
+        Index                          idxToMatch;
+        Index                          idxToRetrieve;
+        List<String>                   toMatchEks;
+        List<KeyValue<String, String>> relatedEks;
+        List<JSNode>                   joinedChildObjs;
+        List<JSNode>                   newChildObjs;
+    }
 
-                    if (!pkCache.containsKey(relatedCollection, relatedEk)) {
-                        unfetchedChildEks.add(relatedEk);
+    /**
+     * Figures out which keys are needed to expand <code>rel</code> and clears the relationship link on each parent.
+     * <p>
+     * This modifies <code>parentObjs</code> so it is always run on the request thread.  MANY_TO_ONE records that the
+     * Db already joined into the parents are added to <code>pkCache</code> here so they are not fetched again.
+     *
+     * @param collection  the collection of the parent records
+     * @param rel         the relationship to expand
+     * @param parentObjs  the records being expanded
+     * @param expandsPath the path of the relationship being expanded
+     * @param pkCache     a cache of things already looked up
+     * @return the expansion to fetch
+     */
+    protected Expansion prepareExpansion(Collection collection, Relationship rel, List<JSNode> parentObjs, String expandsPath, MultiKeyMap pkCache) {
+        Expansion expansion = new Expansion();
+        expansion.rel = rel;
+        expansion.expandsPath = expandsPath;
+
+        //ONE_TO_MANY - Location.id <- Player.locationId
+        //MANY_TO_ONE - Player.locationId -> Location.id (one playe
+        //MANY_TO_MANY, ex going from Category(id)->CategoryBooks(categoryId, bookId)->Book(id)
+
+        if (rel.isManyToOne()) {
+            expansion.idxToMatch = collection.getPrimaryIndex();
+            expansion.idxToRetrieve = rel.getFkIndex1();
+
+            //NOTE: expands() is only getting the paired up related keys.  For a MANY_TO_ONE
+            //relationship that data is already in the parent object you are trying to expand
+            //so we don't need to query the db to find those relationships as we do for the
+            //MANY_TO relationships.
+            //
+            //However if you were to comment out the following block, the output of the algorithm
+            //would be exactly the same you would just end up running an extra db query
+
+            expansion.relatedEks = new ArrayList<>();
+            expansion.joinedChildObjs = new ArrayList<>();
+            for (JSNode parentObj : parentObjs) {
+                String parentEk = getResourceKey(parentObj);
+                Object child    = parentObj.get(rel.getName());
+                if (child instanceof JSNode) {
+                    //-- the Db joined the related record into the parent's row
+                    String childEk = getResourceKey(child);
+                    if (!pkCache.containsKey(rel.getRelated(), childEk)) {
+                        pkCache.put(rel.getRelated(), childEk, child);
+                        expansion.joinedChildObjs.add((JSNode) child);
                     }
+                    expansion.relatedEks.add(new DefaultKeyValue(parentEk, childEk));
+                    continue;
                 }
 
-                //this recursive call populates the pkCache
-                List<JSNode> newChildObjs = recursiveGet(pkCache, relatedCollection, unfetchedChildEks, expandPath(expandsPath, rel.getName()));
+                String childEk = parentObj.getString(rel.getName());
+                if (childEk != null) {
+                    childEk = getResourceKey(childEk);
+                    expansion.relatedEks.add(new DefaultKeyValue(parentEk, childEk));
+                }
+            }
+            return expansion;
+        } else if (rel.isOneToMany()) {
+            expansion.idxToMatch = rel.getFkIndex1();
+            expansion.idxToRetrieve = rel.getRelated().getPrimaryIndex();
+        } else if (rel.isManyToMany()) {
+            expansion.idxToMatch = rel.getFkIndex1();
+            expansion.idxToRetrieve = rel.getFkIndex2();
+        }
 
-                for (KeyValue<String, String> row : relatedEks) {
-                    String parentEk  = row.getKey();
-                    String relatedEk = row.getValue();
+        List toMatchEks = new ArrayList<>();
+        for (JSNode parentObj : parentObjs) {
+            String parentEk = getResourceKey(parentObj);
+            if (!toMatchEks.contains(parentEk)) {
+                if (parentObj.get(rel.getName()) instanceof JSArray)
+                    throw ApiException.new500InternalServerError("Algorithm implementation error...this relationship seems to have already been expanded.");
 
-                    JSNode parentObj = (JSNode) pkCache.get(collection, parentEk);
-                    JSNode childObj  = (JSNode) pkCache.get(relatedCollection, relatedEk);
+                toMatchEks.add(parentEk);
 
-                    if (rel.isManyToOne()) {
-                        parentObj.put(rel.getName(), childObj);
-                    } else {
-                        if (childObj != null) {
-                            parentObj.getArray(rel.getName()).add(childObj);
-                        }
-                    }
+                if (rel.isManyToOne()) {
+                    parentObj.remove(rel.getName());
+                } else {
+                    parentObj.put(rel.getName(), new JSArray());
                 }
+            }
+        }
+        expansion.toMatchEks = toMatchEks;
+        return expansion;
+    }
 
-                if (newChildObjs.size() > 0) {
-                    expand(request, relatedCollection, newChildObjs, expands, expandPath(expandsPath, rel.getName()), pkCache);
+    /**
+     * Queries for the related keys, if needed, and the related records that are not already in <code>pkCache</code>.
+     * <p>
+     * This only reads the parent records so it can run on a worker thread.
+     *
+     * @param expansion the expansion to fetch
+     * @param pkCache   a cache of things already looked up
+     */
+    protected void fetchExpansion(Expansion expansion, MultiKeyMap pkCache) {
+        if (expansion.relatedEks == null)
+            expansion.relatedEks = getRelatedKeys(expansion.rel, expansion.idxToMatch, expansion.idxToRetrieve, expansion.toMatchEks);
+
+        Collection relatedCollection = expansion.rel.getRelated();
+        List       unfetchedChildEks = new ArrayList<>();
+
+        synchronized (pkCache) {
+            for (KeyValue<String, String> row : expansion.relatedEks) {
+                //the values in the many_to_many link table may have different names than the target columns so you have to
+                //use the index not the name to build the child resource key.
+                if (!pkCache.containsKey(relatedCollection, row.getValue())) {
+                    unfetchedChildEks.add(row.getValue());
                 }
             }
         }
+
+        //this recursive call populates the pkCache
+        List<JSNode> newChildObjs = recursiveGet(pkCache, relatedCollection, unfetchedChildEks, expansion.expandsPath);
+        if (expansion.joinedChildObjs != null && expansion.joinedChildObjs.size() > 0) {
+            List<JSNode> childObjs = new ArrayList<>(expansion.joinedChildObjs);
+            if (newChildObjs != null)
+                childObjs.addAll(newChildObjs);
+            newChildObjs = childObjs;
+        }
+        expansion.newChildObjs = newChildObjs;
+    }
+
+    /**
+     * Fetches sibling expansions concurrently, running up to <code>threads</code> at a time with one of them on the calling thread.
+     * <p>
+     * Expansions of the same related Collection are fetched one after another by the same thread so that two threads
+     * never fetch, and cache, the same record.
+     *
+     * @param expansions the expansions to fetch
+     * @param pkCache    a cache of things already looked up
+     * @param threads    the maximum number of expansions to fetch at once
+     */
+    protected void fetchExpansions(List<Expansion> expansions, MultiKeyMap pkCache, int threads) {
+        Map<Collection, List<Expansion>> groups = new LinkedHashMap<>();
+        for (Expansion expansion : expansions)
+            groups.computeIfAbsent(expansion.rel.getRelated(), k -> new ArrayList<>()).add(expansion);
+
+        threads = Math.min(threads, groups.size());
+        List<List<Expansion>> batches = new ArrayList<>();
+        for (int i = 0; i < threads; i++)
+            batches.add(new ArrayList<>());
+
+        int i = 0;
+        for (List<Expansion> group : groups.values())
+            batches.get(i++ % threads).addAll(group);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int j = 1; j < batches.size(); j++) {
+            List<Expansion> batch = batches.get(j);
+            futures.add(getExpandExecutor().submit(Chain.wrap(() -> {
+                for (Expansion expansion : batch)
+                    fetchExpansion(expansion, pkCache);
+                return null;
+            })));
+        }
+
+        Throwable error = null;
+        try {
+            for (Expansion expansion : batches.get(0))
+                fetchExpansion(expansion, pkCache);
+        } catch (Throwable ex) {
+            error = ex;
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                if (error == null)
+                    error = ex.getCause();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                if (error == null)
+                    error = ex;
+            }
+        }
+
+        if (error != null)
+            Utils.rethrow(error);
+    }
+
+    /**
+     * Sibling relationships are only fetched concurrently for GET requests.  Worker threads read through their own
+     * Db connections and would not see writes that an enclosing POST/PUT/PATCH has not yet committed.
+     *
+     * @param expansions the number of sibling relationships being expanded
+     * @return the number of threads to fetch them with, 1 to fetch them sequentially
+     * @see #expandThreads
+     */
+    protected int getExpandThreads(int expansions) {
+        if (expansions < 2)
+            return 1;
+
+        Chain chain   = Chain.peek();
+        int   threads = chain.getConfig("expandThreads", expandThreads);
+        if (threads < 2)
+            return 1;
+
+        for (Chain c = chain; c != null; c = c.getParent()) {
+            if (!c.getRequest().isGet())
+                return 1;
+        }
+        return threads;
+    }
+
+    /**
+     * Finds the MANY_TO_ONE relationships of <code>collection</code> that are expanded at <code>expandsPath</code>
+     * so the Db can be asked to join them into the select of <code>collection</code>.
+     *
+     * @param collection  the collection being selected
+     * @param expands     the definition of which properties should be expanded
+     * @param expandsPath the path of <code>collection</code> in the document
+     * @return the names of the relationships to join, empty unless joinExpands is enabled
+     * @see #joinExpands
+     */
+    protected List<String> getJoinExpands(Collection collection, Set<String> expands, String expandsPath) {
+        List<String> joins = new ArrayList<>();
+        if (expands.size() > 0 && Chain.peek().getConfig("joinExpands", joinExpands)) {
+            for (Relationship rel : collection.getRelationships()) {
+                if (rel.isManyToOne() && shouldExpand(expands, expandsPath, rel))
+                    joins.add(rel.getName());
+            }
+        }
+        return joins;
+    }
+
+    static synchronized ExecutorService getExpandExecutor() {
+        if (expandExecutor == null) {
+            AtomicInteger count = new AtomicInteger();
+            //-- when every thread is busy the request thread fetches the expansion itself
+            expandExecutor = new ThreadPoolExecutor(0, MAX_EXPAND_THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+                Thread thread = new Thread(r, "inversion-expand-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+        return expandExecutor;
     }
 
     protected List<KeyValue<String, String>> getRelatedKeys(Relationship rel, Index idxToMatch, Index idxToRetrieve, List<String> toMatchEks) throws ApiException {
@@ -567,8 +895,7 @@ public class DbGetAction extends Action<DbGetAction> {
         Term sort     = Term.term(null, "sort", columns);
         Term notNull  = Term.term(null, "nn", columns);
 
-        String   link = Chain.buildLink(idxToRetrieve.getCollection());
-        Response res  = Chain.peek().getEngine().get(link, Arrays.asList(termKeys, includes, sort, notNull)).assertOk();
+        Response res = Chain.peek().getEngine().dispatch("GET", idxToRetrieve.getCollection(), null, Arrays.asList(termKeys, includes, sort, notNull), null).assertOk();
 
         for (JSNode node : res.data().asNodeList()) {
             List idxToMatchVals = new ArrayList<>();
@@ -613,8 +940,6 @@ public class DbGetAction extends Action<DbGetAction> {
         if (resourceKeys.size() == 0)
             return Collections.EMPTY_LIST;
 
-        String url = Chain.buildLink(collection, Utils.implode(",", resourceKeys), null);
-
         //      //--
         //      //-- Nested param support
         //      //TODO: don't remember the use case here.  need to find and make a test case
@@ -640,7 +965,12 @@ public class DbGetAction extends Action<DbGetAction> {
         //         }
         //      }
 
-        Response res = Chain.peek().getEngine().get(url);
+        List<Term>   terms = null;
+        List<String> joins = getJoinExpands(collection, Chain.peek().mergeEndpointActionParamsConfig("expands"), expandsPath);
+        if (joins.size() > 0)
+            terms = Collections.singletonList(Term.term(null, "_join", joins));
+
+        Response res = Chain.peek().getEngine().dispatch("GET", collection, Utils.implode(",", resourceKeys), terms, null);
         int      sc  = res.getStatusCode();
         if (sc == 401 || sc == 403)//unauthorized || forbidden
             return null;
@@ -652,13 +982,15 @@ public class DbGetAction extends Action<DbGetAction> {
         } else if (sc == 200) {
             List<JSNode> nodes = (List<JSNode>) res.getData().asList();
 
-            for (JSNode node : nodes) {
-                Object resourceKey = getResourceKey(node);
-                if (pkCache.containsKey(collection, resourceKey)) {
-                    throw ApiException.new500InternalServerError("FIX ME IF FOUND.  Algorithm Implementation Error");
-                }
+            synchronized (pkCache) {
+                for (JSNode node : nodes) {
+                    Object resourceKey = getResourceKey(node);
+                    if (pkCache.containsKey(collection, resourceKey)) {
+                        throw ApiException.new500InternalServerError("FIX ME IF FOUND.  Algorithm Implementation Error");
+                    }
 
-                pkCache.put(collection, resourceKey, node);
+                    pkCache.put(collection, resourceKey, node);
+                }
             }
             return nodes;
         }
@@ -705,4 +1037,40 @@ public class DbGetAction extends Action<DbGetAction> {
         return this;
     }
 
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public DbGetAction withStreaming(boolean streaming) {
+        this.streaming = streaming;
+        return this;
+    }
+
+    public boolean isExport() {
+        return export;
+    }
+
+    public DbGetAction withExport(boolean export) {
+        this.export = export;
+        return this;
+    }
+
+    public int getExpandThreads() {
+        return expandThreads;
+    }
+
+    public DbGetAction withExpandThreads(int expandThreads) {
+        this.expandThreads = expandThreads;
+        return this;
+    }
+
+    public boolean isJoinExpands() {
+        return joinExpands;
+    }
+
+    public DbGetAction withJoinExpands(boolean joinExpands) {
+        this.joinExpands = joinExpands;
+        return this;
+    }
+
 }
@@ -18,13 +18,10 @@ package io.inversion.action.db;
 
 import io.inversion.Collection;
 import io.inversion.*;
-import io.inversion.rql.Term;
 import io.inversion.utils.JSArray;
 import io.inversion.utils.JSNode;
 import io.inversion.utils.Rows.Row;
 import io.inversion.utils.Utils;
-import org.apache.commons.collections4.keyvalue.MultiKey;
-import org.apache.commons.collections4.map.MultiKeyMap;
 
 import java.util.*;
 
@@ -34,8 +31,18 @@ public class DbPostAction extends Action<DbPostAction> {
     /**
      * When true, forces PUTs to have an resourceKey in the URL
      */
-    protected boolean strictRest     = false;
-    protected boolean getResponse    = true;
+    protected boolean strictRest        = false;
+    protected boolean getResponse       = true;
+    /**
+     * When true, the records returned when {@link #getResponse} is true are collected by the Db as they are
+     * written, see {@link Db#upsert(Collection, List, Results)}, instead of being
+     * requested again with a GET of the "Location" through the Engine.
+     * <p>
+     * The includes and excludes of the endpoint, actions and request are applied to the written records.  Upserts
+     * of nested documents and requests with expands always GET the response.  Set this to false if GETs are served
+     * by a different endpoint than writes and its configuration should shape the response.
+     */
+    protected boolean returningResponse = true;
 
 
 
@@ -93,15 +100,18 @@ public class DbPostAction extends Action<DbPostAction> {
             }
         }
 
-        List<String> resourceKeys = req.getCollection().getDb().patch(req.getCollection(), req.getJson().asNodeList());
+        Results      written      = isReturning() ? new Results(null) : null;
+        List<String> resourceKeys = req.getCollection().getDb().patch(req.getCollection(), req.getJson().asNodeList(), written);
 
         if (resourceKeys.size() > 0) {
             res.withStatus(Status.SC_201_CREATED);
             String location = Chain.buildLink(req.getCollection(), Utils.implode(",", resourceKeys), null);
             res.withHeader("Location", location);
 
-            if(isGetResponse()){
-                Response getResponse = req.getChain().getEngine().service("GET", location);
+            if (written != null) {
+                res.getJson().put("data", returned(written));
+            } else if(isGetResponse()){
+                Response getResponse = req.getChain().getEngine().dispatch("GET", location, null, null);
                 res.getJson().put("data", getResponse.getData());
             }
         }
@@ -143,18 +153,27 @@ public class DbPostAction extends Action<DbPostAction> {
             collapse(body, collapseAll, collapses, "");
         }
 
+        JSArray nodes;
         if (body instanceof JSArray) {
             if (!Utils.empty(req.getResourceKey())) {
                 throw ApiException.new400BadRequest("You can't batch '{}' an array of objects to a specific resource url.  You must '{}' them to a collection.", req.getMethod(), req.getMethod());
             }
-            resourceKeys = upsert(req, collection, (JSArray) body);
+            nodes = (JSArray) body;
         } else {
             String href = body.getString("href");
             if (req.isPut() && href != null && req.getResourceKey() != null && !req.getUrl().toString().startsWith(href)) {
                 throw ApiException.new400BadRequest("You are PUT-ing an resource with a different href property than the resource URL you are PUT-ing to.");
             }
+            nodes = new JSArray(body);
+        }
 
-            resourceKeys = upsert(req, collection, new JSArray(body));
+        Results written = null;
+        if (isReturning() && !isNested(collection, nodes)) {
+            //-- without relationships there is nothing to recurse into, the Db returns what it wrote
+            written = new Results(null);
+            resourceKeys = collection.getDb().upsert(collection, nodes.asList(), written);
+        } else {
+            resourceKeys = upsert(req, collection, nodes);
         }
 
         res.withChanges(changes);
@@ -180,8 +199,10 @@ public class DbPostAction extends Action<DbPostAction> {
             String location = Chain.buildLink(collection, buff.substring(1, buff.length()), null);
             res.withHeader("Location", location);
 
-            if(isGetResponse()){
-                Response getResponse = req.getChain().getEngine().service("GET", location);
+            if (written != null) {
+                res.getJson().put("data", returned(written));
+            } else if(isGetResponse()){
+                Response getResponse = req.getChain().getEngine().dispatch("GET", location, null, null);
                 res.getJson().put("data", getResponse.getData());
             }
         }
@@ -191,32 +212,79 @@ public class DbPostAction extends Action<DbPostAction> {
         }
     }
 
+    /**
+     * @return true if the response should be built from the records the Db wrote, expands are only applied by the GET
+     * @see #returningResponse
+     */
+    protected boolean isReturning() {
+        return isGetResponse() && isReturningResponse() && Chain.peek().mergeEndpointActionParamsConfig("expands").isEmpty();
+    }
+
+    /**
+     * Applies the includes and excludes that a GET of the written records would apply.
+     *
+     * @param written the records the Db wrote
+     * @return the response data
+     */
+    protected JSArray returned(Results written) {
+        Set<String> includes = Chain.peek().mergeEndpointActionParamsConfig("includes");
+        Set<String> excludes = Chain.peek().mergeEndpointActionParamsConfig("excludes");
+
+        JSArray data = new JSArray();
+        for (Object row : written.getRows()) {
+            JSNode node = (JSNode) row;
+            for (String key : new ArrayList<>(node.keySet())) {
+                if (DbGetAction.exclude(key, includes, excludes))
+                    node.remove(key);
+            }
+            data.add(node);
+        }
+        return data;
+    }
+
+    /**
+     * @param collection the collection being upserted
+     * @param nodes      the submitted records
+     * @return true if any record has a value for a relationship of the collection
+     */
+    protected boolean isNested(Collection collection, JSArray nodes) {
+        for (JSNode node : nodes.asNodeList()) {
+            for (Relationship rel : collection.getRelationships()) {
+                if (node.containsKey(rel.getName()))
+                    return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * README README README README
      * <p>
      * Algorithm:
      * <p>
-     * Step 1: Upsert all <code>nodes</code> in this generation...meaning not recursively including
-     * key values for all many-to-one foreign keys but excluding all one-to-many and many-to-many
-     * key changes...non many-to-one relationships involve modifying other tables that have foreign
-     * keys back to this collection's table, not the direct modification of the single table
-     * underlying this collection.
+     * Step 1: Plan the whole nested document before writing anything.  Every JSNode found by walking
+     * the relationships of <code>nodes</code> becomes a record of its relationship's related collection.
+     * A MANY_TO_ONE JSNode is written before the record holding its foreign key and a ONE_TO_MANY child
+     * is written after the parent its foreign key points back to.  The records are then put into levels
+     * where each level only depends on the levels before it, see {@link UpsertPlan}.
      * <p>
-     * Step 2: For each relationship POST back through the "front door".  This is the primary
-     * recursion that enables nested documents to submitted all at once by client.  Putting
-     * this step first ensure that all new objects are POSTed, with their newly created hrefs
-     * placed back in the JSON prior to any PUTs that depend on relationship keys to exist.
+     * Step 2: Upsert each level with one batch per collection.  The records of the request's collection
+     * are upserted directly and each batch of nested records is POSTed back through the "front door", without
+     * its nested records, so the endpoint actions of its collection still apply.  The href of every written
+     * record is set back on its JSON so the next levels can reference it.  All of the writes happen on the
+     * request thread and nested requests leave committing to the outermost request, see {@link Chain#isOutermost()},
+     * so the whole document is written in one transaction.
      * <p>
-     * Step 3: PKs generated for child documents which are actually relationship parents, are set
-     * as foreign keys back on the parent json (which is actually the one-to-many child)
+     * Step 3: Patch the foreign keys that could not be set when they were written because the document
+     * contained a circular reference.
      * <p>
      * Step 4: Find the key values for all new/kept one-to-many and many-to-many relationships
      * <p>
-     * Step 5.1 Upsert all of those new/kept relationships and create the RQL queries needed find
-     * all relationships NOT in the upserts.
+     * Step 5.1 Upsert all of those new/kept relationships that were not already written in step 2
      * <p>
-     * Step 5.2 Null out all now invalid many-to-one foreign keys back
-     * and delete all now invalid many-to-many relationships rows.
+     * Step 5.2 Null out all now invalid one-to-many foreign keys
+     * and delete all now invalid many-to-many relationships rows with
+     * one {@link Db#unlink(Relationship, Map)} per relationship.
      *
      * @param req        the request being serviced
      * @param collection the collection be modified
@@ -226,153 +294,99 @@ public class DbPostAction extends Action<DbPostAction> {
     protected List<String> upsert(Request req, Collection collection, JSArray nodes) {
         //--
         //--
-        //-- Step 1. Upsert this generation including many-to-one relationships where the fk is known
+        //-- Step 1. walk the document once and order its records by their foreign keys
         //--
-
-        System.out.println("UPSERT: " + collection.getName() + ":\r\n" + nodes);
-
-        List<String> returnList = collection.getDb().upsert(collection, nodes.asList());
-        for (int i = 0; i < nodes.length(); i++) {
-            //-- new records need their newly assigned id/href assigned back on them
-            if (nodes.getNode(i).get("href") == null) {
-                String newHref = Chain.buildLink(collection, returnList.get(i) + "", null);
-                nodes.getNode(i).put("href", newHref);
-            }
-        }
+        UpsertPlan plan = new UpsertPlan();
+        for (JSNode node : nodes.asNodeList())
+            plan.add(collection, node);
 
         //--
         //--
-        //-- Step 2. recurse by relationship in batch
+        //-- Step 2. upsert each level, one batch per collection
         //--
-        //-- THIS IS THE ONLY RECURSION IN THE ALGORITHM.  IT IS NOT DIRECTLY RECURSIVE. IT
-        //-- SENDS THE "CHILD GENERATION" AS A POST BACK TO THE ENGINE WHICH WOULD LAND AT
-        //-- THE ACTION (MAYBE THIS ONE) THAT HANDLES THE UPSERT FOR THAT CHILD COLLECTION
-        //-- AND ITS DESCENDANTS.
-        for (Relationship rel : collection.getRelationships()) {
-            Relationship inverse    = rel.getInverse();
-            List         childNodes = new ArrayList<>();
-
-            for (JSNode node : nodes.asNodeList()) {
-                Object value = node.get(rel.getName());
-                if (value instanceof JSArray) //this is a one-to-many or many-to-many
-                {
-                    JSArray childArr = ((JSArray) value);
-                    for (int i = 0; i < childArr.size(); i++) {
-                        //-- removals will be handled in the next section, not this recursion
-                        Object child = childArr.get(i);
-                        if (child == null)
-                            continue;
-
-                        if (child instanceof String) {
-                            //-- this was passed in as an href reference, not as an object
-                            if (rel.isOneToMany()) {
-                                //-- the child inverse of this is a many-to-one that modifies the child row.
-                                child = new JSArray(child);
-                                childArr.set(i, child);
-                            } else {
-                                //-- don't do anything..the many-to-many section below will update this
-                            }
-                        }
+        Set<JSNode> roots = Collections.newSetFromMap(new IdentityHashMap<>());
+        roots.addAll(nodes.asNodeList());
+
+        for (List<JSNode> level : plan.levels()) {
+            //-- the request's own records are written directly, nested records are batched by collection
+            Map<Collection, List<JSNode>> batches = new LinkedHashMap<>();
+            Map<Collection, List<JSNode>> nested  = new LinkedHashMap<>();
+            for (JSNode node : level)
+                (roots.contains(node) ? batches : nested).computeIfAbsent(plan.collections.get(node), c -> new ArrayList<>()).add(node);
+
+            for (Map.Entry<Collection, List<JSNode>> batch : batches.entrySet()) {
+                Collection   coll       = batch.getKey();
+                List<JSNode> batchNodes = batch.getValue();
+                plan.link(batchNodes);
+
+                log.debug("upserting: " + coll + " -> " + batchNodes);
+                plan.written(coll, batchNodes, coll.getDb().upsert(coll, (List) batchNodes));
+            }
 
-                        if (child instanceof JSNode) {
-                            JSNode childNode = (JSNode) child;
-                            if (rel.isOneToMany()) {
-                                //-- this generations one-to-many, are the next generation's many-to-ones
-                                //-- the child generation receives an implicity relationship via nesting
-                                //-- under the parent, have to set the inverse prop on the child so
-                                //-- its many-to-one FK gets set to this parent.
+            for (Map.Entry<Collection, List<JSNode>> batch : nested.entrySet()) {
+                Collection   coll       = batch.getKey();
+                List<JSNode> batchNodes = batch.getValue();
+                plan.link(batchNodes);
 
-                                childNode.put(inverse.getName(), node.getString("href"));
-                            }
-                            childNodes.add(childNode);
-
-                        }
-                    }
-                } else if (value instanceof JSNode) {
-                    //-- this must be a many-to-one...the FK is in this generation, not the child
-                    JSNode childNode = ((JSNode) value);
-                    childNodes.add(childNode);
-                }
-            }
+                //-- nested records are POSTed back through the "front door" so the endpoint actions of
+                //-- their collection still apply.  Their relationships are handled by this plan so only
+                //-- the, already known, many-to-one hrefs are sent with them.
+                JSArray records = new JSArray();
+                for (JSNode node : batchNodes)
+                    records.add(plan.shallowCopy(coll, node));
 
-            if (childNodes.size() > 0) {
-                String   path = Chain.buildLink(rel.getRelated(), null, null);
-                Response res  = req.getEngine().post(path, new JSArray(childNodes));
-                if (!res.isSuccess() || res.getData().length() != childNodes.size()) {
+                Response res = req.getEngine().dispatch("POST", coll, null, null, records);
+                if (!res.isSuccess() || res.getData().length() != batchNodes.size())
                     res.rethrow();
-                    //throw new ApiException(Status.SC_400_BAD_REQUEST, res.getErrorContent());
-                }
 
-                //-- now get response URLS and set them BACK on the source from this generation
-                JSArray data = res.getData();
-                for (int i = 0; i < data.length(); i++) {
-                    String childHref = ((JSNode) data.get(i)).getString("href");
-                    ((JSNode) childNodes.get(i)).put("href", childHref);
-                }
+                List<String> resourceKeys = new ArrayList<>();
+                for (JSNode written : res.getData().asNodeList())
+                    resourceKeys.add(Utils.substringAfter(written.getString("href"), "/"));
+                plan.written(coll, batchNodes, resourceKeys);
             }
         }
 
         //--
         //--
-        //-- Step 3. sets foreign keys on json parent entities..this happens
-        //-- when a JSON parent is actually a ONE_TO_MANY child.
+        //-- Step 3. sets the foreign keys that were unknown when the record was written
         //--
-        //-- ...important for when
-        //-- new ONE_TO_MANY entities are passed in...they won't have an href
-        //-- on the initial record submit..the recursion has to happen to
-        //-- give them an href
-        //--
-        //-- TODO: can optimize this to not upsert if the key was available
-        //-- in the first pass
-        for (Relationship rel : collection.getRelationships()) {
-            List<Map> updatedRows = new ArrayList<>();
-            if (rel.isManyToOne())//this means we have a FK to the related element's PK
-            {
-                for (JSNode node : nodes.asNodeList()) {
-                    Map<String, Object> primaryKey         = collection.getDb().getKey(collection, node);
-                    Map<String, Object> foreignResourceKey = collection.getDb().getKey(rel.getRelated(), node.get(rel.getName()));
-
-                    Index foreignIdx        = rel.getFkIndex1();
-                    Index relatedPrimaryIdx = rel.getRelated().getPrimaryIndex();
-
-                    Object docChild = node.get(rel.getName());
-                    if (docChild instanceof JSNode) {
-                        Map<Object, Object> updatedRow = new HashMap<>();
-                        updatedRows.add(updatedRow);
-                        updatedRow.putAll(primaryKey);
-
-                        if (foreignIdx.size() != relatedPrimaryIdx.size() && foreignIdx.size() == 1) {
-                            //-- the fk is an resourceKey not a one-to-one column mapping to the primary composite key
-                            updatedRow.put(foreignIdx.getProperty(0).getColumnName(), rel.getRelated().encodeResourceKey(foreignResourceKey));
-                        } else {
-                            Map foreignKey = collection.getDb().mapTo(foreignResourceKey, rel.getRelated().getPrimaryIndex(), rel.getFkIndex1());
-                            updatedRow.putAll(foreignKey);
-                        }
-                    }
-                }
+        Map<Collection, List<Map<String, Object>>> updatedRows = new LinkedHashMap<>();
+        for (Map.Entry<JSNode, Relationship> late : plan.lateForeignKeys) {
+            JSNode       node = late.getKey();
+            Relationship rel  = late.getValue();
+            Collection   coll = plan.collections.get(node);
 
-                if (updatedRows.size() > 0) {
-                    //-- don't need to "go back through the front door and PATCH to the engine
-                    //-- here because we are updating our own collection.
-                    //-- TODO...make sure of above statement.
-                    collection.getDb().doPatch(collection, updatedRows);
-                }
+            Map<String, Object> foreignResourceKey = coll.getDb().getKey(rel.getRelated(), node.get(rel.getName()));
+
+            Index foreignIdx        = rel.getFkIndex1();
+            Index relatedPrimaryIdx = rel.getRelated().getPrimaryIndex();
+
+            Map<String, Object> updatedRow = new HashMap<>(coll.getDb().getKey(coll, node));
+            if (foreignIdx.size() != relatedPrimaryIdx.size() && foreignIdx.size() == 1) {
+                //-- the fk is an resourceKey not a one-to-one column mapping to the primary composite key
+                updatedRow.put(foreignIdx.getProperty(0).getColumnName(), rel.getRelated().encodeResourceKey(foreignResourceKey));
+            } else {
+                updatedRow.putAll(coll.getDb().mapTo(foreignResourceKey, relatedPrimaryIdx, foreignIdx));
             }
+            updatedRows.computeIfAbsent(coll, c -> new ArrayList<>()).add(updatedRow);
         }
+        for (Map.Entry<Collection, List<Map<String, Object>>> entry : updatedRows.entrySet())
+            entry.getKey().getDb().doPatch(entry.getKey(), entry.getValue());
 
         //--
         //--
         //-- Step 4: Now find all key values to keep for one-to-many and many-to-many relationships
         //-- ... this step just collects them...then next steps updates new and removed relationships
         //--
+        Map<Relationship, Map<Map<String, Object>, List<Map<String, Object>>>> keepRels = new LinkedHashMap<>(); //-- relationship, parentKey, list of childKeys
+        Map<Relationship, List<Map<String, Object>>>                           upserts  = new LinkedHashMap<>();
 
-        MultiKeyMap<Object, ArrayList> keepRels = new MultiKeyMap<>(); //-- relationship, parentKey, list of childKeys
+        for (JSNode node : plan.order) {
+            Collection coll = plan.collections.get(node);
+            for (Relationship rel : coll.getRelationships()) {
+                if (rel.isManyToOne())//these were handled in step 2 and 3
+                    continue;
 
-        for (Relationship rel : collection.getRelationships()) {
-            if (rel.isManyToOne())//these were handled in step 1 and 2
-                continue;
-
-            for (JSNode node : nodes.asNodeList()) {
                 if (!node.hasProperty(rel.getName()) || node.get(rel.getName()) instanceof String)
                     continue;//-- this property was not passed back in...if it is string it is the link to expand the relationship
 
@@ -381,29 +395,29 @@ public class DbPostAction extends Action<DbPostAction> {
                 if (href == null)
                     throw ApiException.new500InternalServerError("The child href should not be null at this point, this looks like an algorithm error.");
 
-                Row                 parentPk  = collection.decodeResourceKey(href);
-                Map<String, Object> parentKey = collection.getDb().mapTo(parentPk, collection.getPrimaryIndex(), rel.getFkIndex1());
+                Row                 parentPk  = coll.decodeResourceKey(href);
+                Map<String, Object> parentKey = coll.getDb().mapTo(parentPk, coll.getPrimaryIndex(), rel.getFkIndex1());
 
-                keepRels.put(rel, parentKey, new ArrayList());//there may not be any child nodes...this has to be added here so it will be in the loop later
+                //-- there may not be any child nodes...this has to be added here so the relationship is still unlinked
+                List<Map<String, Object>> childKeys = keepRels.computeIfAbsent(rel, r -> new LinkedHashMap<>()).computeIfAbsent(parentKey, k -> new ArrayList<>());
 
                 JSArray childNodes = node.getArray(rel.getName());
 
                 for (int i = 0; childNodes != null && i < childNodes.length(); i++) {
-                    Object childHref = childNodes.get(i);
-                    childHref = childHref instanceof JSNode ? ((JSNode) childHref).get("href") : childHref;
+                    Object child     = childNodes.get(i);
+                    Object childHref = child instanceof JSNode ? ((JSNode) child).get("href") : child;
 
                     if (!Utils.empty(childHref)) {
                         String childEk = (String) Utils.last(Utils.explode("/", childHref.toString()));
                         Row    childPk = rel.getRelated().decodeResourceKey(childEk);
 
-                        if (rel.isOneToMany()) {
-                            keepRels.get(rel, parentKey).add(childPk);
-                        } else if (rel.isManyToMany()) {
-                            Map childFk = collection.getDb().mapTo(childPk, rel.getRelated().getPrimaryIndex(), rel.getFkIndex2());
-                            keepRels.get(rel, parentKey).add(childFk);
-                        }
-                    }
+                        Map<String, Object> childKey = rel.isOneToMany() ? childPk : coll.getDb().mapTo(childPk, rel.getRelated().getPrimaryIndex(), rel.getFkIndex2());
+                        childKeys.add(childKey);
 
+                        Map<String, Object> upsert = new HashMap<>(parentKey);
+                        upsert.putAll(childKey);
+                        upserts.computeIfAbsent(rel, r -> new ArrayList<>()).add(upsert);
+                    }
                 }
             }
         }
@@ -411,129 +425,211 @@ public class DbPostAction extends Action<DbPostAction> {
         //--
         //-- Step 5 -
         //--   1. upsert all new and kept relationships
-        //--   2. null out all now invalid many-to-one foreign keys
+        //--   2. null out all now invalid one-to-many foreign keys
         //--      AND delete all now invalid many-to-many rows
         //--
-        //--   To update/delete all now invlaid relationships, we are going to construct
-        //--   an RQL query to find all relationships that are NOT in the list we upserted
-        //--   in step 4.1
+        //--   Each relationship is unlinked with the keys of all of its parents at once, a Db
+        //--   may do that with one statement like
         //--
-        //--   The RQL might look like this
+        //--   UPDATE child SET parentFk = NULL WHERE
+        //--        (parentFk = nodeX.href AND NOT (childPk = child.href1.1 OR childPk = child.href1.2))
+        //--     OR (parentFk = nodeY.href AND NOT (childPk = child.href2.1))
         //--
-        //--   or(
-        //--        and(eq(parentFkX, nodeX.href), not(or(eq(childPk1.1, child.href1.1), eq(childPk1.2, child.href1.2), eq(childPk1.3, child.href1.3)))),
-        //--        and(eq(parentFKY, nodeY.href), not(or(eq(childPk2.1, child.href2.1), eq(childPk2.2, child.href2.2)))),
-        //--        and(eq(parentFKY, nodeY.href), not(or(eq(childPk2.1, child.href2.1), eq(childPk2.2, child.href2.2)))),
-        //--     )
-        //--
-
-        for (Map.Entry<MultiKey<? extends Object>, ArrayList> entry : keepRels.entrySet()) {
-
-            Relationship rel       = (Relationship) entry.getKey().getKey(0);
-            Map          parentKey = (Map) entry.getKey().getKey(1);
-            List<Map>    childKeys = (List) keepRels.get(rel, parentKey);
-
-            List upserts = new ArrayList<>();
+        for (Map.Entry<Relationship, Map<Map<String, Object>, List<Map<String, Object>>>> entry : keepRels.entrySet()) {
+            Relationship              rel     = entry.getKey();
+            Collection                coll    = rel.isOneToMany() ? rel.getRelated() : rel.getFk1Col1().getCollection();
+            List<Map<String, Object>> relRows = upserts.get(rel);
+
+            if (relRows != null) {
+                log.debug("updating relationship: " + rel + " -> " + coll + " -> " + relRows);
+                if (rel.isOneToMany())
+                    coll.getDb().doPatch(coll, relRows);
+                else
+                    coll.getDb().doUpsert(coll, relRows);
+            }
 
-            //-- this set will contain the columns we need to update/delete outdated relationships
-            Set includesKeys = new HashSet();
-            includesKeys.addAll(parentKey.keySet());
-            includesKeys.addAll(rel.getRelated().getPrimaryIndex().getColumnNames());
+            log.debug("unlinking relationship: " + rel + " -> " + coll + " -> " + entry.getValue());
+            coll.getDb().unlink(rel, entry.getValue());
+        }
 
-            Term childNot = Term.term(null, "not");
-            Term childOr  = Term.term(childNot, "or");
+        List<String> returnList = new ArrayList<>();
+        for (JSNode node : nodes.asNodeList())
+            returnList.add(plan.resourceKeys.get(node));
+        return returnList;
+    }
 
-            for (Map childKey : childKeys) {
-                Map upsert = new HashMap<>();
-                upsert.putAll(parentKey);
-                upsert.putAll(childKey);
-                upserts.add(upsert);
+    /**
+     * The records of a nested document in the order they can be written in.
+     * <p>
+     * Records are compared by identity, a JSNode that is nested more than once is only written once.
+     */
+    protected static class UpsertPlan {
+        /**
+         * Every record in document order
+         */
+        List<JSNode>                                       order          = new ArrayList<>();
+        Map<JSNode, Collection>                            collections    = new IdentityHashMap<>();
+        Map<JSNode, String>                                resourceKeys   = new IdentityHashMap<>();
+        /**
+         * The ONE_TO_MANY parent of a nested child and the inverse MANY_TO_ONE relationship of the child
+         */
+        Map<JSNode, Map.Entry<Relationship, JSNode>>       parents        = new IdentityHashMap<>();
+        /**
+         * The records that must be written before each record, with the MANY_TO_ONE relationship when the record holds the foreign key
+         */
+        Map<JSNode, List<Map.Entry<JSNode, Relationship>>> dependencies   = new IdentityHashMap<>();
+        /**
+         * MANY_TO_ONE foreign keys that had to be patched after their record was written to break a circular reference
+         */
+        List<Map.Entry<JSNode, Relationship>>              lateForeignKeys = new ArrayList<>();
+
+        /**
+         * Adds <code>node</code> and everything nested under it.
+         *
+         * @param collection the collection of <code>node</code>
+         * @param node       the record to add
+         */
+        public void add(Collection collection, JSNode node) {
+            if (collections.containsKey(node))
+                return;
+
+            order.add(node);
+            collections.put(node, collection);
+            dependencies.put(node, new ArrayList<>());
+
+            for (Relationship rel : collection.getRelationships()) {
+                Object value = node.get(rel.getName());
+                if (rel.isManyToOne() && value instanceof JSNode) {
+                    //-- the FK is in this record so the related record is written first
+                    add(rel.getRelated(), (JSNode) value);
+                    dependencies.get(node).add(new AbstractMap.SimpleEntry<>((JSNode) value, rel));
+                } else if (value instanceof JSArray) {
+                    //-- this is a one-to-many or many-to-many, href strings are related in step 4
+                    for (Object child : (JSArray) value) {
+                        if (!(child instanceof JSNode))
+                            continue;
 
-                includesKeys.addAll(childKey.keySet());
-                childOr.withTerm(asTerm(childKey));
+                        add(rel.getRelated(), (JSNode) child);
+                        if (rel.isOneToMany()) {
+                            //-- this generations one-to-many, are the next generation's many-to-ones
+                            parents.put((JSNode) child, new AbstractMap.SimpleEntry<>(rel.getInverse(), node));
+                            dependencies.get((JSNode) child).add(new AbstractMap.SimpleEntry<>(node, null));
+                        }
+                    }
+                }
             }
+        }
 
-            //-- TODO: I don't think you need to do this...the recursive generation already did it...
-            Collection coll = rel.isOneToMany() ? rel.getRelated() : rel.getFk1Col1().getCollection();
-            if (rel.isOneToMany()) {
-                //TODO: go through front door?
-                log.debug("updating relationship: " + rel + " -> " + coll + " -> " + upserts);
-                coll.getDb().doPatch(coll, upserts);
-            } else if (rel.isManyToMany()) {
-                //TODO: go through front door?
-                log.debug("updating relationship: " + rel + " -> " + coll + " -> " + upserts);
-                coll.getDb().doUpsert(coll, upserts);
+        /**
+         * Sets the inverse many-to-one prop of nested one-to-many children to the href of their, already written, parent.
+         *
+         * @param nodes the records about to be written
+         */
+        public void link(List<JSNode> nodes) {
+            for (JSNode node : nodes) {
+                Map.Entry<Relationship, JSNode> parent = parents.get(node);
+                if (parent != null)
+                    node.put(parent.getKey().getName(), parent.getValue().getString("href"));
             }
+        }
 
-            //-- now find all relationships that are NOT in the group that we just upserted
-            //-- they need to be nulled out if many-to-one and deleted if many-to-many
-
-            Map<String, String> queryTerms = new HashMap<>();
-            queryTerms.put("limit", "100");
-            queryTerms.put("includes", Utils.implode(",", includesKeys));
-
-            for (Object parentKeyProp : parentKey.keySet()) {
-                queryTerms.put(parentKeyProp.toString(), parentKey.get(parentKeyProp).toString());
+        /**
+         * Records the resource keys of written records and sets the href of new records back on them.
+         *
+         * @param collection   the collection the records were written to
+         * @param nodes        the written records
+         * @param keys       the resource key of each record
+         */
+        public void written(Collection collection, List<JSNode> nodes, List<String> keys) {
+            for (int i = 0; i < nodes.size(); i++) {
+                JSNode node = nodes.get(i);
+                resourceKeys.put(node, keys.get(i));
+
+                //-- new records need their newly assigned id/href assigned back on them
+                if (node.get("href") == null)
+                    node.put("href", Chain.buildLink(collection, keys.get(i) + "", null));
             }
+        }
 
-            if (childOr.size() > 0) {
-                queryTerms.put(childNot.toString(), null);
+        /**
+         * @param collection the collection of <code>node</code>
+         * @param node       a nested record
+         * @return the properties of <code>node</code> without nested records, many-to-one records that were already written are replaced with their href
+         */
+        public JSNode shallowCopy(Collection collection, JSNode node) {
+            JSNode copy = new JSNode();
+            for (String key : node.keySet()) {
+                Object value = node.get(key);
+                if (collection.getRelationship(key) != null) {
+                    if (value instanceof JSArray)
+                        continue;
+                    if (value instanceof JSNode) {
+                        value = ((JSNode) value).get("href");
+                        if (value == null)
+                            continue;
+                    }
+                }
+                copy.put(key, value);
             }
+            return copy;
+        }
 
-            String next = Chain.buildLink(coll);
-            while (true) {
-                log.debug("...looking for one-to-many and many-to-many foreign keys: " + rel + " -> " + queryTerms);
-
-                Response toUnlink = req.getEngine().get(next, queryTerms).assertOk();
-
-                if (toUnlink.data().length() == 0)
-                    break;
+        /**
+         * Groups the records into levels where every record only depends on records in earlier levels.
+         * <p>
+         * When no record is ready because of a circular reference, the MANY_TO_ONE dependencies of the
+         * waiting records are moved to {@link #lateForeignKeys}.
+         *
+         * @return the records of each level, in document order
+         */
+        public List<List<JSNode>> levels() {
+            List<List<JSNode>> levels  = new ArrayList<>();
+            Set<JSNode>        written = Collections.newSetFromMap(new IdentityHashMap<>());
+
+            while (written.size() < order.size()) {
+                List<JSNode> level = ready(written);
+                if (level.isEmpty()) {
+                    for (JSNode node : order) {
+                        if (written.contains(node))
+                            continue;
 
-                if (rel.isOneToMany()) {
-                    for (JSNode node : toUnlink.data().asNodeList()) {
-                        for (String prop : rel.getFkIndex1().getJsonNames()) {
-                            node.put(prop, null);
+                        for (Iterator<Map.Entry<JSNode, Relationship>> it = dependencies.get(node).iterator(); it.hasNext(); ) {
+                            Map.Entry<JSNode, Relationship> dependency = it.next();
+                            if (dependency.getValue() != null && !written.contains(dependency.getKey())) {
+                                it.remove();
+                                lateForeignKeys.add(new AbstractMap.SimpleEntry<>(node, dependency.getValue()));
+                            }
                         }
                     }
-                    req.getEngine().patch(Chain.buildLink(coll), toUnlink.data());
 
+                    level = ready(written);
+                    if (level.isEmpty())
+                        throw ApiException.new400BadRequest("The document contains a circular reference that can not be upserted.");
                 }
-                //TODO: put back in support for many to many rels recursing through engine
-                else if (rel.isManyToMany()) {
-                    List resourceKeys = new ArrayList<>();
-                    for (JSNode node : toUnlink.data().asNodeList()) {
-                        resourceKeys.add(Utils.substringAfter(node.getString("href"), "/"));
-                    }
-
-                    String url = Chain.buildLink(coll) + "/" + Utils.implode(",", resourceKeys);
-                    req.getEngine().delete(url);
-                }
-
-                if (toUnlink.data().size() < 100)
-                    break;
+                levels.add(level);
+                written.addAll(level);
             }
+            return levels;
         }
 
-        return returnList;
-    }
-
-
-
-    Term asTerm(Map row) {
-        Term t = null;
-        for (Object key : row.keySet()) {
-            Object value = row.get(key);
-
-            if (t == null) {
-                t = Term.term(null, "eq", key, value);
-            } else {
-                if (!t.hasToken("and"))
-                    t = Term.term(null, "and", t);
-
-                t.withTerm(Term.term(t, "eq", key, value));
+        List<JSNode> ready(Set<JSNode> written) {
+            List<JSNode> ready = new ArrayList<>();
+            for (JSNode node : order) {
+                if (written.contains(node))
+                    continue;
+
+                boolean isReady = true;
+                for (Map.Entry<JSNode, Relationship> dependency : dependencies.get(node)) {
+                    if (!written.contains(dependency.getKey())) {
+                        isReady = false;
+                        break;
+                    }
+                }
+                if (isReady)
+                    ready.add(node);
             }
+            return ready;
         }
-        return t;
     }
 
     public boolean isCollapseAll() {
@@ -554,6 +650,15 @@ public class DbPostAction extends Action<DbPostAction> {
         return this;
     }
 
+    public boolean isReturningResponse() {
+        return returningResponse;
+    }
+
+    public DbPostAction withReturningResponse(boolean returningResponse) {
+        this.returningResponse = returningResponse;
+        return this;
+    }
+
     public boolean isGetResponse() {
         return getResponse;
     }
@@ -18,24 +18,54 @@ package io.inversion.action.misc;
 
 import io.inversion.Action;
 import io.inversion.ApiException;
+import io.inversion.Chain;
+import io.inversion.Collection;
+import io.inversion.Property;
+import io.inversion.Relationship;
 import io.inversion.Request;
 import io.inversion.Response;
+import io.inversion.Results;
+import io.inversion.action.db.DbGetAction;
 import io.inversion.utils.JSArray;
 import io.inversion.utils.JSNode;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Converts a JSON object/array response value into CSV format.
  * <p>
  * Works for a status code 200 GET request when 'format=csv' is passed in on the query string
  * or the Endpoint or an action has 'format=csv' as part of its config.
+ * <p>
+ * When the Response is being streamed by the container the CSV is not built in memory.  Rows are printed as the
+ * body is written, including rows read from a Db cursor by a streaming {@link DbGetAction}, and the output is flushed
+ * every {@link #flushRows} rows, so large downloads are served in constant memory.  When the request has a Collection
+ * the header row is taken from its Properties instead of by scanning every row.
+ *
+ * @see Response#withBodyWriter(Response.BodyWriter)
+ * @see DbGetAction#withStreaming(boolean)
  */
 public class CsvAction extends Action<CsvAction> {
+
+    /**
+     * When true, a "Content-Disposition" header is added so browsers download the CSV as a file named after the Collection.
+     */
+    protected boolean download = false;
+
+    /**
+     * The number of rows to print before flushing a streamed body to the client.
+     */
+    protected int flushRows = 1000;
+
     @Override
     public void run(Request req, Response res) throws ApiException {
         if (!"GET".equals(req.getMethod()) || 200 != res.getStatusCode() || res.getJson() == null || res.getText() != null) {
@@ -55,57 +85,144 @@ public class CsvAction extends Action<CsvAction> {
                 arr = new JSArray(arr);
             }
         }
+        JSArray records = (JSArray) arr;
 
-        byte[] bytes = toCsv((JSArray) arr).getBytes();
+        res.withContentType("text/csv");
+        if (download)
+            res.withHeader("Content-Disposition", "attachment; filename=\"" + (req.getCollection() != null ? req.getCollection().getName() : "export") + ".csv\"");
 
-        res.withHeader("Content-Length", bytes.length + "");
-        res.debug("Content-Length " + bytes.length + "");
-        //res.setContentType("text/csv");
+        List<String> headers = getHeaders(req, records);
 
-        res.withText(new String(bytes));
+        if (res.isStreaming()) {
+            //-- the records and any record cursor are read as the container writes the body
+            res.withBodyWriter(out -> {
+                Results.Cursor<JSNode> cursor = res.getRecordCursor();
+                writeCsv(out, headers, records.asList(), cursor != null ? cursor : Collections.emptyIterator());
+            });
+        } else {
+            String csv    = toCsv(headers, records);
+            int    length = csv.getBytes(StandardCharsets.UTF_8).length;
+            res.withHeader("Content-Length", length + "");
+            res.debug("Content-Length " + length);
+            res.withText(csv);
+        }
     }
 
-    public String toCsv(JSArray arr) throws ApiException {
-        try {
-            StringBuilder buff = new StringBuilder();
-            LinkedHashSet<String> keys = new LinkedHashSet<>();
-
-            for (int i = 0; i < arr.length(); i++) {
-                JSNode obj = (JSNode) arr.get(i);
-                if (obj != null) {
-                    for (String key : obj.keySet()) {
-                        Object val = obj.get(key);
-                        if (!(val instanceof JSArray) && !(val instanceof JSNode))
-                            keys.add(key);
-                    }
-                }
-            }
+    /**
+     * The header row is built from the "href", the Properties, and the Relationship links of the request's
+     * Collection, with includes and excludes applied the way {@link DbGetAction} applies them to the records.
+     * Expanded Relationships hold nested documents instead of a link so they do not get a column.
+     * <p>
+     * Without a Collection, the header row is every key that has a scalar value in any record.
+     *
+     * @param req     the request being serviced
+     * @param records the records that are already in memory
+     * @return the column names
+     */
+    protected List<String> getHeaders(Request req, JSArray records) {
+        Collection collection = req.getCollection();
+        if (collection == null || collection.getProperties().isEmpty())
+            return scanHeaders(records);
 
-            CSVPrinter printer = new CSVPrinter(buff, CSVFormat.DEFAULT);
+        List<String> names = new ArrayList<>();
+        names.add("href");
+        for (Property property : collection.getProperties()) {
+            if (!property.isExclude())
+                names.add(property.getJsonName());
+        }
+        Chain       chain   = req.getChain();
+        Set<String> expands = chain != null ? chain.mergeEndpointActionParamsConfig("expands") : Collections.emptySet();
+        for (Relationship relationship : collection.getRelationships()) {
+            if (!relationship.isExclude() && !DbGetAction.shouldExpand(expands, "", relationship))
+                names.add(relationship.getName());
+        }
 
-            List<String> keysList = new ArrayList<>(keys);
-            for (String key : keysList) {
-                printer.print(key);
-            }
-            printer.println();
-
-            for (int i = 0; i < arr.length(); i++) {
-                for (String key : keysList) {
-                    Object val = ((JSNode) arr.get(i)).get(key);
-                    if (val != null) {
-                        printer.print(val);
-                    } else {
-                        printer.print("");
-                    }
+        if (chain != null) {
+            Set<String> includes = chain.mergeEndpointActionParamsConfig("includes");
+            Set<String> excludes = chain.mergeEndpointActionParamsConfig("excludes");
+            names.removeIf(name -> DbGetAction.exclude(name, includes, excludes));
+        }
+        return names;
+    }
+
+    protected List<String> scanHeaders(JSArray records) {
+        LinkedHashSet<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < records.length(); i++) {
+            JSNode obj = (JSNode) records.get(i);
+            if (obj != null) {
+                for (String key : obj.keySet()) {
+                    Object val = obj.get(key);
+                    if (!(val instanceof JSArray) && !(val instanceof JSNode))
+                        keys.add(key);
                 }
-                printer.println();
             }
-            printer.flush();
-            printer.close();
+        }
+        return new ArrayList<>(keys);
+    }
 
+    public String toCsv(JSArray arr) throws ApiException {
+        return toCsv(scanHeaders(arr), arr);
+    }
+
+    public String toCsv(List<String> headers, JSArray arr) throws ApiException {
+        try {
+            StringBuilder buff = new StringBuilder();
+            writeCsv(buff, headers, arr.asList(), Collections.emptyIterator());
             return buff.toString();
         } catch (Exception ex) {
             throw ApiException.new500InternalServerError(ex);
         }
     }
+
+    /**
+     * Prints the header row and then each record, first from <code>records</code> and then from <code>cursor</code>,
+     * flushing <code>out</code> every {@link #flushRows} rows.
+     *
+     * @param out     where the CSV is printed
+     * @param headers the column names
+     * @param records records already in memory
+     * @param cursor  records read one at a time as they are printed
+     * @throws IOException if printing fails
+     */
+    protected void writeCsv(Appendable out, List<String> headers, List records, Iterator<JSNode> cursor) throws IOException {
+        CSVPrinter printer = new CSVPrinter(out, CSVFormat.DEFAULT);
+        for (String key : headers) {
+            printer.print(key);
+        }
+        printer.println();
+
+        int rows = 0;
+        for (Object record : records) {
+            writeRow(printer, headers, (JSNode) record);
+            if (++rows % flushRows == 0)
+                printer.flush();
+        }
+        while (cursor.hasNext()) {
+            writeRow(printer, headers, cursor.next());
+            if (++rows % flushRows == 0)
+                printer.flush();
+        }
+        printer.flush();
+    }
+
+    void writeRow(CSVPrinter printer, List<String> headers, JSNode record) throws IOException {
+        for (String key : headers) {
+            Object val = record != null ? record.get(key) : null;
+            if (val != null && !(val instanceof JSNode)) {
+                printer.print(val);
+            } else {
+                printer.print("");
+            }
+        }
+        printer.println();
+    }
+
+    public boolean isDownload() {
+        return download;
+    }
+
+    public CsvAction withDownload(boolean download) {
+        this.download = download;
+        return this;
+    }
 }
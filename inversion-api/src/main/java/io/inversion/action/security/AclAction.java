@@ -74,17 +74,17 @@ public class AclAction extends Action<AclAction> {
             if (aclRule.ruleMatches(req)) {
                 //log.debug("Matched AclAction: " + aclRule.getName());
                 if (!aclRule.isAllow()) {
-                    Chain.debug("AclAction: MATCH_DENY" + aclRule);
+                    Chain.debug(() -> "AclAction: MATCH_DENY" + aclRule);
 
                     allowed = false;
                     break;
                 } else {
                     if (!aclRule.isInfo() && aclRule.isAllow()) {
-                        Chain.debug("AclAction: MATCH_ALLOW " + aclRule);
+                        Chain.debug(() -> "AclAction: MATCH_ALLOW " + aclRule);
                         allowed = true;
                         break;
                     } else {
-                        Chain.debug("AclAction: MATCH_INFO " + aclRule);
+                        Chain.debug(() -> "AclAction: MATCH_INFO " + aclRule);
                     }
                 }
             }
@@ -45,7 +45,7 @@ public class Order<T extends Order, P extends Query> extends Builder<T, P> {
         for (Term term : getTerms()) {
             if (term.hasToken("sort", "order")) {
                 for (Term child : term.getTerms()) {
-                    String  property = child.token;
+                    String  property = child.getToken();
                     boolean asc      = true;
                     if (property.startsWith("-")) {
                         asc = false;
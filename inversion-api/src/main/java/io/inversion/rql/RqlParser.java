@@ -19,13 +19,110 @@ package io.inversion.rql;
 import io.inversion.utils.Utils;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RqlParser {
 
+    /**
+     * The maximum number of parsed params held by {@link #parseCached(String, String)}, least recently used entries are evicted first.
+     */
+    static int cacheSize = 10000;
+
+    static final Map<String, Term> cache = new LinkedHashMap<String, Term>(256, .75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Term> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    static final AtomicLong cacheHits   = new AtomicLong();
+    static final AtomicLong cacheMisses = new AtomicLong();
+
     private RqlParser() {
     }
 
+    /**
+     * Parses the url param into a frozen Term tree that is shared with every other caller parsing the same param.
+     * <p>
+     * Clients tend to repeat a small number of query shapes so the parsed trees are held in a bounded LRU cache.
+     * The returned Term must not be modified, use {@link Term#copy()} to get a tree that can be.
+     *
+     * @param paramName  the url param name
+     * @param paramValue the url param value, may be null
+     * @return the frozen Term for the param
+     * @see #parse(String, String)
+     */
+    public static Term parseCached(String paramName, String paramValue) {
+        if (cacheSize < 1)
+            return parse(paramName, paramValue).freeze();
+
+        String key = paramValue == null ? paramName : paramName + "\u0000" + paramValue;
+
+        Term term;
+        synchronized (cache) {
+            term = cache.get(key);
+        }
+
+        if (term != null) {
+            cacheHits.incrementAndGet();
+            return term;
+        }
+
+        cacheMisses.incrementAndGet();
+        term = parse(paramName, paramValue).freeze();
+        synchronized (cache) {
+            cache.put(key, term);
+        }
+        return term;
+    }
+
+    public static int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Sets the maximum number of parsed params held by {@link #parseCached(String, String)}, zero disables caching.
+     *
+     * @param cacheSize the maximum number of cached params
+     */
+    public static void withCacheSize(int cacheSize) {
+        synchronized (cache) {
+            RqlParser.cacheSize = cacheSize;
+            cache.clear();
+        }
+    }
+
+    public static long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public static long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * @return the fraction of {@link #parseCached(String, String)} calls that were served from the cache, 0 before any calls
+     */
+    public static double getCacheHitRate() {
+        long hits  = cacheHits.get();
+        long total = hits + cacheMisses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Empties the cache and resets the hit and miss counts.
+     */
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+            cacheHits.set(0);
+            cacheMisses.set(0);
+        }
+    }
+
     public static Term parse(String paramName, String paramValue) {
         String termStr;
         if (Utils.empty(paramValue) && paramName.contains("(")) {
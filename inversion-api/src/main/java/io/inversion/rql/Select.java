@@ -65,7 +65,7 @@ public class Select<T extends Select, P extends Query> extends Builder<T, P> {
 
             StringBuilder str = new StringBuilder("in(" + col);
             for (int i = 1; i < terms.size(); i++) {
-                str.append(",").append(terms.get(i).token);
+                str.append(",").append(terms.get(i).getToken());
             }
             str.append(")");
             getParent().withTerm(str.toString());
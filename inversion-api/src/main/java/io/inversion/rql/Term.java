@@ -18,15 +18,21 @@ package io.inversion.rql;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Stream;
 
 public class Term implements Comparable<Term> {
 
-    public final List<Term> terms  = new ArrayList<>();
-    public       Term       parent = null;
-    public       char       quote  = 0;
-    public       String     token  = null;
+    private final List<Term> terms  = new ArrayList<>();
+    private       Term       parent = null;
+    private       char       quote  = 0;
+    private       String     token  = null;
+
+    /**
+     * True for shared trees, such as those cached by {@link RqlParser#parseCached(String, String)}, that must not be modified.
+     */
+    boolean frozen = false;
 
     protected Term() {
 
@@ -70,6 +76,34 @@ public class Term implements Comparable<Term> {
         return found;
     }
 
+    /**
+     * Makes this term and all of its children immutable so the tree can be shared across requests and threads.
+     * <p>
+     * Any attempt to modify a frozen term throws an UnsupportedOperationException, callers that need to
+     * change the tree should modify a {@link #copy()} instead.
+     *
+     * @return this
+     */
+    public Term freeze() {
+        frozen = true;
+        terms.forEach(Term::freeze);
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    protected void checkFrozen() {
+        if (frozen)
+            throw new UnsupportedOperationException("Frozen terms can not be modified, modify a copy() instead: " + this);
+    }
+
+    /**
+     * Creates a deep copy of this term that is never frozen.
+     *
+     * @return a modifiable copy of this term
+     */
     public Term copy() {
         Term copy = new Term();
 
@@ -134,6 +168,7 @@ public class Term implements Comparable<Term> {
     }
 
     public Term withToken(String token) {
+        checkFrozen();
         quote = 0;
         if (token != null) {
             token = token.trim();
@@ -160,6 +195,7 @@ public class Term implements Comparable<Term> {
 
     public Term withParent(Term parent) {
         if (this.parent != parent) {
+            checkFrozen();
             this.parent = parent;
             if (parent != null) {
                 parent.withTerm(this);
@@ -194,6 +230,9 @@ public class Term implements Comparable<Term> {
     }
 
     public List<Term> getTerms() {
+        if (frozen)
+            return Collections.unmodifiableList(terms);
+
         return terms;
     }
 
@@ -205,6 +244,7 @@ public class Term implements Comparable<Term> {
     }
 
     public Term replaceTerm(Term oldTerm, Term newTerm) {
+        checkFrozen();
         terms.remove(newTerm);//make sure not in there twice
 
         int idx = terms.indexOf(oldTerm);
@@ -226,6 +266,7 @@ public class Term implements Comparable<Term> {
         if (term == this)
             throw new RuntimeException("A term can not be a child of itself");
 
+        checkFrozen();
         if (!terms.contains(term)) {
             terms.add(term);
             if (term.getParent() != this)
@@ -243,6 +284,7 @@ public class Term implements Comparable<Term> {
         if (term == this)
             throw new RuntimeException("A term can not be a child of itself");
 
+        checkFrozen();
         terms.remove(term);
         terms.add(index, term);
 
@@ -253,10 +295,12 @@ public class Term implements Comparable<Term> {
     }
 
     public void removeTerm(Term term) {
+        checkFrozen();
         terms.remove(term);
     }
 
     public void clear() {
+        checkFrozen();
         terms.clear();
     }
 
@@ -45,7 +45,7 @@ public class Where<T extends Where, P extends Query> extends Builder<T, P> {
 
             List<Term> unknownCols = term.stream().filter(this::isInvalidColumn).collect(Collectors.toList());
             if (unknownCols.size() > 0) {
-                Chain.debug("Ignoring query terms with unknown columns: " + unknownCols);
+                Chain.debug(() -> "Ignoring query terms with unknown columns: " + unknownCols);
                 //System.err.println("Ignoring query terms with unknown columns: " + unknownCols);
                 return true;
             }
@@ -0,0 +1,699 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * A {@link Rows} that stores its values column by column in type specialized primitive arrays instead of in a boxed value list per Row.
+ * <p>
+ * Columns are appended to with {@link #addColumn(String, Column)} and then values are appended one column at a time
+ * with each row terminated by {@link #endRow()}.  Long, Integer, Double and Boolean columns are held in primitive
+ * arrays with a null bitmap and String columns are dictionary encoded until they prove to have too many distinct values.
+ * <p>
+ * Each Row in the list is a lightweight flyweight that reads through to the columns and boxes values only when they are accessed.
+ * A Row copies its values out of the columns the first time it is written to, after which it behaves exactly like any other Row.
+ * <p>
+ * {@link Column#write(JsonGenerator, int)} can be used to serialize values without boxing them.
+ */
+public class ColumnarRows extends Rows {
+
+    final List<Column> columns = new ArrayList<>();
+
+    /**
+     * The number of rows that have been appended to the columns
+     */
+    int length = 0;
+
+    /**
+     * Creates an empty ColumnarRows with no columns.
+     */
+    public ColumnarRows() {
+        super();
+    }
+
+    /**
+     * Chooses a column implementation based on the class of the values it will hold.
+     *
+     * @param className the fully qualified class name, generally from <code>ResultSetMetaData.getColumnClassName()</code>
+     * @return a column specialized for <code>className</code> or a generic Object column
+     */
+    public static Column newColumn(String className) {
+        if (className == null)
+            return new ObjectColumn();
+
+        switch (className) {
+            case "java.lang.Long":
+                return new LongColumn();
+            case "java.lang.Integer":
+                return new IntColumn();
+            case "java.lang.Double":
+                return new DoubleColumn();
+            case "java.lang.Boolean":
+                return new BooleanColumn();
+            case "java.lang.String":
+                return new StringColumn();
+            default:
+                return new ObjectColumn();
+        }
+    }
+
+    /**
+     * Adds a key/column, backed by <code>column</code>, at the end of the iteration order.
+     *
+     * @param key    the column name
+     * @param column the storage for the column's values
+     * @return this
+     */
+    public ColumnarRows addColumn(String key, Column column) {
+        addKey(key);
+        columns.add(column);
+        return this;
+    }
+
+    /**
+     * @param index the column number
+     * @return the storage for column <code>index</code>
+     */
+    public Column getColumn(int index) {
+        return columns.get(index);
+    }
+
+    /**
+     * @return the number of columns
+     */
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    /**
+     * Removes a key/column and its storage, rows that have not been written to are not materialized.
+     *
+     * @param key the key/column to remove
+     * @return the index the key/column had or -1 if it did not exist
+     */
+    @Override
+    public int removeKey(String key) {
+        int idx = super.removeKey(key);
+        if (idx >= 0)
+            columns.remove(idx);
+        return idx;
+    }
+
+    /**
+     * Completes the row that has been appended to the columns and adds its flyweight Row to the end of the list.
+     *
+     * @return the new last/current row
+     */
+    public Row endRow() {
+        return append(new ColumnarRow(this, length++));
+    }
+
+    /**
+     * Releases unused column capacity.
+     */
+    @Override
+    public void trimToSize() {
+        super.trimToSize();
+        for (Column column : columns)
+            column.trimToSize();
+    }
+
+    /**
+     * A flyweight Row that reads its values from its ColumnarRows' columns until the first time it is written to.
+     */
+    static class ColumnarRow extends Row {
+        final ColumnarRows rows;
+        final int          index;
+
+        ColumnarRow(ColumnarRows rows, int index) {
+            super(rows.keys, (List<Object>) null);
+            this.rows = rows;
+            this.index = index;
+        }
+
+        void materialize() {
+            if (values == null) {
+                List<Object> values = new ArrayList<>(rows.columns.size());
+                for (Column column : rows.columns)
+                    values.add(column.get(index));
+                this.values = values;
+            }
+        }
+
+        @Override
+        public int size() {
+            if (values != null)
+                return super.size();
+
+            return rows.columns.size();
+        }
+
+        @Override
+        public Object get(int index) throws ArrayIndexOutOfBoundsException {
+            if (values != null)
+                return super.get(index);
+
+            return rows.columns.get(index).get(this.index);
+        }
+
+        @Override
+        public Object get(String key) {
+            int idx = indexOf(key);
+            if (idx >= 0)
+                return get(idx);
+
+            return null;
+        }
+
+        @Override
+        public Object get(Object keyOrIndex) {
+            if (keyOrIndex == null)
+                return null;
+
+            int idx;
+            if (keyOrIndex instanceof String)
+                idx = keys.indexOf((String) keyOrIndex);
+            else
+                idx = (Integer) keyOrIndex;
+
+            if (idx < 0 || idx >= size())
+                return null;
+
+            return get(idx);
+        }
+
+        @Override
+        public boolean containsValue(Object value) {
+            for (int i = 0; i < size(); i++) {
+                Object v = get(i);
+                if (v == null && value == null)
+                    return true;
+
+                if (v != null && v.equals(value))
+                    return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Collection<Object> values() {
+            return asList();
+        }
+
+        @Override
+        public List<Object> asList() {
+            if (values != null)
+                return super.asList();
+
+            return Collections.unmodifiableList(new AbstractList<Object>() {
+                @Override
+                public Object get(int index) {
+                    return ColumnarRow.this.get(index);
+                }
+
+                @Override
+                public int size() {
+                    return ColumnarRow.this.size();
+                }
+            });
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            LinkedHashSet<Entry<String, Object>> entries = new LinkedHashSet();
+            for (int i = 0; i < keys.size(); i++)
+                entries.add(new E(keys.getKey(i), get(i)));
+
+            return entries;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder buff = new StringBuilder("{");
+            for (int i = 0; i < keys.size(); i++) {
+                buff.append(keys.getKey(i)).append("=").append(get(i));
+                if (i < keys.size() - 1)
+                    buff.append(", ");
+            }
+            buff.append("}");
+            return buff.toString();
+        }
+
+        @Override
+        public void set(int index, Object value) {
+            materialize();
+            super.set(index, value);
+        }
+
+        @Override
+        public void add(Object value) {
+            materialize();
+            super.add(value);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            materialize();
+            return super.put(key, value);
+        }
+
+        @Override
+        public Object remove(Object key) {
+            materialize();
+            return super.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            materialize();
+            super.clear();
+        }
+    }
+
+    /**
+     * Storage for the values of a single column.
+     * <p>
+     * {@link #get(int)} returns the same boxed types that <code>ResultSet.getObject()</code> would.
+     */
+    public abstract static class Column {
+        /**
+         * Marks rows that are null for the primitive column types
+         */
+        BitSet nulls = null;
+        int    size  = 0;
+
+        /**
+         * @param row the row number
+         * @return the boxed value for <code>row</code> or null
+         */
+        public abstract Object get(int row);
+
+        /**
+         * Appends a value converting it to this column's type if necessary.
+         *
+         * @param value the value to append, may be null
+         */
+        public abstract void add(Object value);
+
+        /**
+         * Writes the value for <code>row</code> to <code>json</code> without boxing it.
+         *
+         * @param json the generator to write to
+         * @param row  the row number
+         * @throws IOException if writing fails
+         */
+        public void write(JsonGenerator json, int row) throws IOException {
+            json.writeObject(get(row));
+        }
+
+        /**
+         * @return the number of values in this column
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param row the row number
+         * @return true if the value for <code>row</code> is null
+         */
+        public boolean isNull(int row) {
+            return nulls != null && nulls.get(row);
+        }
+
+        /**
+         * Appends a null value.
+         */
+        public void addNull() {
+            if (nulls == null)
+                nulls = new BitSet();
+            nulls.set(size);
+            grow();
+            size += 1;
+        }
+
+        /**
+         * Makes sure there is room to store index <code>size</code>.
+         */
+        abstract void grow();
+
+        abstract void trimToSize();
+
+        static int capacity(int length, int size) {
+            return length > size ? length : Math.max(16, length * 2);
+        }
+    }
+
+    public static class LongColumn extends Column {
+        long[] values = new long[0];
+
+        public long getLong(int row) {
+            return values[row];
+        }
+
+        public void add(long value) {
+            grow();
+            values[size++] = value;
+        }
+
+        @Override
+        public Object get(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        @Override
+        public void add(Object value) {
+            if (value == null)
+                addNull();
+            else
+                add(((Number) value).longValue());
+        }
+
+        @Override
+        public void write(JsonGenerator json, int row) throws IOException {
+            if (isNull(row))
+                json.writeNull();
+            else
+                json.writeNumber(values[row]);
+        }
+
+        @Override
+        void grow() {
+            if (values.length == size)
+                values = Arrays.copyOf(values, capacity(values.length, size));
+        }
+
+        @Override
+        void trimToSize() {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    public static class IntColumn extends Column {
+        int[] values = new int[0];
+
+        public int getInt(int row) {
+            return values[row];
+        }
+
+        public void add(int value) {
+            grow();
+            values[size++] = value;
+        }
+
+        @Override
+        public Object get(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        @Override
+        public void add(Object value) {
+            if (value == null)
+                addNull();
+            else
+                add(((Number) value).intValue());
+        }
+
+        @Override
+        public void write(JsonGenerator json, int row) throws IOException {
+            if (isNull(row))
+                json.writeNull();
+            else
+                json.writeNumber(values[row]);
+        }
+
+        @Override
+        void grow() {
+            if (values.length == size)
+                values = Arrays.copyOf(values, capacity(values.length, size));
+        }
+
+        @Override
+        void trimToSize() {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    public static class DoubleColumn extends Column {
+        double[] values = new double[0];
+
+        public double getDouble(int row) {
+            return values[row];
+        }
+
+        public void add(double value) {
+            grow();
+            values[size++] = value;
+        }
+
+        @Override
+        public Object get(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        @Override
+        public void add(Object value) {
+            if (value == null)
+                addNull();
+            else
+                add(((Number) value).doubleValue());
+        }
+
+        @Override
+        public void write(JsonGenerator json, int row) throws IOException {
+            if (isNull(row))
+                json.writeNull();
+            else
+                json.writeNumber(values[row]);
+        }
+
+        @Override
+        void grow() {
+            if (values.length == size)
+                values = Arrays.copyOf(values, capacity(values.length, size));
+        }
+
+        @Override
+        void trimToSize() {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    public static class BooleanColumn extends Column {
+        final BitSet values = new BitSet();
+
+        public boolean getBoolean(int row) {
+            return values.get(row);
+        }
+
+        public void add(boolean value) {
+            values.set(size++, value);
+        }
+
+        @Override
+        public Object get(int row) {
+            return isNull(row) ? null : values.get(row);
+        }
+
+        @Override
+        public void add(Object value) {
+            if (value == null)
+                addNull();
+            else
+                add(((Boolean) value).booleanValue());
+        }
+
+        @Override
+        public void write(JsonGenerator json, int row) throws IOException {
+            if (isNull(row))
+                json.writeNull();
+            else
+                json.writeBoolean(values.get(row));
+        }
+
+        @Override
+        void grow() {
+            //BitSet grows itself
+        }
+
+        @Override
+        void trimToSize() {
+        }
+    }
+
+    /**
+     * Dictionary encodes values, storing each distinct String once, until there are more than
+     * {@link #MAX_DICTIONARY_SIZE} distinct values after which the values are stored directly.
+     */
+    public static class StringColumn extends Column {
+        static final int MAX_DICTIONARY_SIZE = 1024;
+
+        int[]                codes      = new int[0];
+        List<String>         dictionary = new ArrayList<>();
+        Map<String, Integer> lookup     = null;
+
+        /**
+         * Used instead of codes/dictionary once the column has too many distinct values
+         */
+        String[] values = null;
+
+        /**
+         * @return true while values are dictionary encoded
+         */
+        public boolean isDictionaryEncoded() {
+            return values == null;
+        }
+
+        public String getString(int row) {
+            if (values != null)
+                return values[row];
+
+            int code = codes[row];
+            return code < 0 ? null : dictionary.get(code);
+        }
+
+        @Override
+        public Object get(int row) {
+            return getString(row);
+        }
+
+        @Override
+        public void add(Object value) {
+            String str = value == null ? null : value.toString();
+            grow();
+
+            if (values != null) {
+                values[size++] = str;
+                return;
+            }
+
+            int code = -1;
+            if (str != null) {
+                if (lookup == null) {
+                    //-- released by trimToSize()
+                    lookup = new HashMap<>();
+                    for (int i = 0; i < dictionary.size(); i++)
+                        lookup.put(dictionary.get(i), i);
+                }
+
+                Integer existing = lookup.get(str);
+                if (existing == null) {
+                    if (dictionary.size() == MAX_DICTIONARY_SIZE) {
+                        undictionary();
+                        add(value);
+                        return;
+                    }
+                    existing = dictionary.size();
+                    dictionary.add(str);
+                    lookup.put(str, existing);
+                }
+                code = existing;
+            }
+            codes[size++] = code;
+        }
+
+        @Override
+        public void addNull() {
+            add(null);
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return getString(row) == null;
+        }
+
+        @Override
+        public void write(JsonGenerator json, int row) throws IOException {
+            String str = getString(row);
+            if (str == null)
+                json.writeNull();
+            else
+                json.writeString(str);
+        }
+
+        void undictionary() {
+            String[] values = new String[Math.max(16, codes.length)];
+            for (int i = 0; i < size; i++)
+                values[i] = getString(i);
+
+            this.values = values;
+            this.codes = null;
+            this.dictionary = null;
+            this.lookup = null;
+        }
+
+        @Override
+        void grow() {
+            if (values != null) {
+                if (values.length == size)
+                    values = Arrays.copyOf(values, capacity(values.length, size));
+            } else if (codes.length == size) {
+                codes = Arrays.copyOf(codes, capacity(codes.length, size));
+            }
+        }
+
+        @Override
+        void trimToSize() {
+            if (values != null)
+                values = Arrays.copyOf(values, size);
+            else {
+                codes = Arrays.copyOf(codes, size);
+                lookup = null;
+            }
+        }
+    }
+
+    public static class ObjectColumn extends Column {
+        Object[] values = new Object[0];
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return values[row] == null;
+        }
+
+        @Override
+        public void add(Object value) {
+            grow();
+            values[size++] = value;
+        }
+
+        @Override
+        public void addNull() {
+            add(null);
+        }
+
+        @Override
+        void grow() {
+            if (values.length == size)
+                values = Arrays.copyOf(values, capacity(values.length, size));
+        }
+
+        @Override
+        void trimToSize() {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.utils;
+
+import io.inversion.ApiException;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * An immutable, precompiled form of a variablized {@link Path}.
+ * <p>
+ * Each path part is classified once when the CompiledPath is created.  Literal parts are pre lower cased,
+ * regex parts have their {@link Pattern} compiled with Pattern.CASE_INSENSITIVE and variable name bindings
+ * are sliced out so that {@link #matches(Path)} and {@link #extract(Map, Path, boolean)} never have to reparse
+ * the parts or recompile regexes.
+ * <p>
+ * Matching and extraction semantics are exactly those documented on {@link Path}.
+ *
+ * @see Path#compile()
+ */
+public final class CompiledPath {
+
+    final List<String> parts;
+    final Segment[]    segments;
+
+    /**
+     * Compiles the current parts of <code>path</code>.  Later modifications to <code>path</code> are not reflected here.
+     *
+     * @param path the variablized path to compile
+     */
+    public CompiledPath(Path path) {
+        this.parts = Collections.unmodifiableList(path.parts());
+        this.segments = new Segment[parts.size()];
+        for (int i = 0; i < segments.length; i++)
+            segments[i] = new Segment(parts.get(i), i == segments.length - 1);
+    }
+
+    /**
+     * @return the number of parts in the path
+     */
+    public int size() {
+        return segments.length;
+    }
+
+    /**
+     * @param index the index of the part to get
+     * @return the classified path part at <code>index</code> or null if <code>index</code> is out of bounds
+     */
+    public Segment getSegment(int index) {
+        if (index < segments.length)
+            return segments[index];
+        return null;
+    }
+
+    /**
+     * Convenience overloading of {@link #matches(Path, int)} with an offset of 0.
+     *
+     * @param concretePath the path to match against
+     * @return true if this path matches <code>concretePath</code>
+     * @see Path#matches(Path)
+     */
+    public boolean matches(Path concretePath) {
+        return matches(concretePath, 0);
+    }
+
+    /**
+     * Checks if this path is a case insensitive match, including any optional rules, wildcards, and regexes,
+     * to the parts of <code>concretePath</code> starting at <code>offset</code>.
+     *
+     * @param concretePath the path to match against
+     * @param offset       the index of the first part of <code>concretePath</code> to consider
+     * @return true if this path matches the parts of <code>concretePath</code> from <code>offset</code> on
+     * @see Path#matches(Path)
+     */
+    public boolean matches(Path concretePath, int offset) {
+        int size = concretePath.size() - offset;
+
+        if (segments.length < size && !(segments.length > 0 && segments[segments.length - 1].wildcard))
+            return false;
+
+        for (int i = 0; i < segments.length; i++) {
+            Segment segment = segments[i];
+
+            if (segment.wildcard)
+                return true;
+
+            if (i == size)
+                return segment.optional;
+
+            if (!segment.matches(concretePath.get(offset + i)))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Equivalent of {@link Path#extract(Map, Path, boolean)} that consumes the matched parts from the front of <code>matchingConcretePath</code>.
+     *
+     * @param params               the map to add extracted name/value pairs to
+     * @param matchingConcretePath the path to extract from
+     * @param greedy               if extraction should consume through optional path parts
+     * @return a new Path containing the parts that were consumed from <code>matchingConcretePath</code>
+     * @see Path#extract(Map, Path, boolean)
+     */
+    public Path extract(Map params, Path matchingConcretePath, boolean greedy) {
+        int consumed = extract(params, matchingConcretePath, 0, greedy);
+
+        Path matchedPath = new Path();
+        for (int i = 0; i < consumed; i++)
+            matchedPath.add(matchingConcretePath.remove(0));
+
+        return matchedPath;
+    }
+
+    /**
+     * Offset based equivalent of {@link Path#extract(Map, Path, boolean)} that does not modify <code>concretePath</code>.
+     *
+     * @param params       the map to add extracted name/value pairs to
+     * @param concretePath the path to extract from
+     * @param offset       the index of the first part of <code>concretePath</code> to consider
+     * @param greedy       if extraction should consume through optional path parts
+     * @return the index of the first part of <code>concretePath</code> that was not consumed
+     */
+    public int extract(Map params, Path concretePath, int offset, boolean greedy) {
+        boolean restOptional = false;
+        int     nextOptional = 0;
+        int     pos          = offset;
+        int     i;
+        for (i = 0; i < segments.length && pos < concretePath.size(); i++) {
+            Segment segment = segments[i];
+
+            if (segment.optional)
+                restOptional = true;
+
+            if (segment.star)
+                break;
+
+            String theirPart;
+
+            if (greedy || !restOptional) {
+                theirPart = concretePath.get(pos++);
+            } else {
+                theirPart = concretePath.get(pos + nextOptional++);
+            }
+
+            if (segment.name != null) {
+                if (segment.pattern != null && (theirPart == null || !segment.pattern.matcher(theirPart).matches()))
+                    throw ApiException.new500InternalServerError("Attempting to extract values from an unmatched path: '{}', '{}'", parts.toString(), concretePath.subpath(pos, concretePath.size()).toString());
+
+                params.put(segment.name, theirPart);
+            } else if (!segment.part.equalsIgnoreCase(theirPart)) {
+                throw ApiException.new500InternalServerError("Attempting to extract values from an unmatched path: '{}', '{}'", parts.toString(), concretePath.subpath(pos, concretePath.size()).toString());
+            }
+        }
+
+        //null out any trailing vars
+        for (; i < segments.length; i++) {
+            String var = segments[i].varName;
+            if (var != null)
+                params.put(var, null);
+        }
+
+        return pos;
+    }
+
+    public String toString() {
+        return Utils.implode("/", parts);
+    }
+
+    /**
+     * A single pre classified path part.
+     */
+    public static final class Segment {
+        final String  part;
+        final String  lc;
+        final boolean optional;
+        final boolean wildcard;
+        final boolean star;
+        final boolean var;
+        final String  name;
+        final String  varName;
+        final Pattern pattern;
+
+        Segment(String part, boolean last) {
+            boolean bracket = part.startsWith("[") && part.length() > 1;
+
+            String varPart = bracket ? part.substring(1).trim() : part;
+            this.var = varPart.length() > 0 && (varPart.charAt(0) == '$' || varPart.charAt(0) == ':' || varPart.charAt(0) == '{');
+
+            String varName = null;
+            varPart = bracket ? part.substring(1, part.length() - 1).trim() : part;
+            int colon = varPart.indexOf(":");
+            if (colon == 0)
+                varName = varPart.substring(1).trim();
+            else if (varPart.startsWith("{") && colon > 1)
+                varName = varPart.substring(1, colon).trim();
+            this.varName = varName;
+
+            this.wildcard = last && part.equals("*");
+            this.optional = part.startsWith("[") && part.endsWith("]");
+            if (optional)
+                part = part.substring(1, part.length() - 1);
+
+            this.part = part;
+            this.lc = part.toLowerCase();
+            this.star = part.equals("*");
+
+            String  name    = null;
+            Pattern pattern = null;
+            if (part.startsWith(":")) {
+                name = part.substring(1).trim();
+            } else if ((part.startsWith("{") || part.startsWith("${")) && part.endsWith("}")) {
+                int nameStart = part.indexOf("{") + 1;
+                int endName   = part.indexOf(":");
+                if (endName < 0)
+                    endName = part.length() - 1;
+
+                name = part.substring(nameStart, endName).trim();
+
+                if (endName < part.length() - 1) {
+                    String regex = part.substring(endName + 1, part.length() - 1);
+                    pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+                }
+            }
+            this.name = name;
+            this.pattern = pattern;
+        }
+
+        /**
+         * @return the path part with any optional '[]' brackets removed
+         */
+        public String getPart() {
+            return part;
+        }
+
+        /**
+         * @return the lower case form of {@link #getPart()}
+         */
+        public String getLowerCase() {
+            return lc;
+        }
+
+        /**
+         * @return true if the part was wrapped in '[]'
+         */
+        public boolean isOptional() {
+            return optional;
+        }
+
+        /**
+         * @return true if this is a '*' that is the last part of the path, it will match any number of remaining parts including none
+         */
+        public boolean isWildcard() {
+            return wildcard;
+        }
+
+        /**
+         * @return true if this is a '*', even if it is not the last part.  Extraction stops when it reaches one.
+         */
+        public boolean isStar() {
+            return star;
+        }
+
+        /**
+         * @return true if this part will match any value or a regex instead of a literal string
+         */
+        public boolean isDynamic() {
+            return name != null;
+        }
+
+        /**
+         * @return true under the same conditions as {@link Path#isVar(int)}
+         */
+        public boolean isVar() {
+            return var;
+        }
+
+        /**
+         * @return the name that matched values are bound to by a ':name', '{name:regex}' or '${name:regex}' part
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the var name as returned by {@link Path#getVarName(int)}
+         */
+        public String getVarName() {
+            return varName;
+        }
+
+        /**
+         * @return the precompiled regex or null if this part does not have one
+         */
+        public Pattern getPattern() {
+            return pattern;
+        }
+
+        /**
+         * Matches a single concrete path part against this part ignoring the optional flag.
+         *
+         * @param theirPart the concrete path part
+         * @return true if <code>theirPart</code> matches
+         */
+        public boolean matches(String theirPart) {
+            if (name == null)
+                return part.equalsIgnoreCase(theirPart);
+
+            return pattern == null || pattern.matcher(theirPart).matches();
+        }
+
+        public String toString() {
+            return part;
+        }
+    }
+}
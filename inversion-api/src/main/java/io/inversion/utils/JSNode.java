@@ -19,13 +19,16 @@ package io.inversion.utils;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.flipkart.zjsonpatch.JsonDiff;
 import com.flipkart.zjsonpatch.JsonPatch;
 import io.inversion.ApiException;
 
-import java.io.ByteArrayOutputStream;
+import java.io.*;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.*;
@@ -60,12 +63,25 @@ import java.util.stream.Stream;
  * @see <a href="https://github.com/flipkart-incubator/zjsonpatch">JSONPatch</a>
  */
 public class JSNode implements Map<String, Object> {
+
+    /**
+     * Jackson factories are thread safe and expensive to create relative to the parsers/generators they vend
+     * so a single instance is shared by every parse and print.
+     */
+    static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    /**
+     * Shared, never reconfigured, mapper used only to hand documents to the JSONPatch library.
+     */
+    static final ObjectMapper JSON_MAPPER = new ObjectMapper(JSON_FACTORY);
+
     /**
-     * Maps the lower case JSProperty.name to the property for case
-     * insensitive lookup with the ability to preserve the original
-     * case.
+     * Holds the properties in insertion order for case insensitive
+     * lookup with the ability to preserve the original case.
      */
-    LinkedHashMap<String, JSProperty> properties = new LinkedHashMap<>();
+    JSPropertyMap properties = new JSPropertyMap();
 
     /**
      * Creates an empty JSNode.
@@ -99,19 +115,19 @@ public class JSNode implements Map<String, Object> {
     /**
      * Turns a JSON string in to JSNode (maps), JSArray (lists), String numbers and booleans.
      * <p>
-     * Jackson is the underlying parser
+     * Jackson is the underlying parser but tokens are read straight into JSNode/JSArray
+     * without first building an intermediate Jackson tree.
      *
      * @param json the json string to parse
      * @return a String, number, boolean, JSNode or JSArray
      */
     public static Object parseJson(String json) {
-        try {
-            ObjectMapper mapper   = new ObjectMapper();
-            JsonNode     rootNode = mapper.readValue(json, JsonNode.class);
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            JsonToken token = parser.nextToken();
+            if (token == null)
+                throw new IOException("No content to map due to end-of-input");
 
-            Object parsed = JSNode.mapNode(rootNode);
-
-            return parsed;
+            return readJson(parser, token, 1, -1);
         } catch (Exception ex) {
             String msg = "Error parsing JSON:" + ex.getMessage();
 
@@ -123,6 +139,126 @@ public class JSNode implements Map<String, Object> {
         }
     }
 
+    /**
+     * Convenience overloading of {@link #parseJson(InputStream, long, int)} with no size or depth limits.
+     *
+     * @param in the json stream to parse
+     * @return a String, number, boolean, JSNode or JSArray
+     * @throws ApiException 400 if the stream is not valid json
+     */
+    public static Object parseJson(InputStream in) throws ApiException {
+        return parseJson(in, -1, -1);
+    }
+
+    /**
+     * Streams a json document from <code>in</code> straight into JSNode/JSArray token by token without first
+     * buffering it as a String or building an intermediate Jackson tree.
+     * <p>
+     * The result is the same as {@link #parseJson(String)} would produce for the same document.  <code>in</code> is not closed.
+     *
+     * @param in       the json stream to parse
+     * @param maxBytes the maximum number of bytes to read from <code>in</code>, values less than 1 disable the limit
+     * @param maxDepth the maximum object/array nesting depth, values less than 1 disable the limit
+     * @return a String, number, boolean, JSNode or JSArray, or null if the stream is empty
+     * @throws ApiException 413 if <code>maxBytes</code> is exceeded or 400 if <code>maxDepth</code> is exceeded or the stream is not valid json
+     */
+    public static Object parseJson(InputStream in, long maxBytes, int maxDepth) throws ApiException {
+        in = Utils.limit(in, maxBytes);
+
+        try {
+            JsonParser parser = JSON_FACTORY.createParser(in);
+
+            JsonToken token = parser.nextToken();
+            if (token == null)
+                return null;
+
+            return readJson(parser, token, 1, maxDepth);
+        } catch (JsonProcessingException ex) {
+            throw ApiException.new400BadRequest("Unparsable JSON body: {}", ex.getOriginalMessage());
+        } catch (IOException ex) {
+            throw ApiException.new400BadRequest(ex, "Unable to read request body");
+        }
+    }
+
+    static Object readJson(JsonParser parser, JsonToken token, int depth, int maxDepth) throws IOException {
+        switch (token) {
+            case START_OBJECT: {
+                if (maxDepth > 0 && depth > maxDepth)
+                    throw ApiException.new400BadRequest("JSON body exceeds the maximum nesting depth of {}", maxDepth);
+
+                JSNode node = new JSNode();
+                String name;
+                while ((name = parser.nextFieldName()) != null)
+                    node.put(name, readJson(parser, parser.nextToken(), depth + 1, maxDepth));
+                return node;
+            }
+            case START_ARRAY: {
+                if (maxDepth > 0 && depth > maxDepth)
+                    throw ApiException.new400BadRequest("JSON body exceeds the maximum nesting depth of {}", maxDepth);
+
+                JSArray array = new JSArray();
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY)
+                    array.add(readJson(parser, token, depth + 1, maxDepth));
+                return array;
+            }
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            default:
+                throw new JsonParseException(parser, "Unexpected token " + token);
+        }
+    }
+
+    /**
+     * Fails with a 413 once more than <code>maxBytes</code> have been read.
+     */
+    static class LimitedInputStream extends FilterInputStream {
+        final long maxBytes;
+        long count = 0;
+
+        LimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b > -1)
+                count(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0)
+                count(read);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        void count(long read) {
+            count += read;
+            if (count > maxBytes)
+                throw ApiException.new413PayloadTooLarge("The request body exceeds the maximum size of {} bytes", maxBytes);
+        }
+    }
+
     /**
      * Utility overloading of {@link #parseJson(String)} to cast the return as a JSNode
      *
@@ -147,16 +283,23 @@ public class JSNode implements Map<String, Object> {
 
     static String toJson(JSNode node, boolean pretty, boolean lowercasePropertyNames) {
         try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            JsonGenerator         json = new JsonFactory().createGenerator(baos);
+            StringWriter out = new StringWriter();
+            JSNode.writeJson(node, JSON_FACTORY.createGenerator(out), pretty, lowercasePropertyNames);
+            return out.toString();
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    static void writeJson(JSNode node, JsonGenerator json, boolean pretty, boolean lowercasePropertyNames) throws IOException {
+        try {
             if (pretty)
                 json.useDefaultPrettyPrinter();
 
             JSNode.writeNode(node, json, new HashMap<>(), lowercasePropertyNames, "#");
             json.flush();
-            baos.flush();
-
-            return new String(baos.toByteArray());
+        } catch (IOException | RuntimeException ex) {
+            throw ex;
         } catch (Exception ex) {
             throw new RuntimeException(ex);
         }
@@ -227,8 +370,7 @@ public class JSNode implements Map<String, Object> {
         if (href != null)
             json.writeStringField("href", href.getValue() + "");
 
-        for (String key : node.keySet()) {
-            JSProperty p = node.getProperty(key);
+        for (JSProperty p : node.properties) {
             if (p == href)
                 continue;
 
@@ -451,239 +593,30 @@ public class JSNode implements Map<String, Object> {
      * @see <a href="https://github.com/json-path/JsonPath">JSON Path</a>
      */
     public JSArray findAll(String pathExpression, int qty) {
-        pathExpression = fromJsonPointer(pathExpression);
-        pathExpression = fromJsonPath(pathExpression);
-        return new JSArray(findAll0(pathExpression, qty, new ArrayList(), new HashMap()));
+        return JSPath.cached(pathExpression).findAll(this, qty);
     }
 
-    List findAll0(String pathExpression, int qty, List collected, HashMap<String, Set<JSNode>> visited) {
-        JSONPathTokenizer tok = new JSONPathTokenizer(//
-                "['\"", //openQuoteStr
-                "]'\"", //closeQuoteStr
-                "]", //breakIncludedChars
-                ".", //breakExcludedChars
-                "", //unquotedIgnoredChars
-                ". \t", //leadingIgnoredChars
-                pathExpression //chars
-        );
-
-        List<String> path = tok.asList();
-        return findAll0(path, qty, collected, visited);
+    /**
+     * Normalizes and tokenizes <code>pathExpression</code> once so it can be applied to any number of documents without reparsing.
+     *
+     * @param pathExpression a JSON Pointer, JSONPath or 'dot and wildcard' path expression as described on {@link #findAll(String, int)}
+     * @return the immutable compiled path
+     * @see #findAll(JSPath, int)
+     */
+    public static JSPath compilePath(String pathExpression) {
+        return JSPath.compile(pathExpression);
     }
 
-
-    List findAll0(List<String> path, int qty, List collected, HashMap<String, Set<JSNode>> visited) {
-
-        //-- infinite recursion protection
-        //-- you can visit a path more than once trying different parts of the search path
-        //-- but you can only visit a node once for any given permutation of the path.
-        String pathStr = path.toString();
-        Set old = visited.get(pathStr);
-        if(old == null){
-            old = new HashSet();
-            visited.put(pathStr, old);
-        }
-        if(old.contains(this))
-            return collected;
-        old.add(this);
-        //-- end infinite recursion protection
-
-
-        if (qty > 1 && collected.size() >= qty)
-            return collected;
-
-        String nextSegment = path.get(0);
-
-        if ("*".equals(nextSegment)) {
-            if (path.size() == 1) {
-                Collection values = values();
-
-                for (Object value : values) {
-                    if (!collected.contains(value) && (qty < 1 || collected.size() < qty))
-                        collected.add(value);
-                }
-            } else {
-                List<String> nextPath = path.subList(1, path.size());
-                for (Object value : values()) {
-                    if (value instanceof JSNode) {
-                        ((JSNode) value).findAll0(nextPath, qty, collected, visited);
-                    }
-                }
-            }
-        } else if ("**".equals(nextSegment)) {
-            if (path.size() != 1) {
-                List<String> nextPath = path.subList(1, path.size());
-                this.findAll0(nextPath, qty, collected, visited);
-                for (Object value : values()) {
-                    if (value instanceof JSNode) {
-                        ((JSNode) value).findAll0(path, qty, collected, visited);
-                    }
-                }
-            }
-        }
-        //      else if (this instanceof JSArray && nextSegment.startsWith("[") && nextSegment.endsWith("]"))
-        else if (nextSegment.startsWith("[") && nextSegment.endsWith("]")) {
-            //this is a JSONPath filter that is not just an array index
-            String expr = nextSegment.substring(1, nextSegment.length() - 1).trim();
-            if (expr.startsWith("?(") && expr.endsWith(")")) {
-                JSONPathTokenizer tokenizer = new JSONPathTokenizer(//
-                        "'\"", //openQuoteStr
-                        "'\"", //closeQuoteStr
-                        "?=<>!", //breakIncludedChars...breakAfter
-                        "]=<>! ", //breakExcludedChars...breakBefore
-                        "[()", //unquotedIgnoredChars
-                        "]. \t", //leadingIgnoredChars
-                        expr);
-
-                String token;
-                String func    = null;
-                String subpath = null;
-                String op      = null;
-                String value   = null;
-
-                //-- Choices after tokenization
-                //-- $..book[2]  -> 2
-                //-- $..book[author] -> author
-                //-- $..book[(@.length-1)] -> @_length-1
-                //-- $..book[-1:] -> -1:
-                //-- $..book[0,1] -> 0,1
-                //-- $..book[:2] -> :2
-                //-- $..book[?(@.isbn)] -> ? @_isbn
-                //-- $..book[?(@.price<10)] -> ?
-
-
-                while ((token = tokenizer.next()) != null) {
-                    if (token.equals("?")) {
-                        func = "?";
-                        continue;
-                    }
-
-                    if (token.startsWith("@_")) {
-                        subpath = token.substring(2);
-                    } else if (Utils.in(token, "=", ">", "<", "!")) {
-                        if (op == null)
-                            op = token;
-                        else
-                            op += token;
-                    } else if (subpath != null && op != null && value == null) {
-                        value = token;
-
-                        if (isArray()) {
-                            for (Object child : values()) {
-                                if (child instanceof JSNode) {
-                                    List found = ((JSNode) child).findAll0(subpath, -1, new ArrayList(), visited);
-                                    for (Object val : found) {
-                                        if (eval(val, op, value)) {
-                                            if (!collected.contains(child) && (qty < 1 || collected.size() < qty))
-                                                collected.add(child);
-                                        }
-                                    }
-                                }
-                            }
-                        } else {
-                            List found = findAll0(subpath, -1, new ArrayList(), visited);
-                            for (Object val : found) {
-                                if (eval(val, op, value)) {
-                                    if (!collected.contains(this) && (qty < 1 || collected.size() < qty)) {
-                                        collected.add(this);
-                                        break;
-                                    }
-                                }
-                            }
-                        }
-
-                        func = null;
-                        subpath = null;
-                        op = null;
-                        value = null;
-                    }
-                }
-                //$..book[?(@.isbn)] -- checks for the existence of a property
-                if ("?".equals(func) && subpath != null) {
-                    if (op != null || value != null) {
-                        //unparseable...do nothing
-                    }
-
-                    if (isArray()) {
-                        for (Object child : values()) {
-                            if (child instanceof JSNode) {
-                                List found = ((JSNode) child).findAll0(subpath, -1, new ArrayList(), visited);
-                                for (Object val : found) {
-                                    if (!collected.contains(child) && (qty < 1 || collected.size() < qty))
-                                        collected.add(child);
-                                }
-                            }
-                        }
-                    } else {
-                        List found = findAll0(subpath, -1, new ArrayList(), visited);
-                        if (found.size() > 0) {
-                            if (!collected.contains(this) && (qty < 1 || collected.size() < qty))
-                                collected.add(this);
-                        }
-                    }
-                }
-            }
-            else
-            {
-                //-- $..book[(@.length-1)] -> @_length-1
-                //-- $..book[-1:] -> -1:
-                //-- $..book[0,1] -> 0,1
-                //-- $..book[:2] -> :2
-                if(isArray()) {
-
-                    int length = ((JSArray)this).length();
-
-                    List found = new ArrayList();
-                    if (expr.startsWith("(@_length-")) {
-                        int index = Integer.parseInt(expr.substring(expr.indexOf("-") + 1, expr.length()-1).trim());
-                        if (length - index > 0) {
-                            found.add(get(length - index));
-                        }
-                    } else if (expr.startsWith(":")) {
-                        int count = Integer.parseInt(expr.substring(1).trim());
-                        for (int i = 0; i < length && i < count; i++) {
-                            found.add(get(count));
-                        }
-                    } else if (expr.endsWith(":")) {
-                        int idx = Integer.parseInt(expr.substring(0, expr.length() - 1).trim()) * -1;
-                        if(idx <= length)
-                            found.add(get(length - idx));
-                    } else {
-                        int start = Integer.parseInt(expr.substring(0, expr.indexOf(":")).trim());
-                        int end   = Integer.parseInt(expr.substring(expr.indexOf(":") + 1).trim());
-                        for (int i = start; i <= end && i < length; i++){
-                            found.add(get(i));
-                        }
-                    }
-                    if(found.size() > 0) {
-                        if(path.size() > 1) {
-                            List<String> nextPath = path.subList(1, path.size());
-                        }
-                        else {
-                            collected.addAll(found);
-                        }
-                    }
-                }
-            }
-
-        } else {
-            Object found = null;
-            try {
-                found = get(nextSegment);
-            } catch (NumberFormatException ex) {
-                //trying to access an array with a prop name...ignore
-            }
-            if (found != null) {
-                if (path.size() == 1) {
-                    if (!collected.contains(found) && (qty < 1 || collected.size() < qty))
-                        collected.add(found);
-                } else if (found instanceof JSNode) {
-                    ((JSNode) found).findAll0(path.subList(1, path.size()), qty, collected, visited);
-                }
-            }
-        }
-
-        return collected;
+    /**
+     * Compiled path equivalent of {@link #findAll(String, int)}.
+     *
+     * @param path the compiled path expression
+     * @param qty  the maximum number of results
+     * @return an array of found values
+     * @see #compilePath(String)
+     */
+    public JSArray findAll(JSPath path, int qty) {
+        return path.findAll(this, qty);
     }
 
     boolean eval(Object var, String op, Object value) {
@@ -692,6 +625,8 @@ public class JSNode implements Map<String, Object> {
         if (var instanceof Number) {
             try {
                 value = Double.parseDouble(value.toString());
+                //-- Integer/Long values can not compareTo a Double
+                var = ((Number) var).doubleValue();
             } catch (Exception ex) {
                 //ok, value was not a number...ignore
             }
@@ -726,12 +661,12 @@ public class JSNode implements Map<String, Object> {
     }
 
     public JSArray diff(JSNode source) {
-        ObjectMapper mapper = new ObjectMapper();
+        ObjectMapper mapper = JSON_MAPPER;
 
         JsonNode patch;
         try {
             patch = JsonDiff.asJson(mapper.readValue(source.toString(), JsonNode.class), mapper.readValue(this.toString(), JsonNode.class));
-            JSArray patchesArray = JSNode.parseJsonArray(patch.toPrettyString());
+            JSArray patchesArray = (JSArray) JSNode.mapNode(patch);
             return patchesArray;
         } catch (Exception e) {
             e.printStackTrace();
@@ -757,11 +692,11 @@ public class JSNode implements Map<String, Object> {
             }
         }
 
-        ObjectMapper mapper = new ObjectMapper();
+        ObjectMapper mapper = JSON_MAPPER;
 
         try {
             JsonNode target  = JsonPatch.apply(mapper.readValue(patches.toString(), JsonNode.class), mapper.readValue(this.toString(), JsonNode.class));
-            JSNode   patched = JSNode.parseJsonNode(target.toString());
+            JSNode   patched = (JSNode) JSNode.mapNode(target);
 
             this.properties = patched.properties;
             if (this.isArray()) {
@@ -776,7 +711,7 @@ public class JSNode implements Map<String, Object> {
         if (name == null)
             return null;
 
-        return this.properties.get(name.toLowerCase());
+        return this.properties.get(name);
     }
 
     @Override
@@ -1004,6 +939,21 @@ public class JSNode implements Map<String, Object> {
         return null;
     }
 
+    /**
+     * Compiled path equivalent of {@link #find(String)}.
+     *
+     * @param path the compiled path expression
+     * @return the first item found at <code>path</code>
+     * @see #compilePath(String)
+     */
+    public Object find(JSPath path) {
+        JSArray found = findAll(path, 1);
+        if (found.size() > 0)
+            return found.get(0);
+
+        return null;
+    }
+
     /**
      * Convenience overloading of {@link #findAll(String, int)}
      *
@@ -1015,6 +965,17 @@ public class JSNode implements Map<String, Object> {
         return findAll(pathExpression, -1);
     }
 
+    /**
+     * Compiled path equivalent of {@link #findAll(String)}.
+     *
+     * @param path the compiled path expression
+     * @return all items found for <code>path</code>
+     * @see #compilePath(String)
+     */
+    public JSArray findAll(JSPath path) {
+        return findAll(path, -1);
+    }
+
     /**
      * Convenience overloading of {@link #findAll(String, int)}
      *
@@ -1029,7 +990,7 @@ public class JSNode implements Map<String, Object> {
 
     @Override
     public Object put(String name, Object value) {
-        JSProperty prop = properties.put(name.toLowerCase(), new JSProperty(name, value));
+        JSProperty prop = properties.put(new JSProperty(name, value));
         return prop;
     }
 
@@ -1048,13 +1009,7 @@ public class JSNode implements Map<String, Object> {
      * @return the previous value of the property if it exists or null
      */
     public Object putFirst(String name, Object value) {
-        LinkedHashMap<String, JSProperty> temp = new LinkedHashMap();
-        temp.put(name.toLowerCase(), new JSProperty(name, value));
-
-        JSProperty prop = this.properties.remove(name.toLowerCase());
-        temp.putAll(this.properties);
-        this.properties = temp;
-
+        JSProperty prop = this.properties.putFirst(new JSProperty(name, value));
         return prop;
     }
 
@@ -1085,7 +1040,7 @@ public class JSNode implements Map<String, Object> {
         if (name == null)
             return false;
 
-        return properties.containsKey(name.toString().toLowerCase());
+        return properties.containsKey(name.toString());
     }
 
     @Override
@@ -1115,10 +1070,8 @@ public class JSNode implements Map<String, Object> {
 
     @Override
     public Set<String> keySet() {
-        //properties.getKeySet contains the lower case versions.
         LinkedHashSet keys = new LinkedHashSet();
-        for (String key : properties.keySet()) {
-            JSProperty p = getProperty(key);
+        for (JSProperty p : properties) {
             keys.add(p.getName());
         }
         return keys;
@@ -1130,20 +1083,16 @@ public class JSNode implements Map<String, Object> {
     }
 
     List<JSProperty> getProperties() {
-        return new ArrayList(properties.values());
+        return Arrays.asList(properties.toArray());
     }
 
     JSProperty removeProperty(String name) {
-        JSProperty property = getProperty(name.toLowerCase());
-        if (property != null)
-            properties.remove(name.toLowerCase());
-
-        return property;
+        return properties.remove(name);
     }
 
     public Map<? extends String, ? extends Object> asMap() {
         Map map = new LinkedHashMap();
-        for (JSProperty p : properties.values()) {
+        for (JSProperty p : properties) {
             String name  = p.name;
             Object value = p.value;
             map.put(name, value);
@@ -1164,14 +1113,7 @@ public class JSNode implements Map<String, Object> {
      * Changes the property name iteration order from insertion order to alphabetic order.
      */
     public void sortKeys() {
-        List<String> keys = new ArrayList(properties.keySet());
-        Collections.sort(keys);
-
-        LinkedHashMap<String, JSProperty> newProps = new LinkedHashMap();
-        for (String key : keys) {
-            newProps.put(key, getProperty(key));
-        }
-        properties = newProps;
+        properties.sortKeys();
     }
 
     /**
@@ -1213,6 +1155,71 @@ public class JSNode implements Map<String, Object> {
         return JSNode.toJson(this, pretty, lowercasePropertyNames);
     }
 
+    /**
+     * Streams the UTF-8 json representation of this node to <code>out</code> without first building the whole document as a String.
+     * <p>
+     * The output is identical to {@link #toString(boolean, boolean)}.  <code>out</code> is flushed but not closed.
+     *
+     * @param out                    the stream to write to
+     * @param pretty                 should spaces and carriage returns be added to the doc for readability
+     * @param lowercasePropertyNames when true all property names are printed in lower case instead of their original case
+     * @throws IOException if writing to <code>out</code> fails
+     */
+    public void write(OutputStream out, boolean pretty, boolean lowercasePropertyNames) throws IOException {
+        JSNode.writeJson(this, JSON_FACTORY.createGenerator(out), pretty, lowercasePropertyNames);
+    }
+
+    /**
+     * Streams the json representation of this node to <code>out</code> without first building the whole document as a String.
+     * <p>
+     * The output is identical to {@link #toString(boolean, boolean)}.  <code>out</code> is flushed but not closed.
+     *
+     * @param out                    the writer to write to
+     * @param pretty                 should spaces and carriage returns be added to the doc for readability
+     * @param lowercasePropertyNames when true all property names are printed in lower case instead of their original case
+     * @throws IOException if writing to <code>out</code> fails
+     */
+    public void write(Writer out, boolean pretty, boolean lowercasePropertyNames) throws IOException {
+        JSNode.writeJson(this, JSON_FACTORY.createGenerator(out), pretty, lowercasePropertyNames);
+    }
+
+    /**
+     * Writes this node as the next value of a document that is being assembled by the caller.
+     * <p>
+     * This lets callers interleave JSNodes with content that is not held in memory, such as records read from a cursor.
+     * <code>json</code> is not flushed.
+     *
+     * @param json                   the generator to write to
+     * @param lowercasePropertyNames when true all property names are printed in lower case instead of their original case
+     * @throws IOException if writing to <code>json</code> fails
+     * @see #createGenerator(OutputStream)
+     */
+    public void write(JsonGenerator json, boolean lowercasePropertyNames) throws IOException {
+        try {
+            JSNode.writeNode(this, json, new HashMap<>(), lowercasePropertyNames, "#");
+        } catch (IOException | RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * @param out the stream to write to
+     * @return a new generator from the shared factory that does not close <code>out</code>
+     */
+    public static JsonGenerator createGenerator(OutputStream out) throws IOException {
+        return JSON_FACTORY.createGenerator(out);
+    }
+
+    /**
+     * @param out the writer to write to
+     * @return a new generator from the shared factory that does not close <code>out</code>
+     */
+    public static JsonGenerator createGenerator(Writer out) throws IOException {
+        return JSON_FACTORY.createGenerator(out);
+    }
+
     /**
      * @return the number of properties on this node.
      */
@@ -1244,7 +1251,7 @@ public class JSNode implements Map<String, Object> {
         if (value == null)
             return false;
 
-        for (JSProperty prop : properties.values())
+        for (JSProperty prop : properties)
             if (value.equals(prop.getValue()))
                 return true;
 
@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.utils;
+
+import io.inversion.utils.JSNode.JSONPathTokenizer;
+
+import java.util.*;
+
+/**
+ * An immutable, precompiled, JSON Pointer / JSONPath / 'dot and wildcard' path expression.
+ * <p>
+ * The expression is normalized and tokenized once when it is compiled and JSONPath filter
+ * expressions such as <code>[?(@.price &lt; 10)]</code> are pre parsed into predicates so
+ * that the path can be applied to any number of documents without reparsing.
+ * <p>
+ * Search semantics are exactly those documented on {@link JSNode#findAll(String, int)}.
+ *
+ * @see JSNode#compilePath(String)
+ */
+public final class JSPath {
+
+    /**
+     * String based finds are cached up to this many distinct expressions, least recently used expressions are evicted first.
+     */
+    static final int MAX_CACHE_SIZE = 1000;
+
+    static final Map<String, JSPath> cache = new LinkedHashMap<String, JSPath>(256, .75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, JSPath> eldest) {
+            return size() > MAX_CACHE_SIZE;
+        }
+    };
+
+    final String expression;
+    final Step[] steps;
+
+    JSPath(String expression, List<String> segments) {
+        this.expression = expression;
+        this.steps = new Step[segments.size()];
+        for (int i = 0; i < steps.length; i++)
+            steps[i] = new Step(segments.get(i));
+    }
+
+    /**
+     * Normalizes and compiles <code>expression</code>.
+     *
+     * @param expression a JSON Pointer, JSONPath or 'dot and wildcard' path expression
+     * @return the compiled path
+     * @see JSNode#findAll(String, int)
+     */
+    public static JSPath compile(String expression) {
+        String path = JSNode.fromJsonPath(JSNode.fromJsonPointer(expression));
+        return new JSPath(expression, tokenize(path));
+    }
+
+    /**
+     * Compiles <code>expression</code> or returns a previously compiled instance from a bounded cache.
+     *
+     * @param expression a JSON Pointer, JSONPath or 'dot and wildcard' path expression
+     * @return the compiled path
+     */
+    static JSPath cached(String expression) {
+        JSPath path;
+        synchronized (cache) {
+            path = cache.get(expression);
+        }
+
+        if (path == null) {
+            path = compile(expression);
+            synchronized (cache) {
+                cache.put(expression, path);
+            }
+        }
+        return path;
+    }
+
+    static List<String> tokenize(String path) {
+        return new JSONPathTokenizer(//
+                "['\"", //openQuoteStr
+                "]'\"", //closeQuoteStr
+                "]", //breakIncludedChars
+                ".", //breakExcludedChars
+                "", //unquotedIgnoredChars
+                ". \t", //leadingIgnoredChars
+                path //chars
+        ).asList();
+    }
+
+    /**
+     * @return the expression this path was compiled from
+     */
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * @return the number of normalized path segments
+     */
+    public int size() {
+        return steps.length;
+    }
+
+    /**
+     * Finds up to <code>qty</code> values matching this path in <code>node</code>.
+     *
+     * @param node the document to search
+     * @param qty  the maximum number of results, values less than 1 are unlimited
+     * @return an array of found values
+     * @see JSNode#findAll(String, int)
+     */
+    public JSArray findAll(JSNode node, int qty) {
+        return new JSArray(find(node, 0, qty, new ArrayList(), new IdentityHashMap<>()));
+    }
+
+    List find(JSNode node, int index, int qty, List collected, Map<Step, Set<JSNode>> visited) {
+        Step step = steps[index];
+
+        //-- infinite recursion protection
+        //-- you can visit a path more than once trying different parts of the search path
+        //-- but you can only visit a node once for any given permutation of the path.
+        //-- a Step is unique to its position in its path so it identifies the remaining path.
+        Set<JSNode> seen = visited.get(step);
+        if (seen == null) {
+            seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            visited.put(step, seen);
+        }
+        if (!seen.add(node))
+            return collected;
+        //-- end infinite recursion protection
+
+        if (qty > 1 && collected.size() >= qty)
+            return collected;
+
+        boolean last = index == steps.length - 1;
+
+        switch (step.type) {
+            case Step.WILDCARD:
+                if (last) {
+                    for (Object value : node.values()) {
+                        if (!collected.contains(value) && (qty < 1 || collected.size() < qty))
+                            collected.add(value);
+                    }
+                } else {
+                    for (Object value : node.values()) {
+                        if (value instanceof JSNode)
+                            find((JSNode) value, index + 1, qty, collected, visited);
+                    }
+                }
+                break;
+
+            case Step.RECURSIVE:
+                if (!last) {
+                    find(node, index + 1, qty, collected, visited);
+                    for (Object value : node.values()) {
+                        if (value instanceof JSNode)
+                            find((JSNode) value, index, qty, collected, visited);
+                    }
+                }
+                break;
+
+            case Step.FILTER:
+                for (Predicate predicate : step.predicates)
+                    predicate.apply(node, qty, collected, visited);
+                break;
+
+            case Step.SLICE:
+                slice(node, step.expr, last, collected);
+                break;
+
+            default:
+                Object found = null;
+                try {
+                    found = node.get(step.segment);
+                } catch (NumberFormatException ex) {
+                    //trying to access an array with a prop name...ignore
+                }
+                if (found != null) {
+                    if (last) {
+                        if (!collected.contains(found) && (qty < 1 || collected.size() < qty))
+                            collected.add(found);
+                    } else if (found instanceof JSNode) {
+                        find((JSNode) found, index + 1, qty, collected, visited);
+                    }
+                }
+        }
+
+        return collected;
+    }
+
+    static void slice(JSNode node, String expr, boolean last, List collected) {
+        //-- $..book[(@.length-1)] -> @_length-1
+        //-- $..book[-1:] -> -1:
+        //-- $..book[0,1] -> 0,1
+        //-- $..book[:2] -> :2
+        if (node.isArray()) {
+
+            int length = ((JSArray) node).length();
+
+            List found = new ArrayList();
+            if (expr.startsWith("(@_length-")) {
+                int index = Integer.parseInt(expr.substring(expr.indexOf("-") + 1, expr.length() - 1).trim());
+                if (length - index > 0) {
+                    found.add(node.get(length - index));
+                }
+            } else if (expr.startsWith(":")) {
+                int count = Integer.parseInt(expr.substring(1).trim());
+                for (int i = 0; i < length && i < count; i++) {
+                    found.add(node.get(count));
+                }
+            } else if (expr.endsWith(":")) {
+                int idx = Integer.parseInt(expr.substring(0, expr.length() - 1).trim()) * -1;
+                if (idx <= length)
+                    found.add(node.get(length - idx));
+            } else {
+                int start = Integer.parseInt(expr.substring(0, expr.indexOf(":")).trim());
+                int end   = Integer.parseInt(expr.substring(expr.indexOf(":") + 1).trim());
+                for (int i = start; i <= end && i < length; i++) {
+                    found.add(node.get(i));
+                }
+            }
+            if (found.size() > 0 && last) {
+                collected.addAll(found);
+            }
+        }
+    }
+
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * A single pre classified path segment.
+     */
+    static final class Step {
+        static final int NAME      = 0;
+        static final int WILDCARD  = 1;
+        static final int RECURSIVE = 2;
+        static final int FILTER    = 3;
+        static final int SLICE     = 4;
+
+        final String      segment;
+        final int         type;
+        final String      expr;
+        final Predicate[] predicates;
+
+        Step(String segment) {
+            this.segment = segment;
+
+            String      expr       = null;
+            Predicate[] predicates = null;
+
+            if ("*".equals(segment)) {
+                type = WILDCARD;
+            } else if ("**".equals(segment)) {
+                type = RECURSIVE;
+            } else if (segment.startsWith("[") && segment.endsWith("]")) {
+                //this is a JSONPath filter that is not just an array index
+                expr = segment.substring(1, segment.length() - 1).trim();
+                if (expr.startsWith("?(") && expr.endsWith(")")) {
+                    type = FILTER;
+                    predicates = Predicate.parse(expr);
+                } else {
+                    type = SLICE;
+                }
+            } else {
+                type = NAME;
+            }
+
+            this.expr = expr;
+            this.predicates = predicates;
+        }
+
+        public String toString() {
+            return segment;
+        }
+    }
+
+    /**
+     * A pre parsed JSONPath filter term, either a comparison <code>@.subpath op value</code>
+     * or, when <code>op</code> is null, an existence check <code>@.subpath</code>.
+     */
+    static final class Predicate {
+        final JSPath subpath;
+        final String op;
+        final String value;
+
+        Predicate(String subpath, String op, String value) {
+            this.subpath = new JSPath(subpath, tokenize(subpath));
+            this.op = op;
+            this.value = value;
+        }
+
+        static Predicate[] parse(String expr) {
+            JSONPathTokenizer tokenizer = new JSONPathTokenizer(//
+                    "'\"", //openQuoteStr
+                    "'\"", //closeQuoteStr
+                    "?=<>!", //breakIncludedChars...breakAfter
+                    "]=<>! ", //breakExcludedChars...breakBefore
+                    "[()", //unquotedIgnoredChars
+                    "]. \t", //leadingIgnoredChars
+                    expr);
+
+            List<Predicate> predicates = new ArrayList<>();
+
+            String token;
+            String func    = null;
+            String subpath = null;
+            String op      = null;
+
+            //-- Choices after tokenization
+            //-- $..book[?(@.isbn)] -> ? @_isbn
+            //-- $..book[?(@.price<10)] -> ? @_price < 10
+            while ((token = tokenizer.next()) != null) {
+                if (token.equals("?")) {
+                    func = "?";
+                    continue;
+                }
+
+                if (token.startsWith("@_")) {
+                    subpath = token.substring(2);
+                } else if (Utils.in(token, "=", ">", "<", "!")) {
+                    if (op == null)
+                        op = token;
+                    else
+                        op += token;
+                } else if (subpath != null && op != null) {
+                    predicates.add(new Predicate(subpath, op, token));
+
+                    func = null;
+                    subpath = null;
+                    op = null;
+                }
+            }
+
+            //$..book[?(@.isbn)] -- checks for the existence of a property
+            if ("?".equals(func) && subpath != null)
+                predicates.add(new Predicate(subpath, null, null));
+
+            return predicates.toArray(new Predicate[0]);
+        }
+
+        void apply(JSNode node, int qty, List collected, Map<Step, Set<JSNode>> visited) {
+            if (node.isArray()) {
+                for (Object child : node.values()) {
+                    if (child instanceof JSNode) {
+                        List found = subpath.find((JSNode) child, 0, -1, new ArrayList(), visited);
+                        for (Object val : found) {
+                            if (op == null || node.eval(val, op, value)) {
+                                if (!collected.contains(child) && (qty < 1 || collected.size() < qty))
+                                    collected.add(child);
+                            }
+                        }
+                    }
+                }
+            } else {
+                List found = subpath.find(node, 0, -1, new ArrayList(), visited);
+                for (Object val : found) {
+                    if (op == null || node.eval(val, op, value)) {
+                        if (!collected.contains(node) && (qty < 1 || collected.size() < qty)) {
+                            collected.add(node);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
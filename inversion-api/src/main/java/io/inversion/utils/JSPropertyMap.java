@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.utils;
+
+import io.inversion.utils.JSNode.JSProperty;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Insertion ordered, case insensitive, JSProperty storage for JSNode.
+ * <p>
+ * Names are hashed and compared case insensitively char by char so lookups never allocate a lower cased copy of the name.
+ * <p>
+ * Properties are kept in an insertion ordered array.  An open addressing (linear probing) table of array indexes
+ * provides the lookups.  Removal leaves a hole in the array that is compacted away on the next rehash.
+ */
+final class JSPropertyMap implements Iterable<JSProperty> {
+
+    static final int MIN_CAPACITY = 8;
+
+    /**
+     * The properties in insertion order, removed properties leave null holes before <code>end</code>.
+     */
+    JSProperty[] entries = null;
+
+    /**
+     * The case insensitive hash of each entry's name.
+     */
+    int[] hashes = null;
+
+    /**
+     * Open addressing table holding (index into entries + 1), 0 means the slot is empty.
+     */
+    int[] slots = null;
+
+    int end     = 0;
+    int size    = 0;
+    int version = 0;
+
+    static int hash(String name) {
+        int h = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < 128) {
+                if (c >= 'A' && c <= 'Z')
+                    c += 32;
+            } else {
+                //-- same folding as String.equalsIgnoreCase
+                c = Character.toLowerCase(Character.toUpperCase(c));
+            }
+            h = 31 * h + c;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public JSProperty get(String name) {
+        int slot = find(name, hash(name));
+        return slot < 0 ? null : entries[slots[slot] - 1];
+    }
+
+    public boolean containsKey(String name) {
+        return find(name, hash(name)) > -1;
+    }
+
+    /**
+     * Adds <code>prop</code> to the end of the iteration order, or replaces an existing property
+     * with the same case insensitive name in its current position.
+     *
+     * @param prop the property to store
+     * @return the property that was replaced or null
+     */
+    public JSProperty put(JSProperty prop) {
+        int hash = hash(prop.name);
+        int slot = find(prop.name, hash);
+        if (slot > -1) {
+            int        index = slots[slot] - 1;
+            JSProperty old   = entries[index];
+            entries[index] = prop;
+            return old;
+        }
+
+        if (entries == null || end == entries.length)
+            rehash(size + 1);
+
+        entries[end] = prop;
+        hashes[end] = hash;
+        end += 1;
+        size += 1;
+        version += 1;
+        insert(end, hash);
+        return null;
+    }
+
+    /**
+     * Removes any property with the same case insensitive name as <code>prop</code> and then
+     * makes <code>prop</code> the first property in the iteration order.
+     *
+     * @param prop the property to store
+     * @return the property that was removed or null
+     */
+    public JSProperty putFirst(JSProperty prop) {
+        JSProperty old = remove(prop.name);
+
+        JSProperty[] entries = new JSProperty[Math.max(MIN_CAPACITY, size + 1)];
+        entries[0] = prop;
+        int i = 1;
+        for (JSProperty p : this)
+            entries[i++] = p;
+
+        load(entries, i);
+        return old;
+    }
+
+    public JSProperty remove(String name) {
+        int slot = find(name, hash(name));
+        if (slot < 0)
+            return null;
+
+        int        index = slots[slot] - 1;
+        JSProperty old   = entries[index];
+        entries[index] = null;
+        size -= 1;
+        version += 1;
+
+        //-- backward shift deletion keeps probe sequences unbroken without tombstones
+        int mask = slots.length - 1;
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            int entry = slots[next];
+            if (entry == 0)
+                break;
+
+            int home = hashes[entry - 1] & mask;
+            boolean stays = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+            if (!stays) {
+                slots[hole] = entry;
+                hole = next;
+            }
+        }
+        slots[hole] = 0;
+
+        if (size == 0)
+            clear();
+
+        return old;
+    }
+
+    public void clear() {
+        entries = null;
+        hashes = null;
+        slots = null;
+        end = 0;
+        size = 0;
+        version += 1;
+    }
+
+    /**
+     * Reorders the properties alphabetically by case insensitive name.
+     */
+    public void sortKeys() {
+        if (size == 0)
+            return;
+
+        JSProperty[] sorted = toArray();
+        Arrays.sort(sorted, (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(a.name, b.name));
+        load(sorted, sorted.length);
+    }
+
+    public JSProperty[] toArray() {
+        JSProperty[] arr = new JSProperty[size];
+        int          i   = 0;
+        for (JSProperty p : this)
+            arr[i++] = p;
+        return arr;
+    }
+
+    @Override
+    public Iterator<JSProperty> iterator() {
+        return new Iterator<JSProperty>() {
+            final int expected = version;
+            int next = advance(0);
+
+            int advance(int from) {
+                while (entries != null && from < end && entries[from] == null)
+                    from += 1;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return entries != null && next < end;
+            }
+
+            @Override
+            public JSProperty next() {
+                if (version != expected)
+                    throw new ConcurrentModificationException();
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                JSProperty p = entries[next];
+                next = advance(next + 1);
+                return p;
+            }
+        };
+    }
+
+    int find(String name, int hash) {
+        if (slots == null)
+            return -1;
+
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0)
+                return -1;
+
+            if (hashes[entry - 1] == hash && name.equalsIgnoreCase(entries[entry - 1].name))
+                return slot;
+        }
+    }
+
+    void insert(int entry, int hash) {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0)
+            slot = (slot + 1) & mask;
+        slots[slot] = entry;
+    }
+
+    /**
+     * Compacts out removed entries, growing the storage if there still would not be room for <code>needed</code> properties.
+     */
+    void rehash(int needed) {
+        int length = entries == null ? 0 : entries.length;
+        if (needed > length)
+            length = Math.max(MIN_CAPACITY, Math.max(needed, length * 2));
+
+        JSProperty[] entries = new JSProperty[length];
+        int          i       = 0;
+        for (JSProperty p : this)
+            entries[i++] = p;
+
+        load(entries, i);
+    }
+
+    void load(JSProperty[] entries, int count) {
+        //-- at least twice as many slots as entries keeps the load factor at or below 0.5
+        int capacity = Integer.highestOneBit(entries.length * 2 - 1) << 1;
+
+        this.entries = entries;
+        this.hashes = new int[entries.length];
+        this.slots = new int[capacity];
+        this.end = count;
+        this.size = count;
+        this.version += 1;
+
+        for (int i = 0; i < count; i++) {
+            hashes[i] = hash(entries[i].name);
+            insert(i + 1, hashes[i]);
+        }
+    }
+}
@@ -16,7 +16,6 @@
  */
 package io.inversion.utils;
 
-import io.inversion.ApiException;
 import io.inversion.Chain;
 import io.inversion.Request;
 import io.inversion.Response;
@@ -24,7 +23,6 @@ import io.inversion.Response;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 /**
  * A case insensitive utility abstraction for working with forward slash based paths /like/you/find/in/urls.
@@ -79,6 +77,11 @@ public class Path {
     List<String> parts = new ArrayList<>();
     List<String> lc    = new ArrayList<>();
 
+    /**
+     * Lazily created by {@link #compile()} and cleared whenever the parts change.
+     */
+    transient CompiledPath compiled = null;
+
     /**
      * Creates an empty Path
      */
@@ -181,6 +184,7 @@ public class Path {
                 this.parts.add(part);
                 lc.add(part.toLowerCase());
             }
+            compiled = null;
         }
     }
 
@@ -192,6 +196,7 @@ public class Path {
      */
     public String remove(int index) {
         if (index < parts.size()) {
+            compiled = null;
             lc.remove(index);
             return parts.remove(index);
         }
@@ -284,15 +289,8 @@ public class Path {
      * @return true if the value exists and is variableized but not a wildcard, false otherwise.
      */
     public boolean isVar(int index) {
-        String part = get(index);
-        if (part != null) {
-            if (part.startsWith("["))
-                part = part.substring(1).trim();
-
-            char c = part.charAt(0);
-            return c == '$' || c == ':' || c == '{';
-        }
-        return false;
+        CompiledPath.Segment segment = compile().getSegment(index);
+        return segment != null && segment.isVar();
     }
 
     /**
@@ -317,18 +315,8 @@ public class Path {
      * @return the variable name binding for the parth part at <code>index</code> if it exists
      */
     public String getVarName(int index) {
-        String part = get(index);
-        if (part != null) {
-            if (part.startsWith("["))
-                part = part.substring(1, part.length() - 1).trim();
-
-            int colon = part.indexOf(":");
-            if (colon == 0)
-                return part.substring(1).trim();
-            else if (part.startsWith("{") && colon > 1)
-                return part.substring(1, colon).trim();
-        }
-        return null;
+        CompiledPath.Segment segment = compile().getSegment(index);
+        return segment != null ? segment.getVarName() : null;
     }
 
     /**
@@ -379,54 +367,7 @@ public class Path {
      * @return true if this path matches <code>concretePath</code>
      */
     public boolean matches(Path concretePath) {
-        Path matchedPath = new Path();
-
-        if (size() < concretePath.size() && !"*".equals(last())) {
-            return false;
-        }
-
-        for (int i = 0; i < size(); i++) {
-            String myPart = get(i);
-
-            if (i == size() - 1 && myPart.equals("*"))
-                return true;
-
-            boolean optional = myPart.startsWith("[") && myPart.endsWith("]");
-
-            if (i == concretePath.size()) {
-                return optional;
-            }
-
-            if (optional)
-                myPart = myPart.substring(1, myPart.length() - 1);
-
-            String theirPart = concretePath.get(i);
-            matchedPath.add(theirPart);
-
-            if (myPart.startsWith(":")) {
-                continue;
-            } else if ((myPart.startsWith("{") || myPart.startsWith("${")) && myPart.endsWith("}")) {
-                int nameStart = myPart.indexOf("{") + 1;
-                int endName   = myPart.indexOf(":");
-                if (endName < 0)
-                    endName = myPart.length() - 1;
-
-                String name = myPart.substring(nameStart, endName).trim();
-
-                if (endName < myPart.length() - 1) {
-                    String  regex   = myPart.substring(endName + 1, myPart.length() - 1);
-                    Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-                    if (!pattern.matcher(theirPart).matches()) {
-                        return false;
-                    }
-                }
-            } else if (!myPart.equalsIgnoreCase(theirPart)) {
-                return false;
-            }
-
-        }
-
-        return true;
+        return compile().matches(concretePath);
     }
 
     /**
@@ -484,65 +425,23 @@ public class Path {
      * @see Chain#next()
      */
     public Path extract(Map params, Path matchingConcretePath, boolean greedy) {
-        Path matchedPath = new Path();
-
-        boolean restOptional = false;
-        int     i;
-        int     nextOptional = 0;
-        for (i = 0; i < size() && matchingConcretePath.size() > 0; i++) {
-            String myPart = get(i);
-
-            boolean partOptional = myPart.startsWith("[") && myPart.endsWith("]");
-
-            if (partOptional) {
-                restOptional = true;
-                myPart = myPart.substring(1, myPart.length() - 1);
-            }
-
-            if (myPart.equals("*"))
-                break;
-
-            String theirPart;
-
-            if (greedy || !restOptional) {
-                theirPart = matchingConcretePath.remove(0);
-                matchedPath.add(theirPart);
-            } else {
-                theirPart = matchingConcretePath.get(nextOptional++);
-            }
-
-            if (myPart.startsWith(":")) {
-                String name = myPart.substring(1).trim();
-                params.put(name, theirPart);
-            } else if ((myPart.startsWith("{") || myPart.startsWith("${")) && myPart.endsWith("}")) {
-                int nameStart = myPart.indexOf("{") + 1;
-                int endName   = myPart.indexOf(":");
-                if (endName < 0)
-                    endName = myPart.length() - 1;
-
-                String name = myPart.substring(nameStart, endName).trim();
-
-                if (endName < myPart.length() - 1) {
-                    String  regex   = myPart.substring(endName + 1, myPart.length() - 1);
-                    Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-                    if (!pattern.matcher(theirPart).matches()) {
-                        throw ApiException.new500InternalServerError("Attempting to extract values from an unmatched path: '{}', '{}'", this.parts.toString(), matchingConcretePath.toString());
-                    }
-                }
-
-                params.put(name, theirPart);
-            } else if (!myPart.equalsIgnoreCase(theirPart)) {
-                throw ApiException.new500InternalServerError("Attempting to extract values from an unmatched path: '{}', '{}'", this.parts.toString(), matchingConcretePath.toString());
-            }
-        }
+        return compile().extract(params, matchingConcretePath, greedy);
+    }
 
-        //null out any trailing vars
-        for (; i < size(); i++) {
-            String var = getVarName(i);
-            if (var != null)
-                params.put(var, null);
+    /**
+     * Gets the immutable precompiled form of this Path used by {@link #matches(Path)} and the <code>extract</code> family.
+     * <p>
+     * The compiled form is created on first use and cached until this Path is modified via {@link #add(String)} or {@link #remove(int)}.
+     * Rules compile their include and exclude paths when they are configured so that request matching never reparses path parts or recompiles regexes.
+     *
+     * @return the compiled form of the current parts of this Path
+     */
+    public CompiledPath compile() {
+        CompiledPath compiled = this.compiled;
+        if (compiled == null) {
+            compiled = new CompiledPath(this);
+            this.compiled = compiled;
         }
-
-        return matchedPath;
+        return compiled;
     }
 }
@@ -102,6 +102,29 @@ public class Rows extends ArrayList<Row> {
         return keys.addKey(key);
     }
 
+    /**
+     * Removes a key/column from every Row.
+     * <p>
+     * The shared RowKeys is modified once instead of each Row copying it, as {@link Row#remove(Object)} has to.
+     *
+     * @param key the key/column to remove
+     * @return the index the key/column had or -1 if it did not exist
+     */
+    public int removeKey(String key) {
+        int idx = keys.indexOf(key);
+        if (idx < 0)
+            return -1;
+
+        for (Row row : this) {
+            if (row.keys != keys)
+                row.remove(key);
+            else if (row.values != null && idx < row.values.size())
+                row.values.remove(idx);
+        }
+        keys.removeKey(key);
+        return idx;
+    }
+
     /**
      * Adds a new empty Row to the end of the list.
      *
@@ -204,6 +227,30 @@ public class Rows extends ArrayList<Row> {
         return lastRow;
     }
 
+    /**
+     * Creates a Row that shares these keys/columns but is not added to this list.
+     * <p>
+     * Forward only readers can use this to hand out one Row at a time without retaining them.
+     *
+     * @param values the column values in key order
+     * @return a new Row
+     */
+    public Row newRow(Object[] values) {
+        return new Row(keys, values);
+    }
+
+    /**
+     * Adds <code>row</code> itself, instead of a copy, as the new last Row.
+     *
+     * @param row a Row sharing this Rows' RowKeys
+     * @return <code>row</code>
+     */
+    Row append(Row row) {
+        lastRow = row;
+        super.add(row);
+        return row;
+    }
+
     /**
      * Sets key/value on <code>lastRow</code>.
      * <p>
@@ -271,8 +318,10 @@ public class Rows extends ArrayList<Row> {
     public static class Row implements Map<String, Object> {
         /**
          * Vales in the row
+         * <p>
+         * Subclasses that keep their values elsewhere, such as a {@link ColumnarRows} row, leave this null until the Row is written to.
          */
-        final List<Object> values;
+        List<Object> values;
         /**
          * The shared keys/column names
          * <p>
@@ -296,6 +345,11 @@ public class Rows extends ArrayList<Row> {
             this.values = new ArrayList(Arrays.asList(values));
         }
 
+        Row(RowKeys keys, List<Object> values) {
+            this.keys = keys;
+            this.values = values;
+        }
+
         /**
          * @param index the column key to get
          * @return the key/column name for the given index
@@ -1161,6 +1161,19 @@ public class Utils {
         return read(findInputStream(fileOrUrl));
     }
 
+    /**
+     * Wraps <code>in</code> so that reading more than <code>maxBytes</code> from it fails with a 413 ApiException.
+     *
+     * @param in       the stream to limit
+     * @param maxBytes the maximum number of bytes that can be read, values less than 1 disable the limit
+     * @return <code>in</code> wrapped with a byte counting limit or <code>in</code> itself if there is no limit
+     */
+    public static InputStream limit(InputStream in, long maxBytes) {
+        if (in == null || maxBytes < 1)
+            return in;
+        return new JSNode.LimitedInputStream(in, maxBytes);
+    }
+
     /**
      * Read all of the stream to a string and close the stream.
      *
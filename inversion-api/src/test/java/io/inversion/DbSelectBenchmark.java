@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion;
+
+import io.inversion.rql.Term;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the row to JSNode conversion done by {@link Db#select(Collection, Map)}.
+ * <p>
+ * Run it against two commits to compare JSNode implementations.  This is not a unit test
+ * and is not run by the build.  Run it from the IDE via {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DbSelectBenchmark {
+
+    @Param({"1000"})
+    int rows;
+
+    @Param({"20"})
+    int columns;
+
+    Collection collection;
+    Db         db;
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(DbSelectBenchmark.class.getSimpleName()).addProfiler("gc").build()).run();
+    }
+
+    @Setup
+    public void setup() {
+        collection = new Collection("benchmark");
+        for (int i = 0; i < columns; i++)
+            collection.withProperty("Column" + i, i % 2 == 0 ? "varchar" : "int");
+
+        db = new MockDb() {
+            @Override
+            public Results doSelect(Collection table, List<Term> columnMappedTerms) throws ApiException {
+                Results results = new Results(null);
+                for (int i = 0; i < rows; i++) {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    for (int j = 0; j < columns; j++)
+                        row.put("Column" + j, j % 2 == 0 ? "value" + j : (Object) j);
+                    results.withRow(row);
+                }
+                return results;
+            }
+        };
+        collection.withDb(db);
+    }
+
+    @Benchmark
+    public Results select_collection() {
+        return db.select(collection, Collections.emptyMap());
+    }
+
+    @Benchmark
+    public Results select_noCollection() {
+        return db.select(null, Collections.emptyMap());
+    }
+}
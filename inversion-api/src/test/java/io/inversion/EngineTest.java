@@ -18,10 +18,20 @@ package io.inversion;
 
 import io.inversion.Chain.ActionMatch;
 import io.inversion.action.misc.MockAction;
+import io.inversion.rql.Term;
+import io.inversion.utils.JSArray;
 import io.inversion.utils.JSNode;
 import io.inversion.utils.Path;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -353,6 +363,52 @@ public class EngineTest {
 
     }
 
+    @Test
+    public void test_routing_preserves_configuration_order() {
+        Api api = new Api("test")//
+                .withAction(new MockAction("mock1"))//
+                .withEndpoint(new Endpoint("GET", "[{_collection:books}]/*").withName("ep1"))//
+                .withEndpoint(new Endpoint("GET", "books/*").withName("ep2"))//
+                .withEndpoint(new Endpoint("GET", "{type:[0-9]+}/*").withName("ep3"))//
+                .withEndpoint(new Endpoint("GET", ":anything/*").withName("ep4"));
+
+        Engine e = new Engine(api);
+
+        //-- the first configured endpoint wins even though a later one has a more specific static path
+        assertEquals("ep1", e.get("http://localhost/test/books/1").getChain().getRequest().getEndpoint().getName());
+        assertEquals("ep3", e.get("http://localhost/test/12345/abc").getChain().getRequest().getEndpoint().getName());
+        assertEquals("ep4", e.get("http://localhost/test/abc/12345").getChain().getRequest().getEndpoint().getName());
+
+        //-- the routing table is rebuilt when rules change after startup
+        api.withEndpoint(new Endpoint("GET", "magazines/*").withName("ep0").withOrder(0));
+        assertEquals("ep0", e.get("http://localhost/test/magazines/1").getChain().getRequest().getEndpoint().getName());
+
+        e.removeApi(api);
+        assertNull(e.get("http://localhost/test/books/1").getChain().getRequest().getApi());
+    }
+
+    @Test
+    public void test_routing_is_only_rebuilt_for_the_engine_that_changed() {
+        Api    api1 = new Api("api1").withEndpoint(new Endpoint("GET", "ep1/*").withName("ep1"));
+        Api    api2 = new Api("api2").withEndpoint(new Endpoint("GET", "ep2/*").withName("ep2"));
+        Engine e1   = new Engine(api1);
+        Engine e2   = new Engine(api2);
+
+        assertEquals("ep1", e1.get("http://localhost/api1/ep1/1").getChain().getRequest().getEndpoint().getName());
+        assertEquals("ep2", e2.get("http://localhost/api2/ep2/1").getChain().getRequest().getEndpoint().getName());
+        Router router1 = e1.getRouter();
+
+        //-- changing the rules of another engine keeps this engine's routing table
+        api2.withEndpoint(new Endpoint("GET", "other/*").withName("other"));
+        assertEquals("other", e2.get("http://localhost/api2/other/1").getChain().getRequest().getEndpoint().getName());
+        assertSame(router1, e1.getRouter());
+
+        //-- changing a matcher of this engine rebuilds it
+        api1.getEndpoints().get(0).getIncludeMatchers().get(0).withPaths(new Path("more/*"));
+        assertNotSame(router1, e1.getRouter());
+        assertEquals("ep1", e1.get("http://localhost/api1/more/1").getChain().getRequest().getEndpoint().getName());
+    }
+
     @Test
     public void test1() {
         Engine engine;
@@ -417,6 +473,194 @@ public class EngineTest {
 
     }
 
+    @Test
+    public void test_dispatch_returns_json_graph_without_rendering_output() {
+        Engine engine = new Engine()//
+                .withApi(new Api()//
+                        .withEndpoint("get", "actionA/*", new MockActionA("get", "*"))//
+                        .withEndpoint(new Endpoint("get", "hidden/*", new MockActionA("get", "*")).withInternal(true)));
+
+        Response res = engine.dispatch("GET", "/actionA/helloworld", null, null);
+        assertEquals("MockActionA", res.getJson().find("data.0.className"));
+        assertEquals("", res.getOutput());
+        assertNull(res.getHeader("Access-Control-Allow-Origin"));
+
+        //-- external requests are still rendered and can not reach internal endpoints
+        res = engine.get("/actionA/helloworld");
+        assertNotEquals("", res.getOutput());
+        assertNotNull(res.getHeader("Access-Control-Allow-Origin"));
+        assertEquals(404, engine.get("/hidden/helloworld").getStatusCode());
+
+        assertEquals(200, engine.dispatch("GET", "/hidden/helloworld", null, null).getStatusCode());
+    }
+
+    @Test
+    public void test_structured_dispatch_routes_to_the_collection_with_parsed_terms() {
+        List<Term> selected = new ArrayList<>();
+        MockDb db = new MockDb() {
+            @Override
+            public Results doSelect(Collection table, List<Term> columnMappedTerms) throws ApiException {
+                selected.addAll(columnMappedTerms);
+                return new Results(null);
+            }
+        };
+        Collection books = new Collection("books").withDb(db);
+        List<Term> terms = Arrays.asList(Term.term(null, "eq", "author", "someone"), Term.term(null, "sort", "title"));
+
+        List<Request> dispatched = new ArrayList<>();
+        List<String>  secured    = new ArrayList<>();
+
+        Engine engine = new Engine()//
+                .withApi(new Api()//
+                        .withCollection(books)//
+                        .withEndpoint("get", "outer/*", new Action() {
+                            public void run(Request req, Response res) throws ApiException {
+                                res.withJson(req.getEngine().dispatch("GET", books, "1", terms, null).assertOk().getJson());
+                            }
+                        })//
+                        .withEndpoint(new Endpoint("get", "*", new Action() {
+                            public void run(Request req, Response res) throws ApiException {
+                                dispatched.add(req);
+                                res.withRecords(db.select(req.getCollection(), req.getUrl().getParams(), req.getTerms(), false).getRows());
+                            }
+                        }).withInternal(true))//
+                        .withAction(new Action("get", "*") {
+                            public void run(Request req, Response res) throws ApiException {
+                                secured.add(req.getUrl().getPath().toString());
+                            }
+                        }));
+
+        engine.get("outer/go").assertOk();
+
+        assertEquals(1, dispatched.size());
+        Request req = dispatched.get(0);
+        assertSame(books, req.getCollection());
+        assertSame(terms, req.getTerms());
+        assertEquals("books/1", req.getUrl().getPath().toString());
+
+        //-- the terms are not written into the query string, it only holds the routed path params
+        assertEquals(new HashSet<>(Arrays.asList("_collection", "_resource")), req.getUrl().getParams().keySet(), req.getUrl().toString());
+
+        //-- api level actions such as security filters still run on the dispatched request
+        assertEquals(2, secured.size(), secured.toString());
+
+        assertTrue(selected.toString().contains("eq(author,someone)"), selected.toString());
+        assertTrue(selected.toString().contains("sort(title)"), selected.toString());
+    }
+
+    @Test
+    public void test_streaming_response_writes_json_without_buffering_output() throws Exception {
+        Engine engine = new Engine()//
+                .withApi(new Api()//
+                        .withEndpoint("get", "actionA/*", new MockActionA("get", "*")));
+
+        String expected = engine.get("/actionA/helloworld").getJson().toString();
+
+        Response res = new Response().withStreaming(true);
+        engine.service(new Request("GET", "http://localhost/actionA/helloworld"), res);
+
+        assertEquals("application/json", res.getContentType());
+        assertEquals("", res.getOutput(), "streamed output should not be buffered unless captured");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        res.writeOutput(out);
+        assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+        res = new Response().withStreaming(true).withCaptureOutput(true);
+        engine.service(new Request("GET", "http://localhost/actionA/helloworld"), res);
+
+        out = new ByteArrayOutputStream();
+        res.writeOutput(out);
+        assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(expected, res.getOutput());
+    }
+
+    @Test
+    public void test_debug_output_is_not_built_when_debug_is_off() {
+        final boolean[] supplierCalled = new boolean[]{false};
+
+        Engine engine = new Engine()//
+                .withApi(new Api("api")//
+                        .withEndpoint("GET", "big/*", new Action() {
+                            public void run(Request req, Response res) throws ApiException {
+                                for (int i = 0; i < 1000; i++)
+                                    res.withRecord(new JSNode("id", i, "name", "name_" + i, "description", "a reasonably long description for record " + i));
+
+                                Chain.debug(() -> {
+                                    supplierCalled[0] = true;
+                                    return "expensive debug message";
+                                });
+                            }
+                        }));
+
+        Response res = engine.get("http://api.example.com/api/big");
+        assertEquals(200, res.getStatusCode());
+        assertEquals("", res.getDebug());
+        assertFalse(supplierCalled[0], "debug message suppliers should not be called when debug is off");
+
+        res = engine.get("http://localhost/api/big");
+        assertTrue(supplierCalled[0]);
+        assertTrue(res.getDebug().contains("expensive debug message"));
+
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        int  bodyLength = res.getOutput().length();
+        long off        = allocatedBytesPerRequest(threads, engine, "http://api.example.com/api/big");
+        long on         = allocatedBytesPerRequest(threads, engine, "http://localhost/api/big");
+
+        //-- with debug on the body is copied into the debug buffer at least once
+        assertTrue(on - off > bodyLength, "debug off allocated " + off + " bytes per request, debug on allocated " + on + " for a " + bodyLength + " char body");
+    }
+
+    static long allocatedBytesPerRequest(com.sun.management.ThreadMXBean threads, Engine engine, String url) {
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < 10; i++)
+            engine.get(url);
+
+        int  runs  = 20;
+        long start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < runs; i++)
+            engine.get(url);
+        return (threads.getThreadAllocatedBytes(threadId) - start) / runs;
+    }
+
+    @Test
+    public void test_streamed_request_body_is_parsed_lazily_within_limits() {
+        final JSNode[] received = new JSNode[1];
+
+        Engine engine = new Engine()//
+                .withApi(new Api("api")//
+                        .withEndpoint("POST", "things/*", new Action() {
+                            public void run(Request req, Response res) throws ApiException {
+                                received[0] = req.getJson();
+                            }
+                        }));
+
+        String body = "[{\"name\":\"first\"},{\"name\":\"second\"}]";
+
+        Request  req = new Request("POST", "http://localhost/api/things").withBody(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        Response res = new Response();
+        engine.service(req, res);
+
+        assertEquals(200, res.getStatusCode());
+        assertTrue(received[0] instanceof JSArray);
+        assertEquals("second", received[0].find("1.name"));
+        assertEquals(received[0].toString(false), req.getBody());
+
+        engine.withMaxRequestBodySize(body.length() - 1);
+        res = new Response();
+        engine.service(new Request("POST", "http://localhost/api/things").withBody(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))), res);
+        assertEquals(413, res.getStatusCode());
+
+        engine.withMaxRequestBodySize(-1).withMaxRequestJsonDepth(1);
+        res = new Response();
+        engine.service(new Request("POST", "http://localhost/api/things").withBody(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))), res);
+        assertEquals(400, res.getStatusCode());
+    }
+
     @Test
     public void testSlashCorrection() {
         assertEquals("a/b", new Path("/a////b/////").toString());
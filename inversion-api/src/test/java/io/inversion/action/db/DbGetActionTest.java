@@ -16,9 +16,18 @@
  */
 package io.inversion.action.db;
 
+import io.inversion.Chain;
+import io.inversion.Engine;
+import io.inversion.Request;
+import io.inversion.Response;
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.fail;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class DbGetActionTest {
     @Test
@@ -63,6 +72,45 @@ public class DbGetActionTest {
         }
     }
 
+    @Test
+    public void expandExecutor_callerRunsKeepsNestedRequestsNested() throws Exception {
+        ExecutorService executor = DbGetAction.getExpandExecutor();
+        CountDownLatch  started  = new CountDownLatch(DbGetAction.MAX_EXPAND_THREADS);
+        CountDownLatch  release  = new CountDownLatch(1);
+        try {
+            //-- fill every expand thread so the next batch runs on the request thread
+            for (int i = 0; i < DbGetAction.MAX_EXPAND_THREADS; i++) {
+                executor.submit(() -> {
+                    started.countDown();
+                    return release.await(30, TimeUnit.SECONDS);
+                });
+            }
+            assertTrue(started.await(30, TimeUnit.SECONDS));
+
+            Engine engine = new Engine();
+            Chain.push(engine, new Request("GET", "http://localhost/northwind/orders"), new Response());
+            try {
+                Future<Object[]> batch = executor.submit(Chain.wrap(() -> {
+                    Chain.push(engine, new Request("GET", "http://localhost/northwind/customers"), new Response());
+                    try {
+                        return new Object[]{Thread.currentThread(), Chain.isOutermost()};
+                    } finally {
+                        Chain.pop();
+                    }
+                }));
+
+                Object[] result = batch.get(30, TimeUnit.SECONDS);
+                assertSame(Thread.currentThread(), result[0]);
+                assertFalse((Boolean) result[1], "the nested request must not commit the outer request's connections");
+                assertTrue(Chain.isOutermost());
+            } finally {
+                Chain.pop();
+            }
+        } finally {
+            release.countDown();
+        }
+    }
+
     //   public void testStripTerms2()
     //   {
     //      String[][] tests = {{"http://asdf?offset=5&AAA=BBB&offset = 5&notOffset=123&eq(offset,22)&CCC=DDD&OFFSET=345", "offset", "http://asdf?AAA=BBB&offset = 5&notOffset=123&CCC=DDD"}};
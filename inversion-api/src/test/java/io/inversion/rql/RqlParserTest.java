@@ -23,7 +23,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class RqlParserTest {
     void add(List tests, Object... vals) {
@@ -99,4 +99,41 @@ public class RqlParserTest {
         t = RqlParser.parse("w(name,'BANANA KG (RESEAU)')");
         assertEquals("BANANA KG (RESEAU)", t.getTerm(1).getToken());
     }
+
+    @Test
+    public void parseCached_sharesFrozenTerms() {
+        RqlParser.clearCache();
+
+        Term t1 = RqlParser.parseCached("customerid", "VINET");
+        Term t2 = RqlParser.parseCached("customerid", "VINET");
+        Term t3 = RqlParser.parseCached("customerid", "HANAR");
+
+        assertSame(t1, t2);
+        assertNotSame(t1, t3);
+        assertEquals("eq(customerid,VINET)", t1.toString());
+        assertTrue(t1.isFrozen());
+        assertTrue(t1.getTerm(0).isFrozen());
+
+        assertEquals(1, RqlParser.getCacheHits());
+        assertEquals(2, RqlParser.getCacheMisses());
+        assertEquals(1 / 3d, RqlParser.getCacheHitRate());
+    }
+
+    @Test
+    public void parseCached_evictsLeastRecentlyUsed() {
+        int cacheSize = RqlParser.getCacheSize();
+        try {
+            RqlParser.withCacheSize(2);
+            Term a = RqlParser.parseCached("a", "1");
+            RqlParser.parseCached("b", "1");
+            RqlParser.parseCached("a", "1");
+            RqlParser.parseCached("c", "1");
+
+            assertSame(a, RqlParser.parseCached("a", "1"));
+            assertEquals(2, RqlParser.cache.size());
+            assertFalse(RqlParser.cache.containsKey("b\u00001"));
+        } finally {
+            RqlParser.withCacheSize(cacheSize);
+        }
+    }
 }
@@ -19,7 +19,7 @@ package io.inversion.rql;
 
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class TermTest {
 
@@ -30,4 +30,22 @@ public class TermTest {
         assertEquals(t.toString(), "eq(column,value)");
         assertEquals(t, t.getTerm(0).getParent());
     }
+
+    @Test
+    public void frozen_terms_can_only_be_modified_by_copy()
+    {
+        Term t = Term.term(null, "eq", "column", "value").freeze();
+
+        assertThrows(UnsupportedOperationException.class, () -> t.withToken("ne"));
+        assertThrows(UnsupportedOperationException.class, () -> t.withTerm("other"));
+        assertThrows(UnsupportedOperationException.class, () -> t.getTerm(0).withToken("other"));
+        assertThrows(UnsupportedOperationException.class, () -> t.getTerms().clear());
+        assertThrows(UnsupportedOperationException.class, () -> Term.term(null, "and", t));
+
+        Term copy = t.copy();
+        assertFalse(copy.isFrozen());
+        copy.getTerm(1).withToken("changed");
+        assertEquals("eq(column,changed)", copy.toString());
+        assertEquals("eq(column,value)", t.toString());
+    }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.inversion.utils.ColumnarRows.*;
+import io.inversion.utils.Rows.Row;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarRowsTest {
+
+    ColumnarRows buildRows(int count) {
+        ColumnarRows rows = new ColumnarRows();
+        rows.addColumn("Id", ColumnarRows.newColumn("java.lang.Long"));
+        rows.addColumn("qty", ColumnarRows.newColumn("java.lang.Integer"));
+        rows.addColumn("price", ColumnarRows.newColumn("java.lang.Double"));
+        rows.addColumn("active", ColumnarRows.newColumn("java.lang.Boolean"));
+        rows.addColumn("status", ColumnarRows.newColumn("java.lang.String"));
+        rows.addColumn("created", ColumnarRows.newColumn("java.sql.Timestamp"));
+
+        for (int i = 0; i < count; i++) {
+            ((LongColumn) rows.getColumn(0)).add((long) i);
+            if (i % 3 == 0)
+                rows.getColumn(1).addNull();
+            else
+                ((IntColumn) rows.getColumn(1)).add(i);
+            ((DoubleColumn) rows.getColumn(2)).add(i * 1.5d);
+            ((BooleanColumn) rows.getColumn(3)).add(i % 2 == 0);
+            rows.getColumn(4).add(i % 5 == 0 ? null : "status" + (i % 4));
+            rows.getColumn(5).add(null);
+            rows.endRow();
+        }
+        rows.trimToSize();
+        return rows;
+    }
+
+    @Test
+    public void rows_readThroughToTypedColumns() {
+        ColumnarRows rows = buildRows(100);
+        assertEquals(100, rows.size());
+
+        Row row = rows.get(7);
+        assertEquals(Long.valueOf(7), row.get("id"));
+        assertEquals(Integer.valueOf(7), row.get("QTY"));
+        assertEquals(Double.valueOf(10.5), row.get(2));
+        assertEquals(Boolean.FALSE, row.get("active"));
+        assertEquals("status3", row.get("status"));
+        assertNull(row.get("created"));
+        assertEquals(6, row.size());
+        assertEquals("{Id=7, qty=7, price=10.5, active=false, status=status3, created=null}", row.toString());
+
+        assertNull(rows.get(3).get("qty"));
+        assertNull(rows.get(5).get("status"));
+        assertTrue(rows.getColumn(1).isNull(3));
+        assertTrue(((StringColumn) rows.getColumn(4)).isDictionaryEncoded());
+    }
+
+    @Test
+    public void removeKey_dropsTheColumnWithoutMaterializingRows() {
+        ColumnarRows rows    = buildRows(10);
+        Row          written = rows.get(2);
+        written.put("status", "written");
+
+        assertEquals(1, rows.removeKey("QTY"));
+        assertEquals(-1, rows.removeKey("qty"));
+
+        assertEquals(5, rows.getColumnCount());
+        assertEquals("{Id=7, price=10.5, active=false, status=status3, created=null}", rows.get(7).toString());
+        assertEquals("{Id=2, price=3.0, active=true, status=written, created=null}", written.toString());
+        assertNull(rows.get(7).get("qty"));
+        assertFalse(rows.get(7).containsKey("qty"));
+    }
+
+    @Test
+    public void rows_materializeOnWrite() {
+        ColumnarRows rows = buildRows(10);
+        Row          row  = rows.get(1);
+
+        row.put("status", "changed");
+        assertEquals("changed", row.get("status"));
+        assertEquals(Long.valueOf(1), row.get("id"));
+
+        assertEquals(Long.valueOf(1), row.remove("id"));
+        assertFalse(row.containsKey("id"));
+
+        //-- other rows and the shared keys are not affected
+        assertEquals("status2", rows.get(6).get("status"));
+        assertEquals(Long.valueOf(2), rows.get(2).get("id"));
+        assertTrue(rows.keySet().contains("Id"));
+    }
+
+    @Test
+    public void stringColumn_fallsBackFromDictionary() {
+        StringColumn column = new StringColumn();
+        for (int i = 0; i < StringColumn.MAX_DICTIONARY_SIZE + 10; i++)
+            column.add("value" + i);
+        column.add(null);
+
+        assertFalse(column.isDictionaryEncoded());
+        assertEquals("value5", column.get(5));
+        assertEquals("value" + (StringColumn.MAX_DICTIONARY_SIZE + 9), column.get(StringColumn.MAX_DICTIONARY_SIZE + 9));
+        assertTrue(column.isNull(StringColumn.MAX_DICTIONARY_SIZE + 10));
+    }
+
+    @Test
+    public void column_writesJson() throws Exception {
+        ColumnarRows  rows = buildRows(4);
+        StringWriter  out  = new StringWriter();
+        JsonGenerator json = JSNode.JSON_FACTORY.createGenerator(out);
+        json.writeStartArray();
+        for (int i = 0; i < rows.getColumnCount(); i++)
+            rows.getColumn(i).write(json, 3);
+        json.writeEndArray();
+        json.flush();
+
+        assertEquals("[3,null,4.5,false,\"status3\",null]", out.toString());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of the original ObjectMapper/JsonNode tree parse and ByteArrayOutputStream print
+ * against the shared factory token parser and direct writer print for ~1KB, ~100KB and ~10MB documents.
+ * <p>
+ * This is not a unit test and is not run by the build.  Run it from the IDE via {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JSNodeBenchmark {
+
+    @Param({"1024", "102400", "10485760"})
+    int size;
+
+    String json;
+    JSNode node;
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(JSNodeBenchmark.class.getSimpleName()).addProfiler("gc").build()).run();
+    }
+
+    @Setup
+    public void setup() {
+        JSArray records = new JSArray();
+        node = new JSNode("data", records);
+        for (int i = 0, length = 0; length < size; i++) {
+            JSNode record = new JSNode("id", i, "name", "record " + i, "price", i * 1.5d, "active", i % 2 == 0, "tags", new JSArray("a", "b", "c"), "child", new JSNode("href", "http://localhost/records/" + i));
+            records.add(record);
+            length += record.toString(false).length() + 1;
+        }
+        json = node.toString(false);
+    }
+
+    @Benchmark
+    public Object parse_treeMapper() throws Exception {
+        return JSNode.mapNode(new ObjectMapper().readValue(json, JsonNode.class));
+    }
+
+    @Benchmark
+    public Object parse_tokens() {
+        return JSNode.parseJson(json);
+    }
+
+    @Benchmark
+    public String print_byteArray() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        JsonGenerator         gen  = new JsonFactory().createGenerator(baos);
+        JSNode.writeNode(node, gen, new HashMap<>(), false, "#");
+        gen.flush();
+        return new String(baos.toByteArray());
+    }
+
+    @Benchmark
+    public String print_writer() {
+        return node.toString(false);
+    }
+}
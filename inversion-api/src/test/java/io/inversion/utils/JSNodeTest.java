@@ -16,9 +16,17 @@
  */
 package io.inversion.utils;
 
+import io.inversion.ApiException;
 import org.apache.commons.collections4.CollectionUtils;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class JSNodeTest {
@@ -402,4 +410,108 @@ public class JSNodeTest {
         JSArray found = test.findAll("**.*");
     }
 
+    @Test
+    public void parseJson_streamMatchesStringParse() {
+        String json = Utils.read(getClass().getResourceAsStream("testJsonPath1.json"));
+
+        Object streamed = JSNode.parseJson(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(JSNode.parseJsonNode(json).toString(), streamed.toString());
+
+        JSArray arr = (JSArray) JSNode.parseJson(new ByteArrayInputStream("[1, 2.5, 12345678901, \"a\", true, null, {\"B\":[]}]".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Integer.valueOf(1), arr.get(0));
+        assertEquals(Double.valueOf(2.5), arr.get(1));
+        assertEquals(Long.valueOf(12345678901L), arr.get(2));
+        assertEquals("a", arr.get(3));
+        assertEquals(Boolean.TRUE, arr.get(4));
+        assertNull(arr.get(5));
+        assertTrue(arr.getNode(6).get("b") instanceof JSArray);
+
+        assertNull(JSNode.parseJson(new ByteArrayInputStream(new byte[0])));
+    }
+
+    @Test
+    public void parseJson_streamEnforcesLimits() {
+        byte[] json = "{\"a\":{\"b\":[{\"c\":1}]}}".getBytes(StandardCharsets.UTF_8);
+
+        assertNotNull(JSNode.parseJson(new ByteArrayInputStream(json), json.length, 4));
+
+        ApiException ex = assertThrows(ApiException.class, () -> JSNode.parseJson(new ByteArrayInputStream(json), json.length - 1, -1));
+        assertTrue(ex.hasStatus(413));
+
+        ex = assertThrows(ApiException.class, () -> JSNode.parseJson(new ByteArrayInputStream(json), -1, 3));
+        assertTrue(ex.hasStatus(400));
+
+        ex = assertThrows(ApiException.class, () -> JSNode.parseJson(new ByteArrayInputStream("{\"a\":".getBytes(StandardCharsets.UTF_8))));
+        assertTrue(ex.hasStatus(400));
+    }
+
+    @Test
+    public void properties_caseInsensitiveAndInsertionOrdered() {
+        JSNode                        node     = new JSNode();
+        LinkedHashMap<String, String> expected = new LinkedHashMap<>();
+        Random                        random   = new Random(1);
+
+        for (int i = 0; i < 5000; i++) {
+            String name = "Prop" + random.nextInt(200);
+            name = random.nextBoolean() ? name.toUpperCase() : name;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(name.toLowerCase()) != null, node.remove(name) != null);
+            } else {
+                String previous = expected.get(name.toLowerCase());
+                expected.put(name.toLowerCase(), name);
+                node.put(name, name);
+                //-- replacing keeps the original position but takes the new case
+                assertEquals(name, node.get(name.toLowerCase()));
+                assertTrue(previous == null || node.containsKey(previous));
+            }
+            assertEquals(expected.size(), node.size());
+        }
+        assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(node.keySet()));
+
+        node.putFirst("PROP7", "first");
+        assertEquals("PROP7", node.keySet().iterator().next());
+        assertEquals("first", node.get("prop7"));
+
+        node.sortKeys();
+        List<String> sorted = new ArrayList<>(node.keySet());
+        sorted.sort(String.CASE_INSENSITIVE_ORDER);
+        assertEquals(sorted, new ArrayList<>(node.keySet()));
+
+        node.clear();
+        assertTrue(node.isEmpty());
+        assertNull(node.get("prop7"));
+        node.put("a", 1);
+        assertEquals("{\"a\":1}", node.toString(false));
+    }
+
+    @Test
+    public void compilePath_reusableAcrossDocumentsAndCached() {
+        JSPath path = JSNode.compilePath("$..book[?(@.price < 10)]");
+        assertEquals(3, path.size());
+
+        JSNode doc1 = new JSNode("store", new JSNode("book", new JSArray(new JSNode("title", "cheap", "price", 5), new JSNode("title", "dear", "price", 50))));
+        JSNode doc2 = new JSNode("book", new JSArray(new JSNode("title", "other", "price", 1)));
+
+        assertEquals(1, doc1.findAll(path).size());
+        assertEquals("cheap", doc1.findAll(path).getNode(0).get("title"));
+        assertEquals("other", ((JSNode) doc2.find(path)).get("title"));
+        assertEquals(doc1.findAll("$..book[?(@.price < 10)]").toString(), doc1.findAll(path).toString());
+
+        assertSame(JSPath.cached("a.b.c"), JSPath.cached("a.b.c"));
+
+        //-- a full cache evicts the least recently used expressions instead of starting over
+        JSPath hot = JSPath.cached("a.b.c");
+        for (int i = 0; i < JSPath.MAX_CACHE_SIZE; i++) {
+            JSPath.cached("cold" + i);
+            JSPath.cached("a.b.c");
+        }
+        assertSame(hot, JSPath.cached("a.b.c"));
+        assertTrue(JSPath.cache.size() <= JSPath.MAX_CACHE_SIZE);
+        assertFalse(JSPath.cache.containsKey("cold0"));
+
+        //-- cyclic documents terminate, each node is visited once per remaining path
+        JSNode cycle = new JSNode("name", "a");
+        cycle.put("self", cycle);
+        assertEquals(1, cycle.findAll("**.name").size());
+    }
 }
@@ -186,4 +186,40 @@ public class PathTest {
 
         assertTrue(new Path("{collection:players|locations|ads}/[{resource:[0-9]{1,12}}]/{relationship:[a-z]*}").matches("Locations/698/players"));
     }
+
+    @Test
+    public void compile_isCachedUntilModified() {
+        Path         rule     = new Path("something/{collection:books|customers}");
+        CompiledPath compiled = rule.compile();
+
+        assertSame(compiled, rule.compile());
+        assertTrue(compiled.matches(new Path("something/Books")));
+
+        rule.add(":resource");
+        assertNotSame(compiled, rule.compile());
+        assertFalse(rule.matches("something/books"));
+        assertTrue(rule.matches("something/books/1234"));
+        assertFalse(compiled.matches(new Path("something/books/1234")), "a compiled path must not see later modifications");
+
+        rule.remove(2);
+        assertTrue(rule.matches("something/books"));
+    }
+
+    @Test
+    public void compile_extractWithOffsetDoesNotConsume() {
+        Map<String, String> params = new HashMap<>();
+
+        CompiledPath rule = new Path("{collection:books|customers}/[:resource]/*").compile();
+        Path         path = new Path("api/customers/1234/orders");
+
+        assertTrue(rule.matches(path, 1));
+        assertFalse(rule.matches(path, 0));
+
+        int next = rule.extract(params, path, 1, false);
+
+        assertEquals(2, next);
+        assertEquals("customers", params.get("collection"));
+        assertEquals("1234", params.get("resource"));
+        assertEquals("api/customers/1234/orders", path.toString());
+    }
 }
@@ -26,6 +26,7 @@ import io.inversion.Engine;
 import io.inversion.Request;
 import io.inversion.Response;
 
+import java.io.ByteArrayOutputStream;
 import java.util.List;
 import java.util.Optional;
 
@@ -54,7 +55,7 @@ public class AzureFunctionHttpTriggerHandler {
             }
 
             Request  req = buildRequest(request);
-            Response res = engine.service(req, new Response()).getResponse();
+            Response res = engine.service(req, new Response().withStreaming(true)).getResponse();
 
             return buildHttpResponseMessage(request, req, res);
         } catch (Exception ex) {
@@ -91,7 +92,8 @@ public class AzureFunctionHttpTriggerHandler {
                     buff.append(",");
             }
             builder.header(key, buff.toString());
-            res.debug(key + " " + buff);
+            if (res.isDebug())
+                res.debug(key + " " + buff);
         }
         if ("OPTIONS".equals(req.getMethod())) {
             //
@@ -99,8 +101,11 @@ public class AzureFunctionHttpTriggerHandler {
             String contentType = res.getContentType();
             builder.header("Content-Type", contentType);
 
-            String output = res.getOutput();
-            builder.body(output);
+            //-- the function host buffers the body, so render it once into bytes
+            //-- instead of building the output String and copying it again
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            res.writeOutput(body);
+            builder.body(body.toByteArray());
         }
 
         return builder.build();
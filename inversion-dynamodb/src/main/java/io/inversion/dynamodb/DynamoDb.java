@@ -119,8 +119,13 @@ public class DynamoDb extends Db<DynamoDb> {
 
     @Override
     public Results doSelect(Collection table, List<Term> columnMappedTerms) throws ApiException {
+        return doSelect(table, columnMappedTerms, false);
+    }
+
+    @Override
+    public Results doSelect(Collection table, List<Term> columnMappedTerms, boolean cursor) throws ApiException {
         DynamoDbQuery query = new DynamoDbQuery(this, table, columnMappedTerms).withDynamoTable(getDynamoTable(table));
-        return query.doSelect();
+        return query.doSelect(cursor);
     }
 
     @Override
@@ -149,7 +154,7 @@ public class DynamoDb extends Db<DynamoDb> {
             }
             //add to the current row to batch
             Map<String, AttributeValue> item = ItemUtils.fromSimpleMap(row);
-            Chain.debug("DynamoDb", "PutRequest", item);
+            Chain.debug(() -> "DynamoDb PutRequest " + item);
             PutRequest put = new PutRequest().withItem(item);
             writeRequests.add(new WriteRequest(put));
         }
@@ -30,6 +30,7 @@ import io.inversion.utils.Utils;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -179,9 +180,21 @@ public class DynamoDbQuery extends Query<DynamoDbQuery, DynamoDb, Select<Select<
     }
 
     public Results doSelect() throws ApiException {
+        return doSelect(false);
+    }
+
+    /**
+     * Runs the select returning either materialized rows or, for queries and scans when <code>cursor</code> is true,
+     * a {@link Results.Cursor} that pages through DynamoDB as it is read.
+     *
+     * @param cursor true to return a forward only cursor
+     * @return the query results
+     * @throws ApiException if the query fails
+     */
+    public Results doSelect(boolean cursor) throws ApiException {
         Results.LAST_QUERY = null;
         try {
-            return doSelect0();
+            return doSelect0(cursor);
         } catch (Exception ex) {
             if (Results.LAST_QUERY != null) {
                 System.out.println("Error after query: " + Results.LAST_QUERY);
@@ -194,6 +207,10 @@ public class DynamoDbQuery extends Query<DynamoDbQuery, DynamoDb, Select<Select<
     }
 
     protected Results doSelect0() throws Exception {
+        return doSelect0(false);
+    }
+
+    protected Results doSelect0(boolean cursor) throws Exception {
         com.amazonaws.services.dynamodbv2.document.Index dynamoIndex = null;
         Results                                          result      = new Results(this);
 
@@ -255,6 +272,9 @@ public class DynamoDbQuery extends Query<DynamoDbQuery, DynamoDb, Select<Select<
 
             if (!isDryRun()) {
                 ItemCollection<QueryOutcome> queryResult = dynamoIndex != null ? dynamoIndex.query(qs) : dynamoTable.query(qs);
+                if (cursor)
+                    return result.withCursor(new ItemCursor(queryResult));
+
                 for (Item item : queryResult) {
                     result.withRow(item.asMap());
                 }
@@ -289,6 +309,9 @@ public class DynamoDbQuery extends Query<DynamoDbQuery, DynamoDb, Select<Select<
 
             if (!isDryRun()) {
                 ItemCollection<ScanOutcome> scanResult = dynamoIndex != null ? dynamoIndex.scan(ss) : dynamoTable.scan(ss);
+                if (cursor)
+                    return result.withCursor(new ItemCursor(scanResult));
+
                 for (Item item : scanResult) {
                     result.withRow(item.asMap());
                 }
@@ -731,4 +754,30 @@ public class DynamoDbQuery extends Query<DynamoDbQuery, DynamoDb, Select<Select<
         return buff;
     }
 
+    /**
+     * Iterates the items of a query or scan.  The SDK requests the next page, using the previous page's
+     * LastEvaluatedKey, only when the current page has been read so only one page is held in memory at a time.
+     */
+    static class ItemCursor implements Results.Cursor<Map<String, Object>> {
+        final Iterator<Item> items;
+
+        ItemCursor(ItemCollection<?> items) {
+            this.items = items.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return items.hasNext();
+        }
+
+        @Override
+        public Map<String, Object> next() {
+            return items.next().asMap();
+        }
+
+        @Override
+        public void close() {
+            //-- nothing is held open between pages
+        }
+    }
 }
@@ -179,7 +179,7 @@ public class ElasticsearchDb extends Db<ElasticsearchDb> {
         try {
             DeleteRequest request = new DeleteRequest(collection.getTableName(), "doc", id.toString());
 
-            Chain.debug("ElasticDb: Delete request=" + request.toString());
+            Chain.debug(() -> "ElasticDb: Delete request=" + request.toString());
 
             DeleteResponse response = getElasticClient().delete(request, RequestOptions.DEFAULT);
 
@@ -219,7 +219,7 @@ public class ElasticsearchDb extends Db<ElasticsearchDb> {
         UpdateRequest updateRequest = new UpdateRequest(table.getTableName(), "doc", id);
         updateRequest.upsert(json, XContentType.JSON);
 
-        Chain.debug("ElasticDb: Upsert " + updateRequest.toString());
+        Chain.debug(() -> "ElasticDb: Upsert " + updateRequest.toString());
 
         UpdateResponse response;
         try {
@@ -33,6 +33,17 @@ import java.lang.reflect.Field;
 import java.net.URL;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.stream.Collectors;
 
 /**
@@ -40,6 +51,11 @@ import java.util.stream.Collectors;
  */
 public class JdbcDb extends Db<JdbcDb> {
 
+    public static final String COUNT_QUERY       = "query";
+    public static final String COUNT_WINDOW      = "window";
+    public static final String COUNT_CACHED      = "cached";
+    public static final String COUNT_APPROXIMATE = "approximate";
+
     static final Map<String, String> DEFAULT_DRIVERS = new HashMap<>();
     static final Map<Db, DataSource> pools           = new Hashtable<>();
 
@@ -70,6 +86,9 @@ public class JdbcDb extends Db<JdbcDb> {
 
             @Override
             public void afterStmt(String method, String sql, Object args, Exception ex, Object result) {
+                if (!Chain.isDebugging())
+                    return;
+
                 String debugPrefix = "SqlDb: ";
 
                 String debugType = "unknown";
@@ -149,9 +168,154 @@ public class JdbcDb extends Db<JdbcDb> {
      */
     protected       boolean      autoCommit               = false;
     /**
-     * For MySQL only, set this to false to turn off SQL_CALC_FOUND_ROWS and SELECT FOUND_ROWS()
+     * For MySQL only, set this to false to turn off SQL_CALC_FOUND_ROWS and SELECT FOUND_ROWS() and count with a
+     * "SELECT count(1)" subquery instead.
      */
     protected       boolean      calcRowsFound            = true;
+    /**
+     * The JDBC fetch size used when rows are streamed through a {@link Results.Cursor}, values less than 1 use the driver default.
+     * <p>
+     * Some drivers need extra url configuration to honor this, for example MySQL Connector/J requires "useCursorFetch=true".
+     *
+     * @see #doSelect(Collection, List, boolean)
+     */
+    protected       int          fetchSize                = 1000;
+    /**
+     * The maximum number of statement shapes whose generated SQL is cached, less than 1 turns the cache off.
+     * <p>
+     * Queries that differ only in their literal values share a {@link SqlPlan} so the SQL text is generated once
+     * per shape and the driver sees the same statement text each time.
+     */
+    protected       int          planCacheSize            = 1000;
+    /**
+     * Result sets with at least this many rows page with an <code>after(col1,val1,...)</code> seek term instead of OFFSET, less than 1 turns keyset paging off.
+     * <p>
+     * Keyset paging is only used when the sort is unique, on the primary index or a unique index, so each page
+     * is found with an index seek instead of reading and discarding every row before the offset.
+     *
+     * @see SqlQuery#getSeekSorts()
+     */
+    protected       int          keysetPagingRows         = 1000;
+    /**
+     * On PostgreSQL, upserts of at least this many rows are bulk loaded with COPY ... FROM STDIN into a temporary
+     * staging table that is then merged into the table, less than 1, the default, turns this off.
+     * <p>
+     * Smaller upserts, and other databases, use multi-row VALUES statements sized to the driver's parameter limit.
+     *
+     * @see JdbcUtils#upsert(Connection, String, List, List, int)
+     */
+    protected       int          copyRows                 = -1;
+
+    /**
+     * How {@link SqlQuery} finds foundRows when a page is full, one of:
+     * <ul>
+     *   <li>"query" - runs a second "SELECT count(1)" statement, or SELECT FOUND_ROWS() on MySQL, this is the default
+     *   <li>"window" - selects COUNT(*) OVER() with the rows in the same statement on PostgreSQL, SQL Server and H2
+     *   <li>"cached" - caches counts per statement and values for {@link #getCountCacheTtl()}, writes through this Db invalidate a collection's counts
+     *   <li>"approximate" - reads the table row estimate from the catalog for unfiltered selects, such as pg_class.reltuples
+     * </ul>
+     * Strategies that do not apply to a query fall back to "query".  The strategy can be set per collection
+     * with {@link #withCountStrategy(String, String)} and is overridden by a "countStrategy" endpoint or action config.
+     * Estimated counts are flagged with a false "foundRowsExact" in the Response meta.
+     */
+    protected       String       countStrategy            = COUNT_QUERY;
+    /**
+     * Collection name to count strategy overrides of {@link #countStrategy}.
+     */
+    protected final Map<String, String> collectionCountStrategies = new HashMap<>();
+    /**
+     * How long the "cached" count strategy keeps a count.
+     */
+    protected       long         countCacheTtl            = 60000;
+    /**
+     * The maximum number of counts the "cached" count strategy keeps.
+     */
+    protected       int          countCacheSize           = 1000;
+
+    final Map<String, long[]> counts = new LinkedHashMap<String, long[]>(256, .75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+            return size() > countCacheSize;
+        }
+    };
+
+    final Map<String, SqlPlan> plans = new LinkedHashMap<String, SqlPlan>(256, .75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SqlPlan> eldest) {
+            return size() > planCacheSize;
+        }
+    };
+
+    final AtomicLong planHits   = new AtomicLong();
+    final AtomicLong planMisses = new AtomicLong();
+
+    /**
+     * JDBC urls of read replicas of this database.  Each replica has its own connection pool, using this Db's
+     * user, pass and driver, and serves the selects of requests that have not written through this Db.
+     * <p>
+     * Upserts, patches and deletes always go to the primary.  Once any request in a Chain tree has written,
+     * or when the request carries {@link #readPrimaryHeader} or {@link #readPrimaryCookie}, later selects of the
+     * request are read from the primary so callers see their own writes.
+     */
+    protected final List<String> replicaUrls              = new ArrayList<>();
+    /**
+     * How selects are spread across healthy replicas, "roundRobin" or "leastConnections".
+     */
+    protected       String       replicaBalancing         = "roundRobin";
+    /**
+     * A request header that, when present with any value, sends the request's selects to the primary.
+     * <p>
+     * Clients can send this, or {@link #readPrimaryCookie}, for a short time after writing when the replication lag
+     * of the replicas would otherwise hide their write from the next request.
+     */
+    protected       String       readPrimaryHeader        = null;
+    /**
+     * A cookie that, when present with any value, sends the request's selects to the primary.
+     */
+    protected       String       readPrimaryCookie        = null;
+    /**
+     * Milliseconds between replica health checks, less than 1 turns the checks off.
+     */
+    protected       long         replicaCheckInterval     = 5000;
+    /**
+     * Replicas that are more than this many seconds behind the primary are not read from until they catch up,
+     * less than 0 turns off the lag check.  Lag is only measured for MySQL and PostgreSQL.
+     */
+    protected       int          replicaMaxLag            = 30;
+
+    final List<JdbcDb>       replicas      = new ArrayList<>();
+    final Set<JdbcDb>        downReplicas  = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    final AtomicInteger      nextReplica   = new AtomicInteger();
+    ScheduledExecutorService replicaChecker = null;
+
+    /**
+     * Names of collections whose upserts are group committed.
+     * <p>
+     * Upserts of these collections, from requests that have not already used a connection to this Db, are queued
+     * and a committer thread writes everything queued within {@link #groupCommitMillis}, or up to {@link #groupCommitRows}
+     * rows, with one statement per table and a single commit.  When the batch fails each queued upsert is retried on its
+     * own so only the caller whose rows are bad receives the error.
+     * <p>
+     * A grouped upsert is committed before doUpsert returns, independently of the request's transaction, so this is
+     * meant for endpoints such as high rate ingestion that write one record per request.
+     */
+    protected final Set<String> groupCommitCollections = new HashSet<>();
+    /**
+     * How long the committer waits for more upserts after the first one is queued.
+     */
+    protected       long        groupCommitMillis      = 5;
+    /**
+     * The most rows written by one group commit, the committer stops waiting once this many rows are queued.
+     */
+    protected       int         groupCommitRows        = 1000;
+    /**
+     * How long a caller waits for its group commit before failing with a 500, the rows may still be written if the commit was already underway.
+     */
+    protected       long        groupCommitTimeout     = 30000;
+
+    final    Queue<GroupWrite> groupWrites    = new ConcurrentLinkedQueue<>();
+    final    AtomicInteger     groupRows      = new AtomicInteger();
+    volatile Thread            groupCommitter = null;
 
     public JdbcDb() {
         //System.out.println("JdbcDb() <init>");
@@ -178,10 +342,18 @@ public class JdbcDb extends Db<JdbcDb> {
 
     @Override
     protected void doStartup(Api api) {
+        synchronized (plans) {
+            plans.clear();
+        }
+        synchronized (counts) {
+            counts.clear();
+        }
+
         if (isType("mysql"))
             withColumnQuote('`');
 
         super.doStartup(api);
+        startReplicas();
 
         api.withApiListener(new ApiListener() {
 
@@ -193,8 +365,13 @@ public class JdbcDb extends Db<JdbcDb> {
             public void onShutdown(Api api) {
             }
 
+            //-- requests dispatched by Actions share the thread's connections, only the outermost
+            //-- request commits, rolls back and closes them so a composite operation is one transaction
+
             @Override
             public void afterRequest(Request req, Response res) {
+                if (!Chain.isOutermost())
+                    return;
                 try {
                     JdbcConnectionLocal.commit();
                 } catch (Exception ex) {
@@ -204,7 +381,8 @@ public class JdbcDb extends Db<JdbcDb> {
 
             @Override
             public void afterError(Request req, Response res) {
-
+                if (!Chain.isOutermost())
+                    return;
                 try {
                     JdbcConnectionLocal.rollback();
                 } catch (Throwable t) {
@@ -215,6 +393,8 @@ public class JdbcDb extends Db<JdbcDb> {
 
             @Override
             public void beforeFinally(Request req, Response res) {
+                if (!Chain.isOutermost())
+                    return;
                 try {
                     JdbcConnectionLocal.close();
                 } catch (Throwable t) {
@@ -244,6 +424,98 @@ public class JdbcDb extends Db<JdbcDb> {
             System.out.println("CLOSING CONNECTION POOL : " + getUrl());
             ((HikariDataSource) pool).close();
         }
+
+        stopReplicas();
+        stopGroupCommitter();
+    }
+
+    /**
+     * Creates a Db for each of the {@link #replicaUrls} and schedules their health checks.
+     */
+    protected void startReplicas() {
+        stopReplicas();
+
+        for (String replicaUrl : replicaUrls) {
+            JdbcDb replica = new JdbcDb(replicaUrl, getUser(), getPass());
+            replica.withName(getName() + "-replica-" + replicas.size());
+            replica.withDriver(driver);
+            replica.setPoolMax(getPoolMax());
+            replica.withAutoCommit(true);
+            replicas.add(replica);
+        }
+
+        if (replicas.size() > 0 && replicaCheckInterval > 0) {
+            replicaChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "inversion-replica-check-" + getName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            replicaChecker.scheduleWithFixedDelay(this::checkReplicas, 0, replicaCheckInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    protected void stopReplicas() {
+        if (replicaChecker != null) {
+            replicaChecker.shutdownNow();
+            replicaChecker = null;
+        }
+
+        for (JdbcDb replica : replicas) {
+            DataSource pool = pools.remove(replica);
+            if (pool != null)
+                ((HikariDataSource) pool).close();
+        }
+        replicas.clear();
+        downReplicas.clear();
+    }
+
+    /**
+     * Marks each replica up or down depending on whether it can be connected to and is within {@link #replicaMaxLag}.
+     */
+    protected void checkReplicas() {
+        for (JdbcDb replica : new ArrayList<>(replicas)) {
+            boolean up;
+            try (Connection conn = replica.getConnection(false)) {
+                up = conn.isValid(5);
+                if (up && replicaMaxLag >= 0) {
+                    int lag = queryReplicaLag(replica, conn);
+                    up = lag <= replicaMaxLag;
+                    if (!up)
+                        log.warn("Replica '" + replica.getUrl() + "' is " + lag + " seconds behind the primary.");
+                }
+            } catch (Exception ex) {
+                log.warn("Replica '" + replica.getUrl() + "' failed its health check: " + ex.getMessage());
+                up = false;
+            }
+
+            if (up)
+                downReplicas.remove(replica);
+            else
+                downReplicas.add(replica);
+        }
+    }
+
+    /**
+     * @param replica the replica to check
+     * @param conn    a connection to <code>replica</code>
+     * @return the number of seconds <code>replica</code> is behind the primary, 0 if it is unknown for this type of database
+     * @throws Exception when replication is not running
+     */
+    protected int queryReplicaLag(JdbcDb replica, Connection conn) throws Exception {
+        if (replica.isType("postgres")) {
+            String sql = "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp())::int END";
+            return Math.max(0, JdbcUtils.selectInt(conn, sql));
+        }
+
+        if (replica.isType("mysql")) {
+            Row status = JdbcUtils.selectRow(conn, "SHOW SLAVE STATUS");
+            Object lag = status == null ? null : status.get("Seconds_Behind_Master");
+            if (lag == null)
+                throw new SQLException("Replication is not running");
+            return Integer.parseInt(lag.toString());
+        }
+
+        return 0;
     }
 
     @Override
@@ -281,47 +553,414 @@ public class JdbcDb extends Db<JdbcDb> {
         return "UNKNOWN";
     }
 
+    /**
+     * MANY_TO_ONE relationships to tables in this same database, with a foreign key for each primary key column,
+     * are LEFT JOINed into the select by {@link SqlQuery}.
+     */
+    @Override
+    public boolean isJoinable(Relationship rel) {
+        if (!rel.isManyToOne() || rel.getRelated().getDb() != this)
+            return false;
+
+        Index fk = rel.getFkIndex1();
+        Index pk = rel.getRelated().getPrimaryIndex();
+        return fk != null && pk != null && fk.size() == pk.size();
+    }
+
     @Override
     public Results doSelect(Collection coll, List<Term> columnMappedTerms) throws ApiException {
+        return doSelect(coll, columnMappedTerms, false);
+    }
+
+    /**
+     * When <code>cursor</code> is true the rows are read from an open ResultSet on a dedicated, unmanaged,
+     * connection that is released when the returned cursor is closed.
+     */
+    @Override
+    public Results doSelect(Collection coll, List<Term> columnMappedTerms, boolean cursor) throws ApiException {
+        //-- the shape is taken before the query builders transform the terms
+        SqlPlan.Shape shape = planCacheSize > 0 ? SqlPlan.Shape.of(coll, columnMappedTerms) : null;
+
         SqlQuery<JdbcDb> query = new SqlQuery<>(this, coll, columnMappedTerms);
-        return query.doSelect();
+        query.shape = shape;
+        return query.doSelect(cursor);
+    }
+
+    SqlPlan getPlan(String key) {
+        SqlPlan plan;
+        synchronized (plans) {
+            plan = plans.get(key);
+        }
+        if (plan == null)
+            planMisses.incrementAndGet();
+        else
+            planHits.incrementAndGet();
+
+        return plan;
+    }
+
+    void putPlan(String key, SqlPlan plan) {
+        synchronized (plans) {
+            plans.put(key, plan);
+        }
+    }
+
+    /**
+     * @param key a count statement and its values prefixed with the table name and '|'
+     * @return the cached count or -1 if it is not cached or has expired
+     */
+    int getCount(String key) {
+        synchronized (counts) {
+            long[] count = counts.get(key);
+            if (count == null)
+                return -1;
+
+            if (count[1] < System.currentTimeMillis()) {
+                counts.remove(key);
+                return -1;
+            }
+            return (int) count[0];
+        }
+    }
+
+    void putCount(String key, int count) {
+        synchronized (counts) {
+            counts.put(key, new long[]{count, System.currentTimeMillis() + countCacheTtl});
+        }
+    }
+
+    /**
+     * Removes the cached counts of <code>table</code>, this is called for every write through this Db.
+     *
+     * @param table the collection that was modified
+     */
+    protected void clearCounts(Collection table) {
+        String prefix = table.getTableName() + "|";
+        synchronized (counts) {
+            counts.keySet().removeIf(key -> key.startsWith(prefix));
+        }
     }
 
     @Override
     public List<String> doUpsert(Collection table, List<Map<String, Object>> rows) throws ApiException {
+        return doUpsert(table, rows, null);
+    }
+
+    /**
+     * Upserts the rows and, when <code>returned</code> is not null, adds the written rows to it.
+     * <p>
+     * PostgreSQL and H2 return the rows from the write statements with RETURNING or a FINAL TABLE and SQL Server
+     * returns inserted rows with OUTPUT.  Written rows that are not returned, such as every MySQL row, are read
+     * with one follow up select.
+     *
+     * @param table    the table being modified
+     * @param rows     the rows being modified with column name keys
+     * @param returned receives the written rows, may be null
+     * @return the encoded resource key for every supplied row
+     * @throws ApiException if the upsert fails
+     */
+    @Override
+    public List<String> doUpsert(Collection table, List<Map<String, Object>> rows, List<Map<String, Object>> returned) throws ApiException {
+        clearCounts(table);
+        markWrite();
+
+        if (isGroupCommit(table) && JdbcConnectionLocal.getConnection(this) == null) {
+            removeUnknownColumns(table, rows);
+            List<String> resourceKeys = groupCommit(table, rows);
+            if (returned != null)
+                returned.addAll(selectResourceKeys(table, resourceKeys));
+            return resourceKeys;
+        }
+
+        List<String>              resourceKeys;
+        List<Map<String, Object>> returning = null;
         try {
-            for (Map<String, Object> row : rows) {
-                for (String key : new ArrayList<>(row.keySet())) {
-                    if (table.getPropertyByColumnName(key) == null)
-                        row.remove(key);
-                }
-            }
+            removeUnknownColumns(table, rows);
+
+            Connection conn = getConnection();
+            if (returned != null && JdbcUtils.isReturning(conn))
+                returning = new ArrayList<>();
 
-            List<Row> upserted = JdbcUtils.upsert(getConnection(), table.getTableName(), table.getPrimaryIndex().getColumnNames(), rows);
-            return upserted.stream().map(table::encodeResourceKey).collect(Collectors.toList());
+            resourceKeys = upsertRows(conn, table, rows, returning);
         } catch (Exception ex) {
             throw ApiException.new500InternalServerError(ex);
         }
+
+        if (returned != null)
+            returned.addAll(selectUnreturned(table, resourceKeys, returning));
+
+        return resourceKeys;
     }
 
-    @Override
-    public void doPatch(Collection table, List<Map<String, Object>> rows) throws ApiException {
+    List<String> upsertRows(Connection conn, Collection table, List<Map<String, Object>> rows, List<Map<String, Object>> returning) throws Exception {
+        List<Row> upserted = JdbcUtils.upsert(conn, table.getTableName(), table.getPrimaryIndex().getColumnNames(), rows, copyRows, returning);
+        return upserted.stream().map(table::encodeResourceKey).collect(Collectors.toList());
+    }
+
+    /**
+     * An upsert waiting in {@link #groupWrites} for the committer.
+     */
+    protected static class GroupWrite {
+        final Collection                      table;
+        final List<Map<String, Object>>       rows;
+        final CompletableFuture<List<String>> keys = new CompletableFuture<>();
+
+        GroupWrite(Collection table, List<Map<String, Object>> rows) {
+            this.table = table;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Queues the rows for the committer thread and waits for them to be committed.
+     *
+     * @param table the table being modified
+     * @param rows  the rows being modified with column name keys
+     * @return the encoded resource key for every supplied row
+     * @throws ApiException if the rows could not be written
+     * @see #groupCommitCollections
+     */
+    protected List<String> groupCommit(Collection table, List<Map<String, Object>> rows) throws ApiException {
+        GroupWrite write = new GroupWrite(table, rows);
+        groupWrites.add(write);
+        groupRows.addAndGet(rows.size());
+        LockSupport.unpark(startGroupCommitter());
+
+        try {
+            return write.keys.get(groupCommitTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            //-- a write the committer has not picked up yet is withdrawn so it is never written
+            if (groupWrites.remove(write)) {
+                groupRows.addAndGet(-rows.size());
+                throw ApiException.new500InternalServerError("Group commit of '{}' timed out after {}ms, the rows were not written", table.getName(), groupCommitTimeout);
+            }
+            throw ApiException.new500InternalServerError("Group commit of '{}' timed out after {}ms, the rows may have been written", table.getName(), groupCommitTimeout);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof ApiException)
+                throw (ApiException) ex.getCause();
+            throw ApiException.new500InternalServerError(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw ApiException.new500InternalServerError(ex);
+        }
+    }
+
+    protected synchronized Thread startGroupCommitter() {
+        if (groupCommitter == null) {
+            groupCommitter = new Thread(this::runGroupCommits, "inversion-group-commit-" + getName());
+            groupCommitter.setDaemon(true);
+            groupCommitter.start();
+        }
+        return groupCommitter;
+    }
+
+    protected synchronized void stopGroupCommitter() {
+        Thread committer = groupCommitter;
+        groupCommitter = null;
+        if (committer != null)
+            LockSupport.unpark(committer);
+    }
+
+    void runGroupCommits() {
+        while (groupCommitter == Thread.currentThread()) {
+            List<GroupWrite> writes = Collections.emptyList();
+            try {
+                if (groupWrites.isEmpty()) {
+                    LockSupport.park(this);
+                    continue;
+                }
+
+                //-- waits for the window to close unless enough rows are queued first
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(groupCommitMillis);
+                while (groupRows.get() < groupCommitRows && groupCommitter == Thread.currentThread()) {
+                    long wait = deadline - System.nanoTime();
+                    if (wait <= 0)
+                        break;
+                    LockSupport.parkNanos(this, wait);
+                }
+                writes = drainGroupWrites();
+                commitGroup(writes);
+            } catch (Throwable ex) {
+                //-- the committer keeps running but nothing queued is left waiting on a group that can not be written
+                log.error("Group commit failed, failing all queued upserts", ex);
+                for (GroupWrite write : writes)
+                    write.keys.completeExceptionally(ex);
+                failGroupWrites(ex);
+            }
+        }
+
+        //-- don't leave callers waiting on a stopped committer
         try {
-            for (Map<String, Object> row : rows) {
-                for (String key : new ArrayList<>(row.keySet())) {
-                    if (table.getPropertyByColumnName(key) == null)
-                        row.remove(key);
+            while (!groupWrites.isEmpty())
+                commitGroup(drainGroupWrites());
+        } catch (Throwable ex) {
+            failGroupWrites(ex);
+        }
+    }
+
+    void failGroupWrites(Throwable ex) {
+        List<GroupWrite> writes;
+        while (!(writes = drainGroupWrites()).isEmpty()) {
+            for (GroupWrite write : writes)
+                write.keys.completeExceptionally(ex);
+        }
+    }
+
+    List<GroupWrite> drainGroupWrites() {
+        List<GroupWrite> writes = new ArrayList<>();
+        int              rows   = 0;
+        GroupWrite       write;
+        while (rows < groupCommitRows && (write = groupWrites.poll()) != null) {
+            writes.add(write);
+            rows += write.rows.size();
+        }
+        groupRows.addAndGet(-rows);
+        return writes;
+    }
+
+    /**
+     * Writes the rows of each table in <code>writes</code> with one upsert and commits them all at once.
+     * <p>
+     * If that fails, each write is upserted and committed on its own so a constraint violation only fails the
+     * caller that sent the violating rows.
+     *
+     * @param writes the queued upserts
+     */
+    protected void commitGroup(List<GroupWrite> writes) {
+        if (writes.isEmpty())
+            return;
+
+        Map<Collection, List<GroupWrite>> tables = new LinkedHashMap<>();
+        for (GroupWrite write : writes)
+            tables.computeIfAbsent(write.table, t -> new ArrayList<>()).add(write);
+
+        try (Connection conn = getConnection(false)) {
+            conn.setAutoCommit(false);
+            try {
+                Map<GroupWrite, List<String>> keys = new HashMap<>();
+                for (Map.Entry<Collection, List<GroupWrite>> table : tables.entrySet()) {
+                    List<Map<String, Object>> rows = new ArrayList<>();
+                    for (GroupWrite write : table.getValue())
+                        rows.addAll(write.rows);
+
+                    List<String> resourceKeys = upsertRows(conn, table.getKey(), rows, null);
+                    int          offset       = 0;
+                    for (GroupWrite write : table.getValue()) {
+                        keys.put(write, new ArrayList<>(resourceKeys.subList(offset, offset + write.rows.size())));
+                        offset += write.rows.size();
+                    }
+                }
+                conn.commit();
+                keys.forEach((write, resourceKeys) -> write.keys.complete(resourceKeys));
+            } catch (Exception ex) {
+                log.debug("Group commit of " + writes.size() + " upserts failed, retrying them one at a time: " + ex.getMessage());
+                conn.rollback();
+
+                for (GroupWrite write : writes) {
+                    try {
+                        List<String> resourceKeys = upsertRows(conn, write.table, write.rows, null);
+                        conn.commit();
+                        write.keys.complete(resourceKeys);
+                    } catch (Exception writeEx) {
+                        conn.rollback();
+                        write.keys.completeExceptionally(writeEx);
+                    }
                 }
             }
+        } catch (Throwable ex) {
+            //-- this does not change writes that were already completed
+            for (GroupWrite write : writes)
+                write.keys.completeExceptionally(ex);
+        }
+    }
+
+    @Override
+    public void doPatch(Collection table, List<Map<String, Object>> rows) throws ApiException {
+        doPatch(table, rows, null);
+    }
+
+    /**
+     * Patches the rows and, when <code>returned</code> is not null, adds the patched rows to it.
+     *
+     * @param table    the table being modified
+     * @param rows     the key values and changed values with column name keys
+     * @param returned receives the patched rows, may be null
+     * @throws ApiException if the patch fails
+     * @see #doUpsert(Collection, List, List)
+     */
+    @Override
+    public void doPatch(Collection table, List<Map<String, Object>> rows, List<Map<String, Object>> returned) throws ApiException {
+        clearCounts(table);
+        markWrite();
+
+        List<Map<String, Object>> returning = null;
+        try {
+            removeUnknownColumns(table, rows);
 
-            JdbcUtils.update(getConnection(), table.getTableName(), table.getPrimaryIndex().getColumnNames(), rows);
+            Connection conn = getConnection();
+            if (returned != null && JdbcUtils.isReturning(conn))
+                returning = new ArrayList<>();
+
+            JdbcUtils.update(conn, table.getTableName(), table.getPrimaryIndex().getColumnNames(), rows, returning);
         } catch (Exception ex) {
             throw ApiException.new500InternalServerError(ex);
         }
+
+        if (returned != null) {
+            List<String> resourceKeys = rows.stream().map(table::encodeResourceKey).collect(Collectors.toList());
+            returned.addAll(selectUnreturned(table, resourceKeys, returning));
+        }
+    }
+
+    void removeUnknownColumns(Collection table, List<Map<String, Object>> rows) {
+        for (Map<String, Object> row : rows) {
+            for (String key : new ArrayList<>(row.keySet())) {
+                if (table.getPropertyByColumnName(key) == null)
+                    row.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Trims rows returned by a write statement to the table's properties, the same columns a select reads,
+     * and selects the rows of any <code>resourceKeys</code> that were not returned.
+     *
+     * @param table        the table that was written
+     * @param resourceKeys the keys of the written rows
+     * @param returning    the rows the write statements returned, null if none could be returned
+     * @return the written rows
+     */
+    List<Map<String, Object>> selectUnreturned(Collection table, List<String> resourceKeys, List<Map<String, Object>> returning) {
+        if (returning == null)
+            return selectResourceKeys(table, resourceKeys);
+
+        Set<String> found = new HashSet<>();
+        for (int i = 0; i < returning.size(); i++) {
+            Map<String, Object> row     = returning.get(i);
+            Row                 trimmed = new Row();
+            for (String col : row.keySet()) {
+                if (table.getPropertyByColumnName(col) != null)
+                    trimmed.put(col, row.get(col));
+            }
+            returning.set(i, trimmed);
+            found.add(table.encodeResourceKey(trimmed));
+        }
+
+        List<String> missing = new ArrayList<>();
+        for (String resourceKey : resourceKeys) {
+            if (!found.contains(resourceKey))
+                missing.add(resourceKey);
+        }
+        if (missing.size() > 0)
+            returning.addAll(selectResourceKeys(table, missing));
+
+        return returning;
     }
 
     @Override
     public void delete(Collection table, List<Map<String, Object>> columnMappedIndexValues) throws ApiException {
+        clearCounts(table);
+        markWrite();
         try {
             if (columnMappedIndexValues.size() == 0)
                 return;
@@ -368,6 +1007,75 @@ public class JdbcDb extends Db<JdbcDb> {
         }
     }
 
+    /**
+     * Unlinks every parent with a single UPDATE, or DELETE for MANY_TO_MANY link tables, whose WHERE clause ORs together
+     * one <code>(parent AND NOT (keep OR keep...))</code> group per parent.  The statement is only split when it would
+     * exceed the number of bind parameters the database allows.
+     */
+    @Override
+    public void unlink(Relationship rel, Map<Map<String, Object>, List<Map<String, Object>>> keeps) throws ApiException {
+        Collection table = rel.isOneToMany() ? rel.getRelated() : rel.getFk1Col1().getCollection();
+        clearCounts(table);
+        markWrite();
+        try {
+            Connection conn = getConnection();
+
+            StringBuilder prefix = new StringBuilder();
+            if (rel.isOneToMany()) {
+                prefix.append(" UPDATE ").append(quoteCol(table.getTableName())).append(" SET ");
+                List<String> fkCols = rel.getFkIndex1().getColumnNames();
+                for (int i = 0; i < fkCols.size(); i++)
+                    prefix.append(i > 0 ? ", " : "").append(quoteCol(fkCols.get(i))).append(" = NULL");
+            } else {
+                prefix.append(" DELETE FROM ").append(quoteCol(table.getTableName()));
+            }
+            prefix.append(" WHERE ");
+
+            int           maxParams = JdbcUtils.getMaxParams(conn);
+            StringBuilder where     = new StringBuilder();
+            List<Object>  values    = new ArrayList<>();
+            for (Map.Entry<Map<String, Object>, List<Map<String, Object>>> entry : keeps.entrySet()) {
+                StringBuilder group       = new StringBuilder("(");
+                List<Object>  groupValues = new ArrayList<>();
+                appendKey(group, entry.getKey(), groupValues);
+                if (entry.getValue().size() > 0) {
+                    group.append(" AND NOT (");
+                    for (int i = 0; i < entry.getValue().size(); i++) {
+                        if (i > 0)
+                            group.append(" OR ");
+                        appendKey(group, entry.getValue().get(i), groupValues);
+                    }
+                    group.append(")");
+                }
+                group.append(")");
+
+                if (values.size() > 0 && values.size() + groupValues.size() > maxParams) {
+                    JdbcUtils.execute(conn, prefix + where.toString(), values.toArray());
+                    where.setLength(0);
+                    values.clear();
+                }
+                where.append(values.size() > 0 ? " OR " : "").append(group);
+                values.addAll(groupValues);
+            }
+            if (values.size() > 0)
+                JdbcUtils.execute(conn, prefix + where.toString(), values.toArray());
+        } catch (Exception ex) {
+            throw ApiException.new500InternalServerError(ex);
+        }
+    }
+
+    void appendKey(StringBuilder sql, Map<String, Object> key, List<Object> values) {
+        sql.append("(");
+        int i = 0;
+        for (Map.Entry<String, Object> col : key.entrySet()) {
+            if (i++ > 0)
+                sql.append(" AND ");
+            sql.append(quoteCol(col.getKey())).append(" = ?");
+            values.add(col.getValue());
+        }
+        sql.append(")");
+    }
+
     /**
      * Shortcut for getConnection(true);
      *
@@ -423,6 +1131,112 @@ public class JdbcDb extends Db<JdbcDb> {
         }
     }
 
+    /**
+     * Returns a connection for a select, from a healthy replica when there are replicas and the request
+     * should not read from the primary, otherwise from the primary.
+     *
+     * @param managed see {@link #getConnection(boolean)}
+     * @return a Connection
+     * @see #replicaUrls
+     */
+    public Connection getReadConnection(boolean managed) throws ApiException {
+        if (replicas.isEmpty() || isReadPrimary())
+            return getConnection(managed);
+
+        JdbcDb replica = nextReplica(managed);
+        if (replica != null) {
+            try {
+                return replica.getConnection0(managed);
+            } catch (Exception ex) {
+                log.warn("Unable to read from replica '" + replica.getUrl() + "', reading from the primary instead: " + ex.getMessage());
+                downReplicas.add(replica);
+            }
+        }
+        return getConnection(managed);
+    }
+
+    /**
+     * Picks a healthy replica preferring, for managed connections, one this thread already holds a connection to.
+     *
+     * @param managed true if the connection will be shared on the thread
+     * @return a replica or null if they are all down
+     */
+    protected JdbcDb nextReplica(boolean managed) {
+        List<JdbcDb> up = new ArrayList<>(replicas);
+        up.removeAll(downReplicas);
+        if (up.isEmpty())
+            return null;
+
+        if (managed) {
+            for (JdbcDb replica : up) {
+                if (JdbcConnectionLocal.getConnection(replica) != null)
+                    return replica;
+            }
+        }
+
+        if ("leastConnections".equalsIgnoreCase(replicaBalancing)) {
+            JdbcDb least       = null;
+            int    leastActive = Integer.MAX_VALUE;
+            for (JdbcDb replica : up) {
+                DataSource pool   = pools.get(replica);
+                int        active = pool == null ? 0 : ((HikariDataSource) pool).getHikariPoolMXBean().getActiveConnections();
+                if (active < leastActive) {
+                    least = replica;
+                    leastActive = active;
+                }
+            }
+            return least;
+        }
+
+        return up.get(Math.floorMod(nextReplica.getAndIncrement(), up.size()));
+    }
+
+    /**
+     * @return true if this request, or any request in its Chain tree, has written through this Db or it carries
+     * the {@link #readPrimaryHeader} or {@link #readPrimaryCookie}
+     */
+    protected boolean isReadPrimary() {
+        Chain root = getRootChain();
+        if (root == null)
+            return false;
+
+        if (root.get(getReadPrimaryKey()) != null)
+            return true;
+
+        Request req = root.getRequest();
+        if (!Utils.empty(readPrimaryHeader) && !Utils.empty(req.getHeader(readPrimaryHeader)))
+            return true;
+
+        if (!Utils.empty(readPrimaryCookie) && req.getHeader("cookie") != null) {
+            for (String cookie : req.getHeader("cookie").split(";")) {
+                int idx = cookie.indexOf('=');
+                if (idx > 0 && cookie.substring(0, idx).trim().equals(readPrimaryCookie) && !Utils.empty(cookie.substring(idx + 1).trim()))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sends the later selects of the current Chain tree to the primary, this is called for every write through this Db.
+     */
+    protected void markWrite() {
+        Chain root = getRootChain();
+        if (root != null)
+            root.put(getReadPrimaryKey(), true);
+    }
+
+    String getReadPrimaryKey() {
+        return "~~readPrimary." + getName();
+    }
+
+    static Chain getRootChain() {
+        Chain root = Chain.peek();
+        while (root != null && root.getParent() != null)
+            root = root.getParent();
+        return root;
+    }
+
     protected DataSource createConnectionPool() throws Exception {
         if (ddlUrls.size() > 0) {
             //createConnectionPool() should only be called once per DB
@@ -788,6 +1602,204 @@ public class JdbcDb extends Db<JdbcDb> {
         return this;
     }
 
+    public int getPlanCacheSize() {
+        return planCacheSize;
+    }
+
+    public JdbcDb withPlanCacheSize(int planCacheSize) {
+        synchronized (plans) {
+            this.planCacheSize = planCacheSize;
+            plans.clear();
+        }
+        return this;
+    }
+
+    public long getPlanCacheHits() {
+        return planHits.get();
+    }
+
+    public long getPlanCacheMisses() {
+        return planMisses.get();
+    }
+
+    public String getCountStrategy() {
+        return countStrategy;
+    }
+
+    /**
+     * @param collection the collection being counted, may be null
+     * @return the count strategy for <code>collection</code>
+     */
+    public String getCountStrategy(Collection collection) {
+        String strategy = collection == null ? null : collectionCountStrategies.get(collection.getName().toLowerCase());
+        return strategy != null ? strategy : countStrategy;
+    }
+
+    public JdbcDb withCountStrategy(String countStrategy) {
+        this.countStrategy = countStrategy;
+        return this;
+    }
+
+    public JdbcDb withCountStrategy(String collectionName, String countStrategy) {
+        collectionCountStrategies.put(collectionName.toLowerCase(), countStrategy);
+        return this;
+    }
+
+    /**
+     * @param collection the collection being upserted
+     * @return true if upserts of <code>collection</code> are group committed
+     * @see #groupCommitCollections
+     */
+    public boolean isGroupCommit(Collection collection) {
+        return groupCommitCollections.contains(collection.getName().toLowerCase());
+    }
+
+    public JdbcDb withGroupCommit(String... collectionNames) {
+        for (String collectionName : collectionNames)
+            groupCommitCollections.add(collectionName.toLowerCase());
+        return this;
+    }
+
+    public long getGroupCommitMillis() {
+        return groupCommitMillis;
+    }
+
+    public JdbcDb withGroupCommitMillis(long groupCommitMillis) {
+        this.groupCommitMillis = groupCommitMillis;
+        return this;
+    }
+
+    public long getGroupCommitTimeout() {
+        return groupCommitTimeout;
+    }
+
+    public JdbcDb withGroupCommitTimeout(long groupCommitTimeout) {
+        this.groupCommitTimeout = groupCommitTimeout;
+        return this;
+    }
+
+    public int getGroupCommitRows() {
+        return groupCommitRows;
+    }
+
+    public JdbcDb withGroupCommitRows(int groupCommitRows) {
+        this.groupCommitRows = groupCommitRows;
+        return this;
+    }
+
+    public long getCountCacheTtl() {
+        return countCacheTtl;
+    }
+
+    public JdbcDb withCountCacheTtl(long countCacheTtl) {
+        this.countCacheTtl = countCacheTtl;
+        return this;
+    }
+
+    public int getCountCacheSize() {
+        return countCacheSize;
+    }
+
+    public JdbcDb withCountCacheSize(int countCacheSize) {
+        synchronized (counts) {
+            this.countCacheSize = countCacheSize;
+            counts.clear();
+        }
+        return this;
+    }
+
+    public boolean isCalcRowsFound() {
+        return calcRowsFound;
+    }
+
+    public JdbcDb withCalcRowsFound(boolean calcRowsFound) {
+        this.calcRowsFound = calcRowsFound;
+        return this;
+    }
+
+    public List<String> getReplicaUrls() {
+        return new ArrayList<>(replicaUrls);
+    }
+
+    public JdbcDb withReplicaUrl(String... replicaUrl) {
+        for (int i = 0; replicaUrl != null && i < replicaUrl.length; i++) {
+            replicaUrls.add(replicaUrl[i]);
+        }
+        return this;
+    }
+
+    public String getReplicaBalancing() {
+        return replicaBalancing;
+    }
+
+    public JdbcDb withReplicaBalancing(String replicaBalancing) {
+        this.replicaBalancing = replicaBalancing;
+        return this;
+    }
+
+    public String getReadPrimaryHeader() {
+        return readPrimaryHeader;
+    }
+
+    public JdbcDb withReadPrimaryHeader(String readPrimaryHeader) {
+        this.readPrimaryHeader = readPrimaryHeader;
+        return this;
+    }
+
+    public String getReadPrimaryCookie() {
+        return readPrimaryCookie;
+    }
+
+    public JdbcDb withReadPrimaryCookie(String readPrimaryCookie) {
+        this.readPrimaryCookie = readPrimaryCookie;
+        return this;
+    }
+
+    public long getReplicaCheckInterval() {
+        return replicaCheckInterval;
+    }
+
+    public JdbcDb withReplicaCheckInterval(long replicaCheckInterval) {
+        this.replicaCheckInterval = replicaCheckInterval;
+        return this;
+    }
+
+    public int getReplicaMaxLag() {
+        return replicaMaxLag;
+    }
+
+    public JdbcDb withReplicaMaxLag(int replicaMaxLag) {
+        this.replicaMaxLag = replicaMaxLag;
+        return this;
+    }
+
+    public int getKeysetPagingRows() {
+        return keysetPagingRows;
+    }
+
+    public JdbcDb withKeysetPagingRows(int keysetPagingRows) {
+        this.keysetPagingRows = keysetPagingRows;
+        return this;
+    }
+
+    public int getCopyRows() {
+        return copyRows;
+    }
+
+    public JdbcDb withCopyRows(int copyRows) {
+        this.copyRows = copyRows;
+        return this;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public JdbcDb withFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
     public boolean isAutoCommit() {
         return autoCommit;
     }
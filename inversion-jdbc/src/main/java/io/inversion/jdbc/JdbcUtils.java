@@ -17,13 +17,25 @@
 package io.inversion.jdbc;
 
 import io.inversion.ApiException;
+import io.inversion.Results;
+import io.inversion.utils.ColumnarRows;
+import io.inversion.utils.ColumnarRows.BooleanColumn;
+import io.inversion.utils.ColumnarRows.Column;
+import io.inversion.utils.ColumnarRows.DoubleColumn;
+import io.inversion.utils.ColumnarRows.IntColumn;
+import io.inversion.utils.ColumnarRows.LongColumn;
+import io.inversion.utils.ColumnarRows.ObjectColumn;
+import io.inversion.utils.ColumnarRows.StringColumn;
 import io.inversion.utils.Rows;
 import io.inversion.utils.Rows.Row;
 import io.inversion.utils.Utils;
 import org.apache.commons.collections4.CollectionUtils;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
 
 import java.io.*;
 import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.*;
 import java.util.regex.Matcher;
@@ -206,46 +218,71 @@ public class JdbcUtils {
                 rs = stmt.executeQuery(sql);
             }
 
-            rows = new Rows();
+            ColumnarRows columnar = new ColumnarRows();
+            rows = columnar;
 
             if (!sql.toLowerCase().trim().startsWith("set ")) {
 
                 ResultSetMetaData rsmd = rs.getMetaData();
                 int               cols = rsmd.getColumnCount();
                 for (int i = 1; i <= cols; i++) {
-                    rows.addKey(rsmd.getColumnLabel(i));
+                    columnar.addColumn(rsmd.getColumnLabel(i), ColumnarRows.newColumn(rsmd.getColumnClassName(i)));
                 }
 
                 while (rs.next()) {
-                    rows.addRow();
                     for (int i = 0; i < cols; i++) {
-                        Object o = null;
+                        Column column = columnar.getColumn(i);
+                        Object o      = null;
                         try {
-                            o = rs.getObject(i + 1);
-
-                            if (o instanceof Clob) {
-                                Reader        reader = ((Clob) o).getCharacterStream();
-                                char[]        arr    = new char[8 * 1024];
-                                StringBuilder buffer = new StringBuilder();
-                                int           numCharsRead;
-                                while ((numCharsRead = reader.read(arr, 0, arr.length)) != -1) {
-                                    buffer.append(arr, 0, numCharsRead);
-                                }
-                                reader.close();
-                                o = buffer.toString();
-                            } else if (o != null && o.getClass().isArray() && Array.getLength(o) == 0) {
-                                o = null;
+                            //-- primitive columns are read without boxing
+                            if (column instanceof LongColumn) {
+                                long val = rs.getLong(i + 1);
+                                if (rs.wasNull())
+                                    column.addNull();
+                                else
+                                    ((LongColumn) column).add(val);
+                                continue;
+                            } else if (column instanceof IntColumn) {
+                                int val = rs.getInt(i + 1);
+                                if (rs.wasNull())
+                                    column.addNull();
+                                else
+                                    ((IntColumn) column).add(val);
+                                continue;
+                            } else if (column instanceof DoubleColumn) {
+                                double val = rs.getDouble(i + 1);
+                                if (rs.wasNull())
+                                    column.addNull();
+                                else
+                                    ((DoubleColumn) column).add(val);
+                                continue;
+                            } else if (column instanceof BooleanColumn) {
+                                boolean val = rs.getBoolean(i + 1);
+                                if (rs.wasNull())
+                                    column.addNull();
+                                else
+                                    ((BooleanColumn) column).add(val);
+                                continue;
                             }
 
+                            o = getObject(rs, i + 1);
+
                         } catch (Exception e) {
                             if (ex != null)
                                 ex = e;
                             e.printStackTrace();
                             notifyError("selectRows", sql, vals, e);
+
+                            if (!(column instanceof ObjectColumn) && !(column instanceof StringColumn)) {
+                                column.addNull();
+                                continue;
+                            }
                         }
-                        rows.put(o);
+                        column.add(o);
                     }
+                    columnar.endRow();
                 }
+                columnar.trimToSize();
             }
         } catch (Exception e) {
             if (ex == null)
@@ -262,6 +299,84 @@ public class JdbcUtils {
         return rows;
     }
 
+    /**
+     * Reads the value of column <code>col</code> reading Clobs into Strings and converting empty arrays to null.
+     */
+    static Object getObject(ResultSet rs, int col) throws SQLException, IOException {
+        Object o = rs.getObject(col);
+
+        if (o instanceof Clob) {
+            Reader        reader = ((Clob) o).getCharacterStream();
+            char[]        arr    = new char[8 * 1024];
+            StringBuilder buffer = new StringBuilder();
+            int           numCharsRead;
+            while ((numCharsRead = reader.read(arr, 0, arr.length)) != -1) {
+                buffer.append(arr, 0, numCharsRead);
+            }
+            reader.close();
+            o = buffer.toString();
+        } else if (o != null && o.getClass().isArray() && Array.getLength(o) == 0) {
+            o = null;
+        }
+        return o;
+    }
+
+    /**
+     * Executes <code>sql</code> and returns a forward only cursor over the open ResultSet instead of reading all of the rows into memory.
+     * <p>
+     * Rows are read one at a time as the cursor is iterated.  The returned Rows share their keys but are not retained
+     * by the cursor so memory use does not grow with the size of the result.
+     * <p>
+     * Closing the cursor closes the ResultSet and Statement and, when <code>closeConnection</code> is true, <code>conn</code>.
+     * If the query fails, everything, including the connection when <code>closeConnection</code> is true, is closed before the exception is thrown.
+     *
+     * @param conn            the connection to query
+     * @param closeConnection true if the cursor owns <code>conn</code> and should close it when it is closed
+     * @param fetchSize       the JDBC fetch size hint, values less than 1 use the driver default
+     * @param sql             the select statement
+     * @param vals            the prepared statement variables
+     * @return an open cursor that the caller must close
+     * @throws SQLException if the query fails
+     */
+    public static RowCursor selectCursor(Connection conn, boolean closeConnection, int fetchSize, String sql, Object... vals) throws SQLException {
+        if (vals != null && vals.length == 1 && vals[0] instanceof List)
+            vals = ((List) vals[0]).toArray();
+
+        notifyBefore("selectCursor", sql, vals);
+
+        Statement stmt = null;
+        ResultSet rs   = null;
+        try {
+            if (vals != null && vals.length > 0) {
+                stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                if (fetchSize > 0)
+                    stmt.setFetchSize(fetchSize);
+                for (int i = 0; i < vals.length; i++) {
+                    ((PreparedStatement) stmt).setObject(i + 1, vals[i]);
+                }
+                rs = ((PreparedStatement) stmt).executeQuery();
+            } else {
+                stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                if (fetchSize > 0)
+                    stmt.setFetchSize(fetchSize);
+                rs = stmt.executeQuery(sql);
+            }
+
+            RowCursor cursor = new RowCursor(closeConnection ? conn : null, stmt, rs);
+            notifyAfter("selectCursor", sql, vals, null, cursor);
+            return cursor;
+        } catch (Exception e) {
+            close(rs, stmt);
+            if (closeConnection)
+                close(conn);
+
+            notifyError("selectCursor", sql, vals, e);
+            SQLException ex = new SQLException(e.getMessage() + " SQL=" + sql + " ERROR=" + e.getMessage(), Utils.getCause(e));
+            notifyAfter("selectCursor", sql, vals, ex, null);
+            throw ex;
+        }
+    }
+
     public static Row selectRow(Connection conn, String sql, Object... vals) throws SQLException {
         Rows rows = selectRows(conn, sql, vals);
         if (rows.size() > 0)
@@ -317,6 +432,22 @@ public class JdbcUtils {
     }
 
     public static List insertMaps(Connection conn, String tableName, List maps) throws SQLException {
+        return insertMaps(conn, tableName, maps, null, null);
+    }
+
+    /**
+     * Inserts <code>maps</code> and, when <code>returned</code> is not null and the database supports it, adds the inserted rows to <code>returned</code>.
+     *
+     * @param conn      the connection
+     * @param tableName the table
+     * @param maps      the rows to insert
+     * @param keyCol    the generated key column, required when <code>returned</code> is not null
+     * @param returned  receives the inserted rows, may be null
+     * @return the generated key of each row
+     * @throws SQLException when the insert fails
+     * @see #isReturning(Connection)
+     */
+    static List insertMaps(Connection conn, String tableName, List maps, String keyCol, List<Map<String, Object>> returned) throws SQLException {
         if ("sqlserver".equalsIgnoreCase(getDbType(conn)) && maps.size() > 0) {
             //-- as of 2020 sqlserver does not seem to support getGeneratedKeys for multiple rows.
             //--
@@ -324,36 +455,56 @@ public class JdbcUtils {
             //-- https://stackoverflow.com/questions/13641832/getgeneratedkeys-after-preparedstatement-executebatch/13642539#13642539
             List returnKeys = new ArrayList<>();
             for (Object map : maps) {
-                returnKeys.addAll(insertMaps0(conn, tableName, Collections.singletonList(map)));
+                returnKeys.addAll(insertMaps0(conn, tableName, Collections.singletonList(map), keyCol, returned));
             }
             return returnKeys;
         } else {
-            return insertMaps0(conn, tableName, maps);
+            return insertMaps0(conn, tableName, maps, keyCol, returned);
         }
     }
 
-    static List insertMaps0(Connection conn, String tableName, List maps) throws SQLException {
+    static List insertMaps0(Connection conn, String tableName, List maps, String keyCol, List<Map<String, Object>> returned) throws SQLException {
         List<Map<String, Object>> rows = (List<Map<String, Object>>) maps;
 
-        List<Object>          returnKeys = new ArrayList<>();
-        LinkedHashSet<String> keys       = new LinkedHashSet<>();
-
+        LinkedHashSet<String> keys = new LinkedHashSet<>();
         for (Map row : rows) {
             keys.addAll(row.keySet());
         }
 
+        List<Object> returnKeys = new ArrayList<>();
+        for (List<Map<String, Object>> chunk : chunk(conn, rows, keys.size(), null))
+            returnKeys.addAll(insertMaps0(conn, tableName, keys, chunk, keyCol, returned));
+
+        return returnKeys;
+    }
+
+    static List insertMaps0(Connection conn, String tableName, LinkedHashSet<String> keys, List<Map<String, Object>> rows, String keyCol, List<Map<String, Object>> returned) throws SQLException {
+        List<Object> returnKeys = new ArrayList<>();
+        boolean      returning  = returned != null && isReturning(conn);
+
         StringBuilder buff = new StringBuilder("INSERT INTO ");
         buff.append(quoteCol(conn, tableName)).append(" (");
-        buff.append(getColumnStr(conn, keys.toArray())).append(") VALUES \r\n");
-
-        for (int i = 0; i < maps.size(); i++) {
-            buff.append("(").append(getQuestionMarkStr(keys.size())).append(")");
-            if (i < maps.size() - 1)
-                buff.append(",\r\n");
-        }
+        buff.append(getColumnStr(conn, keys.toArray())).append(") ");
+        if (returning && "sqlserver".equals(getDbType(conn)))
+            buff.append("OUTPUT INSERTED.* ");
+        buff.append("VALUES \r\n");
+        buff.append(getValuesStr(keys.size(), rows.size()));
 
         String sql = buff.toString();
 
+        if (returning) {
+            sql = returning(conn, tableName, sql);
+            int before = returned.size();
+            executeValues(conn, "insertMaps", sql, new ArrayList<>(keys), rows, returned);
+            for (int i = before; i < returned.size(); i++)
+                returnKeys.add(returned.get(i).get(keyCol));
+
+            if (returnKeys.size() != rows.size())
+                throw new RuntimeException("insertMaps() did not return rows for all rows");
+
+            return returnKeys;
+        }
+
         Exception         ex   = null;
         PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
         try {
@@ -378,12 +529,13 @@ public class JdbcUtils {
             notifyError("insertMaps", sql, rows, ex);
             throw e;
         } finally {
+            close(stmt);
             notifyAfter("insertMap", sql, rows, ex, null);
         }
 
         if (returnKeys.size() == 0) {
             //the table must not use an auto increment key.
-            for (int i = 0; i < maps.size(); i++)
+            for (int i = 0; i < rows.size(); i++)
                 returnKeys.add(null);
         }
 
@@ -403,29 +555,187 @@ public class JdbcUtils {
    +------------------------------------------------------------------------------+
     */
 
+    /**
+     * Groups <code>rows</code> by the set of columns they change and updates each group with one statement, or one
+     * JDBC batch on databases without a multi-row UPDATE.
+     * <p>
+     * Groups run in column set order and the rows of a group in primary key order so concurrent bulk updates
+     * lock rows in the same order instead of deadlocking.  A row whose key was already seen starts a new round
+     * of groups so repeated updates of one row are still applied in input order.
+     *
+     * @param conn           the jdbc connection
+     * @param tableName      the table to update
+     * @param primaryKeyCols the key columns that find the row to update
+     * @param rows           the key values and the changed values of each row
+     * @return the update counts reported by the driver, one per statement for multi-row updates
+     * @throws Exception when the update fails
+     * @see #updateValues(Connection, String, List, List, List)
+     */
     public static List<Integer> update(Connection conn, String tableName, List<String> primaryKeyCols, List<Map<String, Object>> rows) throws Exception {
+        return update(conn, tableName, primaryKeyCols, rows, null);
+    }
+
+    /**
+     * Updates <code>rows</code> and, when <code>returned</code> is not null, adds the rows updated by multi-row statements to <code>returned</code>.
+     * <p>
+     * Callers have to select any updated rows that are not returned, such as single row updates and all MySQL and H2 updates.
+     *
+     * @param conn           the jdbc connection
+     * @param tableName      the table to update
+     * @param primaryKeyCols the key columns that find the row to update
+     * @param rows           the key values and the changed values of each row
+     * @param returned       receives updated rows, may be null
+     * @return the update counts reported by the driver, one per statement for multi-row updates
+     * @throws Exception when the update fails
+     */
+    public static List<Integer> update(Connection conn, String tableName, List<String> primaryKeyCols, List<Map<String, Object>> rows, List<Map<String, Object>> returned) throws Exception {
         List<Integer> updatedCounts = new ArrayList<>();
 
-        Set                       cols  = null;
-        List<Map<String, Object>> batch = new ArrayList<>();
-        for (Map row : rows) {
-            if (cols == null) {
-                cols = row.keySet();
+        Map<String, List<Map<String, Object>>> groups = new TreeMap<>();
+        Set<List<Object>>                      seen   = new HashSet<>();
+        for (Map<String, Object> row : rows) {
+            List<Object> key = new ArrayList<>();
+            for (String col : primaryKeyCols)
+                key.add(row.get(col));
+
+            if (!seen.add(key)) {
+                updatedCounts.addAll(updateGroups(conn, tableName, primaryKeyCols, groups, returned));
+                groups.clear();
+                seen.clear();
+                seen.add(key);
             }
+            groups.computeIfAbsent(new TreeSet<>(row.keySet()).toString(), k -> new ArrayList<>()).add(row);
+        }
+        updatedCounts.addAll(updateGroups(conn, tableName, primaryKeyCols, groups, returned));
+        return updatedCounts;
+    }
 
-            if (batch.size() > 0 && CollectionUtils.disjunction(cols, row.keySet()).size() > 0) {
-                updatedCounts.addAll(updateBatch(conn, tableName, primaryKeyCols, batch));
-                batch.clear();
-            }
-            cols = row.keySet();
-            batch.add(row);
+    static List<Integer> updateGroups(Connection conn, String tableName, List<String> keyCols, Map<String, List<Map<String, Object>>> groups, List<Map<String, Object>> returned) throws SQLException {
+        List<Integer> updatedCounts = new ArrayList<>();
+        for (List<Map<String, Object>> group : groups.values()) {
+            group.sort((a, b) -> compareKeys(a, b, keyCols));
+            updatedCounts.addAll(updateValues(conn, tableName, keyCols, group, returned));
+        }
+        return updatedCounts;
+    }
+
+    static int compareKeys(Map<String, Object> a, Map<String, Object> b, List<String> keyCols) {
+        for (String col : keyCols) {
+            Object x = a.get(col);
+            Object y = b.get(col);
+
+            int cmp;
+            if (x == null || y == null)
+                cmp = x == null ? (y == null ? 0 : -1) : 1;
+            else if (x instanceof Comparable && x.getClass().equals(y.getClass()))
+                cmp = ((Comparable) x).compareTo(y);
+            else if (x instanceof Number && y instanceof Number)
+                cmp = Double.compare(((Number) x).doubleValue(), ((Number) y).doubleValue());
+            else
+                cmp = x.toString().compareTo(y.toString());
+
+            if (cmp != 0)
+                return cmp;
         }
-        if (batch.size() > 0) {
-            updatedCounts.addAll(updateBatch(conn, tableName, primaryKeyCols, batch));
+        return 0;
+    }
+
+    /**
+     * Updates <code>rows</code>, that all have the same columns, with multi-row statements joining the table to a VALUES list.
+     * <p>
+     * PostgreSQL and SQL Server run <code>UPDATE ... FROM (VALUES ...)</code> and H2 runs
+     * <code>MERGE INTO ... USING (VALUES ...) WHEN MATCHED THEN UPDATE</code>.  Each statement is sized to
+     * the driver's parameter limit.  Other databases, and single rows, use {@link #updateBatch(Connection, String, List, List)}.
+     *
+     * @param conn      the jdbc connection
+     * @param tableName the table to update
+     * @param keyCols   the key columns that find the row to update
+     * @param rows      the rows to update
+     * @param returned  receives the updated rows of multi-row statements, may be null
+     * @return the update count of each statement
+     * @throws SQLException when the update fails
+     */
+    static List<Integer> updateValues(Connection conn, String tableName, List<String> keyCols, List<Map<String, Object>> rows, List<Map<String, Object>> returned) throws SQLException {
+        String type = getDbType(conn);
+        if (rows.size() < 2 || !(type.equals("postgres") || type.equals("sqlserver") || type.equals("h2")))
+            return updateBatch(conn, tableName, keyCols, rows);
+
+        List<String> valCols = new ArrayList<>(rows.get(0).keySet());
+        valCols.removeAll(keyCols);
+        if (valCols.isEmpty())
+            return Collections.EMPTY_LIST;
+
+        //-- columns that are null in every row are set to NULL instead of bound, PostgreSQL would type the VALUES column as text
+        List<String> nullCols = new ArrayList<>();
+        for (String col : valCols) {
+            boolean allNull = true;
+            for (int i = 0; allNull && i < rows.size(); i++)
+                allNull = rows.get(i).get(col) == null;
+            if (allNull)
+                nullCols.add(col);
+        }
+
+        List<String> boundCols = new ArrayList<>(keyCols);
+        boundCols.addAll(valCols);
+        boundCols.removeAll(nullCols);
+
+        //-- H2 1.4.200 does not apply a MERGE ... USING that is selected from a FINAL TABLE, the caller selects the rows
+        if (type.equals("h2"))
+            returned = null;
+
+        List<Integer> updatedCounts = new ArrayList<>();
+        for (List<Map<String, Object>> chunk : chunk(conn, rows, boundCols.size(), null)) {
+            String sql = buildUpdateValuesSQL(conn, tableName, keyCols, valCols, nullCols, boundCols, chunk.size(), returned != null);
+            updatedCounts.add(executeValues(conn, "update", sql, boundCols, chunk, returned));
         }
         return updatedCounts;
     }
 
+    /*
+     * UPDATE "orders" SET "ShipCity" = v."ShipCity" FROM (VALUES (?,?), (?,?)) AS v ("OrderID", "ShipCity") WHERE "orders"."OrderID" = v."OrderID"
+     */
+    static String buildUpdateValuesSQL(Connection conn, String tableName, List<String> keyCols, List<String> valCols, List<String> nullCols, List<String> boundCols, int numRows, boolean returning) {
+        String type  = getDbType(conn);
+        String table = quoteCol(conn, tableName);
+
+        StringBuilder set = new StringBuilder();
+        for (int i = 0; i < valCols.size(); i++) {
+            String col = quoteCol(conn, valCols.get(i));
+            set.append("\r\n ").append(type.equals("sqlserver") ? "t." : "").append(col).append(" = ").append(nullCols.contains(valCols.get(i)) ? "NULL" : "v." + col);
+            if (i < valCols.size() - 1)
+                set.append(",");
+        }
+
+        StringBuilder on = new StringBuilder();
+        for (int i = 0; i < keyCols.size(); i++) {
+            String col = quoteCol(conn, keyCols.get(i));
+            on.append(type.equals("postgres") ? table : "t").append(".").append(col).append(" = v.").append(col);
+            if (i < keyCols.size() - 1)
+                on.append(" AND ");
+        }
+
+        String values = "(VALUES \r\n" + getValuesStr(boundCols.size(), numRows) + ") AS v (" + getColumnStr(conn, boundCols) + ")";
+        String sql;
+
+        switch (type) {
+            case "postgres":
+                sql = "UPDATE " + table + " SET " + set + "\r\n FROM " + values + "\r\n WHERE " + on;
+                return returning ? returning(conn, tableName, sql) : sql;
+            case "sqlserver":
+                return "UPDATE t SET " + set + (returning ? "\r\n OUTPUT INSERTED.*" : "") + "\r\n FROM " + table + " AS t INNER JOIN " + values + "\r\n ON " + on;
+            default:
+                //-- H2 names VALUES columns C1, C2... and does not take a column list on the alias
+                StringBuilder select = new StringBuilder();
+                for (int i = 0; i < boundCols.size(); i++) {
+                    select.append("C").append(i + 1).append(" AS ").append(quoteCol(conn, boundCols.get(i)));
+                    if (i < boundCols.size() - 1)
+                        select.append(", ");
+                }
+                values = "(SELECT " + select + " FROM (VALUES \r\n" + getValuesStr(boundCols.size(), numRows) + ")) AS v";
+                return "MERGE INTO " + table + " AS t USING " + values + "\r\n ON (" + on + ") WHEN MATCHED THEN UPDATE SET " + set;
+        }
+    }
+
     public static List<Integer> updateBatch(Connection conn, String tableName, List<String> keyCols, List<Map<String, Object>> rows) throws SQLException {
         if (rows.size() == 0)
             return Collections.EMPTY_LIST;
@@ -496,6 +806,43 @@ public class JdbcUtils {
      * @throws SQLException when the upsert fails
      */
     public static List<Row> upsert(Connection conn, String tableName, List<String> primaryKeyCols, List<Map<String, Object>> rows) throws SQLException {
+        return upsert(conn, tableName, primaryKeyCols, rows, -1);
+    }
+
+    /**
+     * Upserts <code>rows</code>, loading batches of at least <code>copyRows</code> rows with PostgreSQL COPY.
+     *
+     * @param conn           the jdbc connection
+     * @param tableName      the table to upsert into
+     * @param primaryKeyCols a unique key for the table that will constrain the upsert
+     * @param rows           the data to upsert
+     * @param copyRows       on PostgreSQL, batches with at least this many rows are bulk loaded through a staging table, less than 1 never uses COPY
+     * @return the primaryKeyCols values for all rows upserted, in the order of <code>rows</code>
+     * @throws SQLException when the upsert fails
+     * @see #postgresCopyBatch(Connection, String, List, List, boolean)
+     */
+    public static List<Row> upsert(Connection conn, String tableName, List<String> primaryKeyCols, List<Map<String, Object>> rows, int copyRows) throws SQLException {
+        return upsert(conn, tableName, primaryKeyCols, rows, copyRows, null);
+    }
+
+    /**
+     * Upserts <code>rows</code> and, when <code>returned</code> is not null, adds the rows written by statements that
+     * can return them to <code>returned</code>.
+     * <p>
+     * Rows are returned by the multi-row statements on PostgreSQL and H2, and by inserts on SQL Server.
+     * Callers have to select any written rows that are not returned.
+     *
+     * @param conn           the jdbc connection
+     * @param tableName      the table to upsert into
+     * @param primaryKeyCols a unique key for the table that will constrain the upsert
+     * @param rows           the data to upsert
+     * @param copyRows       on PostgreSQL, batches with at least this many rows are bulk loaded through a staging table, less than 1 never uses COPY
+     * @param returned       receives written rows, may be null
+     * @return the primaryKeyCols values for all rows upserted, in the order of <code>rows</code>
+     * @throws SQLException when the upsert fails
+     * @see #isReturning(Connection)
+     */
+    public static List<Row> upsert(Connection conn, String tableName, List<String> primaryKeyCols, List<Map<String, Object>> rows, int copyRows, List<Map<String, Object>> returned) throws SQLException {
         List<Row> generatedKeys = new ArrayList<>();
         if (rows.isEmpty())
             return Collections.EMPTY_LIST;
@@ -519,12 +866,7 @@ public class JdbcUtils {
             }
 
             if (batch.size() > 0 && (hadKey != hasKey) || CollectionUtils.disjunction(cols, row.keySet()).size() > 0) {
-                if (hadKey == 0)
-                    generatedKeys.addAll(insertBatch(conn, tableName, primaryKeyCols, batch));
-                else {
-                    generatedKeys.addAll(upsertBatch(conn, tableName, primaryKeyCols, batch));
-                }
-
+                generatedKeys.addAll(upsertBatch(conn, tableName, primaryKeyCols, batch, hadKey == 1, copyRows, returned));
                 batch.clear();
             }
 
@@ -533,12 +875,8 @@ public class JdbcUtils {
             batch.add(row);
         }
 
-        if (batch.size() > 0) {
-            if (hadKey == 0)
-                generatedKeys.addAll(insertBatch(conn, tableName, primaryKeyCols, batch));
-            else
-                generatedKeys.addAll(upsertBatch(conn, tableName, primaryKeyCols, batch));
-        }
+        if (batch.size() > 0)
+            generatedKeys.addAll(upsertBatch(conn, tableName, primaryKeyCols, batch, hadKey == 1, copyRows, returned));
 
         for (int i = 0; i < generatedKeys.size(); i++) {
             Row row = new Row();
@@ -566,8 +904,8 @@ public class JdbcUtils {
    +------------------------------------------------------------------------------+
     */
 
-    static List insertBatch(Connection conn, String tableName, List<String> indexCols, List<Map<String, Object>> rows) throws SQLException {
-        List returnKeys = insertMaps(conn, tableName, rows);
+    static List insertBatch(Connection conn, String tableName, List<String> indexCols, List<Map<String, Object>> rows, List<Map<String, Object>> returned) throws SQLException {
+        List returnKeys = insertMaps(conn, tableName, rows, indexCols.get(0), returned);
         for (int i = 0; i < returnKeys.size(); i++) {
             Object key = returnKeys.get(i);
             if (key == null) {
@@ -581,7 +919,17 @@ public class JdbcUtils {
         return returnKeys;
     }
 
-    static List upsertBatch(Connection conn, String tableName, List<String> idxCols, List<Map<String, Object>> rows) throws SQLException {
+    static List upsertBatch(Connection conn, String tableName, List<String> idxCols, List<Map<String, Object>> rows, boolean hasKey, int copyRows, List<Map<String, Object>> returned) throws SQLException {
+        if (copyRows > 0 && rows.size() >= copyRows && "postgres".equals(getDbType(conn)))
+            return postgresCopyBatch(conn, tableName, idxCols, rows, hasKey);
+
+        if (hasKey)
+            return upsertBatch(conn, tableName, idxCols, rows, returned);
+        else
+            return insertBatch(conn, tableName, idxCols, rows, returned);
+    }
+
+    static List upsertBatch(Connection conn, String tableName, List<String> idxCols, List<Map<String, Object>> rows, List<Map<String, Object>> returned) throws SQLException {
         List   returnKeys = new ArrayList<>();
         String type       = getDbType(conn);
 
@@ -591,7 +939,7 @@ public class JdbcUtils {
                 break;
 
             case "postgres":
-                postgresUpsertBatch(conn, tableName, idxCols, rows);
+                postgresUpsertBatch(conn, tableName, idxCols, rows, returned);
                 break;
 
             case "sqlserver":
@@ -599,7 +947,7 @@ public class JdbcUtils {
                 break;
 
             default:
-                h2UpsertBatch(conn, tableName, idxCols, rows);
+                h2UpsertBatch(conn, tableName, idxCols, rows, returned);
                 break;
         }
 
@@ -614,43 +962,176 @@ public class JdbcUtils {
 
     }
 
-    static List h2UpsertBatch(Connection conn, String tableName, List<String> idxCols, List<Map<String, Object>> rows) throws SQLException {
-        List returnKeys = new ArrayList<>();
-        for (Map row : rows) {
-            returnKeys.add(h2UpsertBatch(conn, tableName, idxCols, row));
+    /**
+     * @param conn the connection
+     * @return true if multi-row writes can return the written rows, with RETURNING on PostgreSQL, a FINAL TABLE on H2 or OUTPUT on SQL Server
+     */
+    public static boolean isReturning(Connection conn) {
+        String type = getDbType(conn);
+        return type.equals("postgres") || type.equals("h2") || type.equals("sqlserver");
+    }
+
+    /**
+     * Makes a write statement return the written rows on PostgreSQL and H2, SQL Server OUTPUT clauses are printed by the statement builders.
+     *
+     * @param conn      the connection
+     * @param tableName the table written
+     * @param sql       the INSERT, UPDATE or MERGE statement
+     * @return the statement that returns the written rows
+     */
+    static String returning(Connection conn, String tableName, String sql) {
+        switch (getDbType(conn)) {
+            case "postgres":
+                return sql + "\r\n RETURNING " + quoteCol(conn, tableName) + ".*";
+            case "h2":
+                return "SELECT * FROM FINAL TABLE (" + sql + ")";
+            default:
+                return sql;
+        }
+    }
+
+    /**
+     * The most bind parameters the driver accepts in one statement.
+     * <p>
+     * PostgreSQL's wire protocol counts parameters in a signed short and MySQL allows 65535.  SQL Server allows 2100
+     * but the driver runs prepared statements through sp_prepexec/sp_executesql whose own arguments count against that limit.
+     * H2 has no fixed limit so it uses the PostgreSQL limit to keep statement text a reasonable size.
+     *
+     * @param conn the connection
+     * @return the max parameters in one statement
+     */
+    static int getMaxParams(Connection conn) {
+        switch (getDbType(conn)) {
+            case "sqlserver":
+                return 2098;
+            case "mysql":
+                return 65535;
+            default:
+                return Short.MAX_VALUE;
         }
-        return returnKeys;
     }
 
-    static Object h2UpsertBatch(Connection conn, String tableName, List<String> idxCols, Map<String, Object> row) throws SQLException {
-        String sql = "";
+    /**
+     * The most rows in one multi-row VALUES list, SQL Server rejects more than 1000.
+     *
+     * @param conn the connection
+     * @return the max rows in one VALUES list
+     */
+    static int getMaxValuesRows(Connection conn) {
+        return "sqlserver".equals(getDbType(conn)) ? 1000 : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Splits <code>rows</code> into chunks that fit in one multi-row VALUES statement of <code>numCols</code> columns.
+     *
+     * @param conn     the connection
+     * @param rows     the rows to split
+     * @param numCols  the number of bound columns per row
+     * @param uniqueCols when not null, a chunk ends before a row repeating the unique key of an earlier row in the chunk,
+     *                 PostgreSQL can not update the same row twice in one ON CONFLICT statement
+     * @return the chunks, in order
+     */
+    static List<List<Map<String, Object>>> chunk(Connection conn, List<Map<String, Object>> rows, int numCols, List<String> uniqueCols) {
+        int maxRows = Math.max(1, Math.min(getMaxValuesRows(conn), getMaxParams(conn) / Math.max(1, numCols)));
+
+        List<List<Map<String, Object>>> chunks = new ArrayList<>();
+        List<Map<String, Object>>       chunk  = new ArrayList<>();
+        Set<List<Object>>               seen   = new HashSet<>();
+        for (Map<String, Object> row : rows) {
+            List<Object> key = null;
+            if (uniqueCols != null) {
+                key = new ArrayList<>();
+                for (String col : uniqueCols)
+                    key.add(row.get(col));
+            }
 
-        List<String> cols = new ArrayList<>();
-        List<Object> vals = new ArrayList<>();
-        for (String col : row.keySet()) {
-            cols.add(col);
-            vals.add(row.get(col));
+            if (chunk.size() >= maxRows || (key != null && seen.contains(key))) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                seen.clear();
+            }
+            chunk.add(row);
+            if (key != null)
+                seen.add(key);
         }
+        if (chunk.size() > 0)
+            chunks.add(chunk);
 
-        StringBuilder keyCols = new StringBuilder();
-        for (int i = 0; i < idxCols.size(); i++) {
-            keyCols.append(quoteCol(conn, idxCols.get(i)));
-            if (i < idxCols.size() - 1)
-                keyCols.append(", ");
+        return chunks;
+    }
+
+    static String getValuesStr(int numCols, int numRows) {
+        StringBuilder buff = new StringBuilder();
+        String        qs   = getQuestionMarkStr(numCols);
+        for (int i = 0; i < numRows; i++) {
+            buff.append("(").append(qs).append(")");
+            if (i < numRows - 1)
+                buff.append(",\r\n");
         }
+        return buff.toString();
+    }
 
-        sql += " MERGE INTO " + quoteCol(conn, tableName) + " (" + JdbcUtils.getColumnStr(conn, cols) + ")  KEY(" + keyCols + ") VALUES (" + getQuestionMarkStr(vals.size()) + ")";
+    /**
+     * Executes a multi-row VALUES statement binding the <code>cols</code> of each row in order.
+     * <p>
+     * When <code>returned</code> is not null the statement must return the written rows and they are added to <code>returned</code>.
+     */
+    static int executeValues(Connection conn, String method, String sql, List<String> cols, List<Map<String, Object>> rows, List<Map<String, Object>> returned) throws SQLException {
+        if (returned != null) {
+            List<Object> vals = new ArrayList<>();
+            for (Map<String, Object> row : rows) {
+                for (String col : cols)
+                    vals.add(row.get(col));
+            }
+            Rows written = selectRows(conn, sql, vals);
+            returned.addAll(written);
+            return written.size();
+        }
 
-        Exception ex = null;
+        int               count = 0;
+        Exception         ex    = null;
+        PreparedStatement stmt  = conn.prepareStatement(sql);
         try {
-            notifyBefore("upsert", sql, row);
-            return execute(conn, sql, vals);
+            notifyBefore(method, sql, rows);
+
+            int idx = 1;
+            for (Map<String, Object> row : rows) {
+                for (String col : cols) {
+                    stmt.setObject(idx++, row.get(col));
+                }
+            }
+            count = stmt.executeUpdate();
         } catch (Exception e) {
             ex = e;
-            notifyError("upsert", sql, row, ex);
+            notifyError(method, sql, rows, ex);
             throw e;
         } finally {
-            notifyAfter("upsert", sql, row, ex, null);
+            close(stmt);
+            notifyAfter(method, sql, rows, ex, count);
+        }
+        return count;
+    }
+
+    static String getKeyColsStr(Connection conn, List<String> idxCols) {
+        StringBuilder keyCols = new StringBuilder();
+        for (int i = 0; i < idxCols.size(); i++) {
+            keyCols.append(quoteCol(conn, idxCols.get(i)));
+            if (i < idxCols.size() - 1)
+                keyCols.append(", ");
+        }
+        return keyCols.toString();
+    }
+
+    /**
+     * MERGE INTO "orders" ("OrderID", "ShipCity") KEY("OrderID") VALUES (?,?), (?,?)
+     */
+    static void h2UpsertBatch(Connection conn, String tableName, List<String> idxCols, List<Map<String, Object>> rows, List<Map<String, Object>> returned) throws SQLException {
+        List<String> cols = new ArrayList<>(rows.get(0).keySet());
+        for (List<Map<String, Object>> chunk : chunk(conn, rows, cols.size(), null)) {
+            String sql = "MERGE INTO " + quoteCol(conn, tableName) + " (" + getColumnStr(conn, cols) + ")  KEY(" + getKeyColsStr(conn, idxCols) + ") VALUES \r\n" + getValuesStr(cols.size(), chunk.size());
+            if (returned != null)
+                sql = returning(conn, tableName, sql);
+            executeValues(conn, "upsert", sql, cols, chunk, returned);
         }
     }
 
@@ -662,34 +1143,21 @@ public class JdbcUtils {
         }
         ArrayList<String> keys = new ArrayList<>(keySet);
 
-        String sql = mysqlBuildInsertOnDuplicateKeySQL(conn, tableName, keys.toArray());
-
-        Exception         ex   = null;
-        PreparedStatement stmt = conn.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
-        try {
-            notifyBefore("upsert", sql, rows);
-
-            for (Map<String, Object> row : rows) {
-                for (int i = 0; i < keys.size(); i++) {
-                    Object value = row.get(keys.get(i));
-                    stmt.setObject(i + 1, value);
-                }
-                stmt.addBatch();
-            }
-            stmt.executeBatch();
-        } catch (Exception e) {
-            ex = e;
-            notifyError("upsert", sql, rows, ex);
-            throw e;
-        } finally {
-            close(stmt);
-            notifyAfter("upsert", sql, rows, ex, null);
+        for (List<Map<String, Object>> chunk : chunk(conn, rows, keys.size(), null)) {
+            String sql = mysqlBuildInsertOnDuplicateKeySQL(conn, tableName, keys.toArray(), chunk.size());
+            executeValues(conn, "upsert", sql, keys, chunk, null);
         }
-
     }
 
     static String mysqlBuildInsertOnDuplicateKeySQL(Connection conn, String tableName, Object[] columnNameArray) {
-        StringBuilder sql = new StringBuilder(buildInsertSQL(conn, tableName, columnNameArray));
+        return mysqlBuildInsertOnDuplicateKeySQL(conn, tableName, columnNameArray, 1);
+    }
+
+    static String mysqlBuildInsertOnDuplicateKeySQL(Connection conn, String tableName, Object[] columnNameArray, int numRows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ");
+        sql.append(quoteCol(conn, tableName)).append(" (");
+        sql.append(getColumnStr(conn, columnNameArray)).append(") VALUES \r\n");
+        sql.append(getValuesStr(columnNameArray.length, numRows));
         sql.append(" ON DUPLICATE KEY UPDATE ");
         for (int i = 0; i < columnNameArray.length; i++) {
             Object col = columnNameArray[i];
@@ -700,62 +1168,139 @@ public class JdbcUtils {
         return sql.toString();
     }
 
+    static String postgresBuildOnConflictSQL(Connection conn, List<String> idxCols, List<String> cols) {
+        StringBuilder buff = new StringBuilder("\r\n ON CONFLICT (");
+        buff.append(getKeyColsStr(conn, idxCols));
+        buff.append(") DO UPDATE SET ");
+        for (int i = 0; i < cols.size(); i++) {
+            buff.append("\r\n ").append(quoteCol(conn, cols.get(i))).append(" = EXCLUDED.").append(quoteCol(conn, cols.get(i)));
+            if (i < cols.size() - 1)
+                buff.append(", ");
+        }
+        return buff.toString();
+    }
+
     /**
      * https://stackoverflow.com/questions/17267417/how-to-upsert-merge-insert-on-duplicate-update-in-postgresql
      *
      * @param conn      the connection
      * @param tableName the table
      * @param rows      the values to upsert
-     * @return ids of the modified rows
+     * @param returned  receives the upserted rows, may be null
      * @throws SQLException when the upsert fails
      */
-    static List postgresUpsertBatch(Connection conn, String tableName, List<String> idxCols, List<Map<String, Object>> rows) throws SQLException {
-        List<Object> returnKeys = new ArrayList<>();
-        List<String> cols       = new ArrayList<>(rows.get(0).keySet());
-
-        StringBuilder buff = new StringBuilder(buildInsertSQL(conn, tableName, cols.toArray()));
-        buff.append("\r\n ON CONFLICT (");
-        for (int i = 0; i < idxCols.size(); i++) {
-            buff.append(quoteCol(conn, idxCols.get(i)));
-            if (i < idxCols.size() - 1)
-                buff.append(", ");
-        }
-        buff.append(") DO UPDATE SET ");
-        for (int i = 0; i < cols.size(); i++) {
-            buff.append("\r\n ").append(quoteCol(conn, cols.get(i))).append(" = EXCLUDED.").append(quoteCol(conn, cols.get(i)));
-            if (i < cols.size() - 1)
-                buff.append(", ");
+    static void postgresUpsertBatch(Connection conn, String tableName, List<String> idxCols, List<Map<String, Object>> rows, List<Map<String, Object>> returned) throws SQLException {
+        List<String> cols = new ArrayList<>(rows.get(0).keySet());
+        for (List<Map<String, Object>> chunk : chunk(conn, rows, cols.size(), idxCols)) {
+            String sql = "INSERT INTO " + quoteCol(conn, tableName) + " (" + getColumnStr(conn, cols) + ") VALUES \r\n" + getValuesStr(cols.size(), chunk.size()) + postgresBuildOnConflictSQL(conn, idxCols, cols);
+            if (returned != null)
+                sql = returning(conn, tableName, sql);
+            executeValues(conn, "upsert", sql, cols, chunk, returned);
         }
+    }
+
+    /**
+     * Bulk loads <code>rows</code> with COPY ... FROM STDIN into a temporary staging table and then merges the
+     * staging table into <code>tableName</code> with one INSERT ... SELECT.
+     * <p>
+     * Each staged row carries its input position so rows with keys are merged last write wins, the same as
+     * upserting them one at a time, and rows without keys are inserted in input order so their generated keys
+     * are returned in input order.
+     *
+     * @param conn      a PostgreSQL connection
+     * @param tableName the table
+     * @param idxCols   the primary key columns
+     * @param rows      rows that all have the same columns
+     * @param hasKey    true if the rows have primary key values, false if the keys are generated
+     * @return the first key column value of each row, in the order of <code>rows</code>
+     * @throws SQLException when the upsert fails
+     */
+    static List postgresCopyBatch(Connection conn, String tableName, List<String> idxCols, List<Map<String, Object>> rows, boolean hasKey) throws SQLException {
+        List<String> cols   = new ArrayList<>(rows.get(0).keySet());
+        String       table  = quoteCol(conn, tableName);
+        String       stage  = quoteCol(conn, "~~copy_" + tableName);
+        String       ord    = quoteCol(conn, "~~ord");
+        String       colStr = getColumnStr(conn, cols);
+
+        execute(conn, "DROP TABLE IF EXISTS pg_temp." + stage);
+        execute(conn, "CREATE TEMP TABLE " + stage + " AS SELECT " + colStr + " FROM " + table + " WITH NO DATA");
+        execute(conn, "ALTER TABLE " + stage + " ADD COLUMN " + ord + " INTEGER");
 
-        Exception         ex   = null;
-        String            sql  = buff.toString();
-        PreparedStatement stmt = conn.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
         try {
-            notifyBefore("upsert", sql, rows);
+            postgresCopyIn(conn, "COPY " + stage + " (" + colStr + ", " + ord + ") FROM STDIN WITH (FORMAT csv)", cols, rows);
 
-            for (Map<String, Object> row : rows) {
-                for (int i = 0; i < cols.size(); i++) {
-                    Object value = row.get(cols.get(i));
-                    stmt.setObject(i + 1, value);
+            List returnKeys = new ArrayList<>();
+            if (hasKey) {
+                String keyCols = getKeyColsStr(conn, idxCols);
+                String sql     = "INSERT INTO " + table + " (" + colStr + ") SELECT " + colStr + " FROM (SELECT DISTINCT ON (" + keyCols + ") * FROM " + stage + " ORDER BY " + keyCols + ", " + ord + " DESC) s" + postgresBuildOnConflictSQL(conn, idxCols, cols);
+                execute(conn, sql);
+                for (Map row : rows)
+                    returnKeys.add(row.get(idxCols.get(0)));
+            } else {
+                String sql = "INSERT INTO " + table + " (" + colStr + ") SELECT " + colStr + " FROM " + stage + " ORDER BY " + ord + " RETURNING " + quoteCol(conn, idxCols.get(0));
+                for (Row row : selectRows(conn, sql))
+                    returnKeys.add(row.get(0));
+
+                if (returnKeys.size() != rows.size())
+                    throw new RuntimeException("postgresCopyBatch() did not return generatedKeys for all rows");
+            }
+            return returnKeys;
+        } finally {
+            execute(conn, "DROP TABLE IF EXISTS pg_temp." + stage);
+        }
+    }
+
+    static void postgresCopyIn(Connection conn, String sql, List<String> cols, List<Map<String, Object>> rows) throws SQLException {
+        Exception ex = null;
+        CopyIn    in = null;
+        try {
+            notifyBefore("copy", sql, rows);
+
+            in = conn.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < rows.size(); i++) {
+                line.setLength(0);
+                Map<String, Object> row = rows.get(i);
+                for (String col : cols) {
+                    appendCsv(line, row.get(col));
+                    line.append(',');
                 }
-                stmt.addBatch();
+                line.append(i).append('\n');
+
+                byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+                in.writeToCopy(bytes, 0, bytes.length);
             }
-            stmt.executeBatch();
+            in.endCopy();
         } catch (Exception e) {
             ex = e;
-            notifyError("upsert", sql, rows, ex);
+            if (in != null && in.isActive())
+                in.cancelCopy();
+            notifyError("copy", sql, rows, ex);
             throw e;
         } finally {
-            ResultSet rs = stmt.getGeneratedKeys();
-            while (rs.next()) {
+            notifyAfter("copy", sql, rows, ex, null);
+        }
+    }
 
-                String key = rs.getString(1);
-                returnKeys.add(key);
-            }
-            close(stmt);
-            notifyAfter("upsert", sql, rows, ex, null);
+    /**
+     * Appends <code>value</code> as a PostgreSQL CSV field, an unquoted empty field is null.
+     */
+    static void appendCsv(StringBuilder buff, Object value) {
+        if (value == null)
+            return;
+
+        String str;
+        if (value instanceof byte[]) {
+            StringBuilder hex = new StringBuilder("\\x");
+            for (byte b : (byte[]) value)
+                hex.append(String.format("%02x", b));
+            str = hex.toString();
+        } else if (value instanceof java.util.Date && !(value instanceof java.sql.Date || value instanceof Time || value instanceof Timestamp)) {
+            str = new Timestamp(((java.util.Date) value).getTime()).toString();
+        } else {
+            str = value.toString();
         }
-        return returnKeys;
+        buff.append('"').append(str.replace("\"", "\"\"")).append('"');
     }
 
     /*
@@ -1003,4 +1548,79 @@ public class JdbcUtils {
         void afterStmt(String method, String sql, Object args, Exception ex, Object result);
     }
 
+    /**
+     * A forward only cursor over an open ResultSet.
+     *
+     * @see #selectCursor(Connection, boolean, int, String, Object...)
+     */
+    public static class RowCursor implements Results.Cursor<Row> {
+        final Connection conn;
+        final Statement  stmt;
+        final ResultSet  rs;
+        final Rows       keys;
+        final int        cols;
+
+        boolean closed = false;
+        Boolean hasNext = null;
+
+        RowCursor(Connection conn, Statement stmt, ResultSet rs) throws SQLException {
+            this.conn = conn;
+            this.stmt = stmt;
+            this.rs = rs;
+
+            ResultSetMetaData rsmd = rs.getMetaData();
+            cols = rsmd.getColumnCount();
+
+            List<String> labels = new ArrayList<>();
+            for (int i = 1; i <= cols; i++)
+                labels.add(rsmd.getColumnLabel(i));
+            keys = new Rows(labels);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (hasNext == null) {
+                try {
+                    hasNext = !closed && rs.next();
+                } catch (SQLException ex) {
+                    close();
+                    throw ApiException.new500InternalServerError(ex);
+                }
+                //-- release the connection as soon as the last row has been read
+                if (!hasNext)
+                    close();
+            }
+            return hasNext;
+        }
+
+        @Override
+        public Row next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            hasNext = null;
+            try {
+                Object[] values = new Object[cols];
+                for (int i = 0; i < cols; i++)
+                    values[i] = getObject(rs, i + 1);
+                return keys.newRow(values);
+            } catch (Exception ex) {
+                close();
+                throw ApiException.new500InternalServerError(ex);
+            }
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                hasNext = false;
+                JdbcUtils.close(rs, stmt, conn);
+            }
+        }
+    }
 }
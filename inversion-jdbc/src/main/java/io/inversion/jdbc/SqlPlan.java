@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc;
+
+import io.inversion.Collection;
+import io.inversion.Index;
+import io.inversion.rql.Term;
+import org.apache.commons.collections4.KeyValue;
+
+import java.util.*;
+
+/**
+ * The prepared statement text and value binding order that {@link SqlQuery} generated for one statement shape.
+ * <p>
+ * A shape is a list of RQL terms with each literal value replaced by a positional placeholder.  Queries with
+ * the same shape and different values produce the same SQL so the SQL only has to be generated once per shape,
+ * see {@link JdbcDb#getPlanCacheSize()}.
+ * <p>
+ * Plans are built by running SqlQuery against a copy of the terms where each placeholder is a unique sentinel
+ * token.  Each bound value of that query is recorded as a template that the real values are substituted into.
+ */
+public class SqlPlan {
+
+    /**
+     * Cached for shapes whose generated SQL could not be reproduced from a plan so they are not planned again.
+     */
+    static final SqlPlan UNCACHEABLE = new SqlPlan(null, Collections.emptyList());
+
+    /**
+     * Functions that can be part of a shape, any other function makes the query uncacheable.
+     */
+    static final Set<String> FUNCTIONS = new HashSet<>(Arrays.asList("eq", "ne", "lt", "le", "gt", "ge", "in", "out", "like", "w", "sw", "ew", "wo", "n", "nn", "emp", "nemp", "and", "or", "not", "after", "_key", "_join"));
+
+    /**
+     * Functions whose arguments are printed into the SQL, or are names, so they are part of the shape and not placeholders.
+     */
+    static final Set<String> LITERAL_FUNCTIONS = new HashSet<>(Arrays.asList("offset", "limit", "page", "pagenum", "pagesize", "sort", "order", "includes", "_join"));
+
+    final String       sql;
+    final List<String> columns   = new ArrayList<>();
+    final List<String> templates = new ArrayList<>();
+
+    SqlPlan(String sql, List<KeyValue> values) {
+        this.sql = sql;
+        for (KeyValue kv : values) {
+            columns.add((String) kv.getKey());
+            templates.add(kv.getValue() == null ? null : kv.getValue().toString());
+        }
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Substitutes the literal values of <code>shape</code> into the value templates.
+     *
+     * @param shape a query with this plan's shape
+     * @return the values to bind, in order
+     */
+    List<String> bind(Shape shape) {
+        List<String> values = new ArrayList<>();
+        for (String template : templates) {
+            String value = template;
+            for (int i = 0; value != null && i < shape.args.size(); i++)
+                value = value.replace(shape.sentinels.get(i), shape.args.get(i));
+            values.add(value);
+        }
+        return values;
+    }
+
+    /**
+     * Terms normalized into a cache key and the literal values that were pulled out of them.
+     */
+    static class Shape {
+        final StringBuilder key           = new StringBuilder();
+        final List<String>  args          = new ArrayList<>();
+        final List<String>  sentinels     = new ArrayList<>();
+        final List<Term>    sentinelTerms = new ArrayList<>();
+
+        /**
+         * @param collection the collection being queried
+         * @param terms      column name mapped RQL terms, these are not modified
+         * @return the shape of <code>terms</code> or null if they can not be cached
+         */
+        static Shape of(Collection collection, List<Term> terms) {
+            if (collection == null)
+                return null;
+
+            Shape shape = new Shape();
+            shape.key.append(collection.getTableName());
+            for (Term term : terms) {
+                Term copy = term.copy();
+                if (!shape.normalize(collection, copy))
+                    return null;
+
+                shape.sentinelTerms.add(copy);
+                shape.key.append('&').append(copy);
+            }
+            return shape;
+        }
+
+        boolean normalize(Collection collection, Term term) {
+            if (term.isLeaf())
+                return true;
+
+            String  function = term.getToken().toLowerCase();
+            boolean literal  = LITERAL_FUNCTIONS.contains(function) || (function.equals("eq") && term.getTerm(0).isLeaf() && LITERAL_FUNCTIONS.contains(term.getToken(0).toLowerCase()));
+
+            if (!literal && !FUNCTIONS.contains(function))
+                return false;
+
+            if (function.equals("_key")) {
+                //-- multi column keys are decoded from their values
+                Index index = collection.getIndex(term.getToken(0));
+                if (index == null || index.size() != 1)
+                    return false;
+            }
+
+            for (int i = 0; i < term.size(); i++) {
+                Term child = term.getTerm(i);
+                if (!child.isLeaf()) {
+                    if (literal || !normalize(collection, child))
+                        return false;
+                } else if (!literal && i > 0 && isValue(collection, child)) {
+                    String value    = child.getToken();
+                    char   quote    = child.getQuote();
+                    String sentinel = sentinel(args.size(), quote == 0 && isNum(value));
+
+                    //-- the term is a copy, withToken parses the quote back off so a quoted value stays a string
+                    child.withToken(quote == 0 ? sentinel : quote + sentinel + quote);
+                    sentinels.add(sentinel);
+                    args.add(value);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Values that SqlQuery prints differently, or may treat as a column name, stay in the shape.
+         */
+        static boolean isValue(Collection collection, Term leaf) {
+            String token = leaf.getToken();
+            if (leaf.getQuote() == '"' || "null".equalsIgnoreCase(token) || "true".equalsIgnoreCase(token) || "false".equalsIgnoreCase(token))
+                return false;
+
+            for (int i = 0; i < token.length(); i++) {
+                char c = token.charAt(i);
+                if (c == '*' || c == '%' || c == '_' || c == '\\' || c == '\uE000')
+                    return false;
+            }
+
+            return collection.getProperty(token) == null;
+        }
+
+        static boolean isNum(String token) {
+            try {
+                Double.parseDouble(token);
+                return true;
+            } catch (Exception ex) {
+                return false;
+            }
+        }
+
+        /**
+         * Numeric placeholders must still parse as numbers, they are fixed width so one can never contain another.
+         * String placeholders are wrapped in a private use character, not a control character, because
+         * <code>Double.parseDouble</code> trims control characters.
+         */
+        static String sentinel(int index, boolean num) {
+            String idx = String.format("%04d", index);
+            return num ? "1.2345678" + idx + "E-299" : "\uE000" + idx + "\uE000";
+        }
+    }
+}
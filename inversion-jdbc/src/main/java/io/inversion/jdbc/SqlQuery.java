@@ -21,11 +21,14 @@ import io.inversion.rql.*;
 import io.inversion.rql.Order.Sort;
 import io.inversion.utils.Rows;
 import io.inversion.utils.Utils;
+import org.apache.commons.collections4.KeyValue;
+import org.apache.commons.collections4.keyvalue.DefaultKeyValue;
 
 import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 
 /**
@@ -40,6 +43,45 @@ public class SqlQuery<D extends Db> extends Query<SqlQuery, D, Select<Select<Sel
 
     LinkedHashMap<String, Term> joins;
 
+    /**
+     * The MANY_TO_ONE relationships, from a <code>_join</code> term, whose related records are LEFT JOINed into the select.
+     *
+     * @see Db#isJoinable(Relationship)
+     */
+    List<String> joinExpands;
+
+    /**
+     * True while a cursor select is being built, cursors never count foundRows.
+     */
+    boolean cursor = false;
+
+    /**
+     * The terms of this query with their literal values pulled out, null if the generated SQL should not be cached.
+     *
+     * @see JdbcDb#getPlanCacheSize()
+     */
+    SqlPlan.Shape shape = null;
+
+    /**
+     * True while the SQL for a {@link SqlPlan} is generated, values are recorded as is instead of being cast.
+     */
+    boolean planning = false;
+
+    /**
+     * How foundRows is counted, see {@link JdbcDb#getCountStrategy()}.
+     */
+    String countStrategy = JdbcDb.COUNT_QUERY;
+
+    /**
+     * False after foundRows was taken from an estimate or the count cache.
+     */
+    boolean foundRowsExact = true;
+
+    /**
+     * The column alias for the COUNT(*) OVER() value of the "window" count strategy.
+     */
+    static final String WINDOW_COUNT_COL = "~~foundRows";
+
 //    public SqlQuery() {
 //
 //    }
@@ -63,6 +105,15 @@ public class SqlQuery<D extends Db> extends Query<SqlQuery, D, Select<Select<Sel
                 return true;
         }
 
+        if (term.hasToken("_join")) {
+            if (joinExpands == null)
+                joinExpands = new ArrayList<>();
+
+            for (Term child : term.getTerms())
+                joinExpands.add(child.getToken());
+            return true;
+        }
+
         if (term.hasToken("join")) {
             if (joins == null)
                 joins = new LinkedHashMap<>();
@@ -80,8 +131,26 @@ public class SqlQuery<D extends Db> extends Query<SqlQuery, D, Select<Select<Sel
 
     @Override
     public Results doSelect() throws ApiException {
+        return doSelect(false);
+    }
+
+    /**
+     * Runs the select returning either materialized rows or, when <code>cursor</code> is true,
+     * a {@link Results.Cursor} over the open ResultSet.
+     * <p>
+     * A cursor reads from its own unmanaged connection, with {@link JdbcDb#getFetchSize()} as the fetch size,
+     * so it can outlive the Request's transaction.  The connection is released when the cursor is closed.
+     * Cursor results do not query for foundRows.
+     *
+     * @param cursor true to return a forward only cursor
+     * @return the query results
+     * @throws ApiException if the query fails
+     */
+    public Results doSelect(boolean cursor) throws ApiException {
+        this.cursor = cursor;
+        this.countStrategy = getCountStrategy();
         JdbcDb db  = (JdbcDb) getDb();
-        String sql = getPreparedStmt();
+        String sql = shape != null ? getPlannedStmt() : getPreparedStmt();
 
         Results results = new Results(this);
         List    values  = getColValues();
@@ -94,8 +163,21 @@ public class SqlQuery<D extends Db> extends Query<SqlQuery, D, Select<Select<Sel
         Chain.debug(debug);
         results.withTestQuery(debug);
 
-        if (!isDryRun()) {
-            Connection conn = db.getConnection();
+        if (!isDryRun() && cursor) {
+            Connection conn = db.getReadConnection(false);
+            try {
+                //-- some drivers, such as PostgreSQL, only honor the fetch size inside of a transaction.
+                //-- the pool resets the connection when the cursor closes it
+                if (db.getFetchSize() > 0)
+                    conn.setAutoCommit(false);
+
+                results.withCursor(JdbcUtils.selectCursor(conn, true, db.getFetchSize(), sql, values));
+            } catch (Exception ex) {
+                JdbcUtils.close(conn);
+                throw ApiException.new500InternalServerError(ex);
+            }
+        } else if (!isDryRun()) {
+            Connection conn = db.getReadConnection(true);
             //-- prepared statement variables are computing during the
             //-- generation of the prepared statement above
 
@@ -103,28 +185,50 @@ public class SqlQuery<D extends Db> extends Query<SqlQuery, D, Select<Select<Sel
                 Rows rows      = JdbcUtils.selectRows(conn, sql, values);
                 int  foundRows = rows.size();
 
-                int limit = getPage().getLimit();
-                int page  = getPage().getOffset();
+                int  limit = getPage().getLimit();
+                int  page  = getPage().getOffset();
+                Term after = getSeekAfter();
 
                 //-- don't query for total row count if the DB returned fewer that
                 //-- the max number of rows on the first page...foundRows must be
-                //-- number of rows we just found
-                boolean needsPaging = page > 1 || foundRows == limit;
+                //-- number of rows we just found.  keyset pages only see the
+                //-- rows after the seek key so they are not counted
+                boolean needsPaging = after == null && (page > 1 || foundRows == limit);
+                int     windowCount = removeWindowCount(rows);
                 if (needsPaging) {
                     if (Chain.peek().get("foundRows") == null && Chain.first().getRequest().isMethod("GET")) {
                         if (rows.size() == 0) {
                             foundRows = 0;
+                        } else if (windowCount >= 0) {
+                            foundRows = windowCount;
                         } else {
-
-                            foundRows = queryFoundRows(conn, sql, values);
+                            //-- an estimate smaller than the rows already seen is stale
+                            int estimate = JdbcDb.COUNT_APPROXIMATE.equals(countStrategy) ? queryApproximateRows(conn) : -1;
+                            if (estimate >= page + rows.size()) {
+                                foundRows = estimate;
+                                foundRowsExact = false;
+                            } else {
+                                foundRows = queryFoundRows(conn, sql, values);
+                            }
                         }
 
                         Chain.peek().put("foundRows", foundRows);
                     }
                 }
 
+                if (after != null)
+                    foundRows = -1;
+
                 results.withFoundRows(foundRows);
+                results.withFoundRowsExact(foundRowsExact);
                 results.withRows(rows);
+
+                if (limit > 0 && rows.size() == limit && (after != null || (db.getKeysetPagingRows() > 0 && foundRows >= db.getKeysetPagingRows()))) {
+                    List<Sort> sorts = getSeekSorts();
+                    Term       next  = sorts != null ? getSeekTerm(sorts, rows.get(rows.size() - 1)) : null;
+                    if (next != null)
+                        results.withNext(next);
+                }
             } catch (Exception ex) {
                 //System.out.println(sql);
                 ex.printStackTrace();
@@ -143,6 +247,66 @@ public class SqlQuery<D extends Db> extends Query<SqlQuery, D, Select<Select<Sel
         return toSql(false);
     }
 
+    /**
+     * Returns the same prepared statement as {@link #getPreparedStmt()}, reusing the SQL generated for earlier
+     * queries of the same shape from {@link JdbcDb}'s plan cache and only binding this query's values.
+     * <p>
+     * On a miss the plan is generated from the shape's sentinel terms and is only cached if it reproduces
+     * exactly the SQL and values generated for this query.
+     *
+     * @return the prepared statement sql
+     */
+    protected String getPlannedStmt() {
+        JdbcDb jdbcDb = (JdbcDb) getDb();
+
+        //-- the select list differs for cursors and for queries that calculate foundRows with SQL_CALC_FOUND_ROWS or COUNT(*) OVER()
+        String key = shape.key + "|" + cursor + "|" + countStrategy + "|" + (Chain.peek() != null && Chain.peek().get("foundRows") == null);
+
+        SqlPlan plan = jdbcDb.getPlan(key);
+        if (plan == SqlPlan.UNCACHEABLE)
+            return getPreparedStmt();
+
+        if (plan != null) {
+            bind(plan);
+            return plan.sql;
+        }
+
+        String sql = getPreparedStmt();
+
+        SqlQuery planner = new SqlQuery<>(jdbcDb, getCollection(), shape.sentinelTerms);
+        planner.cursor = cursor;
+        planner.countStrategy = countStrategy;
+        planner.planning = true;
+        plan = new SqlPlan(planner.getPreparedStmt(), planner.getValues());
+
+        List<KeyValue> generated = new ArrayList<>(values);
+        bind(plan);
+        if (!plan.sql.equals(sql) || !values.equals(generated)) {
+            values.clear();
+            values.addAll(generated);
+            plan = SqlPlan.UNCACHEABLE;
+        }
+
+        jdbcDb.putPlan(key, plan);
+        return sql;
+    }
+
+    protected void bind(SqlPlan plan) {
+        clearValues();
+        List<String> bound = plan.bind(shape);
+        for (int i = 0; i < bound.size(); i++)
+            withColValue(plan.columns.get(i), bound.get(i));
+    }
+
+    @Override
+    protected SqlQuery withColValue(String columnName, Object value) {
+        if (planning) {
+            values.add(new DefaultKeyValue(columnName, value));
+            return this;
+        }
+        return super.withColValue(columnName, value);
+    }
+
     protected String toSql(boolean preparedStmt) {
         clearValues();
         Parts parts = new Parts();
@@ -153,7 +317,9 @@ public class SqlQuery<D extends Db> extends Query<SqlQuery, D, Select<Select<Sel
         printWhereClause(parts, getWhere().getFilters(), preparedStmt);
         printGroupClause(parts, getGroup().getGroupBy());
         printOrderClause(parts, getOrder().getSorts());
-        printLimitClause(parts, getPage().getOffset(), getPage().getLimit());
+        printAfterClause(parts, getSeekAfter(), preparedStmt);
+        printLimitClause(parts, getSeekAfter() != null ? 0 : getPage().getOffset(), getPage().getLimit());
+        printJoinExpands(parts, joinExpands);
 
         String sql = printSql(parts);
         return sql;
@@ -284,9 +450,13 @@ public class SqlQuery<D extends Db> extends Query<SqlQuery, D, Select<Select<Sel
             parts.select = parts.select.substring(0, idx) + " DISTINCT " + parts.select.substring(idx);
         }
 
-        if (Chain.peek() != null && Chain.peek().get("foundRows") == null && "mysql".equalsIgnoreCase(getType()) && parts.select.toLowerCase().trim().startsWith("select")) {
+        boolean countable = !cursor && Chain.peek() != null && Chain.peek().get("foundRows") == null && parts.select.toLowerCase().trim().startsWith("select");
+
+        if (countable && isCalcFoundRows()) {
             int idx = parts.select.toLowerCase().indexOf("select") + 6;
             parts.select = parts.select.substring(0, idx) + " SQL_CALC_FOUND_ROWS " + parts.select.substring(idx);
+        } else if (countable && JdbcDb.COUNT_WINDOW.equals(countStrategy) && !getSelect().isDistinct() && getSeekAfter() == null) {
+            parts.select = parts.select.trim() + ", COUNT(*) OVER() AS " + quoteCol(WINDOW_COUNT_COL);
         }
 
         return parts.select;
@@ -319,6 +489,56 @@ public class SqlQuery<D extends Db> extends Query<SqlQuery, D, Select<Select<Sel
         return parts.where;
     }
 
+    /**
+     * LEFT JOINs the related table of each MANY_TO_ONE relationship in <code>joinExpands</code> and
+     * appends its columns to the select list aliased as <code>Db.getJoinAlias(rel) + "~~" + columnName</code>.
+     * <p>
+     * Nothing is joined into custom "_query" selects or grouped and aggregate selects, the related
+     * records are then fetched separately.
+     *
+     * @param parts       the sql being composed
+     * @param joinExpands the names of the relationships to join
+     * @return the from clause
+     */
+    protected String printJoinExpands(Parts parts, List<String> joinExpands) {
+        if (joinExpands == null || getCollection() == null || find("_query", 0) != null)
+            return parts.from;
+
+        if (!parts.select.toLowerCase().trim().startsWith("select") || getSelect().isDistinct() || parts.group != null || find("sum", "min", "max", "count", "function", "aggregate", "distinct") != null)
+            return parts.from;
+
+        StringBuilder select = new StringBuilder(parts.select);
+        StringBuilder from   = new StringBuilder(parts.from);
+
+        for (String relName : joinExpands) {
+            Relationship rel = getCollection().getRelationship(relName);
+            if (rel == null || !rel.isManyToOne())
+                continue;
+
+            Collection related = rel.getRelated();
+            Index      fk      = rel.getFkIndex1();
+            Index      pk      = related.getPrimaryIndex();
+            String     alias   = Db.getJoinAlias(rel);
+
+            from.append(" LEFT JOIN ").append(quoteCol(related.getTableName())).append(" AS ").append(quoteCol(alias)).append(" ON ");
+            for (int i = 0; i < fk.size(); i++) {
+                Property fkProp = fk.getProperty(i);
+                Property pkProp = fkProp.getPk() != null ? fkProp.getPk() : pk.getProperty(i);
+
+                if (i > 0)
+                    from.append(" AND ");
+                from.append(printCol(fkProp.getColumnName())).append(" = ").append(quoteCol(alias)).append(".").append(quoteCol(pkProp.getColumnName()));
+            }
+
+            for (Property prop : related.getProperties())
+                select.append(", ").append(quoteCol(alias)).append(".").append(quoteCol(prop.getColumnName())).append(" AS ").append(quoteCol(alias + "~~" + prop.getColumnName()));
+        }
+
+        parts.select = select.toString();
+        parts.from = from.toString();
+        return parts.from;
+    }
+
     //   protected Term findJoinTerm(Term term)
     //   {
     //      if (!this.joins.isEmpty())
@@ -430,6 +650,141 @@ public class SqlQuery<D extends Db> extends Query<SqlQuery, D, Select<Select<Sel
         return parts.order;
     }
 
+    /**
+     * Adds the keyset seek predicate for an <code>after(col1,val1,col2,val2...)</code> term to the where clause.
+     * <p>
+     * When all sorts have the same direction this is a row value comparison such as <code>(col1, col2) &gt; (?, ?)</code>
+     * that the database can answer with an index seek.  Mixed directions, and SQL Server which does not support
+     * row values, get the equivalent <code>(col1 &gt; ? OR (col1 = ? AND col2 &gt; ?))</code> expansion.
+     *
+     * @param parts          the sql being built
+     * @param after          the after term or null
+     * @param preparedStmt   true to print values as prepared statement variables
+     * @return the where clause
+     * @throws ApiException 400 if the after term does not match the unique sort of this query
+     */
+    protected String printAfterClause(Parts parts, Term after, boolean preparedStmt) throws ApiException {
+        if (after == null)
+            return parts.where;
+
+        List<Sort> sorts = getSeekSorts();
+        if (sorts == null || after.size() != sorts.size() * 2)
+            throw ApiException.new400BadRequest("The 'after' function requires a sort on a unique index with a column and value pair for each sorted column: '{}'", after);
+
+        boolean asc      = sorts.get(0).isAsc();
+        boolean rowValue = preparedStmt && !getDb().isType("sqlserver");
+        for (int i = 0; i < sorts.size(); i++) {
+            if (!sorts.get(i).getProperty().equalsIgnoreCase(after.getToken(i * 2)) || "null".equalsIgnoreCase(after.getToken(i * 2 + 1)))
+                throw ApiException.new400BadRequest("The 'after' function columns must match the sort columns in order and can not be null: '{}'", after);
+
+            rowValue &= sorts.get(i).isAsc() == asc;
+        }
+
+        String seek;
+        if (rowValue) {
+            StringBuilder cols = new StringBuilder();
+            StringBuilder vars = new StringBuilder();
+            for (int i = 0; i < sorts.size(); i++) {
+                String col = sorts.get(i).getProperty();
+                if (i > 0) {
+                    cols.append(", ");
+                    vars.append(", ");
+                }
+                cols.append(printCol(col));
+                withColValue(col, after.getToken(i * 2 + 1));
+                vars.append(asVariableName(values.size() - 1));
+            }
+            seek = "(" + cols + ") " + (asc ? ">" : "<") + " (" + vars + ")";
+        } else {
+            Term or = Term.term(null, "or");
+            for (int i = 0; i < sorts.size(); i++) {
+                Term and = Term.term(null, "and");
+                for (int j = 0; j < i; j++)
+                    and.withTerm(Term.term(null, "eq", sorts.get(j).getProperty(), after.getTerm(j * 2 + 1).copy()));
+
+                and.withTerm(Term.term(null, sorts.get(i).isAsc() ? "gt" : "lt", sorts.get(i).getProperty(), after.getTerm(i * 2 + 1).copy()));
+                or.withTerm(and);
+            }
+            seek = printTerm(or, null, preparedStmt);
+        }
+
+        if (Utils.empty(parts.where))
+            parts.where = " WHERE " + seek;
+        else
+            parts.where += " AND " + seek;
+
+        return parts.where;
+    }
+
+    /**
+     * @return the <code>after(col1,val1,col2,val2...)</code> term of this query or null if there is not one with column value pairs
+     */
+    protected Term getSeekAfter() {
+        Term after = getPage().getAfter();
+        return after != null && after.hasToken("after") && after.size() > 1 && after.size() % 2 == 0 ? after : null;
+    }
+
+    /**
+     * The sorts that keyset pages seek on, these are the requested sorts or the primary index when there are none.
+     *
+     * @return the sorts or null if they do not cover a unique index, so a seek key would not identify a single row
+     */
+    public List<Sort> getSeekSorts() {
+        if (collection == null || joins != null || find("_query") != null || !getGroup().getGroupBy().isEmpty())
+            return null;
+
+        List<Sort> sorts = getOrder().getSorts();
+        if (sorts.isEmpty()) {
+            Index primaryIndex = collection.getPrimaryIndex();
+            if (primaryIndex == null)
+                return null;
+
+            for (String col : primaryIndex.getColumnNames())
+                sorts.add(new Sort(col, true));
+        }
+
+        List<String> cols = new ArrayList<>();
+        for (Sort sort : sorts)
+            cols.add(sort.getProperty().toLowerCase());
+
+        for (Index index : collection.getIndexes()) {
+            if (!index.isUnique() || index.size() == 0)
+                continue;
+
+            boolean covered = true;
+            for (String col : index.getColumnNames())
+                covered &= cols.contains(col.toLowerCase());
+
+            if (covered)
+                return sorts;
+        }
+        return null;
+    }
+
+    /**
+     * @param sorts the unique sorts of this query
+     * @param row   the last row of a page
+     * @return an <code>after(col1,val1,col2,val2...)</code> term that seeks past <code>row</code> or null if a sorted value is null
+     */
+    protected Term getSeekTerm(List<Sort> sorts, Map<String, Object> row) {
+        Term after = Term.term(null, "after");
+        for (Sort sort : sorts) {
+            Object value = row.get(sort.getProperty());
+            if (value == null)
+                return null;
+
+            String token = value.toString();
+            if (!(value instanceof Number || value instanceof Boolean)) {
+                if (token.indexOf('\'') > -1)
+                    return null;
+                token = "'" + token + "'";
+            }
+            after.withTerm(Term.term(null, sort.getProperty()));
+            after.withTerm(Term.term(null, token));
+        }
+        return after;
+    }
+
     protected List<Sort> getDefaultSorts(Parts parts) {
         List<Sort> sorts = new ArrayList<>();
 
@@ -521,9 +876,92 @@ public class SqlQuery<D extends Db> extends Query<SqlQuery, D, Select<Select<Sel
         return s;
     }
 
+    /**
+     * The count strategy from the "countStrategy" endpoint or action config, or the collection's strategy
+     * from {@link JdbcDb#getCountStrategy(Collection)}.  "window" falls back to "query" on databases that
+     * are not known to support COUNT(*) OVER().
+     *
+     * @return the count strategy for this query
+     */
+    protected String getCountStrategy() {
+        String strategy = null;
+
+        Chain chain = Chain.peek();
+        if (chain != null && chain.getRequest() != null && chain.getRequest().getEndpoint() != null)
+            strategy = chain.getConfig("countStrategy", null);
+
+        if (Utils.empty(strategy) && getDb() != null)
+            strategy = ((JdbcDb) getDb()).getCountStrategy(getCollection());
+
+        strategy = Utils.empty(strategy) ? JdbcDb.COUNT_QUERY : strategy.toLowerCase();
+
+        if (JdbcDb.COUNT_WINDOW.equals(strategy) && (getDb() == null || !getDb().isType("postgres", "sqlserver", "h2")))
+            strategy = JdbcDb.COUNT_QUERY;
+
+        return strategy;
+    }
+
+    /**
+     * @return true if MySQL SQL_CALC_FOUND_ROWS and SELECT FOUND_ROWS() are used to count foundRows
+     */
+    protected boolean isCalcFoundRows() {
+        return "mysql".equalsIgnoreCase(getType()) && JdbcDb.COUNT_QUERY.equals(countStrategy) && (getDb() == null || ((JdbcDb) getDb()).isCalcRowsFound());
+    }
+
+    /**
+     * Removes the "window" count strategy's COUNT(*) OVER() column from the rows.
+     *
+     * @param rows the selected rows
+     * @return the count or -1 if it was not selected
+     */
+    protected int removeWindowCount(Rows rows) {
+        if (rows.isEmpty() || !rows.get(0).containsKey(WINDOW_COUNT_COL))
+            return -1;
+
+        int count = ((Number) rows.get(0).get(WINDOW_COUNT_COL)).intValue();
+        rows.removeKey(WINDOW_COUNT_COL);
+
+        return count;
+    }
+
+    /**
+     * Reads the table row estimate from the database catalog for the "approximate" count strategy.
+     *
+     * @param conn the connection to query
+     * @return the estimated row count or -1 if the query is filtered or the database has no usable estimate
+     */
+    protected int queryApproximateRows(Connection conn) {
+        if (getCollection() == null || !getWhere().getFilters().isEmpty() || joins != null || find("_query") != null || !getGroup().getGroupBy().isEmpty() || getSelect().isDistinct())
+            return -1;
+
+        String table = getCollection().getTableName();
+        String sql;
+        Object arg   = table;
+        if (db.isType("postgres")) {
+            sql = "SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass(?)";
+            arg = quoteCol(table);
+        } else if (db.isType("mysql")) {
+            sql = "SELECT TABLE_ROWS FROM information_schema.tables WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?";
+        } else if (db.isType("sqlserver")) {
+            sql = "SELECT SUM(p.rows) FROM sys.partitions p WHERE p.object_id = OBJECT_ID(?) AND p.index_id IN (0, 1)";
+            arg = quoteCol(table);
+        } else if (db.isType("h2")) {
+            sql = "SELECT ROW_COUNT_ESTIMATE FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = ?";
+        } else {
+            return -1;
+        }
+
+        try {
+            return JdbcUtils.selectInt(conn, sql, arg);
+        } catch (Exception ex) {
+            Chain.debug("Unable to estimate the rows of '" + table + "': " + ex.getMessage());
+            return -1;
+        }
+    }
+
     protected int queryFoundRows(Connection conn, String sql, List values) throws Exception {
         int foundRows;
-        if (db.isType("mysql")) {
+        if (isCalcFoundRows()) {
             sql = "SELECT FOUND_ROWS()";
             foundRows = JdbcUtils.selectInt(conn, sql);
         } else {
@@ -538,7 +976,19 @@ public class SqlQuery<D extends Db> extends Query<SqlQuery, D, Select<Select<Sel
 
             sql = "SELECT count(1) FROM ( " + sql + " ) as q";
 
-            foundRows = JdbcUtils.selectInt(conn, sql, values);
+            if (JdbcDb.COUNT_CACHED.equals(countStrategy) && getCollection() != null) {
+                JdbcDb jdbcDb = (JdbcDb) getDb();
+                String key    = getCollection().getTableName() + "|" + sql + "|" + values;
+                foundRows = jdbcDb.getCount(key);
+                if (foundRows >= 0) {
+                    foundRowsExact = false;
+                } else {
+                    foundRows = JdbcUtils.selectInt(conn, sql, values);
+                    jdbcDb.putCount(key, foundRows);
+                }
+            } else {
+                foundRows = JdbcUtils.selectInt(conn, sql, values);
+            }
         }
         return foundRows;
     }
@@ -562,7 +1012,7 @@ public class SqlQuery<D extends Db> extends Query<SqlQuery, D, Select<Select<Sel
 
         for (Term child : term.getTerms()) {
             if (isCol(child)) {
-                col = child.token;
+                col = child.getToken();
                 break;
             }
         }
@@ -924,7 +1374,7 @@ public class SqlQuery<D extends Db> extends Query<SqlQuery, D, Select<Select<Sel
     }
 
     protected String asString(Term term) {
-        String token  = term.token;
+        String token  = term.getToken();
         Term   parent = term.getParent();
         if (parent != null && parent.hasToken("eq", "ne", "w", "sw", "ew", "like", "wo")) {
             if (parent.hasToken("w") || parent.hasToken("wo")) {
@@ -378,4 +378,84 @@ public abstract class AbstractJdbcDbGetActionIntegTest extends AbstractDbGetActi
 
     }
 
+    /**
+     * Counts with the dialect's COUNT(*) OVER() window, where it has one, and estimates from its table statistics.
+     */
+    @Test
+    public void testCountStrategies() throws Exception {
+        Engine   engine  = engine();
+        JdbcDb   db      = (JdbcDb) engine.getApi("northwind").getDb(getType());
+        String[] queries = {"orders?limit=5&sort=orderid", "orders?limit=5&pageNum=3&sort=orderid&ne(shipcountry,France)"};
+        try {
+            for (String query : queries) {
+                db.withCountStrategy("orders", JdbcDb.COUNT_QUERY);
+                Response counted = engine.get(url(query)).assertOk();
+
+                db.withCountStrategy("orders", JdbcDb.COUNT_WINDOW);
+                Response windowed = engine.get(url(query)).assertOk();
+
+                assertEquals(counted.getFoundRows(), windowed.getFoundRows(), query);
+                assertTrue(windowed.isFoundRowsExact(), query);
+                assertEquals(counted.getData().toString(), windowed.getData().toString(), query);
+                if (db.isType("postgres", "sqlserver", "h2"))
+                    assertTrue(windowed.getDebug().contains("COUNT(*) OVER()"), query);
+            }
+
+            //-- estimates come from table statistics that may not be current so only exact counts are compared
+            db.withCountStrategy("orders", JdbcDb.COUNT_APPROXIMATE);
+            Response res = engine.get(url("orders?limit=5")).assertOk();
+            assertEquals(5, res.getData().size());
+            assertTrue(res.getFoundRows() >= 5);
+            if (!res.isFoundRowsExact())
+                assertFalse(res.getDebug().contains("count(1)"));
+
+            res = engine.get(url("orders?limit=5&ne(shipcountry,France)")).assertOk();
+            assertTrue(res.isFoundRowsExact());
+        } finally {
+            db.withCountStrategy("orders", db.getCountStrategy());
+        }
+    }
+
+    /**
+     * Pages with the dialect's seek predicate, a row value comparison or its OR expansion on SQL Server.
+     */
+    @Test
+    public void testKeysetPaging() throws Exception {
+        Engine   engine           = engine();
+        JdbcDb   db               = (JdbcDb) engine.getApi("northwind").getDb(getType());
+        int      keysetPagingRows = db.getKeysetPagingRows();
+        String[] queries          = {"orders?limit=5&sort=orderid", "orders?limit=5&sort=-orderid", "orders?limit=5&sort=employeeid,-orderid&ne(shipcountry,France)"};
+        try {
+            for (String query : queries) {
+                db.withKeysetPagingRows(-1);
+                List<String> offsetNexts = new ArrayList<>();
+                List<String> offsetRows  = walk(engine, url(query), offsetNexts);
+
+                db.withKeysetPagingRows(10);
+                List<String> keysetNexts = new ArrayList<>();
+                List<String> keysetRows  = walk(engine, url(query), keysetNexts);
+
+                assertTrue(offsetRows.size() > 10, query);
+                assertEquals(offsetRows, keysetRows, query);
+                for (String next : keysetNexts)
+                    assertTrue(next.contains("after("), next);
+            }
+        } finally {
+            db.withKeysetPagingRows(keysetPagingRows);
+        }
+    }
+
+    List<String> walk(Engine engine, String url, List<String> nexts) {
+        List<String> rows = new ArrayList<>();
+        String       next = url;
+        while (next != null) {
+            Response res = engine.get(next).assertOk();
+            res.getData().forEach(row -> rows.add(((JSNode) row).getString("href")));
+            next = res.next();
+            if (next != null)
+                nexts.add(next);
+            assertTrue(nexts.size() < 100, "paging did not terminate");
+        }
+        return rows;
+    }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.inversion.Api;
+import io.inversion.Chain;
+import io.inversion.Collection;
+import io.inversion.Engine;
+import io.inversion.action.db.DbAction;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a test class against its own in memory H2 northwind JdbcDb and Engine, recording every SQL statement they run.
+ * <p>
+ * Subclasses customize the fixture by overriding {@link #buildDb()} and {@link #buildApi(JdbcDb)}.
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+public abstract class AbstractJdbcDbH2Test {
+    protected Engine engine = null;
+    protected JdbcDb db     = null;
+
+    /**
+     * The sql of every statement run since the last {@link #clearStatements()}
+     */
+    protected final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+    /**
+     * The JdbcUtils method that ran each statement in {@link #statements}
+     */
+    protected final List<String> methods    = Collections.synchronizedList(new ArrayList<>());
+
+    protected final JdbcUtils.SqlListener listener = new JdbcUtils.SqlListener() {
+        public void onError(String method, String sql, Object args, Exception ex) {
+        }
+
+        public void beforeStmt(String method, String sql, Object args) {
+            synchronized (statements) {
+                statements.add(sql);
+                methods.add(method);
+            }
+        }
+
+        public void afterStmt(String method, String sql, Object args, Exception ex, Object result) {
+        }
+    };
+
+    @BeforeAll
+    public void beforeAll_initializeEngine() throws Exception {
+        Chain.resetAll();
+        JdbcConnectionLocal.closeAll();
+
+        db = buildDb();
+        engine = new Engine().withApi(buildApi(db));
+        engine.startup();
+        JdbcUtils.addSqlListener(listener);
+    }
+
+    @AfterAll
+    public void afterAll_finalizeEngine() throws Exception {
+        JdbcUtils.removeSqlListener(listener);
+        engine.shutdown();
+    }
+
+    /**
+     * @return a JdbcDb on a fresh H2 database named after the test class
+     */
+    protected JdbcDb buildDb() throws Exception {
+        return JdbcDbFactory.bootstrapH2(getClass().getSimpleName());
+    }
+
+    /**
+     * @param db the Db built by {@link #buildDb()}
+     * @return the "northwind" Api with a DbAction for every path
+     */
+    protected Api buildApi(JdbcDb db) {
+        return new Api("northwind")//
+                .withDb(db)//
+                .withEndpoint("*", "*", new DbAction());
+    }
+
+    /**
+     * @param sql a case insensitive fragment of sql
+     * @return the number of recorded statements that contain <code>sql</code>
+     */
+    protected long count(String sql) {
+        String upper = sql.toUpperCase();
+        synchronized (statements) {
+            return statements.stream().filter(stmt -> stmt.toUpperCase().contains(upper)).count();
+        }
+    }
+
+    protected void clearStatements() {
+        synchronized (statements) {
+            statements.clear();
+            methods.clear();
+        }
+    }
+
+    /**
+     * Closes the connections JdbcConnectionLocal holds for the current thread.
+     */
+    protected void closeConnections() throws Exception {
+        JdbcConnectionLocal.close();
+    }
+
+    /**
+     * @return the number of connections currently checked out of <code>db</code>'s pool
+     */
+    protected int activeConnections(JdbcDb db) {
+        return ((HikariDataSource) JdbcDb.pools.get(db)).getHikariPoolMXBean().getActiveConnections();
+    }
+
+    protected void closePool(JdbcDb db) {
+        ((HikariDataSource) JdbcDb.pools.remove(db)).close();
+    }
+
+    protected boolean hasUncacheablePlans(JdbcDb db) {
+        return db.plans.containsValue(SqlPlan.UNCACHEABLE);
+    }
+
+    protected void markReplicasDown(JdbcDb db) {
+        db.downReplicas.addAll(db.replicas);
+    }
+
+    protected int downReplicas(JdbcDb db) {
+        return db.downReplicas.size();
+    }
+
+    protected void checkReplicas(JdbcDb db) {
+        db.checkReplicas();
+    }
+
+    protected List<List<Map<String, Object>>> chunk(Connection conn, List<Map<String, Object>> rows, int numCols, List<String> uniqueCols) {
+        return JdbcUtils.chunk(conn, rows, numCols, uniqueCols);
+    }
+
+    protected List<String> groupCommit(JdbcDb db, Collection table, List<Map<String, Object>> rows) {
+        return db.groupCommit(table, rows);
+    }
+
+    protected void stopGroupCommitter(JdbcDb db) {
+        db.stopGroupCommitter();
+    }
+}
@@ -16,9 +16,16 @@
  */
 package io.inversion.jdbc;
 
+import io.inversion.Engine;
+import io.inversion.Response;
 import io.inversion.action.db.AbstractDbPostActionIntegTest;
+import io.inversion.utils.JSArray;
+import io.inversion.utils.JSNode;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public abstract class AbstractJdbcDbPostActionIntegTest extends AbstractDbPostActionIntegTest implements AbstractJdbcDbEngineTest {
     public AbstractJdbcDbPostActionIntegTest(String dbType) {
@@ -34,4 +41,73 @@ public abstract class AbstractJdbcDbPostActionIntegTest extends AbstractDbPostAc
     public void afterEach() {
         afterAll_finalizeEngine();
     }
+
+    /**
+     * Checks that each written row in <code>res</code> is what a GET of its href returns.
+     */
+    void assertReturnedRowsMatchGets(Response res, int count, String shipCityPrefix) {
+        assertEquals(count, res.getData().size(), res.getJson().toString());
+        for (int i = 0; i < count; i++) {
+            JSNode written = res.getData().getNode(i);
+            assertEquals(shipCityPrefix + i, written.getString("shipcity"));
+            assertEquals(engine().get(written.getString("href")).assertOk().getData().getNode(0).toString(), written.toString());
+        }
+    }
+
+    /**
+     * Runs the dialect's multi-row upsert, ON CONFLICT, ON DUPLICATE KEY UPDATE or MERGE, and its RETURNING or OUTPUT INSERTED rows.
+     */
+    @Test
+    public void testBulkUpsertReturnsRowsInInputOrder() throws Exception {
+        Engine  engine   = engine();
+        JSArray existing = engine.get(url("orders?limit=2&sort=orderid")).assertOk().getData();
+
+        JSArray orders = new JSArray(//
+                new JSNode("href", existing.getNode(0).getString("href"), "shipcity", "Upserted0"), //
+                new JSNode("shipcity", "Upserted1", "shipcountry", "USA"), //
+                new JSNode("href", existing.getNode(1).getString("href"), "shipcity", "Upserted2"), //
+                new JSNode("shipcity", "Upserted3", "shipcountry", "USA"));
+
+        Response res = engine.put(url("orders"), orders).assertOk();
+        assertReturnedRowsMatchGets(res, 4, "Upserted");
+        assertEquals(existing.getNode(0).getString("href"), res.findString("data.0.href"));
+        assertEquals(existing.getNode(1).getString("href"), res.findString("data.2.href"));
+    }
+
+    /**
+     * Runs the dialect's UPDATE ... FROM VALUES, or MERGE, once for each set of columns that the rows change.
+     */
+    @Test
+    public void testBulkPatchUpdatesEachColumnSet() throws Exception {
+        Engine  engine   = engine();
+        JSArray existing = engine.get(url("orders?limit=4&sort=orderid")).assertOk().getData();
+
+        JSArray patches = new JSArray();
+        for (int i = 0; i < 4; i++) {
+            JSNode patch = new JSNode("href", existing.getNode(i).getString("href"), "shipcity", "Patched" + i);
+            if (i % 2 == 1)
+                patch.put("shipcountry", "Patchland");
+            patches.add(patch);
+        }
+
+        Response res = engine.patch(url("orders"), patches).assertOk();
+        assertReturnedRowsMatchGets(res, 4, "Patched");
+        assertEquals("Patchland", res.findString("data.1.shipcountry"));
+        assertEquals(existing.getNode(0).getString("shipcountry"), res.findString("data.0.shipcountry"));
+    }
+
+    /**
+     * Bulk loads with COPY on PostgreSQL, other databases ignore copyRows and use multi-row VALUES.
+     */
+    @Test
+    public void testBulkPostAboveTheCopyThreshold() throws Exception {
+        Engine engine = engine();
+        ((JdbcDb) engine.getApis().get(0).getDbs().get(0)).withCopyRows(3);
+
+        JSArray orders = new JSArray();
+        for (int i = 0; i < 5; i++)
+            orders.add(new JSNode("shipcity", "Copied" + i, "shipcountry", "USA"));
+
+        assertReturnedRowsMatchGets(engine.post(url("orders"), orders).assertOk(), 5, "Copied");
+    }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc.h2;
+
+import io.inversion.*;
+import io.inversion.action.db.DbAction;
+import io.inversion.action.db.DbGetAction;
+import io.inversion.jdbc.AbstractJdbcDbH2Test;
+import io.inversion.jdbc.JdbcDb;
+import io.inversion.utils.JSNode;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcDbCountStrategyTest extends AbstractJdbcDbH2Test {
+    @Override
+    protected Api buildApi(JdbcDb db) {
+        return new Api("northwind")//
+                .withDb(db)//
+                .withEndpoint("GET", "query/*", new DbGetAction())//
+                .withEndpoint("GET", "window/*", new DbGetAction().withConfig("countStrategy=window"))//
+                .withEndpoint("GET", "approximate/*", new DbGetAction().withConfig("countStrategy=approximate"))//
+                .withEndpoint("*", "source/*", new DbAction());
+    }
+
+    @Test
+    public void window_countsInTheSameStatement() {
+        String[] queries = {"orders?limit=5&sort=orderid", "orders?limit=5&pageNum=3&ne(shipcountry,France)", "orders?limit=5&expands=customer"};
+
+        for (String query : queries) {
+            Response counted  = engine.get("northwind/query/" + query).assertOk();
+            Response windowed = engine.get("northwind/window/" + query).assertOk();
+
+            assertTrue(counted.getDebug().contains("count(1)"), query);
+            assertFalse(windowed.getDebug().contains("count(1)"), query);
+            assertTrue(windowed.getDebug().contains("COUNT(*) OVER() AS \"~~foundRows\""), query);
+
+            assertEquals(counted.getFoundRows(), windowed.getFoundRows(), query);
+            assertTrue(windowed.isFoundRowsExact());
+            assertEquals(counted.getData().toString(), windowed.getData().toString().replace("/window/", "/query/"), query);
+        }
+    }
+
+    @Test
+    public void approximate_estimatesUnfilteredScans() {
+        Response res = engine.get("northwind/approximate/orders?limit=5").assertOk();
+        assertEquals(25, res.getFoundRows());
+        assertFalse(res.isFoundRowsExact());
+        assertEquals(false, res.getMeta().get("foundRowsExact"));
+        assertFalse(res.getDebug().contains("count(1)"));
+
+        res = engine.get("northwind/approximate/orders?limit=5&ne(shipcountry,France)").assertOk();
+        assertTrue(res.isFoundRowsExact());
+        assertTrue(res.getDebug().contains("count(1)"));
+    }
+
+    @Test
+    public void cached_countsAreReusedUntilTheCollectionIsWritten() {
+        db.withCountStrategy("orders", JdbcDb.COUNT_CACHED);
+        try {
+            String url = "northwind/query/orders?limit=5&ne(shipcountry,France)";
+
+            Response res = engine.get(url).assertOk();
+            assertTrue(res.isFoundRowsExact());
+            assertTrue(res.getDebug().contains("count(1)"));
+            int foundRows = res.getFoundRows();
+
+            res = engine.get(url).assertOk();
+            assertFalse(res.isFoundRowsExact());
+            assertFalse(res.getDebug().contains("count(1)"));
+            assertEquals(foundRows, res.getFoundRows());
+
+            //-- other collections still use the Db's strategy
+            assertTrue(engine.get("northwind/query/orderdetails?limit=5").assertOk().getDebug().contains("count(1)"));
+
+            engine.patch("northwind/source/orders/10248", new JSNode("shipcountry", "Canada")).assertOk();
+
+            res = engine.get(url).assertOk();
+            assertTrue(res.isFoundRowsExact());
+            assertEquals(foundRows + 1, res.getFoundRows());
+        } finally {
+            db.withCountStrategy("orders", JdbcDb.COUNT_QUERY);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc.h2;
+
+import io.inversion.*;
+import io.inversion.action.db.DbGetAction;
+import io.inversion.action.misc.CsvAction;
+import io.inversion.jdbc.AbstractJdbcDbH2Test;
+import io.inversion.jdbc.JdbcDb;
+import io.inversion.jdbc.JdbcUtils;
+import io.inversion.utils.JSArray;
+import io.inversion.utils.JSNode;
+import io.inversion.utils.Rows.Row;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcDbCursorTest extends AbstractJdbcDbH2Test {
+    @Override
+    protected JdbcDb buildDb() throws Exception {
+        return super.buildDb().withFetchSize(10);
+    }
+
+    @Override
+    protected Api buildApi(JdbcDb db) {
+        return new Api("northwind")//
+                .withDb(db)//
+                .withEndpoint("GET", "*/", new DbGetAction().withStreaming(true).withExport(true), new CsvAction().withDownload(true).withOrder(2000));
+    }
+
+    @Test
+    public void selectCursor_readsRowsAndClosesConnection() throws Exception {
+        Connection conn = db.getConnection(false);
+
+        JdbcUtils.RowCursor cursor = JdbcUtils.selectCursor(conn, true, 5, "SELECT OrderID, ShipName FROM Orders WHERE OrderID < ? ORDER BY OrderID", 10260);
+        int                 count  = 0;
+        while (cursor.hasNext()) {
+            Row row = cursor.next();
+            assertEquals(10248 + count, ((Number) row.get("orderid")).intValue());
+            count += 1;
+        }
+        assertEquals(12, count);
+        assertTrue(cursor.isClosed(), "the cursor should close itself after the last row");
+        assertTrue(conn.isClosed());
+    }
+
+    @Test
+    public void dbGetAction_streamsRecordsFromCursor() throws Exception {
+        String url = "northwind/orders?limit=20&sort=orderid&excludes=shipaddress";
+
+        //-- round trip through json so numbers compare the same way as the streamed output
+        Response materialized = engine.get(url).assertOk();
+        JSArray  expected     = JSNode.parseJsonNode(materialized.getJson().toString()).getArray("data");
+        assertEquals(20, expected.size());
+
+        Response res = new Response().withStreaming(true);
+        engine.service(new Request("GET", "http://localhost/" + url), res);
+        res.assertOk();
+
+        assertNotNull(res.getRecordCursor());
+        assertEquals(0, res.getData().size(), "records should not be materialized");
+        assertNull(res.getMeta().get("foundRows"));
+        assertEquals(1, activeConnections(db), "the cursor should hold its own connection open");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        res.writeOutput(out);
+
+        assertNull(res.getRecordCursor());
+        assertEquals(0, activeConnections(db), "writing the cursor should release its connection");
+
+        JSNode json = JSNode.parseJsonNode(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(expected.toString(), json.getArray("data").toString());
+        assertTrue(json.getArray("data").getNode(0).getString("href").endsWith("/northwind/orders/10248"));
+        assertNull(json.getArray("data").getNode(0).get("shipaddress"));
+    }
+
+    @Test
+    public void dbGetAction_closesCursorThatIsNotWritten() {
+        Response res = new Response().withStreaming(true);
+        engine.service(new Request("GET", "http://localhost/northwind/orders?limit=5"), res);
+
+        assertNotNull(res.getRecordCursor());
+        res.withJson(new JSNode("message", "replaced"));
+        assertNull(res.getRecordCursor());
+        assertEquals(0, activeConnections(db));
+    }
+
+    @Test
+    public void dbGetAction_exportsNdjsonFromCursor() throws Exception {
+        Request req = new Request("GET", "http://localhost/northwind/orders?shipcountry=France&includes=orderid,shipcity", Collections.singletonMap("Accept", Response.NDJSON), null, null);
+        Response res = new Response().withStreaming(true);
+        engine.service(req, res);
+        res.assertOk();
+
+        assertEquals(Response.NDJSON, res.getContentType());
+        assertNotNull(res.getRecordCursor());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        res.writeOutput(out);
+        assertEquals(0, activeConnections(db));
+
+        String   ndjson = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        String[] lines  = ndjson.split("\n");
+
+        //-- every matching order, one compact record per line
+        int expected = engine.get("northwind/orders?shipcountry=France&limit=1000").getData().size();
+        assertTrue(expected > 0);
+        assertEquals(expected, lines.length);
+        assertTrue(ndjson.endsWith("\n"));
+        assertEquals("{\"href\":\"http://localhost/northwind/orders/10248\",\"orderid\":10248,\"shipcity\":\"Reims\"}", lines[0]);
+
+        //-- non streaming containers get the same body
+        Response captured = engine.service(new Request("GET", "http://localhost/northwind/orders?shipcountry=France&includes=orderid,shipcity", Collections.singletonMap("Accept", Response.NDJSON), null, null), new Response()).getResponse();
+        assertEquals(ndjson.trim(), captured.getOutput().trim());
+    }
+
+    @Test
+    public void dbGetAction_exportRejectsExpands() {
+        Request  req = new Request("GET", "http://localhost/northwind/orders?expands=customer", Collections.singletonMap("Accept", Response.NDJSON), null, null);
+        Response res = engine.service(req, new Response()).getResponse();
+
+        assertEquals(400, res.getStatusCode());
+        assertNotEquals(Response.NDJSON, res.getContentType());
+        assertTrue(res.getJson().getString("message").contains("Expands"));
+    }
+
+    @Test
+    public void csvAction_streamsRowsFromCursor() throws Exception {
+        Response res = new Response().withStreaming(true);
+        engine.service(new Request("GET", "http://localhost/northwind/orders?format=csv&limit=20&sort=orderid&includes=orderid,shipcity"), res);
+        res.assertOk();
+
+        assertNotNull(res.getRecordCursor());
+        assertNotNull(res.getBodyWriter());
+        assertEquals("text/csv", res.getContentType());
+        assertEquals("attachment; filename=\"orders.csv\"", res.getHeader("Content-Disposition"));
+
+        StringWriter out = new StringWriter();
+        res.writeOutput(out);
+        assertEquals(0, activeConnections(db));
+
+        //-- the header row comes from the collection properties, not from the rows
+        String[] lines = out.toString().split("\r\n");
+        assertEquals(21, lines.length);
+        assertEquals("href,orderid,shipcity", lines[0]);
+        assertEquals("http://localhost/northwind/orders/10248,10248,Reims", lines[1]);
+
+        //-- non streaming containers get the same body
+        Response captured = engine.service(new Request("GET", "http://localhost/northwind/orders?format=csv&limit=20&sort=orderid&includes=orderid,shipcity"), new Response()).getResponse();
+        assertEquals(out.toString().trim(), captured.getOutput().trim());
+    }
+
+    @Test
+    public void csvAction_onlyLinksUnexpandedRelationships() throws Exception {
+        Response res = engine.get("northwind/orders?format=csv&limit=2&sort=orderid&excludes=shipaddress&expands=customer").assertOk();
+
+        String[] lines   = res.getText().split("\r\n");
+        List     headers = Arrays.asList(lines[0].split(","));
+        assertEquals(3, lines.length);
+        assertTrue(headers.contains("employee"));
+        assertFalse(headers.contains("customer"), "expanded relationships are documents, not links");
+        assertFalse(res.getText().contains("{"));
+        assertTrue(lines[1].contains("http://localhost/northwind/employees/5"));
+    }
+}
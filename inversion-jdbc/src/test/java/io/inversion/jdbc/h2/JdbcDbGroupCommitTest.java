@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc.h2;
+
+import io.inversion.*;
+import io.inversion.jdbc.AbstractJdbcDbH2Test;
+import io.inversion.jdbc.JdbcDb;
+import io.inversion.utils.JSNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcDbGroupCommitTest extends AbstractJdbcDbH2Test {
+    @Override
+    protected JdbcDb buildDb() throws Exception {
+        return super.buildDb()//
+                .withGroupCommit("orders")//
+                .withGroupCommitMillis(200);
+    }
+
+    /**
+     * POSTs each order from its own thread, all at once.
+     */
+    List<Response> postConcurrently(List<JSNode> orders) throws Exception {
+        ExecutorService pool  = Executors.newFixedThreadPool(orders.size());
+        CountDownLatch  start = new CountDownLatch(1);
+        try {
+            List<Future<Response>> futures = new ArrayList<>();
+            for (JSNode order : orders) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    Response res = engine.post("northwind/orders", order);
+                    closeConnections();
+                    return res;
+                }));
+            }
+            start.countDown();
+
+            List<Response> responses = new ArrayList<>();
+            for (Future<Response> future : futures)
+                responses.add(future.get(30, TimeUnit.SECONDS));
+            return responses;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void concurrentPosts_shareOneStatementAndCommit() throws Exception {
+        List<JSNode> orders = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            orders.add(new JSNode("shipcity", "Grouped" + i, "customerid", "VINET"));
+
+        clearStatements();
+        List<Response> responses = postConcurrently(orders);
+
+        Set<String> hrefs = new HashSet<>();
+        for (int i = 0; i < responses.size(); i++) {
+            Response res = responses.get(i).assertOk();
+            assertEquals("Grouped" + i, res.findString("data.0.shipcity"));
+            hrefs.add(res.findString("data.0.href"));
+        }
+        assertEquals(10, hrefs.size());
+
+        long inserts = count("INSERT INTO \"ORDERS\"");
+        assertTrue(inserts < 10, statements.toString());
+    }
+
+    @Test
+    public void constraintFailures_onlyFailTheirCaller() throws Exception {
+        List<JSNode> orders = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            orders.add(new JSNode("shipcity", "Retried" + i, "customerid", i == 2 ? "NOONE" : "VINET"));
+
+        List<Response> responses = postConcurrently(orders);
+        for (int i = 0; i < responses.size(); i++) {
+            if (i == 2) {
+                assertEquals(500, responses.get(i).getStatusCode());
+            } else {
+                assertEquals("Retried" + i, responses.get(i).assertOk().findString("data.0.shipcity"));
+            }
+        }
+
+        assertEquals(4, engine.get("northwind/orders?sw(shipcity,Retried)").assertOk().getData().size());
+    }
+
+    @Test
+    public void slowCommits_timeOutTheCallerWithoutWritingTheRows() throws Exception {
+        db.withGroupCommitMillis(1000).withGroupCommitTimeout(100);
+        try {
+            Response res = engine.post("northwind/orders", new JSNode("shipcity", "TimedOut", "customerid", "VINET"));
+            assertEquals(500, res.getStatusCode());
+            assertTrue(res.getJson().getString("message").contains("were not written"), res.getJson().toString());
+        } finally {
+            db.withGroupCommitMillis(200).withGroupCommitTimeout(30000);
+        }
+
+        Thread.sleep(1500);
+        assertEquals(0, engine.get("northwind/orders?shipcity=TimedOut").assertOk().getData().size());
+    }
+
+    @Test
+    public void committerErrors_failTheCallersInsteadOfStrandingThem() {
+        JdbcDb failing = new JdbcDb() {
+            @Override
+            protected void commitGroup(List<GroupWrite> writes) {
+                throw new AssertionError("committer failure");
+            }
+        }.withGroupCommitMillis(1);
+
+        try {
+            for (int i = 0; i < 2; i++) {
+                ApiException ex = assertThrows(ApiException.class, () -> groupCommit(failing, new io.inversion.Collection("orders"), Collections.singletonList(new HashMap<>())));
+                assertEquals("500", ex.getStatus().substring(0, 3));
+                assertTrue(ex.getCause() instanceof AssertionError, ex.toString());
+            }
+        } finally {
+            stopGroupCommitter(failing);
+        }
+    }
+}
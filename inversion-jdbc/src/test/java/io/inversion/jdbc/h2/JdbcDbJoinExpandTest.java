@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc.h2;
+
+import io.inversion.*;
+import io.inversion.action.db.DbGetAction;
+import io.inversion.jdbc.AbstractJdbcDbH2Test;
+import io.inversion.jdbc.JdbcDb;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcDbJoinExpandTest extends AbstractJdbcDbH2Test {
+    @Override
+    protected Api buildApi(JdbcDb db) {
+        return new Api("northwind")//
+                .withDb(db)//
+                .withEndpoint("GET", "queried/*", new DbGetAction())//
+                .withEndpoint("GET", "joined/*", new DbGetAction().withJoinExpands(true));
+    }
+
+    int countQueries(Response res) {
+        return res.getDebug().split("SqlQuery ").length - 1;
+    }
+
+    @Test
+    public void expand_joinedMatchesQueried() {
+        String[] queries = {//
+                "orders?limit=10&sort=orderid&expands=customer,employee,shipvia,orderdetails", //
+                "orders/10248?expands=customer,employee,employee.reportsto", //
+                "orders/10248?expands=customer,employee.reportsto&excludes=customer,employee.firstname,employee.reportsto.territories", //
+                "orderdetails?limit=10&sort=orderid,productid&expands=order,order.customer,product", //
+                "employees?limit=5&sort=employeeid&expands=reportsto,employees,territories", //
+                "customers?customerid=VINET&expands=orders,orders.employee"};
+
+        for (String query : queries) {
+            Response queried = engine.get("northwind/queried/" + query).assertOk();
+            Response joined  = engine.get("northwind/joined/" + query).assertOk();
+
+            assertTrue(queried.getData().size() > 0, query);
+            assertEquals(queried.getData().toString(), joined.getData().toString().replace("/joined/", "/queried/"), query);
+        }
+    }
+
+    @Test
+    public void expand_manyToOneIsJoinedIntoSelect() {
+        String   query   = "orders?limit=10&sort=orderid&expands=customer,employee,employee.reportsto,orderdetails";
+        Response queried = engine.get("northwind/queried/" + query).assertOk();
+        Response joined  = engine.get("northwind/joined/" + query).assertOk();
+
+        assertFalse(queried.getDebug().contains("LEFT JOIN"));
+        assertTrue(joined.getDebug().contains("AS \"~~join_customer\" ON"), joined.getDebug());
+
+        //-- customer and employee ride along with the orders select, reportsto and orderdetails are still queried
+        assertEquals(4, countQueries(joined), joined.getDebug());
+        assertTrue(countQueries(queried) > countQueries(joined));
+    }
+
+    @Test
+    public void expand_joinTermsAreNotAcceptedFromTheUrl() {
+        Response res = engine.get("northwind/queried/orders/10248?_join(customer)").assertOk();
+        assertFalse(res.getDebug().contains("LEFT JOIN"));
+        assertTrue(res.getData().getNode(0).get("customer") instanceof String);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc.h2;
+
+import io.inversion.*;
+import io.inversion.action.db.DbGetAction;
+import io.inversion.jdbc.AbstractJdbcDbH2Test;
+import io.inversion.jdbc.JdbcDb;
+import io.inversion.utils.JSNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcDbKeysetPagingTest extends AbstractJdbcDbH2Test {
+    @Override
+    protected Api buildApi(JdbcDb db) {
+        return new Api("northwind")//
+                .withDb(db)//
+                .withEndpoint("GET", "*", new DbGetAction());
+    }
+
+    List<String> walk(String url, List<String> nexts) {
+        List<String> rows = new ArrayList<>();
+        String       next = url;
+        while (next != null) {
+            Response res = engine.get(next).assertOk();
+            res.getData().forEach(row -> rows.add(((JSNode) row).getString("href")));
+            next = res.next();
+            if (next != null)
+                nexts.add(next);
+            assertTrue(nexts.size() < 100, "paging did not terminate");
+        }
+        return rows;
+    }
+
+    @Test
+    public void after_pagesMatchOffsetPaging() {
+        String[] queries = {//
+                "northwind/orders?limit=5", //
+                "northwind/orders?limit=5&sort=-orderid", //
+                "northwind/orders?limit=5&sort=customerid,orderid", //
+                "northwind/orders?limit=5&sort=customerid,-orderid&ne(shipcountry,France)"};
+
+        for (String query : queries) {
+            db.withKeysetPagingRows(-1);
+            List<String> offsetNexts = new ArrayList<>();
+            List<String> offsetRows  = walk(query, offsetNexts);
+
+            db.withKeysetPagingRows(10);
+            List<String> keysetNexts = new ArrayList<>();
+            List<String> keysetRows  = walk(query, keysetNexts);
+
+            assertTrue(offsetRows.size() > 10, query);
+            assertEquals(offsetRows, keysetRows, query);
+
+            offsetNexts.forEach(next -> assertTrue(next.contains("pageNum="), next));
+            for (String next : keysetNexts) {
+                assertTrue(next.contains("after("), next);
+                assertFalse(next.contains("pageNum="), next);
+            }
+        }
+    }
+
+    @Test
+    public void after_seeksWithRowValueComparison() {
+        db.withKeysetPagingRows(10);
+        Response res  = engine.get("northwind/orders?limit=5&sort=orderid").assertOk();
+        int      last = res.findInt("data.4.orderid");
+        assertTrue(res.next().contains("after(orderid," + last + ")"), res.next());
+        assertEquals(25, res.getFoundRows());
+
+        res = engine.get(res.next()).assertOk();
+        assertTrue(res.findInt("data.0.orderid") > last);
+        assertTrue(res.getDebug().contains("(\"ORDERS\".\"ORDERID\") > (?)"), res.getDebug());
+        assertFalse(res.getDebug().contains("count(1)"), "keyset pages should not count rows");
+    }
+
+    @Test
+    public void after_nonUniqueSortPagesWithOffset() {
+        db.withKeysetPagingRows(10);
+        Response res = engine.get("northwind/orders?limit=5&sort=shipcountry").assertOk();
+        assertTrue(res.next().contains("pageNum=2"), res.next());
+
+        engine.get("northwind/orders?limit=5&sort=shipcountry&after(shipcountry,France)").assertStatus(400);
+    }
+}
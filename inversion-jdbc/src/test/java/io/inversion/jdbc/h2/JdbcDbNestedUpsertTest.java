@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc.h2;
+
+import io.inversion.*;
+import io.inversion.jdbc.AbstractJdbcDbH2Test;
+import io.inversion.utils.JSArray;
+import io.inversion.utils.JSNode;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcDbNestedUpsertTest extends AbstractJdbcDbH2Test {
+    @Test
+    public void put_writesEachLevelInOneBatchAndUnlinksInOneStatement() {
+        Response res     = engine.get("northwind/employees/5?expands=employees").assertOk();
+        JSNode   manager = res.findNode("data.0");
+        JSArray  reports = manager.getArray("employees");
+        assertEquals(3, reports.size());
+
+        //-- keeps one report by href, adds two new reports and unlinks the other two
+        String kept = reports.getNode(0).getString("href");
+        manager.put("employees", new JSArray(kept, //
+                new JSNode("firstname", "New1", "lastname", "Report", "notes", "first"), //
+                new JSNode("firstname", "New2", "lastname", "Report", "notes", "second")));
+
+        clearStatements();
+        engine.put(manager.getString("href"), manager).assertOk();
+
+        assertEquals(1, count("INSERT INTO \"EMPLOYEES\""), statements.toString());
+        assertEquals(1, count("UPDATE \"EMPLOYEES\" SET \"REPORTSTO\" = NULL"), statements.toString());
+
+        res = engine.get("northwind/employees/5?expands=employees&sort=employeeid").assertOk();
+        JSArray updated = res.findArray("data.0.employees");
+        assertEquals(3, updated.size());
+        assertEquals(kept, updated.getNode(0).getString("href"));
+        assertEquals("New1", updated.getNode(1).getString("firstname"));
+        assertEquals("New2", updated.getNode(2).getString("firstname"));
+    }
+
+    @Test
+    public void post_writesManyToOneParentsFirst() {
+        JSNode order = new JSNode("shipcity", "Planned", "customer", new JSNode("customerid", "PLAND", "companyname", "Planned Co"));
+
+        clearStatements();
+        Response res = engine.post("northwind/orders", order).assertOk();
+        assertFalse(statements.stream().anyMatch(sql -> sql.toUpperCase().startsWith("UPDATE \"ORDERS\"")), statements.toString());
+
+        res = engine.get(res.findString("data.0.href") + "?expands=customer").assertOk();
+        assertEquals("Planned Co", res.findString("data.0.customer.companyname"));
+    }
+
+    @Test
+    public void post_rollsBackEveryLevelWhenANestedLevelFails() {
+        int orders = engine.get("northwind/orders?limit=1").assertOk().getFoundRows();
+
+        JSNode order = new JSNode("shipcity", "Failing", //
+                "customer", new JSNode("customerid", "PROBE", "companyname", "Probe Co"), //
+                "orderdetails", new JSArray(new JSNode("productid", 1, "unitprice", 1, "quantity", "notanumber", "discount", 0)));
+
+        Response res = engine.post("northwind/orders", order);
+        assertFalse(res.isSuccess(), res.getJson().toString());
+
+        engine.get("northwind/customers/PROBE").assertStatus(404);
+        assertEquals(orders, engine.get("northwind/orders?limit=1").assertOk().getFoundRows());
+        assertEquals(0, engine.get("northwind/orders?shipcity=Failing").assertOk().getData().size());
+    }
+
+    @Test
+    public void post_patchesCircularForeignKeysAfterBothRecordsAreWritten() {
+        //-- two new employees that report to each other can not be written in foreign key order
+        JSNode first  = new JSNode("firstname", "Circular", "lastname", "First", "notes", "first");
+        JSNode second = new JSNode("firstname", "Circular", "lastname", "Second", "notes", "second", "reportsto", first);
+        first.put("reportsto", second);
+
+        clearStatements();
+        Request req = new Request("POST", "http://localhost/northwind/employees").withJson(first);
+        Response res = engine.service(req, new Response()).getResponse().assertOk();
+        assertEquals(2, count("INSERT INTO \"EMPLOYEES\""), statements.toString());
+
+        String firstHref = res.findString("data.0.href");
+        res = engine.get(firstHref + "?expands=reportsto").assertOk();
+        JSNode boss = res.findNode("data.0.reportsto");
+        assertEquals("Second", boss.getString("lastname"));
+
+        res = engine.get(boss.getString("href")).assertOk();
+        assertEquals(firstHref, res.findString("data.0.reportsto"));
+    }
+}
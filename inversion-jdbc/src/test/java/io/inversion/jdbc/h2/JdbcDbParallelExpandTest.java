@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc.h2;
+
+import io.inversion.*;
+import io.inversion.action.db.DbGetAction;
+import io.inversion.jdbc.AbstractJdbcDbH2Test;
+import io.inversion.jdbc.JdbcDb;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcDbParallelExpandTest extends AbstractJdbcDbH2Test {
+    @Override
+    protected Api buildApi(JdbcDb db) {
+        return new Api("northwind")//
+                .withDb(db)//
+                .withEndpoint("GET", "sequential/*", new DbGetAction())//
+                .withEndpoint("GET", "parallel/*", new DbGetAction().withExpandThreads(4));
+    }
+
+    boolean expandThreadsStarted() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("inversion-expand-"))
+                return true;
+        }
+        return false;
+    }
+
+    @Test
+    public void expand_parallelMatchesSequential() {
+        String[] queries = {//
+                "orders?limit=10&sort=orderid&expands=customer,employee,shipvia,orderdetails", //
+                "orders/10248?expands=customer,employee,employee.reportsto", //
+                "orders/10248?expands=customer,employee.reportsto&excludes=customer,employee.firstname,employee.reportsto.territories", //
+                "employees?limit=5&sort=employeeid&expands=employees,territories,orders", //
+                "customers?customerid=VINET&expands=orders,orders.orderdetails"};
+
+        for (String query : queries) {
+            Response sequential = engine.get("northwind/sequential/" + query).assertOk();
+            Response parallel   = engine.get("northwind/parallel/" + query).assertOk();
+
+            assertTrue(sequential.getData().size() > 0, query);
+            assertEquals(sequential.getData().toString(), parallel.getData().toString().replace("/parallel/", "/sequential/"), query);
+        }
+
+        assertTrue(expandThreadsStarted(), "sibling relationships should have been fetched on worker threads");
+        assertEquals(0, activeConnections(db), "worker threads should release their connections");
+    }
+}
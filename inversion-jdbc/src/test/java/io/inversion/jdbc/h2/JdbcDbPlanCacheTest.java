@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc.h2;
+
+import io.inversion.*;
+import io.inversion.action.db.DbGetAction;
+import io.inversion.jdbc.AbstractJdbcDbH2Test;
+import io.inversion.jdbc.JdbcDb;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcDbPlanCacheTest extends AbstractJdbcDbH2Test {
+    @Override
+    protected Api buildApi(JdbcDb db) {
+        return new Api("northwind")//
+                .withDb(db)//
+                .withEndpoint("GET", "*/", new DbGetAction());
+    }
+
+    String get(String url) {
+        return engine.get("northwind/" + url).assertOk().getData().toString();
+    }
+
+    @Test
+    public void plan_isReusedForQueriesThatOnlyDifferInValues() {
+        String[][] queries = {//
+                {"orders?shipcountry=France&gt(freight,10)&sort=orderid&limit=5", "orders?shipcountry=Germany&gt(freight,50)&sort=orderid&limit=5"}, //
+                {"orders/10248", "orders/10249"}, //
+                {"orders?eq(shippostalcode,'51100')&sort=orderid", "orders?eq(shippostalcode,'44087')&sort=orderid"}, //
+                {"orders?in(orderid,10248,10250,10252)", "orders?in(orderid,10249,10251,10253)"}, //
+                {"customers?w(companyname,mex)&sort=customerid", "customers?w(companyname,bon)&sort=customerid"}, //
+                {"orders?employee.lastname=Fuller&sort=orderid&limit=3", "orders?employee.lastname=King&sort=orderid&limit=3"}};
+
+        for (String[] pair : queries) {
+            db.withPlanCacheSize(0);
+            String expected0 = get(pair[0]);
+            String expected1 = get(pair[1]);
+            assertNotEquals(expected0, expected1);
+
+            db.withPlanCacheSize(100);
+            long hits = db.getPlanCacheHits();
+
+            assertEquals(expected0, get(pair[0]), pair[0]);
+            assertEquals(expected1, get(pair[1]), pair[1]);
+            assertEquals(expected1, get(pair[1]), pair[1]);
+
+            assertEquals(hits + 2, db.getPlanCacheHits(), pair[0]);
+            assertFalse(hasUncacheablePlans(db), pair[0]);
+        }
+    }
+
+    @Test
+    public void plan_keepsValuesThatChangeTheSqlInTheShape() {
+        db.withPlanCacheSize(100);
+
+        //-- null and wildcard values print different sql so they can not share a plan with plain values
+        String a = get("orders?shipregion=null&sort=orderid&limit=5");
+        String b = get("orders?shipregion=RJ&sort=orderid&limit=5");
+        String c = get("orders?shipname=Vins*&sort=orderid&limit=5");
+        String d = get("orders?shipname=Hanari Carnes&sort=orderid&limit=5");
+
+        db.withPlanCacheSize(0);
+        assertEquals(a, get("orders?shipregion=null&sort=orderid&limit=5"));
+        assertEquals(b, get("orders?shipregion=RJ&sort=orderid&limit=5"));
+        assertEquals(c, get("orders?shipname=Vins*&sort=orderid&limit=5"));
+        assertEquals(d, get("orders?shipname=Hanari Carnes&sort=orderid&limit=5"));
+        db.withPlanCacheSize(1000);
+    }
+}
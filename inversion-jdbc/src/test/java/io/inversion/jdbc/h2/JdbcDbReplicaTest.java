@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc.h2;
+
+import io.inversion.*;
+import io.inversion.action.db.DbAction;
+import io.inversion.jdbc.AbstractJdbcDbH2Test;
+import io.inversion.jdbc.JdbcDb;
+import io.inversion.jdbc.JdbcDbFactory;
+import io.inversion.jdbc.JdbcUtils;
+import io.inversion.utils.JSNode;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcDbReplicaTest extends AbstractJdbcDbH2Test {
+    JdbcDb replica = null;
+
+    @Override
+    protected JdbcDb buildDb() throws Exception {
+        //-- the replica is a second copy of the data that is marked so reads from it can be told apart
+        replica = JdbcDbFactory.bootstrapH2("JdbcDbReplicaTest_replica");
+        try (Connection conn = replica.getConnection(false)) {
+            JdbcUtils.execute(conn, "UPDATE \"ORDERS\" SET \"SHIPCOUNTRY\" = 'Replica'");
+            conn.commit();
+        }
+
+        return super.buildDb()//
+                .withReplicaUrl(replica.getUrl())//
+                .withReplicaCheckInterval(0)//
+                .withReadPrimaryHeader("X-Read-Primary");
+    }
+
+    @Override
+    protected Api buildApi(JdbcDb db) {
+        return new Api("northwind")//
+                .withDb(db)//
+                .withEndpoint("*", "source/*", new DbAction())//
+                .withEndpoint("PATCH", "readYourWrites/*", new Action() {
+                    public void run(Request req, Response res) throws ApiException {
+                        //-- writes and then reads the same order in one Chain tree
+                        req.getEngine().dispatch("PATCH", "northwind/source/orders/10249", null, new JSNode("shipcountry", "Patched")).assertOk();
+                        res.withJson(req.getEngine().dispatch("GET", "northwind/source/orders/10249", null, null).assertOk().getJson());
+                    }
+                });
+    }
+
+    @AfterAll
+    public void afterAll_closeReplica() {
+        closePool(replica);
+    }
+
+    String shipCountry(Response res) {
+        return res.assertOk().findString("data.0.shipcountry");
+    }
+
+    @Test
+    public void selects_readFromReplicas() {
+        assertEquals("Replica", shipCountry(engine.get("northwind/source/orders/10248")));
+
+        Request req = new Request("GET", "northwind/source/orders/10248").withHeaders("x-read-primary", "1");
+        req.withEngine(engine);
+        Response res = new Response();
+        engine.service(req, res);
+        assertEquals("France", shipCountry(res));
+    }
+
+    @Test
+    public void writes_stickTheirRequestToThePrimary() {
+        assertEquals("Patched", shipCountry(engine.patch("northwind/readYourWrites/orders", new JSNode())));
+
+        //-- later requests read the, stale, replica again
+        assertEquals("Replica", shipCountry(engine.get("northwind/source/orders/10249")));
+    }
+
+    @Test
+    public void replicas_fallBackToThePrimaryWhenDown() throws Exception {
+        markReplicasDown(db);
+        try {
+            assertEquals("France", shipCountry(engine.get("northwind/source/orders/10248")));
+        } finally {
+            checkReplicas(db);
+        }
+        assertEquals(0, downReplicas(db));
+        assertEquals("Replica", shipCountry(engine.get("northwind/source/orders/10248")));
+
+        JdbcDb broken = JdbcDbFactory.bootstrapH2("JdbcDbReplicaTest_broken").withReplicaUrl("jdbc:h2:tcp://127.0.0.1:1/missing").withReplicaCheckInterval(0);
+        Engine brokenEngine = new Engine().withApi(new Api("northwind").withDb(broken).withEndpoint("GET", "*", new DbAction()));
+        brokenEngine.startup();
+        try {
+            assertEquals("France", shipCountry(brokenEngine.get("northwind/orders/10248")));
+            assertEquals(1, downReplicas(broken));
+        } finally {
+            brokenEngine.shutdown();
+            closeConnections();
+        }
+    }
+}
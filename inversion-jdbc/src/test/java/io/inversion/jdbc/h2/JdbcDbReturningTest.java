@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc.h2;
+
+import io.inversion.*;
+import io.inversion.action.db.DbAction;
+import io.inversion.action.db.DbPatchAction;
+import io.inversion.action.db.DbPutAction;
+import io.inversion.jdbc.AbstractJdbcDbH2Test;
+import io.inversion.jdbc.JdbcDb;
+import io.inversion.utils.JSArray;
+import io.inversion.utils.JSNode;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcDbReturningTest extends AbstractJdbcDbH2Test {
+    @Override
+    protected Api buildApi(JdbcDb db) {
+        return new Api("northwind")//
+                .withDb(db)//
+                .withEndpoint("*", "returning/*", new DbAction())//
+                .withEndpoint("*", "get/*", new DbAction()//
+                        .withPutAction((DbPutAction) new DbPutAction().withReturningResponse(false))//
+                        .withPatchAction((DbPatchAction) new DbPatchAction().withReturningResponse(false)))//
+                .withEndpoint(new Endpoint("*", "excludes/*", new DbAction()).withConfig("excludes=shipaddress"))//
+                .withEndpoint(new Endpoint("*", "expands/*", new DbAction()).withConfig("expands=customer"));
+    }
+
+    JSArray orders(String shipCity) {
+        return new JSArray(new JSNode("orderid", 10248, "shipcity", shipCity), new JSNode("orderid", 10249, "shipcity", shipCity));
+    }
+
+    @Test
+    public void put_returnsTheWrittenRowsWithoutAnotherGet() {
+        clearStatements();
+        Response returned = engine.put("northwind/returning/orders", orders("Returned")).assertOk();
+        assertEquals(1, count("FINAL TABLE (MERGE"), statements.toString());
+        assertEquals(0, count("SELECT \"ORDERS\""), statements.toString());
+
+        Response got = engine.put("northwind/get/orders", orders("Returned")).assertOk();
+
+        assertEquals(2, returned.getData().size());
+        assertEquals("Returned", returned.findString("data.1.shipcity"));
+        assertEquals(got.getData().toString().replace("/get/", "/returning/"), returned.getData().toString());
+    }
+
+    @Test
+    public void post_returnsGeneratedKeysInInputOrder() {
+        JSArray posted = new JSArray(new JSNode("shipcity", "First", "customerid", "VINET"), new JSNode("shipcity", "Second", "customerid", "VINET"));
+        Response res = engine.post("northwind/returning/orders", posted).assertOk();
+        assertEquals("First", res.findString("data.0.shipcity"));
+        assertEquals("Second", res.findString("data.1.shipcity"));
+        assertTrue(res.findInt("data.0.orderid") < res.findInt("data.1.orderid"));
+
+        String location = res.getHeader("Location");
+        assertTrue(location.endsWith(res.findInt("data.0.orderid") + "," + res.findInt("data.1.orderid")), location);
+    }
+
+    JSArray patches(String shipCity) {
+        return new JSArray(new JSNode("href", "/orders/10250", "shipcity", shipCity), new JSNode("href", "/orders/10251", "shipcity", shipCity));
+    }
+
+    @Test
+    public void patch_returnsThePatchedRows() {
+        Response returned = engine.patch("northwind/returning/orders", patches("Patched")).assertOk();
+        Response got      = engine.patch("northwind/get/orders", patches("Patched")).assertOk();
+
+        assertEquals(2, returned.getData().size());
+        assertEquals("Patched", returned.findString("data.0.shipcity"));
+        assertEquals(got.getData().toString().replace("/get/", "/returning/"), returned.getData().toString());
+    }
+
+    @Test
+    public void endpointExcludes_applyToTheWrittenRows() {
+        Response put   = engine.put("northwind/excludes/orders", orders("Excluded")).assertOk();
+        Response patch = engine.patch("northwind/excludes/orders", patches("Excluded")).assertOk();
+
+        Response got = engine.get("northwind/excludes/orders/10248").assertOk();
+        assertNull(got.find("data.0.shipaddress"));
+        assertEquals(got.getData().getNode(0).toString(), put.getData().getNode(0).toString());
+
+        assertNull(patch.find("data.0.shipaddress"));
+        assertEquals("Excluded", patch.findString("data.0.shipcity"));
+    }
+
+    @Test
+    public void expands_getTheResponse() {
+        Response put = engine.put("northwind/expands/orders", orders("Expanded")).assertOk();
+        assertEquals("VINET", put.findString("data.0.customer.customerid"));
+
+        Response got = engine.get("northwind/expands/orders/10248").assertOk();
+        assertEquals(got.getData().getNode(0).toString(), put.getData().getNode(0).toString());
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2015-2020 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc.h2;
+
+import io.inversion.jdbc.AbstractJdbcDbH2Test;
+import io.inversion.jdbc.JdbcUtils;
+import io.inversion.utils.Rows.Row;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcUtilsUpsertTest extends AbstractJdbcDbH2Test {
+    Connection conn = null;
+
+    @BeforeAll
+    public void beforeAll_createTable() throws Exception {
+        conn = db.getConnection(false);
+        JdbcUtils.execute(conn, "CREATE TABLE \"BULK\" (\"ID\" INT AUTO_INCREMENT PRIMARY KEY, \"NAME\" VARCHAR(20), \"NUM\" INT)");
+        clearStatements();
+    }
+
+    @AfterAll
+    public void afterAll_closeConnection() throws Exception {
+        conn.close();
+    }
+
+    Map<String, Object> row(Object... keyValues) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length - 1; i += 2)
+            row.put((String) keyValues[i], keyValues[i + 1]);
+        return row;
+    }
+
+    @Test
+    public void upsert_chunksMultiRowValuesAndKeepsInputOrder() throws Exception {
+        //-- 2 columns per row fit 16383 rows in one statement, 3 fit 10922
+        int                       count = 20000;
+        List<Map<String, Object>> rows  = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            rows.add(row("NAME", "name" + i, "NUM", i));
+
+        clearStatements();
+        List<Row> keys = JdbcUtils.upsert(conn, "BULK", Collections.singletonList("ID"), rows);
+        assertEquals(Arrays.asList("insertMaps", "insertMaps"), methods);
+        assertEquals(count, keys.size());
+        for (int i = 0; i < count; i += 997)
+            assertEquals("name" + i, JdbcUtils.selectValue(conn, "SELECT \"NAME\" FROM \"BULK\" WHERE \"ID\" = ?", keys.get(i).get("ID")));
+
+        rows.clear();
+        for (int i = 0; i < count; i++)
+            rows.add(row("ID", keys.get(i).get("ID"), "NAME", "updated" + i, "NUM", -i));
+        rows.add(row("ID", keys.get(0).get("ID"), "NAME", "last", "NUM", 0));
+
+        clearStatements();
+        List<Row> upserted = JdbcUtils.upsert(conn, "BULK", Collections.singletonList("ID"), rows);
+        assertEquals(Arrays.asList("upsert", "upsert"), methods);
+        assertEquals(count + 1, upserted.size());
+        assertEquals(keys.get(5).get("ID"), upserted.get(5).get("ID"));
+        assertEquals("last", JdbcUtils.selectValue(conn, "SELECT \"NAME\" FROM \"BULK\" WHERE \"ID\" = ?", keys.get(0).get("ID")));
+        assertEquals("updated19999", JdbcUtils.selectValue(conn, "SELECT \"NAME\" FROM \"BULK\" WHERE \"ID\" = ?", keys.get(19999).get("ID")));
+        assertEquals(count, ((Number) JdbcUtils.selectValue(conn, "SELECT count(*) FROM \"BULK\"")).intValue());
+    }
+
+    @Test
+    public void update_groupsRowsByColumnSet() throws Exception {
+        JdbcUtils.execute(conn, "CREATE TABLE \"PATCHED\" (\"ID\" INT PRIMARY KEY, \"NAME\" VARCHAR(20), \"NUM\" INT)");
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            rows.add(row("ID", i, "NAME", "name" + i, "NUM", i));
+        JdbcUtils.upsert(conn, "PATCHED", Collections.singletonList("ID"), rows);
+
+        //-- interleaved column sets still make one MERGE ... USING (VALUES ...) per column set
+        rows.clear();
+        for (int i = 9; i >= 0; i--)
+            rows.add(i % 2 == 0 ? row("ID", i, "NAME", "even" + i) : row("ID", i, "NUM", i * 100, "NAME", null));
+
+        clearStatements();
+        List<Integer> counts = JdbcUtils.update(conn, "PATCHED", Collections.singletonList("ID"), rows);
+        assertEquals(Arrays.asList("update", "update"), methods);
+        assertEquals(2, count("MERGE INTO"));
+        assertEquals(2, count("FROM (VALUES"));
+        assertEquals(Arrays.asList(5, 5), counts);
+        assertEquals("even4", JdbcUtils.selectValue(conn, "SELECT \"NAME\" FROM \"PATCHED\" WHERE \"ID\" = 4"));
+        assertEquals(4, ((Number) JdbcUtils.selectValue(conn, "SELECT \"NUM\" FROM \"PATCHED\" WHERE \"ID\" = 4")).intValue());
+        assertNull(JdbcUtils.selectValue(conn, "SELECT \"NAME\" FROM \"PATCHED\" WHERE \"ID\" = 5"));
+        assertEquals(500, ((Number) JdbcUtils.selectValue(conn, "SELECT \"NUM\" FROM \"PATCHED\" WHERE \"ID\" = 5")).intValue());
+
+        //-- a repeated key is applied after the earlier update of the same row
+        rows.clear();
+        rows.add(row("ID", 1, "NAME", "first"));
+        rows.add(row("ID", 2, "NAME", "other"));
+        rows.add(row("ID", 1, "NAME", "second"));
+
+        clearStatements();
+        JdbcUtils.update(conn, "PATCHED", Collections.singletonList("ID"), rows);
+        assertEquals(2, methods.size());
+        assertEquals("second", JdbcUtils.selectValue(conn, "SELECT \"NAME\" FROM \"PATCHED\" WHERE \"ID\" = 1"));
+        assertEquals("other", JdbcUtils.selectValue(conn, "SELECT \"NAME\" FROM \"PATCHED\" WHERE \"ID\" = 2"));
+    }
+
+    @Test
+    public void chunk_endsBeforeRepeatedKeys() {
+        List<Map<String, Object>> rows = Arrays.asList(row("ID", 1), row("ID", 2), row("ID", 1), row("ID", 3));
+
+        assertEquals(1, chunk(conn, rows, 1, null).size());
+
+        List<List<Map<String, Object>>> chunks = chunk(conn, rows, 1, Collections.singletonList("ID"));
+        assertEquals(2, chunks.size());
+        assertEquals(2, chunks.get(0).size());
+        assertEquals(2, chunks.get(1).size());
+    }
+
+    @Test
+    public void chunk_staysUnderTheSqlServerParameterLimit() {
+        Connection sqlserver = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class}, (proxy, method, args) -> {
+            if (method.getName().equals("toString"))
+                return "SQLServerConnection:1";
+            throw new UnsupportedOperationException(method.getName());
+        });
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 2500; i++)
+            rows.add(row("ID", i, "NAME", "name" + i, "NUM", i));
+
+        //-- 3 columns fit 699 rows in 2097 parameters
+        List<List<Map<String, Object>>> chunks = chunk(sqlserver, rows, 3, null);
+        assertEquals(699, chunks.get(0).size());
+        for (List<Map<String, Object>> chunk : chunks)
+            assertTrue(chunk.size() * 3 <= 2098, chunk.size() + "");
+
+        //-- 2 columns fit 1049 rows but a VALUES list can only hold 1000
+        assertEquals(1000, chunk(sqlserver, rows, 2, null).get(0).size());
+    }
+}
@@ -18,6 +18,7 @@ package io.inversion.lambda;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.fasterxml.jackson.core.JsonGenerator;
 import io.inversion.Api;
 import io.inversion.Engine;
 import io.inversion.Request;
@@ -101,7 +102,7 @@ public class AwsApiGatewayLambdaRequestStreamHandler implements RequestStreamHan
             }
 
             Request  req = new Request(method, url.toString(), headers, params, body);
-            Response res = new Response();
+            Response res = new Response().withStreaming(true);
 
             engine.service(req, res);
 
@@ -180,14 +181,27 @@ public class AwsApiGatewayLambdaRequestStreamHandler implements RequestStreamHan
         return null;
     }
 
+    /**
+     * Writes the ApiGateway proxy response envelope straight to <code>outputStream</code>.
+     * <p>
+     * ApiGateway requires the body to be an escaped json string inside the envelope so the body is
+     * rendered once via {@link Response#writeOutput(Writer)} and then written into the envelope by the
+     * JsonGenerator instead of building and re-serializing an envelope JSNode.
+     *
+     * @param res          the response to write
+     * @param outputStream the lambda output stream
+     * @throws IOException if writing fails
+     */
     protected void writeResponse(Response res, OutputStream outputStream) throws IOException {
-        JSNode responseJson = new JSNode();
+        StringWriter body = new StringWriter();
+        res.writeOutput(body);
 
-        responseJson.put("isBase64Encoded", false);
-        responseJson.put("statusCode", res.getStatusCode());
-        JSNode headers = new JSNode();
-        responseJson.put("headers", headers);
+        JsonGenerator json = JSNode.createGenerator(outputStream);
+        json.writeStartObject();
+        json.writeBooleanField("isBase64Encoded", false);
+        json.writeNumberField("statusCode", res.getStatusCode());
 
+        json.writeObjectFieldStart("headers");
         for (String key : res.getHeaders().keySet()) {
             List          values = res.getHeaders().get(key);
             StringBuilder buff   = new StringBuilder();
@@ -196,15 +210,13 @@ public class AwsApiGatewayLambdaRequestStreamHandler implements RequestStreamHan
                 if (i < values.size() - 1)
                     buff.append(",");
             }
-            headers.put(key, buff.toString());
+            json.writeStringField(key, buff.toString());
         }
+        json.writeEndObject();
 
-        String output = res.getOutput();
-
-        responseJson.put("body", output);
-        OutputStreamWriter writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
-        writer.write(responseJson.toString());
-        writer.close();
+        json.writeStringField("body", body.toString());
+        json.writeEndObject();
+        json.close();
     }
 
     public void debug(String msg) {